@@ -1,5 +1,17 @@
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import javax.swing.*;
 
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.parser.GeometryCache;
+import uclouvain.ingi2325.render.BatchRenderer;
+import uclouvain.ingi2325.render.ProgressiveRenderer;
+import uclouvain.ingi2325.render.RenderBenchmark;
+import uclouvain.ingi2325.render.RenderEngine;
+import uclouvain.ingi2325.render.SceneRenderer;
 import uclouvain.ingi2325.utils.PixelPanel;
 import uclouvain.ingi2325.utils.Scene;
 import uclouvain.ingi2325.utils.SceneBuilder;
@@ -12,17 +24,34 @@ import uclouvain.ingi2325.utils.SceneBuilder;
  */
 public class Demo {
 
-	public static void main(String[] args) {
-		new Demo();
+	/**
+	 * Show the demo, or run without window when the first argument is
+	 * <code>-batch</code> or <code>-benchmark</code>, with the arguments of
+	 * {@link BatchRenderer} or {@link RenderBenchmark}
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] rest = args.length > 0 ? Arrays.copyOfRange(args, 1,
+				args.length) : args;
+		if (args.length > 0 && args[0].equals("-batch"))
+			BatchRenderer.main(rest);
+		else if (args.length > 0 && args[0].equals("-benchmark"))
+			RenderBenchmark.main(rest);
+		else
+			new Demo();
 	}
 
+	/** Maximum number of repaints per second while rendering */
+	private static final int FRAME_RATE = 30;
+
 	private JFrame frame;
 	private PixelPanel panel;
+	private Scene scene;
 
 	public Demo() {
 		try {
 			SceneBuilder sceneBuilder = new SceneBuilder();
-			Scene scene = sceneBuilder.loadScene("XML/example.sdl");
+			sceneBuilder.setGeometryCache(GeometryCache.getDefault());
+			scene = sceneBuilder.loadScene("XML/example.sdl");
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -38,26 +67,53 @@ public class Demo {
 
 	public void drawPixels() {
 		panel.clear(0, 0, 1);
-		for (int y = 10; y < panel.getHeight() - 10; y++) {
-			for (int x = 10; x < panel.getWidth() - 10; x++) {
-				if ((x / 20) % 2 == 0) {
-					if ((y / 20) % 2 == 0)
-						panel.drawPixel(x, y, 1, 0, 0);
-					else
-						panel.drawPixel(x, y, 0.5f, 0, 0);
-				} else {
-					if ((y / 20) % 2 == 0)
-						panel.drawPixel(x, y, 1, 0.5f, 0);
-					else
-						panel.drawPixel(x, y, 0.5f, 0.25f, 0);
-				}
-			}
+		if (scene == null)
+			return;
+
+		int width = panel.getWidth();
+		int height = panel.getHeight();
+		SceneRenderer renderer = new SceneRenderer(scene, SceneBVH
+				.build(scene, height), width, height);
+		new RenderEngine(width, height).render(renderer, panel);
+	}
+
+	/**
+	 * Render the scene in passes, showing the image as it is refined
+	 */
+	public void drawProgressively() {
+		panel.clear(0, 0, 1);
+		panel.markChanged();
+		if (scene == null)
+			return;
+
+		ProgressiveRenderer renderer = new ProgressiveRenderer(scene,
+				SceneBVH.build(scene, panel.getHeight()), panel);
+		try {
+			renderer.start().get();
+		} catch (ExecutionException e) {
+			System.err.println("The image could not be rendered: "
+					+ e.getCause());
+		} catch (InterruptedException e) {
+			renderer.cancel();
+			Thread.currentThread().interrupt();
 		}
 	}
 
 	public void draw() {
-		drawPixels();
-		panel.repaint();
-		panel.saveImage("image.png");
+		panel.startRefreshing(FRAME_RATE);
+		try {
+			drawProgressively();
+		} finally {
+			panel.stopRefreshing();
+		}
+		Future<File> saved = panel.saveImage("image.png");
+		try {
+			saved.get();
+		} catch (ExecutionException e) {
+			System.err.println("The image could not be saved: "
+					+ e.getCause().getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
 	}
 }
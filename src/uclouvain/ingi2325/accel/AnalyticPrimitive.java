@@ -0,0 +1,41 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.utils.Ray;
+
+/**
+ * Single analytic shape, in its local space, as primitives
+ * <p>Subclasses intersect rays in closed form, in double precision, with
+ * the scratch state of the {@link Hit} record only, so they never allocate.
+ * They hold nothing but the dimensions of their shape and are shared by all
+ * the instances of their geometry.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+abstract class AnalyticPrimitive implements Primitives {
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getCount()
+	 */
+	@Override
+	public int getCount() {
+		return 1;
+	}
+
+	/**
+	 * Returns whether a distance is a closer hit than the best found
+	 * 
+	 * @param t
+	 *            The distance, rounded to a float
+	 * @param ray
+	 *            The ray
+	 * @param best
+	 *            Distance of the closest hit found, or <code>ray.tMax</code>
+	 * @return True if the distance is strictly between <code>ray.tMin</code>
+	 *         and <code>best</code>
+	 */
+	static boolean isCloser(float t, Ray ray, float best) {
+		return t > ray.tMin && t < best;
+	}
+}
@@ -0,0 +1,487 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.utils.Ray;
+
+/**
+ * Bounding volume hierarchy over a set of {@link Primitives}
+ * <p>The hierarchy is built by {@link BVHBuilder}, and flattened in
+ * depth-first order into packed arrays:</p>
+ * <ul>
+ * <li><code>bounds</code> holds six floats per node: its minimum x, y, z
+ * and its maximum x, y, z;</li>
+ * <li><code>nodes</code> holds two ints per node. For a leaf, the index of
+ * its first primitive in <code>indices</code> and its number of primitives,
+ * which is positive. For an inner node, the index of its second child (the
+ * first child follows the node) and <code>-1 - axis</code>, where axis is
+ * the axis of the split (0 for x, 1 for y, 2 for z);</li>
+ * <li><code>indices</code> holds the indices of the primitives, grouped by
+ * leaf.</li>
+ * </ul>
+ * <p>Traversal uses a short stack, visiting the child on the side of the
+ * origin of the ray first, and never allocates when the caller gives a
+ * {@link Hit} record. Coherent {@link RayPacket}s are traversed with the
+ * range of their rays that may hit each node.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class BVH {
+
+	/** Maximum depth of the hierarchy, and size of the traversal stacks */
+	public static final int MAX_DEPTH = 64;
+
+	/** Primitives */
+	private final Primitives primitives;
+
+	/** Bounds of the nodes, six floats per node */
+	private final float[] bounds;
+
+	/** Nodes, two ints per node */
+	private final int[] nodes;
+
+	/** Indices of the primitives, grouped by leaf */
+	private final int[] indices;
+
+	/**
+	 * Create a hierarchy from its packed arrays
+	 * 
+	 * @param primitives
+	 *            Primitives
+	 * @param bounds
+	 *            Bounds of the nodes
+	 * @param nodes
+	 *            Nodes
+	 * @param indices
+	 *            Indices of the primitives
+	 */
+	BVH(Primitives primitives, float[] bounds, int[] nodes, int[] indices) {
+		this.primitives = primitives;
+		this.bounds = bounds;
+		this.nodes = nodes;
+		this.indices = indices;
+	}
+
+	/**
+	 * Returns the primitives
+	 * 
+	 * @return the primitives
+	 */
+	public Primitives getPrimitives() {
+		return primitives;
+	}
+
+	/**
+	 * Returns the number of nodes
+	 * 
+	 * @return the number of nodes
+	 */
+	public int getNodeCount() {
+		return nodes.length / 2;
+	}
+
+	/**
+	 * Get the bounds of all the primitives
+	 * 
+	 * @param box
+	 *            Box set to the bounds of the root node
+	 */
+	public void getBounds(BoundingBox box) {
+		if (nodes.length == 0)
+			box.reset();
+		else
+			box.set(bounds[0], bounds[1], bounds[2], bounds[3], bounds[4],
+					bounds[5]);
+	}
+
+	/**
+	 * Find the closest hit of a ray
+	 * 
+	 * @param ray
+	 *            The ray, whose <code>tMax</code> is lowered to the distance
+	 *            of the hit, if any
+	 * @return The index of the primitive hit, or -1
+	 */
+	public int intersect(Ray ray) {
+		return intersect(ray, new Hit());
+	}
+
+	/**
+	 * Find the closest hit of a ray
+	 * 
+	 * @param ray
+	 *            The ray, whose <code>tMax</code> is lowered to the distance
+	 *            of the hit, if any
+	 * @param hit
+	 *            Hit record, set to the hit if there is one
+	 * @return The index of the primitive hit, or -1
+	 */
+	public int intersect(Ray ray, Hit hit) {
+		int primitive = traverse(ray, hit.stack, false, hit);
+		if (primitive >= 0) {
+			hit.t = ray.tMax;
+			hit.instance = -1;
+			hit.primitive = primitive;
+		}
+		return primitive;
+	}
+
+	/**
+	 * Check whether a ray hits anything, e.g. for shadow rays
+	 * 
+	 * @param ray
+	 *            The ray, which is not modified
+	 * @param hit
+	 *            Hit record, used for its scratch state only
+	 * @return True if the ray hits a primitive between <code>tMin</code> and
+	 *         <code>tMax</code>
+	 */
+	public boolean occluded(Ray ray, Hit hit) {
+		float tMax = ray.tMax;
+		boolean occluded = traverse(ray, hit.stack, true, hit) >= 0;
+		ray.tMax = tMax;
+		return occluded;
+	}
+
+	/**
+	 * Traverse the hierarchy
+	 * 
+	 * @param ray
+	 *            The ray, whose <code>tMax</code> is lowered to the distance
+	 *            of each hit
+	 * @param stack
+	 *            Traversal stack
+	 * @param any
+	 *            True to stop at the first hit found
+	 * @param hit
+	 *            Hit record of the query, given to the primitives, whose
+	 *            <code>any</code> is set to <code>any</code> so that
+	 *            instances stop at their first hit as well
+	 * @return The index of the primitive hit, or -1
+	 */
+	int traverse(Ray ray, int[] stack, boolean any, Hit hit) {
+		hit.any = any;
+		if (nodes.length == 0)
+			return -1;
+
+		float ox = ray.origin.x, oy = ray.origin.y, oz = ray.origin.z;
+		float ix = 1.0F / ray.direction.x;
+		float iy = 1.0F / ray.direction.y;
+		float iz = 1.0F / ray.direction.z;
+		boolean negativeX = ix < 0.0F;
+		boolean negativeY = iy < 0.0F;
+		boolean negativeZ = iz < 0.0F;
+
+		int closest = -1;
+		int top = 0;
+		int node = 0;
+
+		while (true) {
+			// Slab test, written so that NaNs (0 * infinity) do not reject
+			int b = 6 * node;
+			float near = ray.tMin;
+			float far = ray.tMax;
+			float t0 = (bounds[b] - ox) * ix;
+			float t1 = (bounds[b + 3] - ox) * ix;
+			if (negativeX) {
+				float t = t0;
+				t0 = t1;
+				t1 = t;
+			}
+			if (t0 > near)
+				near = t0;
+			if (t1 < far)
+				far = t1;
+			t0 = (bounds[b + 1] - oy) * iy;
+			t1 = (bounds[b + 4] - oy) * iy;
+			if (negativeY) {
+				float t = t0;
+				t0 = t1;
+				t1 = t;
+			}
+			if (t0 > near)
+				near = t0;
+			if (t1 < far)
+				far = t1;
+			t0 = (bounds[b + 2] - oz) * iz;
+			t1 = (bounds[b + 5] - oz) * iz;
+			if (negativeZ) {
+				float t = t0;
+				t0 = t1;
+				t1 = t;
+			}
+			if (t0 > near)
+				near = t0;
+			if (t1 < far)
+				far = t1;
+
+			if (near <= far) {
+				int first = nodes[2 * node];
+				int info = nodes[2 * node + 1];
+
+				if (info > 0) {
+					for (int i = first; i < first + info; i++) {
+						int primitive = indices[i];
+						float t = primitives.intersect(primitive, ray, hit);
+						if (t < ray.tMax) {
+							ray.tMax = t;
+							closest = primitive;
+							if (any)
+								return closest;
+						}
+					}
+				} else {
+					int axis = -1 - info;
+					boolean negative = axis == 0 ? negativeX
+							: axis == 1 ? negativeY : negativeZ;
+
+					// Visit the child on the side of the origin first
+					if (negative) {
+						stack[top++] = node + 1;
+						node = first;
+					} else {
+						stack[top++] = first;
+						node = node + 1;
+					}
+					continue;
+				}
+			}
+
+			if (top == 0)
+				return closest;
+			node = stack[--top];
+		}
+	}
+
+	/**
+	 * Traverse the hierarchy with a coherent packet
+	 * <p>Each node is visited with its first active ray, i.e. the first ray
+	 * that hits it. When the first active ray of the parent misses, the
+	 * packet is culled at once if interval arithmetic on its directions
+	 * shows that no ray hits; otherwise the next rays are tested. Leaves
+	 * intersect the range of rays up to the last one that hits them.</p>
+	 * 
+	 * @param packet
+	 *            The packet, prepared, whose <code>tMax</code> and
+	 *            <code>primitive</code> (and <code>instance</code>, over
+	 *            {@link Instances}) are set for the rays that hit
+	 * @param first
+	 *            Index of the first ray
+	 * @param last
+	 *            Index of the last ray
+	 */
+	void traverse(RayPacket packet, int first, int last) {
+		if (nodes.length == 0)
+			return;
+
+		Instances instances = primitives instanceof Instances ? (Instances) primitives
+				: null;
+		float ox = packet.origin.x, oy = packet.origin.y, oz = packet.origin.z;
+
+		// Offsets of the near and far planes in the bounds of the nodes
+		int nearX = packet.negativeX ? 3 : 0;
+		int nearY = packet.negativeY ? 4 : 1;
+		int nearZ = packet.negativeZ ? 5 : 2;
+
+		int[] stack = packet.stack;
+		int top = 0;
+		int node = 0;
+		int active = first;
+
+		while (true) {
+			int b = 6 * node;
+			float nx = bounds[b + nearX] - ox;
+			float ny = bounds[b + nearY] - oy;
+			float nz = bounds[b + nearZ] - oz;
+			float fx = bounds[b + 3 - nearX] - ox;
+			float fy = bounds[b + 5 - nearY] - oy;
+			float fz = bounds[b + 7 - nearZ] - oz;
+
+			if (!hits(packet, active, nx, ny, nz, fx, fy, fz)) {
+				int next = last + 1;
+				if (!misses(packet, nx, ny, nz, fx, fy, fz)) {
+					for (next = active + 1; next <= last; next++)
+						if (hits(packet, next, nx, ny, nz, fx, fy, fz))
+							break;
+				}
+				active = next;
+			}
+
+			if (active <= last) {
+				int start = nodes[2 * node];
+				int info = nodes[2 * node + 1];
+
+				if (info > 0) {
+					int end = last;
+					while (end > active
+							&& !hits(packet, end, nx, ny, nz, fx, fy, fz))
+						end--;
+					if (instances != null) {
+						for (int i = start; i < start + info; i++)
+							instances.intersect(indices[i], packet, active, end);
+					} else {
+						intersectLeaf(packet, start, info, active, end, nx, ny,
+								nz, fx, fy, fz);
+					}
+				} else {
+					int axis = -1 - info;
+					boolean negative = axis == 0 ? packet.negativeX
+							: axis == 1 ? packet.negativeY : packet.negativeZ;
+
+					// Visit the child on the side of the origin first
+					stack[top++] = negative ? node + 1 : start;
+					stack[top++] = active;
+					node = negative ? start : node + 1;
+					continue;
+				}
+			}
+
+			if (top == 0)
+				return;
+			active = stack[--top];
+			node = stack[--top];
+		}
+	}
+
+	/**
+	 * Intersect the primitives of a leaf with a range of rays of a packet
+	 * 
+	 * @param packet
+	 *            The packet
+	 * @param start
+	 *            Index of the first primitive of the leaf in
+	 *            <code>indices</code>
+	 * @param count
+	 *            Number of primitives of the leaf
+	 * @param first
+	 *            Index of the first ray, which hits the leaf
+	 * @param last
+	 *            Index of the last ray, which hits the leaf
+	 * @param nx
+	 *            Offset of the near x plane of the leaf from the origin
+	 * @param ny
+	 *            Offset of the near y plane
+	 * @param nz
+	 *            Offset of the near z plane
+	 * @param fx
+	 *            Offset of the far x plane
+	 * @param fy
+	 *            Offset of the far y plane
+	 * @param fz
+	 *            Offset of the far z plane
+	 */
+	private void intersectLeaf(RayPacket packet, int start, int count,
+			int first, int last, float nx, float ny, float nz, float fx,
+			float fy, float fz) {
+		for (int r = first; r <= last; r++) {
+			if (r != first && r != last
+					&& !hits(packet, r, nx, ny, nz, fx, fy, fz))
+				continue;
+			Ray ray = packet.getRay(r);
+			for (int i = start; i < start + count; i++) {
+				int primitive = indices[i];
+				float t = primitives.intersect(primitive, ray, packet.hit);
+				if (t < ray.tMax) {
+					ray.tMax = t;
+					packet.primitive[r] = primitive;
+				}
+			}
+			packet.tMax[r] = ray.tMax;
+		}
+	}
+
+	/**
+	 * Slab test of a ray of a packet against a node, written so that NaNs
+	 * (0 * infinity) do not reject
+	 * 
+	 * @param packet
+	 *            The packet
+	 * @param r
+	 *            Index of the ray
+	 * @param nx
+	 *            Offset of the near x plane of the node from the origin
+	 * @param ny
+	 *            Offset of the near y plane
+	 * @param nz
+	 *            Offset of the near z plane
+	 * @param fx
+	 *            Offset of the far x plane
+	 * @param fy
+	 *            Offset of the far y plane
+	 * @param fz
+	 *            Offset of the far z plane
+	 * @return True if the ray hits the node within its interval
+	 */
+	private static boolean hits(RayPacket packet, int r, float nx, float ny,
+			float nz, float fx, float fy, float fz) {
+		float near = packet.tMin;
+		float far = packet.tMax[r];
+		float ix = packet.ix[r], iy = packet.iy[r], iz = packet.iz[r];
+		float t = nx * ix;
+		if (t > near)
+			near = t;
+		t = ny * iy;
+		if (t > near)
+			near = t;
+		t = nz * iz;
+		if (t > near)
+			near = t;
+		t = fx * ix;
+		if (t < far)
+			far = t;
+		t = fy * iy;
+		if (t < far)
+			far = t;
+		t = fz * iz;
+		if (t < far)
+			far = t;
+		return near <= far;
+	}
+
+	/**
+	 * Interval arithmetic test of a whole packet against a node: the entry
+	 * distance of every ray is at least the lowest product of the near plane
+	 * offset by the inverse directions, and its exit distance at most the
+	 * highest product of the far one.
+	 * 
+	 * @param packet
+	 *            The packet
+	 * @param nx
+	 *            Offset of the near x plane of the node from the origin
+	 * @param ny
+	 *            Offset of the near y plane
+	 * @param nz
+	 *            Offset of the near z plane
+	 * @param fx
+	 *            Offset of the far x plane
+	 * @param fy
+	 *            Offset of the far y plane
+	 * @param fz
+	 *            Offset of the far z plane
+	 * @return True if no ray of the packet can hit the node
+	 */
+	private static boolean misses(RayPacket packet, float nx, float ny,
+			float nz, float fx, float fy, float fz) {
+		float[] inverse = packet.inverseBounds;
+		float near = packet.tMin;
+		float far = Float.POSITIVE_INFINITY;
+		float t = nx * (nx >= 0.0F ? inverse[0] : inverse[3]);
+		if (t > near)
+			near = t;
+		t = ny * (ny >= 0.0F ? inverse[1] : inverse[4]);
+		if (t > near)
+			near = t;
+		t = nz * (nz >= 0.0F ? inverse[2] : inverse[5]);
+		if (t > near)
+			near = t;
+		t = fx * (fx >= 0.0F ? inverse[3] : inverse[0]);
+		if (t < far)
+			far = t;
+		t = fy * (fy >= 0.0F ? inverse[4] : inverse[1]);
+		if (t < far)
+			far = t;
+		t = fz * (fz >= 0.0F ? inverse[5] : inverse[2]);
+		if (t < far)
+			far = t;
+		return near > far;
+	}
+}
@@ -0,0 +1,174 @@
+package uclouvain.ingi2325.accel;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import uclouvain.ingi2325.scene.TriangleMesh;
+import uclouvain.ingi2325.utils.Ray;
+
+/**
+ * Benchmark of {@link BVHBuilder} and {@link BVH}
+ * <p>This application builds a hierarchy over a wavy grid of triangles, with
+ * one thread and with one thread per processor, then traces random rays
+ * through the hierarchy and through all the triangles, checks that both
+ * find the same hits and reports their times.</p>
+ * <p>Usage: <code>BVHBenchmark [triangles [rays]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class BVHBenchmark {
+
+	/** Default number of triangles */
+	private static final int DEFAULT_TRIANGLES = 1000000;
+
+	/** Default number of rays traced through the hierarchy */
+	private static final int DEFAULT_RAYS = 1000000;
+
+	/** Number of rays traced through all the triangles */
+	private static final int LINEAR_RAYS = 100;
+
+	/** Number of builds, the first one warming up */
+	private static final int BUILDS = 3;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		int triangles = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_TRIANGLES;
+		int rays = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RAYS;
+
+		Primitives primitives = new TriangleMeshPrimitives(createGrid(
+				triangles));
+		System.out.println(String.format(Locale.US, "%d triangles",
+				primitives.getCount()));
+
+		BVH bvh = null;
+		int processors = Runtime.getRuntime().availableProcessors();
+		int[] parallelisms = { 1, processors };
+		for (int parallelism : parallelisms) {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < BUILDS; i++) {
+				long start = System.nanoTime();
+				bvh = BVHBuilder.build(primitives, pool);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			pool.shutdown();
+			System.out.println(String.format(Locale.US,
+					"Build, %2d threads: %8.1f ms, %d nodes", parallelism,
+					best / 1e6, bvh.getNodeCount()));
+		}
+
+		Random random = new Random(42);
+		Ray[] samples = new Ray[Math.max(rays, LINEAR_RAYS)];
+		for (int i = 0; i < samples.length; i++)
+			samples[i] = createRay(random);
+		Hit hit = new Hit();
+
+		// Both queries must find the same hits
+		int hits = 0;
+		Ray ray = new Ray();
+		long linearNanos = System.nanoTime();
+		for (int i = 0; i < LINEAR_RAYS; i++) {
+			ray.set(samples[i].origin, samples[i].direction);
+			int closest = -1;
+			for (int j = 0; j < primitives.getCount(); j++) {
+				float t = primitives.intersect(j, ray, hit);
+				if (t < ray.tMax) {
+					ray.tMax = t;
+					closest = j;
+				}
+			}
+			float linearT = ray.tMax;
+
+			ray.set(samples[i].origin, samples[i].direction);
+			int primitive = bvh.intersect(ray, hit);
+			if (primitive != closest && ray.tMax != linearT)
+				throw new AssertionError("BVH disagrees with linear scan on "
+						+ samples[i]);
+			if (primitive >= 0)
+				hits++;
+		}
+		linearNanos = System.nanoTime() - linearNanos;
+
+		for (int run = 0; run < 2; run++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < rays; i++) {
+				ray.set(samples[i].origin, samples[i].direction);
+				if (bvh.intersect(ray, hit) >= 0)
+					hits++;
+			}
+			long nanos = System.nanoTime() - start;
+			if (run == 1)
+				System.out.println(String.format(Locale.US,
+						"Query, BVH:    %10.1f ns/ray, %.2f Mrays/s",
+						(double) nanos / rays, rays * 1e3 / nanos));
+		}
+		System.out.println(String.format(Locale.US,
+				"Query, linear: %10.1f ns/ray (%d hits)",
+				(double) linearNanos / LINEAR_RAYS, hits));
+	}
+
+	/**
+	 * Create a wavy square grid of about a number of triangles, in [0, 1]
+	 * along x and z
+	 * 
+	 * @param triangles
+	 *            Number of triangles
+	 * @return The grid, as a mesh
+	 */
+	private static TriangleMesh createGrid(int triangles) {
+		int cells = Math.max(1, (int) Math.sqrt(triangles / 2));
+		int side = cells + 1;
+		float[] xs = new float[side * side];
+		float[] ys = new float[side * side];
+		float[] zs = new float[side * side];
+		int[] indices = new int[6 * cells * cells];
+
+		for (int i = 0; i < side; i++) {
+			for (int j = 0; j < side; j++) {
+				float x = (float) i / cells;
+				float z = (float) j / cells;
+				xs[i * side + j] = x;
+				ys[i * side + j] = 0.1F * (float) (Math.sin(20.0 * x) * Math
+						.cos(15.0 * z));
+				zs[i * side + j] = z;
+			}
+		}
+
+		int k = 0;
+		for (int i = 0; i < cells; i++) {
+			for (int j = 0; j < cells; j++) {
+				int a = i * side + j;
+				indices[k++] = a;
+				indices[k++] = a + 1;
+				indices[k++] = a + side;
+				indices[k++] = a + 1;
+				indices[k++] = a + side + 1;
+				indices[k++] = a + side;
+			}
+		}
+
+		return new TriangleMesh(xs, ys, zs, indices, null, null, null, null,
+				null, null, null, "grid");
+	}
+
+	/**
+	 * Create a random ray from above the grid towards it
+	 * 
+	 * @param random
+	 *            Random generator
+	 * @return The ray
+	 */
+	private static Ray createRay(Random random) {
+		Ray ray = new Ray();
+		ray.origin.set(random.nextFloat(), 1.0F, random.nextFloat());
+		ray.direction.set(random.nextFloat() - 0.5F, -1.0F, random
+				.nextFloat() - 0.5F);
+		return ray;
+	}
+}
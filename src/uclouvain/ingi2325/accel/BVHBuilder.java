@@ -0,0 +1,546 @@
+package uclouvain.ingi2325.accel;
+
+import java.util.concurrent.*;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.utils.SharedPool;
+
+/**
+ * Parallel builder of {@link BVH}s
+ * <p>Nodes are split with the surface area heuristic, evaluated on
+ * {@link #BINS} bins of the centroids of their primitives along each axis.
+ * Nodes of more than {@link #PARALLEL_THRESHOLD} primitives build their two
+ * children in parallel, on a {@link ForkJoinPool}. The tree is then
+ * flattened into the packed arrays of the {@link BVH}.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class BVHBuilder {
+
+	/** Number of bins per axis */
+	static final int BINS = 16;
+
+	/** Maximum number of primitives per leaf */
+	static final int MAX_LEAF_SIZE = 8;
+
+	/** Smallest node whose children are built in parallel */
+	static final int PARALLEL_THRESHOLD = 8192;
+
+	/** Cost of traversing a node, relative to intersecting a primitive */
+	private static final float TRAVERSAL_COST = 0.125F;
+
+	/**
+	 * Utility class
+	 */
+	private BVHBuilder() {
+	}
+
+	/**
+	 * Build a hierarchy, on the {@link SharedPool}
+	 * 
+	 * @param primitives
+	 *            Primitives
+	 * @return The hierarchy
+	 */
+	public static BVH build(Primitives primitives) {
+		return build(primitives, SharedPool.get());
+	}
+
+	/**
+	 * Build a hierarchy
+	 * 
+	 * @param primitives
+	 *            Primitives
+	 * @param pool
+	 *            Pool that builds the nodes
+	 * @return The hierarchy
+	 */
+	public static BVH build(Primitives primitives, ForkJoinPool pool) {
+		int count = primitives.getCount();
+		float[] boxes = new float[6 * count];
+		float[] centroids = new float[3 * count];
+		int[] indices = new int[count];
+
+		if (count == 0)
+			return new BVH(primitives, new float[0], new int[0], indices);
+
+		pool.invoke(new ComputeBounds(primitives, boxes, centroids, 0, count));
+		for (int i = 0; i < count; i++)
+			indices[i] = i;
+
+		Node root = pool.invoke(new Build(boxes, centroids, indices, 0,
+				count, 0));
+
+		float[] bounds = new float[6 * root.size];
+		int[] nodes = new int[2 * root.size];
+		flatten(root, 0, bounds, nodes);
+
+		return new BVH(primitives, bounds, nodes, indices);
+	}
+
+	/**
+	 * Write a subtree in depth-first order
+	 * 
+	 * @param node
+	 *            Root of the subtree
+	 * @param index
+	 *            Index of the root in the arrays
+	 * @param bounds
+	 *            Bounds of the nodes
+	 * @param nodes
+	 *            Nodes
+	 */
+	private static void flatten(Node node, int index, float[] bounds,
+			int[] nodes) {
+		System.arraycopy(node.bounds, 0, bounds, 6 * index, 6);
+
+		if (node.left == null) {
+			nodes[2 * index] = node.start;
+			nodes[2 * index + 1] = node.count;
+		} else {
+			int second = index + 1 + node.left.size;
+			nodes[2 * index] = second;
+			nodes[2 * index + 1] = -1 - node.axis;
+			flatten(node.left, index + 1, bounds, nodes);
+			flatten(node.right, second, bounds, nodes);
+		}
+	}
+
+	/**
+	 * Node of the tree, before flattening
+	 */
+	private static final class Node {
+
+		/** Bounds, as in the packed arrays */
+		final float[] bounds;
+
+		/** Children, or null for a leaf */
+		Node left, right;
+
+		/** Axis of the split */
+		int axis;
+
+		/** First primitive and number of primitives of a leaf */
+		int start, count;
+
+		/** Number of nodes in the subtree */
+		int size = 1;
+
+		/**
+		 * Create a node
+		 * 
+		 * @param bounds
+		 *            Bounds
+		 */
+		Node(float[] bounds) {
+			this.bounds = bounds;
+		}
+	}
+
+	/**
+	 * Task that computes the bounds and centroids of a range of primitives
+	 */
+	private static final class ComputeBounds extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Primitives */
+		private final Primitives primitives;
+
+		/** Bounds of the primitives, six floats per primitive */
+		private final float[] boxes;
+
+		/** Centroids of the primitives, three floats per primitive */
+		private final float[] centroids;
+
+		/** First primitive of the range */
+		private final int start;
+
+		/** End of the range, excluded */
+		private final int end;
+
+		/**
+		 * Create a task
+		 * 
+		 * @param primitives
+		 *            Primitives
+		 * @param boxes
+		 *            Bounds of the primitives
+		 * @param centroids
+		 *            Centroids of the primitives
+		 * @param start
+		 *            First primitive of the range
+		 * @param end
+		 *            End of the range, excluded
+		 */
+		ComputeBounds(Primitives primitives, float[] boxes,
+				float[] centroids, int start, int end) {
+			this.primitives = primitives;
+			this.boxes = boxes;
+			this.centroids = centroids;
+			this.start = start;
+			this.end = end;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (end - start > PARALLEL_THRESHOLD) {
+				int middle = (start + end) >>> 1;
+				invokeAll(new ComputeBounds(primitives, boxes, centroids,
+						start, middle), new ComputeBounds(primitives, boxes,
+						centroids, middle, end));
+				return;
+			}
+
+			BoundingBox box = new BoundingBox();
+			for (int i = start; i < end; i++) {
+				primitives.getBounds(i, box);
+				boxes[6 * i] = box.minX;
+				boxes[6 * i + 1] = box.minY;
+				boxes[6 * i + 2] = box.minZ;
+				boxes[6 * i + 3] = box.maxX;
+				boxes[6 * i + 4] = box.maxY;
+				boxes[6 * i + 5] = box.maxZ;
+				centroids[3 * i] = 0.5F * (box.minX + box.maxX);
+				centroids[3 * i + 1] = 0.5F * (box.minY + box.maxY);
+				centroids[3 * i + 2] = 0.5F * (box.minZ + box.maxZ);
+			}
+		}
+	}
+
+	/**
+	 * Task that builds the subtree of a range of primitives
+	 * <p>The range of <code>indices</code> is reordered in place, so that
+	 * tasks on disjoint ranges can run in parallel. The nodes built by a task
+	 * share its scratch arrays, so only forked tasks allocate them.</p>
+	 */
+	private static final class Build extends RecursiveTask<Node> {
+		private static final long serialVersionUID = 1L;
+
+		/** Bounds of the primitives, six floats per primitive */
+		private final float[] boxes;
+
+		/** Centroids of the primitives, three floats per primitive */
+		private final float[] centroids;
+
+		/** Indices of the primitives */
+		private final int[] indices;
+
+		/** Start of the range in <code>indices</code> */
+		private final int start;
+
+		/** End of the range, excluded */
+		private final int end;
+
+		/** Depth of the node */
+		private final int depth;
+
+		/** Bounds of the centroids of the node being split */
+		private final float[] centroidBounds = new float[6];
+
+		/** Number of bins per unit along each axis, or 0 if flat */
+		private final float[] scales = new float[3];
+
+		/** Bounds of the bins, six floats per bin, axis by axis */
+		private final float[] binBounds = new float[6 * 3 * BINS];
+
+		/** Number of primitives in the bins, axis by axis */
+		private final int[] binCounts = new int[3 * BINS];
+
+		/** Areas of the bins on the right of each plane */
+		private final float[] rightAreas = new float[BINS];
+
+		/** Bounds swept along the bins */
+		private final float[] sweep = new float[6];
+
+		/**
+		 * Create a task
+		 * 
+		 * @param boxes
+		 *            Bounds of the primitives
+		 * @param centroids
+		 *            Centroids of the primitives
+		 * @param indices
+		 *            Indices of the primitives
+		 * @param start
+		 *            Start of the range in <code>indices</code>
+		 * @param end
+		 *            End of the range, excluded
+		 * @param depth
+		 *            Depth of the node
+		 */
+		Build(float[] boxes, float[] centroids, int[] indices, int start,
+				int end, int depth) {
+			this.boxes = boxes;
+			this.centroids = centroids;
+			this.indices = indices;
+			this.start = start;
+			this.end = end;
+			this.depth = depth;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveTask#compute()
+		 */
+		@Override
+		protected Node compute() {
+			return build(start, end, depth);
+		}
+
+		/**
+		 * Build the subtree of a range of primitives
+		 * 
+		 * @param start
+		 *            Start of the range
+		 * @param end
+		 *            End of the range, excluded
+		 * @param depth
+		 *            Depth of the node
+		 * @return The root of the subtree
+		 */
+		private Node build(int start, int end, int depth) {
+			int count = end - start;
+			float[] bounds = new float[6];
+			reset(bounds, 0);
+			reset(centroidBounds, 0);
+
+			for (int i = start; i < end; i++) {
+				int p = indices[i];
+				extend(bounds, boxes, 6 * p);
+				for (int k = 0; k < 3; k++) {
+					float c = centroids[3 * p + k];
+					if (c < centroidBounds[k])
+						centroidBounds[k] = c;
+					if (c > centroidBounds[k + 3])
+						centroidBounds[k + 3] = c;
+				}
+			}
+
+			Node node = new Node(bounds);
+			if (count == 1 || depth == BVH.MAX_DEPTH)
+				return leaf(node, start, count);
+
+			int middle = split(start, end, bounds, node);
+			if (middle < 0)
+				return leaf(node, start, count);
+
+			if (count > PARALLEL_THRESHOLD) {
+				Build left = new Build(boxes, centroids, indices, start,
+						middle, depth + 1);
+				left.fork();
+				node.right = build(middle, end, depth + 1);
+				node.left = left.join();
+			} else {
+				node.left = build(start, middle, depth + 1);
+				node.right = build(middle, end, depth + 1);
+			}
+
+			node.size = 1 + node.left.size + node.right.size;
+			return node;
+		}
+
+		/**
+		 * Make a node a leaf
+		 * 
+		 * @param node
+		 *            The node
+		 * @param start
+		 *            First primitive
+		 * @param count
+		 *            Number of primitives
+		 * @return The node
+		 */
+		private static Node leaf(Node node, int start, int count) {
+			node.start = start;
+			node.count = count;
+			return node;
+		}
+
+		/**
+		 * Choose the best binned split of a range and partition it
+		 * 
+		 * @param start
+		 *            Start of the range
+		 * @param end
+		 *            End of the range, excluded
+		 * @param bounds
+		 *            Bounds of the primitives of the range
+		 * @param node
+		 *            The node, whose axis is set
+		 * @return The start of the second half of the range, or -1 if the
+		 *         range should be a leaf
+		 */
+		private int split(int start, int end, float[] bounds, Node node) {
+			int count = end - start;
+
+			for (int axis = 0; axis < 3; axis++) {
+				float extent = centroidBounds[axis + 3]
+						- centroidBounds[axis];
+				scales[axis] = extent > 0.0F ? BINS / extent : 0.0F;
+			}
+			for (int bin = 0; bin < 3 * BINS; bin++) {
+				reset(binBounds, 6 * bin);
+				binCounts[bin] = 0;
+			}
+
+			for (int i = start; i < end; i++) {
+				int p = indices[i];
+				for (int axis = 0; axis < 3; axis++) {
+					if (scales[axis] == 0.0F)
+						continue;
+					int bin = axis * BINS + bin(p, axis);
+					binCounts[bin]++;
+					extend(binBounds, 6 * bin, boxes, 6 * p);
+				}
+			}
+
+			// Sweep the planes between bins from both sides
+			int bestAxis = -1;
+			int bestBin = 0;
+			float bestCost = Float.POSITIVE_INFINITY;
+
+			for (int axis = 0; axis < 3; axis++) {
+				if (scales[axis] == 0.0F)
+					continue;
+
+				reset(sweep, 0);
+				for (int bin = BINS - 1; bin > 0; bin--) {
+					extend(sweep, binBounds, 6 * (axis * BINS + bin));
+					rightAreas[bin] = area(sweep);
+				}
+
+				reset(sweep, 0);
+				int leftCount = 0;
+				for (int bin = 0; bin < BINS - 1; bin++) {
+					extend(sweep, binBounds, 6 * (axis * BINS + bin));
+					leftCount += binCounts[axis * BINS + bin];
+					float cost = leftCount * area(sweep)
+							+ (count - leftCount) * rightAreas[bin + 1];
+					if (cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestBin = bin;
+					}
+				}
+			}
+
+			float leafCost = count;
+			float splitCost = TRAVERSAL_COST + bestCost / area(bounds);
+
+			if (bestAxis < 0 || splitCost >= leafCost) {
+				if (count <= MAX_LEAF_SIZE)
+					return -1;
+				if (bestAxis < 0) {
+					// All the centroids are equal: split the range in two
+					node.axis = 0;
+					return (start + end) >>> 1;
+				}
+			}
+
+			// Partition the range around the chosen plane
+			int i = start;
+			int j = end - 1;
+			while (i <= j) {
+				if (bin(indices[i], bestAxis) <= bestBin) {
+					i++;
+				} else {
+					int swap = indices[i];
+					indices[i] = indices[j];
+					indices[j] = swap;
+					j--;
+				}
+			}
+
+			node.axis = bestAxis;
+			if (i == start || i == end)
+				return (start + end) >>> 1;
+			return i;
+		}
+
+		/**
+		 * Returns the bin of the centroid of a primitive along an axis, in
+		 * the node being split
+		 * 
+		 * @param p
+		 *            Index of the primitive
+		 * @param axis
+		 *            Axis
+		 * @return the bin
+		 */
+		private int bin(int p, int axis) {
+			int bin = (int) ((centroids[3 * p + axis] - centroidBounds[axis]) * scales[axis]);
+			return bin < BINS ? bin : BINS - 1;
+		}
+
+		/**
+		 * Empty a packed box
+		 * 
+		 * @param box
+		 *            Array of the box
+		 * @param offset
+		 *            Offset of the box in the array
+		 */
+		private static void reset(float[] box, int offset) {
+			box[offset] = box[offset + 1] = box[offset + 2] = Float.POSITIVE_INFINITY;
+			box[offset + 3] = box[offset + 4] = box[offset + 5] = Float.NEGATIVE_INFINITY;
+		}
+
+		/**
+		 * Extend a packed box to contain another one
+		 * 
+		 * @param box
+		 *            The box to extend, at offset 0
+		 * @param other
+		 *            Array of the other box
+		 * @param offset
+		 *            Offset of the other box in the array
+		 */
+		private static void extend(float[] box, float[] other, int offset) {
+			extend(box, 0, other, offset);
+		}
+
+		/**
+		 * Extend a packed box to contain another one
+		 * 
+		 * @param box
+		 *            Array of the box to extend
+		 * @param boxOffset
+		 *            Offset of the box in the array
+		 * @param other
+		 *            Array of the other box
+		 * @param offset
+		 *            Offset of the other box in the array
+		 */
+		private static void extend(float[] box, int boxOffset, float[] other,
+				int offset) {
+			for (int k = 0; k < 3; k++) {
+				if (other[offset + k] < box[boxOffset + k])
+					box[boxOffset + k] = other[offset + k];
+				if (other[offset + k + 3] > box[boxOffset + k + 3])
+					box[boxOffset + k + 3] = other[offset + k + 3];
+			}
+		}
+
+		/**
+		 * Returns the surface area of a packed box, or 0 if it is empty
+		 * 
+		 * @param box
+		 *            The box
+		 * @return the surface area
+		 */
+		private static float area(float[] box) {
+			float dx = box[3] - box[0];
+			float dy = box[4] - box[1];
+			float dz = box[5] - box[2];
+			if (dx < 0.0F || dy < 0.0F || dz < 0.0F)
+				return 0.0F;
+			return 2.0F * (dx * dy + dy * dz + dz * dx);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.math.Polynomials;
+import uclouvain.ingi2325.scene.Cone;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * {@link Cone} around the Y axis, with its base at y = 0 and its apex at y =
+ * height, as a primitive
+ * <p>The side is intersected as the quadric x^2 + z^2 = k^2 (height - y)^2,
+ * where k is the ratio of the radius to the height, clipped to the lower
+ * nappe, and the base, if it is closed, as a disk.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class ConePrimitive extends AnalyticPrimitive {
+
+	/** Radius of the base */
+	private final float radius;
+
+	/** Height */
+	private final float height;
+
+	/** Whether the base is closed */
+	private final boolean capped;
+
+	/** Square of the ratio of the radius to the height */
+	private final double slope;
+
+	/**
+	 * Create the primitive of a cone
+	 * 
+	 * @param cone
+	 *            The cone
+	 */
+	ConePrimitive(Cone cone) {
+		radius = cone.getRadius();
+		height = cone.getHeight();
+		capped = cone.isCapped();
+		slope = (double) radius * radius / ((double) height * height);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		bounds.set(-radius, 0, -radius, radius, height, radius);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		double ox = ray.origin.x, oy = ray.origin.y, oz = ray.origin.z;
+		double dx = ray.direction.x, dy = ray.direction.y;
+		double dz = ray.direction.z;
+		double w = height - oy;
+		float best = ray.tMax;
+
+		// Side: a t^2 + 2 b t + c = 0
+		double a = dx * dx + dz * dz - slope * dy * dy;
+		double b = ox * dx + oz * dz + slope * w * dy;
+		double c = ox * ox + oz * oz - slope * w * w;
+		double[] roots = hit.roots;
+		int count;
+		if (Math.abs(a) > 1e-12 * (dx * dx + dy * dy + dz * dz)) {
+			count = Polynomials.solveQuadratic(a, 2 * b, c, roots, 0);
+		} else if (b != 0) {
+			// The ray is parallel to a generatrix
+			roots[0] = -c / (2 * b);
+			count = 1;
+		} else {
+			count = 0;
+		}
+		for (int i = 0; i < count; i++) {
+			double y = oy + roots[i] * dy;
+			float t = (float) roots[i];
+			if (y >= 0 && y <= height && isCloser(t, ray, best))
+				best = t;
+		}
+
+		if (capped && dy != 0) {
+			double t = -oy / dy;
+			double x = ox + t * dx, z = oz + t * dz;
+			if (x * x + z * z <= (double) radius * radius
+					&& isCloser((float) t, ray, best))
+				best = (float) t;
+		}
+		return best < ray.tMax ? best : Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		// Distance to the side, measured horizontally
+		float side = Math.abs((float) Math.sqrt(point.x * point.x + point.z
+				* point.z)
+				- radius * (height - point.y) / height);
+		if (capped && Math.abs(point.y) < side)
+			normal.set(0, -1, 0);
+		else if (point.x == 0 && point.z == 0)
+			normal.set(0, 1, 0);
+		else
+			normal.set(point.x, (float) (slope * (height - point.y)), point.z);
+	}
+}
@@ -0,0 +1,110 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.math.Polynomials;
+import uclouvain.ingi2325.scene.Cylinder;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * {@link Cylinder} around the Y axis, from y = 0 to y = height, as a
+ * primitive
+ * <p>The side is intersected as the quadric x^2 + z^2 = radius^2 clipped to
+ * the height, and the caps, if any, as disks.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class CylinderPrimitive extends AnalyticPrimitive {
+
+	/** Radius */
+	private final float radius;
+
+	/** Height */
+	private final float height;
+
+	/** Whether the ends are closed */
+	private final boolean capped;
+
+	/**
+	 * Create the primitive of a cylinder
+	 * 
+	 * @param cylinder
+	 *            The cylinder
+	 */
+	CylinderPrimitive(Cylinder cylinder) {
+		radius = cylinder.getRadius();
+		height = cylinder.getHeight();
+		capped = cylinder.isCapped();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		bounds.set(-radius, 0, -radius, radius, height, radius);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		double ox = ray.origin.x, oy = ray.origin.y, oz = ray.origin.z;
+		double dx = ray.direction.x, dy = ray.direction.y;
+		double dz = ray.direction.z;
+		double squareRadius = (double) radius * radius;
+		float best = ray.tMax;
+
+		// Side, unless the ray is parallel to the axis
+		double a = dx * dx + dz * dz;
+		if (a > 0) {
+			double[] roots = hit.roots;
+			int count = Polynomials.solveQuadratic(a, 2 * (ox * dx + oz * dz),
+					ox * ox + oz * oz - squareRadius, roots, 0);
+			for (int i = 0; i < count; i++) {
+				double y = oy + roots[i] * dy;
+				float t = (float) roots[i];
+				if (y >= 0 && y <= height && isCloser(t, ray, best))
+					best = t;
+			}
+		}
+
+		if (capped && dy != 0) {
+			for (int end = 0; end < 2; end++) {
+				double t = ((end == 0 ? 0 : height) - oy) / dy;
+				double x = ox + t * dx, z = oz + t * dz;
+				if (x * x + z * z <= squareRadius && isCloser((float) t, ray, best))
+					best = (float) t;
+			}
+		}
+		return best < ray.tMax ? best : Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		// The hit is on the part whose surface is the closest to the point
+		float side = Math.abs((float) Math.sqrt(point.x * point.x + point.z
+				* point.z)
+				- radius);
+		if (capped && Math.abs(point.y) < side
+				&& Math.abs(point.y) <= Math.abs(point.y - height))
+			normal.set(0, -1, 0);
+		else if (capped && Math.abs(point.y - height) < side)
+			normal.set(0, 1, 0);
+		else
+			normal.set(point.x, 0, point.z);
+	}
+}
@@ -0,0 +1,58 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.utils.Ray;
+
+/**
+ * Hit record of ray queries, with the scratch state they need
+ * <p>Queries fill the record instead of allocating, so a thread should reuse
+ * one record for all its queries. A record must not be shared between
+ * threads.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class Hit {
+
+	/** Distance of the hit along the ray */
+	public float t = Float.POSITIVE_INFINITY;
+
+	/** Index of the instance hit, or -1 */
+	public int instance = -1;
+
+	/** Index of the primitive hit, in the primitives of its geometry, or -1 */
+	public int primitive = -1;
+
+	/** True while the query stops at the first hit found, e.g. for shadows */
+	boolean any;
+
+	/** Traversal stack of the hierarchy queried */
+	final int[] stack = new int[BVH.MAX_DEPTH];
+
+	/** Ray in the local space of an instance */
+	final Ray localRay = new Ray();
+
+	/** Traversal stack of the hierarchy of an instance */
+	final int[] localStack = new int[BVH.MAX_DEPTH];
+
+	/** Roots of the polynomials of analytic primitives */
+	final double[] roots = new double[4];
+
+	/**
+	 * Reset the record to no hit
+	 */
+	public void reset() {
+		t = Float.POSITIVE_INFINITY;
+		instance = -1;
+		primitive = -1;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "Hit(t=" + t + ", instance=" + instance + ", primitive="
+				+ primitive + ")";
+	}
+}
@@ -0,0 +1,190 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.math.Matrix4;
+import uclouvain.ingi2325.scene.WorldTransform;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Instances of hierarchies placed by world transforms, as primitives
+ * <p>An instance only references its hierarchy and its transform, which are
+ * shared with the other instances of the same geometry and of the same
+ * transform chain. Rays are transformed into the local space of the
+ * instance, where its hierarchy is traversed. The direction is not
+ * renormalized, so that distances along the local ray are distances along
+ * the world ray.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class Instances implements Primitives {
+
+	/** Hierarchy of each instance */
+	private final BVH[] hierarchies;
+
+	/** World transform of each instance, or null for the identity */
+	private final WorldTransform[] transforms;
+
+	/**
+	 * Create instances
+	 * 
+	 * @param hierarchies
+	 *            Hierarchy of each instance
+	 * @param transforms
+	 *            World transform of each instance, or null for the identity
+	 */
+	Instances(BVH[] hierarchies, WorldTransform[] transforms) {
+		assert hierarchies.length == transforms.length;
+		this.hierarchies = hierarchies;
+		this.transforms = transforms;
+	}
+
+	/**
+	 * Returns the hierarchy of an instance
+	 * 
+	 * @param index
+	 *            Index of the instance
+	 * @return the hierarchy
+	 */
+	BVH getHierarchy(int index) {
+		return hierarchies[index];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getCount()
+	 */
+	@Override
+	public int getCount() {
+		return hierarchies.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		hierarchies[index].getBounds(bounds);
+		WorldTransform transform = transforms[index];
+		if (transform != null && !transform.isIdentity())
+			bounds.transform(transform.getMatrix(), bounds);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		Ray local = hit.localRay;
+		WorldTransform transform = transforms[index];
+		if (transform == null || transform.isIdentity()) {
+			local.origin.set(ray.origin);
+			local.direction.set(ray.direction);
+		} else {
+			Matrix4 inverse = transform.getInverse();
+			inverse.transformPoint(ray.origin, local.origin);
+			inverse.transformVector(ray.direction, local.direction);
+		}
+		local.tMin = ray.tMin;
+		local.tMax = ray.tMax;
+
+		int primitive = hierarchies[index].traverse(local, hit.localStack,
+				hit.any, hit);
+		if (primitive < 0)
+			return Float.POSITIVE_INFINITY;
+		hit.primitive = primitive;
+		return local.tMax;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		WorldTransform transform = transforms[index];
+		Primitives primitives = hierarchies[index].getPrimitives();
+		if (transform == null || transform.isIdentity()) {
+			primitives.getNormal(hit.primitive, point, hit, normal);
+		} else {
+			Point3D local = hit.localRay.origin;
+			transform.getInverse().transformPoint(point, local);
+			primitives.getNormal(hit.primitive, local, hit, normal);
+			transform.getNormalMatrix().transformVector(normal, normal);
+		}
+	}
+
+	/**
+	 * Intersect an instance with a range of rays of a packet. The rays are
+	 * transformed into a packet in the local space of the instance, which is
+	 * traced together if it is still coherent, one ray at a time otherwise.
+	 * 
+	 * @param index
+	 *            Index of the instance
+	 * @param packet
+	 *            The packet, whose <code>tMax</code>, <code>instance</code>
+	 *            and <code>primitive</code> are set for the rays that hit the
+	 *            instance closer
+	 * @param first
+	 *            Index of the first ray
+	 * @param last
+	 *            Index of the last ray
+	 */
+	void intersect(int index, RayPacket packet, int first, int last) {
+		RayPacket local = packet.getLocal();
+		WorldTransform transform = transforms[index];
+		if (transform == null || transform.isIdentity()) {
+			local.origin.set(packet.origin);
+			int count = last - first + 1;
+			System.arraycopy(packet.dx, first, local.dx, first, count);
+			System.arraycopy(packet.dy, first, local.dy, first, count);
+			System.arraycopy(packet.dz, first, local.dz, first, count);
+		} else {
+			Matrix4 m = transform.getInverse();
+			m.transformPoint(packet.origin, local.origin);
+			for (int i = first; i <= last; i++) {
+				float x = packet.dx[i], y = packet.dy[i], z = packet.dz[i];
+				local.dx[i] = m.m00 * x + m.m01 * y + m.m02 * z;
+				local.dy[i] = m.m10 * x + m.m11 * y + m.m12 * z;
+				local.dz[i] = m.m20 * x + m.m21 * y + m.m22 * z;
+			}
+		}
+		local.tMin = packet.tMin;
+		for (int i = first; i <= last; i++) {
+			local.tMax[i] = packet.tMax[i];
+			local.primitive[i] = -1;
+		}
+
+		BVH hierarchy = hierarchies[index];
+		if (local.prepare(first, last)) {
+			hierarchy.traverse(local, first, last);
+		} else {
+			for (int i = first; i <= last; i++) {
+				Ray ray = local.getRay(i);
+				int primitive = hierarchy.traverse(ray, local.hit.stack, false,
+						local.hit);
+				if (primitive >= 0) {
+					local.tMax[i] = ray.tMax;
+					local.primitive[i] = primitive;
+				}
+			}
+		}
+
+		for (int i = first; i <= last; i++) {
+			if (local.primitive[i] >= 0) {
+				packet.tMax[i] = local.tMax[i];
+				packet.instance[i] = index;
+				packet.primitive[i] = local.primitive[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Ray;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Indexed set of primitives, over which a {@link BVH} is built
+ * <p>Primitives are identified by their index, from 0 to the count
+ * excluded. Implementations must support concurrent calls.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface Primitives {
+
+	/**
+	 * Returns the number of primitives
+	 * 
+	 * @return the number of primitives
+	 */
+	public int getCount();
+
+	/**
+	 * Get the bounds of a primitive
+	 * 
+	 * @param index
+	 *            Index of the primitive
+	 * @param bounds
+	 *            Box set to the bounds of the primitive
+	 */
+	public void getBounds(int index, BoundingBox bounds);
+
+	/**
+	 * Intersect a ray with a primitive
+	 * 
+	 * @param index
+	 *            Index of the primitive
+	 * @param ray
+	 *            The ray, which is not modified
+	 * @param hit
+	 *            Hit record of the query. Primitives that nest a hierarchy
+	 *            use its scratch state, and record the primitive they hit in
+	 *            it.
+	 * @return The distance of the closest hit strictly between
+	 *         <code>ray.tMin</code> and <code>ray.tMax</code>, or positive
+	 *         infinity if there is none
+	 */
+	public float intersect(int index, Ray ray, Hit hit);
+
+	/**
+	 * Get the normal of a primitive at a hit
+	 * 
+	 * @param index
+	 *            Index of the primitive
+	 * @param point
+	 *            Point of the hit, on the primitive
+	 * @param hit
+	 *            The hit, whose <code>primitive</code> is set; primitives
+	 *            that nest a hierarchy use its scratch state
+	 * @param normal
+	 *            Set to the normal, not necessarily unit, on either side of
+	 *            the surface
+	 */
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal);
+}
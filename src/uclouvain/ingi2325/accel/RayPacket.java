@@ -0,0 +1,195 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Ray;
+
+/**
+ * Bundle of rays from a common origin, traced together
+ * <p>The rays are stored as a structure of arrays: their directions, their
+ * maximum distances and their hits each lie in a <code>float[]</code> or an
+ * <code>int[]</code>, indexed by ray. A packet is traced through a
+ * hierarchy by visiting each node once for all its rays: when the first
+ * active ray misses a node, the whole packet is tested against it by
+ * interval arithmetic before the other rays are. Only coherent packets, whose
+ * directions have the same signs on each axis, are traced together; the rays
+ * of other packets are traced one by one.</p>
+ * <p>Like {@link Hit}, a packet holds the scratch state of its queries and
+ * must not be shared between threads.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class RayPacket {
+
+	/** Origin of the rays */
+	public final Point3D origin = new Point3D();
+
+	/** X components of the directions, not necessarily normalized */
+	public final float[] dx;
+
+	/** Y components of the directions */
+	public final float[] dy;
+
+	/** Z components of the directions */
+	public final float[] dz;
+
+	/** Minimum distance of hits, common to the rays */
+	public float tMin = 0.0F;
+
+	/** Maximum distance of hits of each ray, lowered to its closest hit */
+	public final float[] tMax;
+
+	/** Index of the instance hit by each ray, or -1 */
+	public final int[] instance;
+
+	/** Index of the primitive hit by each ray, or -1 */
+	public final int[] primitive;
+
+	/** Number of rays */
+	public int size = 0;
+
+	/** Inverse of the x components of the directions */
+	final float[] ix;
+
+	/** Inverse of the y components of the directions */
+	final float[] iy;
+
+	/** Inverse of the z components of the directions */
+	final float[] iz;
+
+	/** Bounds of the inverse directions, minimum then maximum x, y, z */
+	final float[] inverseBounds = new float[6];
+
+	/** Signs of the directions, valid when the packet is coherent */
+	boolean negativeX, negativeY, negativeZ;
+
+	/** Traversal stack, of nodes and first active rays */
+	final int[] stack = new int[2 * BVH.MAX_DEPTH];
+
+	/** Single ray, for the rays traced one by one */
+	final Ray ray = new Ray();
+
+	/** Hit record of the single rays */
+	final Hit hit = new Hit();
+
+	/** Packet in the local space of an instance, or null until needed */
+	private RayPacket local = null;
+
+	/**
+	 * Create a packet
+	 * 
+	 * @param capacity
+	 *            Maximum number of rays
+	 */
+	public RayPacket(int capacity) {
+		dx = new float[capacity];
+		dy = new float[capacity];
+		dz = new float[capacity];
+		tMax = new float[capacity];
+		instance = new int[capacity];
+		primitive = new int[capacity];
+		ix = new float[capacity];
+		iy = new float[capacity];
+		iz = new float[capacity];
+	}
+
+	/**
+	 * Returns the maximum number of rays
+	 * 
+	 * @return the maximum number of rays
+	 */
+	public int getCapacity() {
+		return dx.length;
+	}
+
+	/**
+	 * Reset the rays to no hit, with an unbounded interval
+	 */
+	public void reset() {
+		tMin = 0.0F;
+		for (int i = 0; i < size; i++) {
+			tMax[i] = Float.POSITIVE_INFINITY;
+			instance[i] = -1;
+			primitive[i] = -1;
+		}
+	}
+
+	/**
+	 * Set the hit record of a ray
+	 * 
+	 * @param index
+	 *            Index of the ray
+	 * @param hit
+	 *            Set to the hit of the ray
+	 * @return True if the ray hits something
+	 */
+	public boolean getHit(int index, Hit hit) {
+		hit.t = primitive[index] >= 0 ? tMax[index] : Float.POSITIVE_INFINITY;
+		hit.instance = instance[index];
+		hit.primitive = primitive[index];
+		return hit.primitive >= 0;
+	}
+
+	/**
+	 * Compute the inverse directions of a range of rays and their bounds
+	 * 
+	 * @param first
+	 *            Index of the first ray
+	 * @param last
+	 *            Index of the last ray
+	 * @return True if the rays are coherent, i.e. if the signs of their
+	 *         directions agree on each axis
+	 */
+	boolean prepare(int first, int last) {
+		float[] b = inverseBounds;
+		b[0] = b[1] = b[2] = Float.POSITIVE_INFINITY;
+		b[3] = b[4] = b[5] = Float.NEGATIVE_INFINITY;
+		for (int i = first; i <= last; i++) {
+			float x = ix[i] = 1.0F / dx[i];
+			float y = iy[i] = 1.0F / dy[i];
+			float z = iz[i] = 1.0F / dz[i];
+			if (x < b[0])
+				b[0] = x;
+			if (x > b[3])
+				b[3] = x;
+			if (y < b[1])
+				b[1] = y;
+			if (y > b[4])
+				b[4] = y;
+			if (z < b[2])
+				b[2] = z;
+			if (z > b[5])
+				b[5] = z;
+		}
+		negativeX = b[3] < 0.0F;
+		negativeY = b[4] < 0.0F;
+		negativeZ = b[5] < 0.0F;
+		return (negativeX || b[0] >= 0.0F) && (negativeY || b[1] >= 0.0F)
+				&& (negativeZ || b[2] >= 0.0F);
+	}
+
+	/**
+	 * Set the single ray to a ray of the packet
+	 * 
+	 * @param index
+	 *            Index of the ray
+	 * @return the single ray
+	 */
+	Ray getRay(int index) {
+		ray.origin.set(origin);
+		ray.direction.set(dx[index], dy[index], dz[index]);
+		ray.tMin = tMin;
+		ray.tMax = tMax[index];
+		return ray;
+	}
+
+	/**
+	 * Returns the packet in the local space of instances
+	 * 
+	 * @return the local packet, of the same capacity
+	 */
+	RayPacket getLocal() {
+		if (local == null)
+			local = new RayPacket(getCapacity());
+		return local;
+	}
+}
@@ -0,0 +1,305 @@
+package uclouvain.ingi2325.accel;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.scene.*;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Two-level bounding volume hierarchy over the shapes of a scene
+ * <p>The bottom level holds one {@link BVH} per geometry, in its local
+ * space, built once however many shapes refer to the geometry. The top
+ * level is a {@link BVH} over instances, one per shape, which reference the
+ * hierarchy of their geometry and the {@link WorldTransform} of their shape.
+ * A scene with thousands of copies of a mesh thus holds the mesh and its
+ * hierarchy once.</p>
+ * <p>Triangle meshes are intersected triangle by triangle; spheres,
+ * cylinders, cones and tori by analytic primitives. Teapots are tessellated
+ * by a {@link Tessellator}, at the level of detail of each shape, and
+ * intersected as meshes: the shapes of a teapot seen at the same level share
+ * a mesh and its hierarchy.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class SceneBVH {
+
+	/** Shape of each instance */
+	private final Shape[] shapes;
+
+	/** Instances */
+	private final Instances instances;
+
+	/** Top-level hierarchy, over the instances */
+	private final BVH top;
+
+	/** Number of bottom-level hierarchies */
+	private final int geometryCount;
+
+	/**
+	 * Create a two-level hierarchy
+	 * 
+	 * @param shapes
+	 *            Shape of each instance
+	 * @param instances
+	 *            Instances
+	 * @param top
+	 *            Top-level hierarchy
+	 * @param geometryCount
+	 *            Number of bottom-level hierarchies
+	 */
+	private SceneBVH(Shape[] shapes, Instances instances, BVH top,
+			int geometryCount) {
+		this.shapes = shapes;
+		this.instances = instances;
+		this.top = top;
+		this.geometryCount = geometryCount;
+	}
+
+	/**
+	 * Build the hierarchy of the shapes of a scene, on the {@link SharedPool},
+	 * tessellated for an image of {@link Tessellator#DEFAULT_IMAGE_HEIGHT}
+	 * pixels high
+	 * 
+	 * @param scene
+	 *            The scene, complete
+	 * @return The hierarchy
+	 */
+	public static SceneBVH build(Scene scene) {
+		return build(scene, Tessellator.DEFAULT_IMAGE_HEIGHT);
+	}
+
+	/**
+	 * Build the hierarchy of the shapes of a scene, on the {@link SharedPool}
+	 * 
+	 * @param scene
+	 *            The scene, complete
+	 * @param imageHeight
+	 *            Height of the rendered image, in pixels, which sets the
+	 *            level of detail of tessellated shapes
+	 * @return The hierarchy
+	 */
+	public static SceneBVH build(Scene scene, int imageHeight) {
+		return build(scene.getShapes(), null, new Tessellator(scene
+				.getCamera(), imageHeight));
+	}
+
+	/**
+	 * Build the hierarchy of shapes
+	 * 
+	 * @param shapes
+	 *            The shapes, whose world transforms are set. A shape
+	 *            without world transform is placed by the identity.
+	 * @param pool
+	 *            Pool that builds the hierarchies, or null for the shared
+	 *            pool of {@link BVHBuilder}
+	 * @return The hierarchy, whose teapots are tessellated at
+	 *         {@link Tessellator#DEFAULT_LEVEL}
+	 */
+	public static SceneBVH build(List<Shape> shapes, ForkJoinPool pool) {
+		return build(shapes, pool, new Tessellator(null, 0));
+	}
+
+	/**
+	 * Build the hierarchy of shapes
+	 * 
+	 * @param shapes
+	 *            The shapes, whose world transforms are set. A shape
+	 *            without world transform is placed by the identity.
+	 * @param pool
+	 *            Pool that builds the hierarchies, or null for the shared
+	 *            pool of {@link BVHBuilder}
+	 * @param tessellator
+	 *            Tessellator of the teapots
+	 * @return The hierarchy
+	 */
+	public static SceneBVH build(List<Shape> shapes, ForkJoinPool pool,
+			Tessellator tessellator) {
+		Map<Geometry, BVH> geometries = new IdentityHashMap<Geometry, BVH>();
+		List<Shape> instanced = new ArrayList<Shape>(shapes.size());
+		List<BVH> hierarchies = new ArrayList<BVH>(shapes.size());
+
+		for (Shape shape : shapes) {
+			Geometry geometry = shape.getGeometry();
+			// Teapots have no analytic intersector: trace their mesh, shared
+			// through the cache by the shapes at the same level of detail
+			if (geometry instanceof Teapot)
+				geometry = tessellator.tessellate(shape);
+			BVH bvh = geometries.get(geometry);
+			if (bvh == null) {
+				Primitives primitives = createPrimitives(geometry);
+				if (primitives == null)
+					continue;
+				bvh = pool != null ? BVHBuilder.build(primitives, pool)
+						: BVHBuilder.build(primitives);
+				geometries.put(geometry, bvh);
+			}
+			instanced.add(shape);
+			hierarchies.add(bvh);
+		}
+
+		int count = instanced.size();
+		Shape[] shapeArray = instanced.toArray(new Shape[count]);
+		WorldTransform[] transforms = new WorldTransform[count];
+		for (int i = 0; i < count; i++)
+			transforms[i] = shapeArray[i].getWorldTransform();
+
+		Instances instances = new Instances(hierarchies
+				.toArray(new BVH[count]), transforms);
+		BVH top = pool != null ? BVHBuilder.build(instances, pool)
+				: BVHBuilder.build(instances);
+		return new SceneBVH(shapeArray, instances, top, geometries.size());
+	}
+
+	/**
+	 * Create the primitives of a geometry
+	 * 
+	 * @param geometry
+	 *            The geometry
+	 * @return The primitives, or null if the geometry has no intersector
+	 */
+	private static Primitives createPrimitives(Geometry geometry) {
+		if (geometry instanceof TriangleMesh)
+			return new TriangleMeshPrimitives((TriangleMesh) geometry);
+		if (geometry instanceof Sphere)
+			return new SpherePrimitive((Sphere) geometry);
+		if (geometry instanceof Cylinder)
+			return new CylinderPrimitive((Cylinder) geometry);
+		if (geometry instanceof Cone)
+			return new ConePrimitive((Cone) geometry);
+		if (geometry instanceof Torus)
+			return new TorusPrimitive((Torus) geometry);
+		return null;
+	}
+
+	/**
+	 * Returns the number of instances
+	 * 
+	 * @return the number of instances
+	 */
+	public int getInstanceCount() {
+		return shapes.length;
+	}
+
+	/**
+	 * Returns the shape of an instance
+	 * 
+	 * @param instance
+	 *            Index of the instance, as in {@link Hit#instance}
+	 * @return the shape
+	 */
+	public Shape getShape(int instance) {
+		return shapes[instance];
+	}
+
+	/**
+	 * Returns the hierarchy of the geometry of an instance, in its local space
+	 * 
+	 * @param instance
+	 *            Index of the instance
+	 * @return the hierarchy, shared by all the instances of the geometry
+	 */
+	public BVH getHierarchy(int instance) {
+		return instances.getHierarchy(instance);
+	}
+
+	/**
+	 * Returns the number of bottom-level hierarchies, i.e. of distinct
+	 * geometries
+	 * 
+	 * @return the number of bottom-level hierarchies
+	 */
+	public int getGeometryCount() {
+		return geometryCount;
+	}
+
+	/**
+	 * Get the bounds of the scene, in world space
+	 * 
+	 * @param box
+	 *            Box set to the bounds
+	 */
+	public void getBounds(BoundingBox box) {
+		top.getBounds(box);
+	}
+
+	/**
+	 * Find the closest hit of a ray
+	 * 
+	 * @param ray
+	 *            The ray, in world space, whose <code>tMax</code> is lowered
+	 *            to the distance of the hit, if any
+	 * @param hit
+	 *            Hit record, set to the hit if there is one
+	 * @return True if the ray hits a shape
+	 */
+	public boolean intersect(Ray ray, Hit hit) {
+		int instance = top.traverse(ray, hit.stack, false, hit);
+		if (instance < 0)
+			return false;
+
+		// The instance recorded the primitive when it lowered tMax
+		hit.t = ray.tMax;
+		hit.instance = instance;
+		return true;
+	}
+
+	/**
+	 * Get the normal of the surface at a hit
+	 * 
+	 * @param hit
+	 *            The hit, as set by a query
+	 * @param point
+	 *            Point of the hit, in world space
+	 * @param normal
+	 *            Set to the unit normal, in world space, on either side of
+	 *            the surface
+	 */
+	public void getNormal(Hit hit, Point3D point, Vector3D normal) {
+		instances.getNormal(hit.instance, point, hit, normal);
+		normal.normalize();
+	}
+
+	/**
+	 * Find the closest hits of a packet of rays. Coherent packets are traced
+	 * together, the rays of other packets one by one.
+	 * 
+	 * @param packet
+	 *            The packet, in world space, whose <code>tMax</code>,
+	 *            <code>instance</code> and <code>primitive</code> are set for
+	 *            the rays that hit a shape
+	 */
+	public void intersect(RayPacket packet) {
+		if (packet.size == 0)
+			return;
+		if (packet.prepare(0, packet.size - 1)) {
+			top.traverse(packet, 0, packet.size - 1);
+			return;
+		}
+
+		Hit hit = packet.hit;
+		for (int i = 0; i < packet.size; i++) {
+			hit.reset();
+			if (intersect(packet.getRay(i), hit)) {
+				packet.tMax[i] = hit.t;
+				packet.instance[i] = hit.instance;
+				packet.primitive[i] = hit.primitive;
+			}
+		}
+	}
+
+	/**
+	 * Check whether a ray hits anything, e.g. for shadow rays
+	 * 
+	 * @param ray
+	 *            The ray, in world space, which is not modified
+	 * @param hit
+	 *            Hit record, used for its scratch state only
+	 * @return True if the ray hits a shape between <code>tMin</code> and
+	 *         <code>tMax</code>
+	 */
+	public boolean occluded(Ray ray, Hit hit) {
+		return top.occluded(ray, hit);
+	}
+}
@@ -0,0 +1,194 @@
+package uclouvain.ingi2325.accel;
+
+import java.io.*;
+import java.util.*;
+
+import uclouvain.ingi2325.scene.Shape;
+import uclouvain.ingi2325.scene.TriangleMesh;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Benchmark of {@link SceneBVH} on many copies of a mesh
+ * <p>This application writes a scene in which a grid of shapes, each under
+ * its own <code>Translate</code>, <code>Rotate</code> and <code>Scale</code>,
+ * refer to one OBJ file, loads it with {@link SceneBuilder} and builds its
+ * hierarchy. It reports the heap used by the scene and the hierarchy against
+ * the size of the mesh, checks random rays against a linear scan of the
+ * instances and reports the time per ray.</p>
+ * <p>Usage: <code>SceneBVHBenchmark [copies [rays [file.obj]]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class SceneBVHBenchmark {
+
+	/** Default number of copies of the mesh */
+	private static final int DEFAULT_COPIES = 10000;
+
+	/** Default number of rays */
+	private static final int DEFAULT_RAYS = 1000000;
+
+	/** Default mesh */
+	private static final String DEFAULT_FILE = "XML/sphere.obj";
+
+	/** Number of rays checked against a linear scan of the instances */
+	private static final int CHECKED_RAYS = 1000;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 * @throws IOException
+	 *             The scene could not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		int copies = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_COPIES;
+		int rays = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RAYS;
+		File obj = new File(args.length > 2 ? args[2] : DEFAULT_FILE);
+
+		int side = (int) Math.ceil(Math.cbrt(copies));
+		File sdl = writeScene(obj.getAbsoluteFile(), copies, side);
+
+		long heap = usedHeap();
+		Scene scene = new SceneBuilder().loadScene(sdl.getAbsolutePath(),
+				false);
+		sdl.delete();
+		if (scene == null)
+			throw new IllegalStateException("The scene could not be loaded");
+		long sceneBytes = usedHeap() - heap;
+
+		long start = System.nanoTime();
+		SceneBVH bvh = SceneBVH.build(scene);
+		long buildNanos = System.nanoTime() - start;
+		long bvhBytes = usedHeap() - heap - sceneBytes;
+
+		TriangleMesh mesh = (TriangleMesh) bvh.getShape(0).getGeometry();
+		long meshBytes = 4L * (3 * mesh.getXs().length + mesh.getIndices().length);
+		int triangles = mesh.getIndices().length / 3;
+
+		System.out.println(String.format(Locale.US,
+				"%d instances of %d triangles, %d geometry",
+				bvh.getInstanceCount(), triangles, bvh.getGeometryCount()));
+		System.out.println(String.format(Locale.US,
+				"Mesh positions and indices: %10.1f KB, times %d: %.1f MB",
+				meshBytes / 1e3, copies, meshBytes * copies / 1e6));
+		System.out.println(String.format(Locale.US,
+				"Heap of the scene:          %10.1f MB", sceneBytes / 1e6));
+		System.out.println(String.format(Locale.US,
+				"Heap of the hierarchy:      %10.1f MB, built in %.1f ms",
+				bvhBytes / 1e6, buildNanos / 1e6));
+
+		// Rays from outside the grid towards random points inside it
+		Random random = new Random(42);
+		Ray[] samples = new Ray[Math.max(rays, CHECKED_RAYS)];
+		for (int i = 0; i < samples.length; i++) {
+			Ray ray = new Ray();
+			ray.origin.set(-2.0F, side * random.nextFloat(), side
+					* random.nextFloat());
+			ray.direction.set(side + 2.0F, side * random.nextFloat()
+					- ray.origin.y, side * random.nextFloat() - ray.origin.z);
+			samples[i] = ray;
+		}
+
+		Hit hit = new Hit();
+		Hit linearHit = new Hit();
+		Ray ray = new Ray();
+		for (int i = 0; i < CHECKED_RAYS; i++) {
+			ray.set(samples[i].origin, samples[i].direction);
+			float linearT = Float.POSITIVE_INFINITY;
+			for (int j = 0; j < bvh.getInstanceCount(); j++) {
+				ray.set(samples[i].origin, samples[i].direction);
+				Shape shape = bvh.getShape(j);
+				Ray local = new Ray();
+				shape.getWorldTransform().getInverse().transformPoint(
+						ray.origin, local.origin);
+				shape.getWorldTransform().getInverse().transformVector(
+						ray.direction, local.direction);
+				if (bvh.getHierarchy(j).intersect(local, linearHit) >= 0)
+					linearT = Math.min(linearT, local.tMax);
+			}
+
+			ray.set(samples[i].origin, samples[i].direction);
+			hit.reset();
+			bvh.intersect(ray, hit);
+			if (Math.abs(hit.t - linearT) > 1e-4F * Math.max(1.0F, linearT)
+					&& hit.t != linearT)
+				throw new AssertionError("SceneBVH disagrees with linear scan"
+						+ " on " + samples[i] + ": " + hit + ", " + linearT);
+		}
+
+		for (int run = 0; run < 2; run++) {
+			int hits = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < rays; i++) {
+				ray.set(samples[i].origin, samples[i].direction);
+				if (bvh.intersect(ray, hit))
+					hits++;
+			}
+			long nanos = System.nanoTime() - start;
+			if (run == 1)
+				System.out.println(String.format(Locale.US,
+						"Query: %.1f ns/ray, %.2f Mrays/s, %d hits",
+						(double) nanos / rays, rays * 1e3 / nanos, hits));
+		}
+	}
+
+	/**
+	 * Write a scene with copies of a mesh on a cubic grid of unit cells
+	 * 
+	 * @param obj
+	 *            The mesh
+	 * @param copies
+	 *            Number of copies
+	 * @param side
+	 *            Number of cells along each side of the grid
+	 * @return The scene file, temporary
+	 * @throws IOException
+	 *             The scene could not be written
+	 */
+	private static File writeScene(File obj, int copies, int side)
+			throws IOException {
+		File file = File.createTempFile("instances", ".sdl");
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(
+				file)));
+		try {
+			out.println("<Sdl>");
+			out.println("<Cameras><Camera position=\"0 0 0\" "
+					+ "direction=\"1 0 0\" up=\"0 1 0\" fovy=\"45\" "
+					+ "name=\"camera\"/></Cameras>");
+			out.println("<Lights><PointLight position=\"0 0 0\" "
+					+ "name=\"light\"/></Lights>");
+			out.println("<Geometry><FileGeometry filename=\"" + obj.getPath()
+					+ "\" name=\"mesh\"/></Geometry>");
+			out.println("<Scene camera=\"camera\" lights=\"light\">");
+			for (int i = 0; i < copies; i++) {
+				int x = i % side, y = (i / side) % side, z = i / (side * side);
+				out.println(String.format(Locale.US,
+						"<Translate vector=\"%d.5 %d.5 %d.5\">"
+								+ "<Rotate axis=\"0 1 0\" angle=\"%d\">"
+								+ "<Scale scale=\"0.4 0.4 0.4\">"
+								+ "<Shape geometry=\"mesh\"/>"
+								+ "</Scale></Rotate></Translate>", x, y, z,
+						i % 360));
+			}
+			out.println("</Scene>");
+			out.println("</Sdl>");
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Returns the heap in use, after a garbage collection
+	 * 
+	 * @return the heap in use, in bytes
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,75 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.math.Polynomials;
+import uclouvain.ingi2325.scene.Sphere;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * {@link Sphere} centered at the origin, as a primitive
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class SpherePrimitive extends AnalyticPrimitive {
+
+	/** Radius */
+	private final float radius;
+
+	/**
+	 * Create the primitive of a sphere
+	 * 
+	 * @param sphere
+	 *            The sphere
+	 */
+	SpherePrimitive(Sphere sphere) {
+		radius = sphere.getRadius();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		bounds.set(-radius, -radius, -radius, radius, radius, radius);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		double ox = ray.origin.x, oy = ray.origin.y, oz = ray.origin.z;
+		double dx = ray.direction.x, dy = ray.direction.y;
+		double dz = ray.direction.z;
+
+		double[] roots = hit.roots;
+		int count = Polynomials.solveQuadratic(dx * dx + dy * dy + dz * dz,
+				2 * (ox * dx + oy * dy + oz * dz), ox * ox + oy * oy + oz * oz
+						- (double) radius * radius, roots, 0);
+		float best = ray.tMax;
+		for (int i = 0; i < count; i++) {
+			float t = (float) roots[i];
+			if (isCloser(t, ray, best))
+				best = t;
+		}
+		return best < ray.tMax ? best : Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		normal.set(point);
+	}
+}
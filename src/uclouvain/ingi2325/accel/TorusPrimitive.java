@@ -0,0 +1,137 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.math.Polynomials;
+import uclouvain.ingi2325.scene.Torus;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * {@link Torus} around the Y axis, centered at the origin, as a primitive
+ * <p>The torus is the quartic (|p|^2 + R^2 - r^2)^2 = 4 R^2 (x^2 + z^2),
+ * where R is the distance from the center to the center of the tube and r
+ * the radius of the tube. To keep the quartic well conditioned, the ray is
+ * normalized and its origin moved to where it enters the bounding sphere of
+ * the torus before the coefficients are computed, and the roots are polished
+ * by Newton's method.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class TorusPrimitive extends AnalyticPrimitive {
+
+	/** Number of Newton steps that polish the roots */
+	private static final int NEWTON_STEPS = 2;
+
+	/** Radius of the tube */
+	private final float tube;
+
+	/** Distance from the center to the center of the tube */
+	private final float ring;
+
+	/**
+	 * Create the primitive of a torus
+	 * 
+	 * @param torus
+	 *            The torus
+	 */
+	TorusPrimitive(Torus torus) {
+		tube = torus.getInnerRadius();
+		ring = torus.getOuterRadius();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		float extent = ring + tube;
+		bounds.set(-extent, -tube, -extent, extent, tube, extent);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		double dx = ray.direction.x, dy = ray.direction.y;
+		double dz = ray.direction.z;
+		double length = Math.sqrt(dx * dx + dy * dy + dz * dz);
+		if (length == 0)
+			return Float.POSITIVE_INFINITY;
+		dx /= length;
+		dy /= length;
+		dz /= length;
+		double ox = ray.origin.x, oy = ray.origin.y, oz = ray.origin.z;
+
+		// Clip the ray, in units of length, to the bounding sphere
+		double extent = (double) ring + tube;
+		double b = ox * dx + oy * dy + oz * dz;
+		double discriminant = b * b
+				- (ox * ox + oy * oy + oz * oz - extent * extent);
+		if (discriminant < 0)
+			return Float.POSITIVE_INFINITY;
+		double sqrt = Math.sqrt(discriminant);
+		double start = Math.max(-b - sqrt, ray.tMin * length);
+		double end = Math.min(-b + sqrt, ray.tMax * length);
+		if (start > end)
+			return Float.POSITIVE_INFINITY;
+		ox += start * dx;
+		oy += start * dy;
+		oz += start * dz;
+
+		// Monic quartic t^4 + c3 t^3 + c2 t^2 + c1 t + c0 along the
+		// normalized ray
+		double squareRing = (double) ring * ring;
+		double n = ox * dx + oy * dy + oz * dz;
+		double k = ox * ox + oy * oy + oz * oz + squareRing - (double) tube
+				* tube;
+		double c3 = 4 * n;
+		double c2 = 4 * n * n + 2 * k - 4 * squareRing * (dx * dx + dz * dz);
+		double c1 = 4 * n * k - 8 * squareRing * (ox * dx + oz * dz);
+		double c0 = k * k - 4 * squareRing * (ox * ox + oz * oz);
+
+		double[] roots = hit.roots;
+		int count = Polynomials.solveQuartic(1, c3, c2, c1, c0, roots);
+		float best = ray.tMax;
+		for (int i = 0; i < count; i++) {
+			double t = roots[i];
+			for (int step = 0; step < NEWTON_STEPS; step++) {
+				double value = (((t + c3) * t + c2) * t + c1) * t + c0;
+				double slope = ((4 * t + 3 * c3) * t + 2 * c2) * t + c1;
+				if (slope == 0)
+					break;
+				t -= value / slope;
+			}
+			float distance = (float) ((t + start) / length);
+			if (isCloser(distance, ray, best))
+				best = distance;
+		}
+		return best < ray.tMax ? best : Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		// From the center of the tube to the point
+		float distance = (float) Math.sqrt(point.x * point.x + point.z
+				* point.z);
+		if (distance == 0) {
+			normal.set(point);
+			return;
+		}
+		float scale = ring / distance;
+		normal.set(point.x - scale * point.x, point.y, point.z - scale
+				* point.z);
+	}
+}
@@ -0,0 +1,126 @@
+package uclouvain.ingi2325.accel;
+
+import uclouvain.ingi2325.math.BoundingBox;
+import uclouvain.ingi2325.scene.TriangleMesh;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Triangles of a {@link TriangleMesh}, as primitives
+ * <p>The triangles are read from the arrays of the mesh, in its local
+ * space, and intersected by the Möller-Trumbore algorithm.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class TriangleMeshPrimitives implements Primitives {
+
+	/** X coordinates of the vertices */
+	private final float[] xs;
+
+	/** Y coordinates of the vertices */
+	private final float[] ys;
+
+	/** Z coordinates of the vertices */
+	private final float[] zs;
+
+	/** Vertex indices, three per triangle */
+	private final int[] indices;
+
+	/**
+	 * Create the primitives of a mesh
+	 * 
+	 * @param mesh
+	 *            The mesh
+	 */
+	public TriangleMeshPrimitives(TriangleMesh mesh) {
+		xs = mesh.getXs();
+		ys = mesh.getYs();
+		zs = mesh.getZs();
+		indices = mesh.getIndices();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getCount()
+	 */
+	@Override
+	public int getCount() {
+		return indices.length / 3;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getBounds(int,
+	 * uclouvain.ingi2325.math.BoundingBox)
+	 */
+	@Override
+	public void getBounds(int index, BoundingBox bounds) {
+		bounds.reset();
+		for (int i = 3 * index; i < 3 * index + 3; i++)
+			bounds.extend(xs[indices[i]], ys[indices[i]], zs[indices[i]]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#intersect(int,
+	 * uclouvain.ingi2325.utils.Ray, uclouvain.ingi2325.accel.Hit)
+	 */
+	@Override
+	public float intersect(int index, Ray ray, Hit hit) {
+		int a = indices[3 * index];
+		int b = indices[3 * index + 1];
+		int c = indices[3 * index + 2];
+
+		float ax = xs[a], ay = ys[a], az = zs[a];
+		float e1x = xs[b] - ax, e1y = ys[b] - ay, e1z = zs[b] - az;
+		float e2x = xs[c] - ax, e2y = ys[c] - ay, e2z = zs[c] - az;
+		float dx = ray.direction.x, dy = ray.direction.y;
+		float dz = ray.direction.z;
+
+		float px = dy * e2z - dz * e2y;
+		float py = dz * e2x - dx * e2z;
+		float pz = dx * e2y - dy * e2x;
+		float determinant = e1x * px + e1y * py + e1z * pz;
+		if (determinant == 0.0F)
+			return Float.POSITIVE_INFINITY;
+		float inverse = 1.0F / determinant;
+
+		float tx = ray.origin.x - ax;
+		float ty = ray.origin.y - ay;
+		float tz = ray.origin.z - az;
+		float u = (tx * px + ty * py + tz * pz) * inverse;
+		if (u < 0.0F || u > 1.0F)
+			return Float.POSITIVE_INFINITY;
+
+		float qx = ty * e1z - tz * e1y;
+		float qy = tz * e1x - tx * e1z;
+		float qz = tx * e1y - ty * e1x;
+		float v = (dx * qx + dy * qy + dz * qz) * inverse;
+		if (v < 0.0F || u + v > 1.0F)
+			return Float.POSITIVE_INFINITY;
+
+		float t = (e2x * qx + e2y * qy + e2z * qz) * inverse;
+		return t > ray.tMin && t < ray.tMax ? t : Float.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.accel.Primitives#getNormal(int,
+	 * uclouvain.ingi2325.utils.Point3D, uclouvain.ingi2325.accel.Hit,
+	 * uclouvain.ingi2325.utils.Vector3D)
+	 */
+	@Override
+	public void getNormal(int index, Point3D point, Hit hit, Vector3D normal) {
+		int a = indices[3 * index];
+		int b = indices[3 * index + 1];
+		int c = indices[3 * index + 2];
+
+		float e1x = xs[b] - xs[a], e1y = ys[b] - ys[a], e1z = zs[b] - zs[a];
+		float e2x = xs[c] - xs[a], e2y = ys[c] - ys[a], e2z = zs[c] - zs[a];
+		normal.set(e1y * e2z - e1z * e2y, e1z * e2x - e1x * e2z, e1x * e2y
+				- e1y * e2x);
+	}
+}
@@ -0,0 +1,242 @@
+package uclouvain.ingi2325.math;
+
+/**
+ * Batch operations on packed 3-tuples
+ * <p>The tuples are stored as a structure of arrays: one array of x, one of y
+ * and one of z coordinates, the i-th tuple being made of the i-th element of
+ * each array. The kernels are plain counted loops over the arrays, without
+ * calls or data-dependent branches, so that the JIT compiles them to SIMD
+ * instructions. The ray-triangle test is too large a loop body for that, and
+ * exits early on misses instead.</p>
+ * <p>The output arrays may be the input arrays.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class BatchMath {
+
+	/** Smallest distance of a hit, to ignore hits at the origin of rays */
+	public static final float EPSILON = 1e-5F;
+
+	/**
+	 * Not instantiable
+	 */
+	private BatchMath() {
+	}
+
+	/**
+	 * Pack tuples into arrays
+	 * 
+	 * @param tuples
+	 *            Tuples
+	 * @param xs
+	 *            x coordinates, at least as long as <code>tuples</code>
+	 * @param ys
+	 *            y coordinates, at least as long as <code>tuples</code>
+	 * @param zs
+	 *            z coordinates, at least as long as <code>tuples</code>
+	 */
+	public static void pack(Tuple3[] tuples, float[] xs, float[] ys,
+			float[] zs) {
+		for (int i = 0; i < tuples.length; i++) {
+			xs[i] = tuples[i].x;
+			ys[i] = tuples[i].y;
+			zs[i] = tuples[i].z;
+		}
+	}
+
+	/**
+	 * Unpack arrays into tuples
+	 * 
+	 * @param xs
+	 *            x coordinates, at least as long as <code>tuples</code>
+	 * @param ys
+	 *            y coordinates, at least as long as <code>tuples</code>
+	 * @param zs
+	 *            z coordinates, at least as long as <code>tuples</code>
+	 * @param tuples
+	 *            Tuples to fill
+	 */
+	public static void unpack(float[] xs, float[] ys, float[] zs,
+			Tuple3[] tuples) {
+		for (int i = 0; i < tuples.length; i++)
+			tuples[i].set(xs[i], ys[i], zs[i]);
+	}
+
+	/**
+	 * Transform points by an affine matrix
+	 * 
+	 * @param matrix
+	 *            Affine matrix, whose last row is (0, 0, 0, 1)
+	 * @param xs
+	 *            x coordinates of the points
+	 * @param ys
+	 *            y coordinates of the points
+	 * @param zs
+	 *            z coordinates of the points
+	 * @param outXs
+	 *            x coordinates of the transformed points
+	 * @param outYs
+	 *            y coordinates of the transformed points
+	 * @param outZs
+	 *            z coordinates of the transformed points
+	 * @param count
+	 *            Number of points
+	 * @see Matrix4#transformPoint(Tuple3, Tuple3)
+	 */
+	public static void transformPoints(Matrix4 matrix, float[] xs,
+			float[] ys, float[] zs, float[] outXs, float[] outYs,
+			float[] outZs, int count) {
+		float m00 = matrix.m00, m01 = matrix.m01, m02 = matrix.m02;
+		float m03 = matrix.m03, m10 = matrix.m10, m11 = matrix.m11;
+		float m12 = matrix.m12, m13 = matrix.m13, m20 = matrix.m20;
+		float m21 = matrix.m21, m22 = matrix.m22, m23 = matrix.m23;
+
+		for (int i = 0; i < count; i++) {
+			float x = xs[i];
+			float y = ys[i];
+			float z = zs[i];
+			outXs[i] = m00 * x + m01 * y + m02 * z + m03;
+			outYs[i] = m10 * x + m11 * y + m12 * z + m13;
+			outZs[i] = m20 * x + m21 * y + m22 * z + m23;
+		}
+	}
+
+	/**
+	 * Transform vectors by a matrix, ignoring the translation
+	 * 
+	 * @param matrix
+	 *            Matrix
+	 * @param xs
+	 *            x coordinates of the vectors
+	 * @param ys
+	 *            y coordinates of the vectors
+	 * @param zs
+	 *            z coordinates of the vectors
+	 * @param outXs
+	 *            x coordinates of the transformed vectors
+	 * @param outYs
+	 *            y coordinates of the transformed vectors
+	 * @param outZs
+	 *            z coordinates of the transformed vectors
+	 * @param count
+	 *            Number of vectors
+	 * @see Matrix4#transformVector(Tuple3, Tuple3)
+	 */
+	public static void transformVectors(Matrix4 matrix, float[] xs,
+			float[] ys, float[] zs, float[] outXs, float[] outYs,
+			float[] outZs, int count) {
+		float m00 = matrix.m00, m01 = matrix.m01, m02 = matrix.m02;
+		float m10 = matrix.m10, m11 = matrix.m11, m12 = matrix.m12;
+		float m20 = matrix.m20, m21 = matrix.m21, m22 = matrix.m22;
+
+		for (int i = 0; i < count; i++) {
+			float x = xs[i];
+			float y = ys[i];
+			float z = zs[i];
+			outXs[i] = m00 * x + m01 * y + m02 * z;
+			outYs[i] = m10 * x + m11 * y + m12 * z;
+			outZs[i] = m20 * x + m21 * y + m22 * z;
+		}
+	}
+
+	/**
+	 * Normalize vectors in place
+	 * 
+	 * @param xs
+	 *            x coordinates of the vectors
+	 * @param ys
+	 *            y coordinates of the vectors
+	 * @param zs
+	 *            z coordinates of the vectors
+	 * @param count
+	 *            Number of vectors
+	 */
+	public static void normalize(float[] xs, float[] ys, float[] zs,
+			int count) {
+		for (int i = 0; i < count; i++) {
+			float x = xs[i];
+			float y = ys[i];
+			float z = zs[i];
+			float f = 1.0F / (float) Math.sqrt(x * x + y * y + z * z);
+			xs[i] = x * f;
+			ys[i] = y * f;
+			zs[i] = z * f;
+		}
+	}
+
+	/**
+	 * Compute dot products of pairs of vectors
+	 * 
+	 * @param xs1
+	 *            x coordinates of the first vectors
+	 * @param ys1
+	 *            y coordinates of the first vectors
+	 * @param zs1
+	 *            z coordinates of the first vectors
+	 * @param xs2
+	 *            x coordinates of the second vectors
+	 * @param ys2
+	 *            y coordinates of the second vectors
+	 * @param zs2
+	 *            z coordinates of the second vectors
+	 * @param out
+	 *            Dot products
+	 * @param count
+	 *            Number of pairs
+	 */
+	public static void dot(float[] xs1, float[] ys1, float[] zs1,
+			float[] xs2, float[] ys2, float[] zs2, float[] out, int count) {
+		for (int i = 0; i < count; i++)
+			out[i] = xs1[i] * xs2[i] + ys1[i] * ys2[i] + zs1[i] * zs2[i];
+	}
+
+	/**
+	 * Intersect a ray with triangles, by the Möller-Trumbore algorithm
+	 * 
+	 * @param origin
+	 *            Origin of the ray
+	 * @param direction
+	 *            Direction of the ray
+	 * @param triangles
+	 *            Triangles
+	 * @param out
+	 *            Distances of the hits along the ray, in units of the
+	 *            direction, or positive infinity for misses
+	 */
+	public static void intersect(Tuple3 origin, Tuple3 direction,
+			TriangleBatch triangles, float[] out) {
+		float ox = origin.x, oy = origin.y, oz = origin.z;
+		float dx = direction.x, dy = direction.y, dz = direction.z;
+		float[] v0x = triangles.v0x, v0y = triangles.v0y, v0z = triangles.v0z;
+		float[] e1x = triangles.e1x, e1y = triangles.e1y, e1z = triangles.e1z;
+		float[] e2x = triangles.e2x, e2y = triangles.e2y, e2z = triangles.e2z;
+
+		for (int i = 0; i < triangles.count; i++) {
+			out[i] = Float.POSITIVE_INFINITY;
+
+			float px = dy * e2z[i] - dz * e2y[i];
+			float py = dz * e2x[i] - dx * e2z[i];
+			float pz = dx * e2y[i] - dy * e2x[i];
+			// A null determinant makes NaNs, which fail the tests below
+			float inverse = 1.0F / (e1x[i] * px + e1y[i] * py + e1z[i] * pz);
+
+			float tx = ox - v0x[i];
+			float ty = oy - v0y[i];
+			float tz = oz - v0z[i];
+			float u = (tx * px + ty * py + tz * pz) * inverse;
+			if (!(u >= 0.0F && u <= 1.0F))
+				continue;
+
+			float qx = ty * e1z[i] - tz * e1y[i];
+			float qy = tz * e1x[i] - tx * e1z[i];
+			float qz = tx * e1y[i] - ty * e1x[i];
+			float v = (dx * qx + dy * qy + dz * qz) * inverse;
+			if (!(v >= 0.0F && u + v <= 1.0F))
+				continue;
+
+			float t = (e2x[i] * qx + e2y[i] * qy + e2z[i] * qz) * inverse;
+			if (t > EPSILON)
+				out[i] = t;
+		}
+	}
+}
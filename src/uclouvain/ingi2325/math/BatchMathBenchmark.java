@@ -0,0 +1,207 @@
+package uclouvain.ingi2325.math;
+
+import java.util.*;
+
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Micro-benchmark of the kernels of {@link BatchMath}
+ * <p>This application runs each kernel over packed arrays, and the same
+ * operation over arrays of {@link Point3D} and {@link Vector3D} with the
+ * operations of {@link Matrix4} and {@link Tuple3}, then reports the speedup
+ * of each kernel. Running it again with <code>-XX:-UseSuperWord</code> shows
+ * how much of the speedup comes from SIMD instructions.</p>
+ * <p>Usage: <code>BatchMathBenchmark [elements [runs]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class BatchMathBenchmark {
+
+	/** Default number of elements processed per run */
+	private static final int DEFAULT_ELEMENTS = 50000000;
+
+	/** Default number of measured runs, after as many warm-up runs */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Number of tuples and triangles, small enough to stay in the cache */
+	private static final int COUNT = 4096;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		int elements = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_ELEMENTS;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+		final int passes = Math.max(1, elements / COUNT);
+
+		Random random = new Random(42);
+		final Point3D[] points = new Point3D[COUNT];
+		final Vector3D[] vectors = new Vector3D[COUNT];
+		final Point3D[] results = new Point3D[COUNT];
+		final float[] xs = new float[COUNT];
+		final float[] ys = new float[COUNT];
+		final float[] zs = new float[COUNT];
+		final float[] vxs = new float[COUNT];
+		final float[] vys = new float[COUNT];
+		final float[] vzs = new float[COUNT];
+		final float[] outXs = new float[COUNT];
+		final float[] outYs = new float[COUNT];
+		final float[] outZs = new float[COUNT];
+		final float[] out = new float[COUNT];
+
+		for (int i = 0; i < COUNT; i++) {
+			points[i] = new Point3D(random.nextFloat(), random.nextFloat(),
+					random.nextFloat());
+			vectors[i] = new Vector3D(random.nextFloat() - 0.5F, random
+					.nextFloat() - 0.5F, random.nextFloat() - 0.5F);
+			results[i] = new Point3D();
+		}
+		BatchMath.pack(points, xs, ys, zs);
+		BatchMath.pack(vectors, vxs, vys, vzs);
+
+		Vector3D axis = new Vector3D(1.0F, 2.0F, 3.0F);
+		final Matrix4 matrix = Matrix4.rotation(axis, 30.0F);
+		matrix.mul(Matrix4.translation(axis), matrix);
+
+		// Small triangles around the points, and a ray through them
+		final Point3D[] v1s = new Point3D[COUNT];
+		final Point3D[] v2s = new Point3D[COUNT];
+		float[] triangleXs = new float[3 * COUNT];
+		float[] triangleYs = new float[3 * COUNT];
+		float[] triangleZs = new float[3 * COUNT];
+		int[] indices = new int[3 * COUNT];
+		for (int i = 0; i < COUNT; i++) {
+			v1s[i] = new Point3D(points[i]);
+			v1s[i].addScaled(0.2F, vectors[i]);
+			v2s[i] = new Point3D(points[i]);
+			v2s[i].addScaled(0.2F, vectors[(i + 1) % COUNT]);
+
+			Point3D[] vertices = { points[i], v1s[i], v2s[i] };
+			for (int j = 0; j < 3; j++) {
+				triangleXs[3 * i + j] = vertices[j].x;
+				triangleYs[3 * i + j] = vertices[j].y;
+				triangleZs[3 * i + j] = vertices[j].z;
+				indices[3 * i + j] = 3 * i + j;
+			}
+		}
+		final TriangleBatch triangles = new TriangleBatch(triangleXs,
+				triangleYs, triangleZs, indices);
+		final Point3D origin = new Point3D(0.5F, 0.5F, -1.0F);
+		final Vector3D direction = new Vector3D(0.0F, 0.0F, 1.0F);
+
+		BenchmarkCase[] cases = { new BenchmarkCase("transform, objects") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					for (int i = 0; i < COUNT; i++)
+						matrix.transformPoint(points[i], results[i]);
+				return results[COUNT - 1].x;
+			}
+		}, new BenchmarkCase("transform, batch") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					BatchMath.transformPoints(matrix, xs, ys, zs, outXs,
+							outYs, outZs, COUNT);
+				return outXs[COUNT - 1];
+			}
+		}, new BenchmarkCase("normalize, objects") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					for (int i = 0; i < COUNT; i++)
+						vectors[i].normalize();
+				return vectors[COUNT - 1].x;
+			}
+		}, new BenchmarkCase("normalize, batch") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					BatchMath.normalize(vxs, vys, vzs, COUNT);
+				return vxs[COUNT - 1];
+			}
+		}, new BenchmarkCase("dot, objects") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					for (int i = 0; i < COUNT; i++)
+						out[i] = vectors[i].dot(points[i]);
+				return out[COUNT - 1];
+			}
+		}, new BenchmarkCase("dot, batch") {
+			@Override
+			float run(int elements) {
+				for (int pass = 0; pass < passes; pass++)
+					BatchMath.dot(vxs, vys, vzs, xs, ys, zs, out, COUNT);
+				return out[COUNT - 1];
+			}
+		}, new BenchmarkCase("ray-triangle, objects") {
+			@Override
+			float run(int elements) {
+				Vector3D e1 = new Vector3D();
+				Vector3D e2 = new Vector3D();
+				Vector3D p = new Vector3D();
+				Vector3D t = new Vector3D();
+				Vector3D q = new Vector3D();
+				float hits = 0.0F;
+
+				for (int pass = 0; pass < passes; pass++) {
+					for (int i = 0; i < COUNT; i++) {
+						e1.sub(v1s[i], points[i]);
+						e2.sub(v2s[i], points[i]);
+						p.cross(direction, e2);
+						float determinant = e1.dot(p);
+						if (determinant == 0.0F)
+							continue;
+						float inverse = 1.0F / determinant;
+						t.sub(origin, points[i]);
+						float u = t.dot(p) * inverse;
+						if (u < 0.0F || u > 1.0F)
+							continue;
+						q.cross(t, e1);
+						float v = q.dot(direction) * inverse;
+						if (v < 0.0F || u + v > 1.0F)
+							continue;
+						if (e2.dot(q) * inverse > BatchMath.EPSILON)
+							hits++;
+					}
+				}
+				return hits;
+			}
+		}, new BenchmarkCase("ray-triangle, batch") {
+			@Override
+			float run(int elements) {
+				float hits = 0.0F;
+				for (int pass = 0; pass < passes; pass++) {
+					BatchMath.intersect(origin, direction, triangles, out);
+					for (int i = 0; i < COUNT; i++)
+						if (out[i] != Float.POSITIVE_INFINITY)
+							hits++;
+				}
+				return hits;
+			}
+		} };
+
+		// The kernels must agree with the operations on tuples
+		cases[0].run(COUNT);
+		cases[1].run(COUNT);
+		for (int i = 0; i < COUNT; i++)
+			if (Math.abs(results[i].x - outXs[i]) > 1e-5F
+					|| Math.abs(results[i].y - outYs[i]) > 1e-5F
+					|| Math.abs(results[i].z - outZs[i]) > 1e-5F)
+				throw new AssertionError("transformPoints disagrees");
+		if (cases[6].run(COUNT) != cases[7].run(COUNT))
+			throw new AssertionError("intersect disagrees");
+
+		BenchmarkCase.runAll(cases, passes * COUNT, runs);
+		for (int i = 0; i < cases.length; i += 2)
+			System.out.println(String.format(Locale.US,
+					"Speedup of %-28s %6.2fx", cases[i + 1].name,
+					cases[i].getNanos() / cases[i + 1].getNanos()));
+	}
+}
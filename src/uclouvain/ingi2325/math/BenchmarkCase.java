@@ -0,0 +1,119 @@
+package uclouvain.ingi2325.math;
+
+import java.lang.management.*;
+import java.util.*;
+
+/**
+ * Operation measured by the micro-benchmarks of this package
+ * <p>Each run reports its time and, when the JVM can measure it, the number
+ * of bytes allocated by the current thread, which tells whether temporary
+ * objects were scalar-replaced.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+abstract class BenchmarkCase {
+
+	/** Sink for the results, so that they are not optimized away */
+	static volatile float sink;
+
+	/** Name of the operation */
+	final String name;
+
+	/** Total time of the measured runs, in nanoseconds */
+	private double nanos = 0.0;
+
+	/** Total bytes allocated by the measured runs, or -1 if unknown */
+	private long allocatedBytes = 0;
+
+	/**
+	 * Create a case
+	 * 
+	 * @param name
+	 *            Name of the operation
+	 */
+	BenchmarkCase(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the total time of the measured runs
+	 * 
+	 * @return the time, in nanoseconds
+	 */
+	double getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Run the operation
+	 * 
+	 * @param operations
+	 *            Number of operations
+	 * @return A value depending on all the results
+	 */
+	abstract float run(int operations);
+
+	/**
+	 * Run and measure the operation
+	 * 
+	 * @param operations
+	 *            Number of operations
+	 * @param record
+	 *            False for a warm-up run, which is not recorded
+	 */
+	void measure(int operations, boolean record) {
+		long bytes = allocatedBytes();
+		long start = System.nanoTime();
+		sink = run(operations);
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - bytes;
+
+		if (record) {
+			nanos += elapsed;
+			if (bytes < 0 || allocatedBytes < 0)
+				allocatedBytes = -1;
+			else
+				allocatedBytes += allocated;
+		}
+	}
+
+	/**
+	 * Run all the cases as many times for warm-up, then as many times
+	 * measured, interleaved, and print the results
+	 * 
+	 * @param cases
+	 *            Cases
+	 * @param operations
+	 *            Number of operations per run
+	 * @param runs
+	 *            Number of measured runs
+	 */
+	static void runAll(BenchmarkCase[] cases, int operations, int runs) {
+		for (int run = -runs; run < runs; run++)
+			for (BenchmarkCase c : cases)
+				c.measure(operations, run >= 0);
+
+		for (BenchmarkCase c : cases)
+			System.out.println(String.format(Locale.US,
+					"%-28s %8.2f ns/op %10s", c.name, c.nanos / runs
+							/ operations, c.allocatedBytes < 0 ? "n/a"
+							: String.format(Locale.US, "%.1f B/op",
+									(double) c.allocatedBytes / runs
+											/ operations)));
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread, if the JVM
+	 * can measure it
+	 * 
+	 * @return the number of bytes, or -1
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		else
+			return -1;
+	}
+}
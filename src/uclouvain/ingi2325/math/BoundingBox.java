@@ -0,0 +1,273 @@
+package uclouvain.ingi2325.math;
+
+/**
+ * Axis-aligned bounding box
+ * <p>A new box is empty: its minimum is positive infinity and its maximum
+ * negative infinity, so that extending it with a point gives that point.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class BoundingBox {
+
+	/**
+	 * The minimum x coordinate.
+	 */
+	public float minX;
+
+	/**
+	 * The minimum y coordinate.
+	 */
+	public float minY;
+
+	/**
+	 * The minimum z coordinate.
+	 */
+	public float minZ;
+
+	/**
+	 * The maximum x coordinate.
+	 */
+	public float maxX;
+
+	/**
+	 * The maximum y coordinate.
+	 */
+	public float maxY;
+
+	/**
+	 * The maximum z coordinate.
+	 */
+	public float maxZ;
+
+	/**
+	 * Constructs an empty box.
+	 */
+	public BoundingBox() {
+		reset();
+	}
+
+	/**
+	 * Constructs and initializes a box from its minimum and maximum
+	 * coordinates.
+	 * 
+	 * @param minX
+	 *            the minimum x coordinate
+	 * @param minY
+	 *            the minimum y coordinate
+	 * @param minZ
+	 *            the minimum z coordinate
+	 * @param maxX
+	 *            the maximum x coordinate
+	 * @param maxY
+	 *            the maximum y coordinate
+	 * @param maxZ
+	 *            the maximum z coordinate
+	 */
+	public BoundingBox(float minX, float minY, float minZ, float maxX,
+			float maxY, float maxZ) {
+		set(minX, minY, minZ, maxX, maxY, maxZ);
+	}
+
+	/**
+	 * Returns a string that contains the minimum and maximum of this box.
+	 */
+	@Override
+	public String toString() {
+		return "[(" + minX + ", " + minY + ", " + minZ + "), (" + maxX + ", "
+				+ maxY + ", " + maxZ + ")]";
+	}
+
+	/**
+	 * Empties this box.
+	 */
+	public final void reset() {
+		minX = Float.POSITIVE_INFINITY;
+		minY = Float.POSITIVE_INFINITY;
+		minZ = Float.POSITIVE_INFINITY;
+		maxX = Float.NEGATIVE_INFINITY;
+		maxY = Float.NEGATIVE_INFINITY;
+		maxZ = Float.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Sets the minimum and maximum coordinates of this box.
+	 * 
+	 * @param minX
+	 *            the minimum x coordinate
+	 * @param minY
+	 *            the minimum y coordinate
+	 * @param minZ
+	 *            the minimum z coordinate
+	 * @param maxX
+	 *            the maximum x coordinate
+	 * @param maxY
+	 *            the maximum y coordinate
+	 * @param maxZ
+	 *            the maximum z coordinate
+	 */
+	public final void set(float minX, float minY, float minZ, float maxX,
+			float maxY, float maxZ) {
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.maxZ = maxZ;
+	}
+
+	/**
+	 * Sets this box to another box.
+	 * 
+	 * @param box
+	 *            the box to copy
+	 */
+	public final void set(BoundingBox box) {
+		set(box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+	}
+
+	/**
+	 * Extends this box to contain a point.
+	 * 
+	 * @param x
+	 *            the x coordinate of the point
+	 * @param y
+	 *            the y coordinate of the point
+	 * @param z
+	 *            the z coordinate of the point
+	 */
+	public final void extend(float x, float y, float z) {
+		if (x < minX)
+			minX = x;
+		if (x > maxX)
+			maxX = x;
+		if (y < minY)
+			minY = y;
+		if (y > maxY)
+			maxY = y;
+		if (z < minZ)
+			minZ = z;
+		if (z > maxZ)
+			maxZ = z;
+	}
+
+	/**
+	 * Extends this box to contain a point.
+	 * 
+	 * @param point
+	 *            the point
+	 */
+	public final void extend(Tuple3 point) {
+		extend(point.x, point.y, point.z);
+	}
+
+	/**
+	 * Extends this box to contain another box.
+	 * 
+	 * @param box
+	 *            the other box
+	 */
+	public final void extend(BoundingBox box) {
+		if (box.minX < minX)
+			minX = box.minX;
+		if (box.maxX > maxX)
+			maxX = box.maxX;
+		if (box.minY < minY)
+			minY = box.minY;
+		if (box.maxY > maxY)
+			maxY = box.maxY;
+		if (box.minZ < minZ)
+			minZ = box.minZ;
+		if (box.maxZ > maxZ)
+			maxZ = box.maxZ;
+	}
+
+	/**
+	 * Returns true if this box is empty.
+	 * 
+	 * @return true if this box contains no point
+	 */
+	public final boolean isEmpty() {
+		return minX > maxX || minY > maxY || minZ > maxZ;
+	}
+
+	/**
+	 * Returns the surface area of this box, or 0 if it is empty.
+	 * 
+	 * @return the surface area
+	 */
+	public final float surfaceArea() {
+		if (isEmpty())
+			return 0.0F;
+
+		float dx = maxX - minX;
+		float dy = maxY - minY;
+		float dz = maxZ - minZ;
+		return 2.0F * (dx * dy + dy * dz + dz * dx);
+	}
+
+	/**
+	 * Sets this box to the bounds of a box transformed by an affine matrix.
+	 * The box may be this box.
+	 * 
+	 * @param matrix
+	 *            the affine matrix
+	 * @param box
+	 *            the box to transform
+	 */
+	public final void transform(Matrix4 matrix, BoundingBox box) {
+		if (box.isEmpty()) {
+			reset();
+			return;
+		}
+
+		// Each coordinate of the result is the translation plus, for each
+		// column of the matrix, the smallest or largest product with the box
+		float x0 = box.minX, y0 = box.minY, z0 = box.minZ;
+		float x1 = box.maxX, y1 = box.maxY, z1 = box.maxZ;
+
+		float newMinX = matrix.m03 + min(matrix.m00, x0, x1)
+				+ min(matrix.m01, y0, y1) + min(matrix.m02, z0, z1);
+		float newMinY = matrix.m13 + min(matrix.m10, x0, x1)
+				+ min(matrix.m11, y0, y1) + min(matrix.m12, z0, z1);
+		float newMinZ = matrix.m23 + min(matrix.m20, x0, x1)
+				+ min(matrix.m21, y0, y1) + min(matrix.m22, z0, z1);
+		float newMaxX = matrix.m03 + max(matrix.m00, x0, x1)
+				+ max(matrix.m01, y0, y1) + max(matrix.m02, z0, z1);
+		float newMaxY = matrix.m13 + max(matrix.m10, x0, x1)
+				+ max(matrix.m11, y0, y1) + max(matrix.m12, z0, z1);
+		float newMaxZ = matrix.m23 + max(matrix.m20, x0, x1)
+				+ max(matrix.m21, y0, y1) + max(matrix.m22, z0, z1);
+
+		set(newMinX, newMinY, newMinZ, newMaxX, newMaxY, newMaxZ);
+	}
+
+	/**
+	 * Returns the smallest product of a factor with the bounds of an interval
+	 * 
+	 * @param factor
+	 *            the factor
+	 * @param a
+	 *            the lower bound
+	 * @param b
+	 *            the upper bound
+	 * @return the smallest product
+	 */
+	private static float min(float factor, float a, float b) {
+		return factor >= 0.0F ? factor * a : factor * b;
+	}
+
+	/**
+	 * Returns the largest product of a factor with the bounds of an interval
+	 * 
+	 * @param factor
+	 *            the factor
+	 * @param a
+	 *            the lower bound
+	 * @param b
+	 *            the upper bound
+	 * @return the largest product
+	 */
+	private static float max(float factor, float a, float b) {
+		return factor >= 0.0F ? factor * b : factor * a;
+	}
+}
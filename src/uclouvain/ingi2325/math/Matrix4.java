@@ -4,9 +4,12 @@ import uclouvain.ingi2325.utils.Vector4;
 
 /**
  * Represents a 4 by 4 matrix of floats.
+ * <p>All the operations work in place or write to results given by the caller,
+ * so that they never allocate. Only the static factories create matrices.</p>
  * 
  * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
  * @author Julien Dupuis
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
  */
 public class Matrix4 {
 
@@ -637,4 +640,561 @@ public class Matrix4 {
 		m32 = 0.0F;
 		m33 = 1.0F;
 	}
+
+	/**
+	 * Sets this matrix to a rotation around an axis through the origin.
+	 * 
+	 * @param axis
+	 *            the axis of the rotation, not necessarily normalized
+	 * @param angle
+	 *            the angle of the rotation, in degrees
+	 */
+	public final void setRotation(Tuple3 axis, float angle) {
+		float length = (float) Math.sqrt(axis.x * axis.x + axis.y * axis.y
+				+ axis.z * axis.z);
+		float x = axis.x / length;
+		float y = axis.y / length;
+		float z = axis.z / length;
+		double radians = Math.toRadians(angle);
+		float c = (float) Math.cos(radians);
+		float s = (float) Math.sin(radians);
+		float t = 1.0F - c;
+
+		m00 = t * x * x + c;
+		m01 = t * x * y - s * z;
+		m02 = t * x * z + s * y;
+		m03 = 0.0F;
+		m10 = t * x * y + s * z;
+		m11 = t * y * y + c;
+		m12 = t * y * z - s * x;
+		m13 = 0.0F;
+		m20 = t * x * z - s * y;
+		m21 = t * y * z + s * x;
+		m22 = t * z * z + c;
+		m23 = 0.0F;
+		m30 = 0.0F;
+		m31 = 0.0F;
+		m32 = 0.0F;
+		m33 = 1.0F;
+	}
+
+	/**
+	 * Sets this matrix to a translation.
+	 * 
+	 * @param vector
+	 *            the translation vector
+	 */
+	public final void setTranslation(Tuple3 vector) {
+		resetToIdentity();
+		m03 = vector.x;
+		m13 = vector.y;
+		m23 = vector.z;
+	}
+
+	/**
+	 * Sets this matrix to a scaling along the axes.
+	 * 
+	 * @param scale
+	 *            the scale factors along the x, y and z axes
+	 */
+	public final void setScale(Tuple3 scale) {
+		resetToIdentity();
+		m00 = scale.x;
+		m11 = scale.y;
+		m22 = scale.z;
+	}
+
+	/**
+	 * Sets this matrix to the product of two matrices. Either of them may be
+	 * this matrix.
+	 * 
+	 * @param left
+	 *            the left operand
+	 * @param right
+	 *            the right operand
+	 */
+	public final void mul(Matrix4 left, Matrix4 right) {
+		float r00 = left.m00 * right.m00 + left.m01 * right.m10 + left.m02
+				* right.m20 + left.m03 * right.m30;
+		float r01 = left.m00 * right.m01 + left.m01 * right.m11 + left.m02
+				* right.m21 + left.m03 * right.m31;
+		float r02 = left.m00 * right.m02 + left.m01 * right.m12 + left.m02
+				* right.m22 + left.m03 * right.m32;
+		float r03 = left.m00 * right.m03 + left.m01 * right.m13 + left.m02
+				* right.m23 + left.m03 * right.m33;
+		float r10 = left.m10 * right.m00 + left.m11 * right.m10 + left.m12
+				* right.m20 + left.m13 * right.m30;
+		float r11 = left.m10 * right.m01 + left.m11 * right.m11 + left.m12
+				* right.m21 + left.m13 * right.m31;
+		float r12 = left.m10 * right.m02 + left.m11 * right.m12 + left.m12
+				* right.m22 + left.m13 * right.m32;
+		float r13 = left.m10 * right.m03 + left.m11 * right.m13 + left.m12
+				* right.m23 + left.m13 * right.m33;
+		float r20 = left.m20 * right.m00 + left.m21 * right.m10 + left.m22
+				* right.m20 + left.m23 * right.m30;
+		float r21 = left.m20 * right.m01 + left.m21 * right.m11 + left.m22
+				* right.m21 + left.m23 * right.m31;
+		float r22 = left.m20 * right.m02 + left.m21 * right.m12 + left.m22
+				* right.m22 + left.m23 * right.m32;
+		float r23 = left.m20 * right.m03 + left.m21 * right.m13 + left.m22
+				* right.m23 + left.m23 * right.m33;
+		float r30 = left.m30 * right.m00 + left.m31 * right.m10 + left.m32
+				* right.m20 + left.m33 * right.m30;
+		float r31 = left.m30 * right.m01 + left.m31 * right.m11 + left.m32
+				* right.m21 + left.m33 * right.m31;
+		float r32 = left.m30 * right.m02 + left.m31 * right.m12 + left.m32
+				* right.m22 + left.m33 * right.m32;
+		float r33 = left.m30 * right.m03 + left.m31 * right.m13 + left.m32
+				* right.m23 + left.m33 * right.m33;
+
+		m00 = r00;
+		m01 = r01;
+		m02 = r02;
+		m03 = r03;
+		m10 = r10;
+		m11 = r11;
+		m12 = r12;
+		m13 = r13;
+		m20 = r20;
+		m21 = r21;
+		m22 = r22;
+		m23 = r23;
+		m30 = r30;
+		m31 = r31;
+		m32 = r32;
+		m33 = r33;
+	}
+
+	/**
+	 * Sets this matrix to the transpose of a matrix, which may be this
+	 * matrix.
+	 * 
+	 * @param matrix
+	 *            the matrix to transpose
+	 */
+	public final void transpose(Matrix4 matrix) {
+		float t;
+
+		m00 = matrix.m00;
+		m11 = matrix.m11;
+		m22 = matrix.m22;
+		m33 = matrix.m33;
+
+		t = matrix.m01;
+		m01 = matrix.m10;
+		m10 = t;
+		t = matrix.m02;
+		m02 = matrix.m20;
+		m20 = t;
+		t = matrix.m03;
+		m03 = matrix.m30;
+		m30 = t;
+		t = matrix.m12;
+		m12 = matrix.m21;
+		m21 = t;
+		t = matrix.m13;
+		m13 = matrix.m31;
+		m31 = t;
+		t = matrix.m23;
+		m23 = matrix.m32;
+		m32 = t;
+	}
+
+	/**
+	 * Sets this matrix to the inverse of an affine matrix, which may be this
+	 * matrix. The last row of the matrix must be (0, 0, 0, 1).
+	 * 
+	 * @param matrix
+	 *            the affine matrix to invert
+	 * @return false if the matrix is singular, in which case this matrix is
+	 *         left unchanged
+	 */
+	public final boolean invertAffine(Matrix4 matrix) {
+		float c00 = matrix.m11 * matrix.m22 - matrix.m12 * matrix.m21;
+		float c01 = matrix.m02 * matrix.m21 - matrix.m01 * matrix.m22;
+		float c02 = matrix.m01 * matrix.m12 - matrix.m02 * matrix.m11;
+		float c10 = matrix.m12 * matrix.m20 - matrix.m10 * matrix.m22;
+		float c11 = matrix.m00 * matrix.m22 - matrix.m02 * matrix.m20;
+		float c12 = matrix.m02 * matrix.m10 - matrix.m00 * matrix.m12;
+		float c20 = matrix.m10 * matrix.m21 - matrix.m11 * matrix.m20;
+		float c21 = matrix.m01 * matrix.m20 - matrix.m00 * matrix.m21;
+		float c22 = matrix.m00 * matrix.m11 - matrix.m01 * matrix.m10;
+
+		float determinant = matrix.m00 * c00 + matrix.m01 * c10 + matrix.m02
+				* c20;
+		if (determinant == 0.0F)
+			return false;
+
+		float f = 1.0F / determinant;
+		float tx = matrix.m03;
+		float ty = matrix.m13;
+		float tz = matrix.m23;
+
+		m00 = c00 * f;
+		m01 = c01 * f;
+		m02 = c02 * f;
+		m10 = c10 * f;
+		m11 = c11 * f;
+		m12 = c12 * f;
+		m20 = c20 * f;
+		m21 = c21 * f;
+		m22 = c22 * f;
+		m03 = -(m00 * tx + m01 * ty + m02 * tz);
+		m13 = -(m10 * tx + m11 * ty + m12 * tz);
+		m23 = -(m20 * tx + m21 * ty + m22 * tz);
+		m30 = 0.0F;
+		m31 = 0.0F;
+		m32 = 0.0F;
+		m33 = 1.0F;
+		return true;
+	}
+
+	/**
+	 * Sets this matrix to the inverse of a matrix, which may be this matrix.
+	 * Use {@link #invertAffine(Matrix4)} for affine matrices, which is
+	 * cheaper.
+	 * 
+	 * @param matrix
+	 *            the matrix to invert
+	 * @return false if the matrix is singular, in which case this matrix is
+	 *         left unchanged
+	 */
+	public final boolean invert(Matrix4 matrix) {
+		// 2 by 2 determinants of the first two rows and of the last two rows
+		float s0 = matrix.m00 * matrix.m11 - matrix.m10 * matrix.m01;
+		float s1 = matrix.m00 * matrix.m12 - matrix.m10 * matrix.m02;
+		float s2 = matrix.m00 * matrix.m13 - matrix.m10 * matrix.m03;
+		float s3 = matrix.m01 * matrix.m12 - matrix.m11 * matrix.m02;
+		float s4 = matrix.m01 * matrix.m13 - matrix.m11 * matrix.m03;
+		float s5 = matrix.m02 * matrix.m13 - matrix.m12 * matrix.m03;
+		float c0 = matrix.m20 * matrix.m31 - matrix.m30 * matrix.m21;
+		float c1 = matrix.m20 * matrix.m32 - matrix.m30 * matrix.m22;
+		float c2 = matrix.m20 * matrix.m33 - matrix.m30 * matrix.m23;
+		float c3 = matrix.m21 * matrix.m32 - matrix.m31 * matrix.m22;
+		float c4 = matrix.m21 * matrix.m33 - matrix.m31 * matrix.m23;
+		float c5 = matrix.m22 * matrix.m33 - matrix.m32 * matrix.m23;
+
+		float determinant = s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1
+				+ s5 * c0;
+		if (determinant == 0.0F)
+			return false;
+
+		float f = 1.0F / determinant;
+		float r00 = (matrix.m11 * c5 - matrix.m12 * c4 + matrix.m13 * c3) * f;
+		float r01 = (-matrix.m01 * c5 + matrix.m02 * c4 - matrix.m03 * c3) * f;
+		float r02 = (matrix.m31 * s5 - matrix.m32 * s4 + matrix.m33 * s3) * f;
+		float r03 = (-matrix.m21 * s5 + matrix.m22 * s4 - matrix.m23 * s3) * f;
+		float r10 = (-matrix.m10 * c5 + matrix.m12 * c2 - matrix.m13 * c1) * f;
+		float r11 = (matrix.m00 * c5 - matrix.m02 * c2 + matrix.m03 * c1) * f;
+		float r12 = (-matrix.m30 * s5 + matrix.m32 * s2 - matrix.m33 * s1) * f;
+		float r13 = (matrix.m20 * s5 - matrix.m22 * s2 + matrix.m23 * s1) * f;
+		float r20 = (matrix.m10 * c4 - matrix.m11 * c2 + matrix.m13 * c0) * f;
+		float r21 = (-matrix.m00 * c4 + matrix.m01 * c2 - matrix.m03 * c0) * f;
+		float r22 = (matrix.m30 * s4 - matrix.m31 * s2 + matrix.m33 * s0) * f;
+		float r23 = (-matrix.m20 * s4 + matrix.m21 * s2 - matrix.m23 * s0) * f;
+		float r30 = (-matrix.m10 * c3 + matrix.m11 * c1 - matrix.m12 * c0) * f;
+		float r31 = (matrix.m00 * c3 - matrix.m01 * c1 + matrix.m02 * c0) * f;
+		float r32 = (-matrix.m30 * s3 + matrix.m31 * s1 - matrix.m32 * s0) * f;
+		float r33 = (matrix.m20 * s3 - matrix.m21 * s1 + matrix.m22 * s0) * f;
+
+		m00 = r00;
+		m01 = r01;
+		m02 = r02;
+		m03 = r03;
+		m10 = r10;
+		m11 = r11;
+		m12 = r12;
+		m13 = r13;
+		m20 = r20;
+		m21 = r21;
+		m22 = r22;
+		m23 = r23;
+		m30 = r30;
+		m31 = r31;
+		m32 = r32;
+		m33 = r33;
+		return true;
+	}
+
+	/**
+	 * Inverts this matrix in place.
+	 * 
+	 * @return false if this matrix is singular, in which case it is left
+	 *         unchanged
+	 */
+	public final boolean invert() {
+		return invert(this);
+	}
+
+	/**
+	 * Returns the determinant of this matrix.
+	 * 
+	 * @return the determinant
+	 */
+	public final float determinant() {
+		float s0 = m00 * m11 - m10 * m01;
+		float s1 = m00 * m12 - m10 * m02;
+		float s2 = m00 * m13 - m10 * m03;
+		float s3 = m01 * m12 - m11 * m02;
+		float s4 = m01 * m13 - m11 * m03;
+		float s5 = m02 * m13 - m12 * m03;
+		float c0 = m20 * m31 - m30 * m21;
+		float c1 = m20 * m32 - m30 * m22;
+		float c2 = m20 * m33 - m30 * m23;
+		float c3 = m21 * m32 - m31 * m22;
+		float c4 = m21 * m33 - m31 * m23;
+		float c5 = m22 * m33 - m32 * m23;
+
+		return s0 * c5 - s1 * c4 + s2 * c3 + s3 * c2 - s4 * c1 + s5 * c0;
+	}
+
+	/**
+	 * Multiplies this matrix by a matrix on the right, in place.
+	 * 
+	 * @param right
+	 *            the right operand
+	 */
+	public final void mul(Matrix4 right) {
+		mul(this, right);
+	}
+
+	/**
+	 * Transposes this matrix in place.
+	 */
+	public final void transpose() {
+		transpose(this);
+	}
+
+	/**
+	 * Transforms a point by this matrix. The result is divided by its
+	 * homogeneous coordinate unless this matrix is affine.
+	 * 
+	 * @param point
+	 *            the point to transform
+	 * @param result
+	 *            the transformed point, which may be the same tuple as
+	 *            <code>point</code>
+	 */
+	public final void transformPoint(Tuple3 point, Tuple3 result) {
+		float x = m00 * point.x + m01 * point.y + m02 * point.z + m03;
+		float y = m10 * point.x + m11 * point.y + m12 * point.z + m13;
+		float z = m20 * point.x + m21 * point.y + m22 * point.z + m23;
+		float w = m30 * point.x + m31 * point.y + m32 * point.z + m33;
+
+		if (w == 1.0F) {
+			result.x = x;
+			result.y = y;
+			result.z = z;
+		} else {
+			result.x = x / w;
+			result.y = y / w;
+			result.z = z / w;
+		}
+	}
+
+	/**
+	 * Transforms a vector by this matrix, ignoring the translation. Normals
+	 * must be transformed by the transpose of the inverse instead.
+	 * 
+	 * @param vector
+	 *            the vector to transform
+	 * @param result
+	 *            the transformed vector, which may be the same tuple as
+	 *            <code>vector</code>
+	 */
+	public final void transformVector(Tuple3 vector, Tuple3 result) {
+		float x = m00 * vector.x + m01 * vector.y + m02 * vector.z;
+		float y = m10 * vector.x + m11 * vector.y + m12 * vector.z;
+		float z = m20 * vector.x + m21 * vector.y + m22 * vector.z;
+
+		result.x = x;
+		result.y = y;
+		result.z = z;
+	}
+
+	/**
+	 * Transforms a homogeneous tuple by this matrix.
+	 * 
+	 * @param tuple
+	 *            the tuple to transform
+	 * @param result
+	 *            the transformed tuple, which may be the same tuple as
+	 *            <code>tuple</code>
+	 */
+	public final void transform(Tuple4 tuple, Tuple4 result) {
+		float x = m00 * tuple.x + m01 * tuple.y + m02 * tuple.z + m03
+				* tuple.w;
+		float y = m10 * tuple.x + m11 * tuple.y + m12 * tuple.z + m13
+				* tuple.w;
+		float z = m20 * tuple.x + m21 * tuple.y + m22 * tuple.z + m23
+				* tuple.w;
+		float w = m30 * tuple.x + m31 * tuple.y + m32 * tuple.z + m33
+				* tuple.w;
+
+		result.x = x;
+		result.y = y;
+		result.z = z;
+		result.w = w;
+	}
+
+	/**
+	 * Sets this matrix to the view transform of a camera, from the world
+	 * space to the camera space where the camera looks down the negative z
+	 * axis. Its affine inverse brings camera rays to the world space.
+	 * 
+	 * @param eye
+	 *            the position of the camera
+	 * @param target
+	 *            the point the camera looks at
+	 * @param up
+	 *            the up direction, not parallel to the view direction
+	 */
+	public final void setLookAt(Tuple3 eye, Tuple3 target, Tuple3 up) {
+		// Forward axis, pointing backwards from the target
+		float zx = eye.x - target.x;
+		float zy = eye.y - target.y;
+		float zz = eye.z - target.z;
+		float length = (float) Math.sqrt(zx * zx + zy * zy + zz * zz);
+		zx /= length;
+		zy /= length;
+		zz /= length;
+
+		// Right axis, up x forward
+		float xx = up.y * zz - up.z * zy;
+		float xy = up.z * zx - up.x * zz;
+		float xz = up.x * zy - up.y * zx;
+		length = (float) Math.sqrt(xx * xx + xy * xy + xz * xz);
+		xx /= length;
+		xy /= length;
+		xz /= length;
+
+		// True up axis, forward x right
+		float yx = zy * xz - zz * xy;
+		float yy = zz * xx - zx * xz;
+		float yz = zx * xy - zy * xx;
+
+		m00 = xx;
+		m01 = xy;
+		m02 = xz;
+		m03 = -(xx * eye.x + xy * eye.y + xz * eye.z);
+		m10 = yx;
+		m11 = yy;
+		m12 = yz;
+		m13 = -(yx * eye.x + yy * eye.y + yz * eye.z);
+		m20 = zx;
+		m21 = zy;
+		m22 = zz;
+		m23 = -(zx * eye.x + zy * eye.y + zz * eye.z);
+		m30 = 0.0F;
+		m31 = 0.0F;
+		m32 = 0.0F;
+		m33 = 1.0F;
+	}
+
+	/**
+	 * Returns a new identity matrix.
+	 * 
+	 * @return the identity matrix
+	 */
+	public static Matrix4 identity() {
+		Matrix4 matrix = new Matrix4();
+		matrix.resetToIdentity();
+		return matrix;
+	}
+
+	/**
+	 * Returns a new rotation matrix.
+	 * 
+	 * @param axis
+	 *            the axis of the rotation, not necessarily normalized
+	 * @param angle
+	 *            the angle of the rotation, in degrees
+	 * @return the rotation matrix
+	 * @see #setRotation(Tuple3, float)
+	 */
+	public static Matrix4 rotation(Tuple3 axis, float angle) {
+		Matrix4 matrix = new Matrix4();
+		matrix.setRotation(axis, angle);
+		return matrix;
+	}
+
+	/**
+	 * Returns a new translation matrix.
+	 * 
+	 * @param vector
+	 *            the translation vector
+	 * @return the translation matrix
+	 * @see #setTranslation(Tuple3)
+	 */
+	public static Matrix4 translation(Tuple3 vector) {
+		Matrix4 matrix = new Matrix4();
+		matrix.setTranslation(vector);
+		return matrix;
+	}
+
+	/**
+	 * Returns a new scaling matrix.
+	 * 
+	 * @param scale
+	 *            the scale factors along the x, y and z axes
+	 * @return the scaling matrix
+	 * @see #setScale(Tuple3)
+	 */
+	public static Matrix4 scaling(Tuple3 scale) {
+		Matrix4 matrix = new Matrix4();
+		matrix.setScale(scale);
+		return matrix;
+	}
+
+	/**
+	 * Returns a new view matrix.
+	 * 
+	 * @param eye
+	 *            the position of the camera
+	 * @param target
+	 *            the point the camera looks at
+	 * @param up
+	 *            the up direction, not parallel to the view direction
+	 * @return the view matrix
+	 * @see #setLookAt(Tuple3, Tuple3, Tuple3)
+	 */
+	public static Matrix4 lookAt(Tuple3 eye, Tuple3 target, Tuple3 up) {
+		Matrix4 matrix = new Matrix4();
+		matrix.setLookAt(eye, target, up);
+		return matrix;
+	}
+
+	/**
+	 * Returns true if all the elements of this matrix are equal to the ones of
+	 * the given object, which must be a matrix.
+	 */
+	@Override
+	public boolean equals(Object object) {
+		if (!(object instanceof Matrix4))
+			return false;
+
+		Matrix4 matrix = (Matrix4) object;
+		return m00 == matrix.m00 && m01 == matrix.m01 && m02 == matrix.m02
+				&& m03 == matrix.m03 && m10 == matrix.m10 && m11 == matrix.m11
+				&& m12 == matrix.m12 && m13 == matrix.m13 && m20 == matrix.m20
+				&& m21 == matrix.m21 && m22 == matrix.m22 && m23 == matrix.m23
+				&& m30 == matrix.m30 && m31 == matrix.m31 && m32 == matrix.m32
+				&& m33 == matrix.m33;
+	}
+
+	/**
+	 * Returns a hash code computed from the elements of this matrix.
+	 */
+	@Override
+	public int hashCode() {
+		float[] elements = { m00, m01, m02, m03, m10, m11, m12, m13, m20,
+				m21, m22, m23, m30, m31, m32, m33 };
+
+		int hash = 1;
+		for (float element : elements)
+			// 0.0 and -0.0 are equal, so they must hash the same
+			hash = 31 * hash
+					+ (element == 0.0F ? 0 : Float.floatToIntBits(element));
+		return hash;
+	}
 }
@@ -0,0 +1,318 @@
+package uclouvain.ingi2325.math;
+
+import java.util.*;
+
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Micro-benchmark of the operations of {@link Matrix4}
+ * <p>This application compares multiplication, inversion and point transforms
+ * of {@link Matrix4} with naive versions that go through
+ * {@link Matrix4#getElement(int, int)} and allocate their results, the way
+ * they were written before {@link Matrix4} had them. It reports the time and,
+ * when the JVM can measure it, the number of bytes allocated per operation,
+ * and checks that both versions agree.</p>
+ * <p>Usage: <code>Matrix4Benchmark [operations [runs]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Matrix4Benchmark {
+
+	/** Default number of operations per run */
+	private static final int DEFAULT_OPERATIONS = 10000000;
+
+	/** Default number of measured runs, after as many warm-up runs */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Number of distinct random matrices */
+	private static final int MATRICES = 1024;
+
+	/** Random affine matrices */
+	private static final Matrix4[] matrices = new Matrix4[MATRICES];
+
+	/** Random points */
+	private static final Point3D[] points = new Point3D[MATRICES];
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		int operations = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_OPERATIONS;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+		Random random = new Random(42);
+		for (int i = 0; i < MATRICES; i++) {
+			matrices[i] = randomAffine(random);
+			points[i] = new Point3D();
+			points[i].set(random.nextFloat(), random.nextFloat(), random
+					.nextFloat());
+		}
+
+		checkAgreement();
+
+		BenchmarkCase[] cases = { new BenchmarkCase("multiply, naive") {
+			@Override
+			float run(int operations) {
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++) {
+					Matrix4 product = naiveMul(matrices[i & (MATRICES - 1)],
+							matrices[(i + 1) & (MATRICES - 1)]);
+					sum += product.m03;
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("multiply, in place") {
+			@Override
+			float run(int operations) {
+				Matrix4 product = new Matrix4();
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++) {
+					product.mul(matrices[i & (MATRICES - 1)],
+							matrices[(i + 1) & (MATRICES - 1)]);
+					sum += product.m03;
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("invert, naive") {
+			@Override
+			float run(int operations) {
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++)
+					sum += naiveInvert(matrices[i & (MATRICES - 1)]).m03;
+				return sum;
+			}
+		}, new BenchmarkCase("invert, general") {
+			@Override
+			float run(int operations) {
+				Matrix4 inverse = new Matrix4();
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++) {
+					inverse.invert(matrices[i & (MATRICES - 1)]);
+					sum += inverse.m03;
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("invert, affine") {
+			@Override
+			float run(int operations) {
+				Matrix4 inverse = new Matrix4();
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++) {
+					inverse.invertAffine(matrices[i & (MATRICES - 1)]);
+					sum += inverse.m03;
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("transform point, naive") {
+			@Override
+			float run(int operations) {
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++)
+					sum += naiveTransformPoint(matrices[i & (MATRICES - 1)],
+							points[(i >> 10) & (MATRICES - 1)]).x;
+				return sum;
+			}
+		}, new BenchmarkCase("transform point, output") {
+			@Override
+			float run(int operations) {
+				Point3D result = new Point3D();
+				float sum = 0.0F;
+				for (int i = 0; i < operations; i++) {
+					matrices[i & (MATRICES - 1)].transformPoint(
+							points[(i >> 10) & (MATRICES - 1)], result);
+					sum += result.x;
+				}
+				return sum;
+			}
+		} };
+
+		BenchmarkCase.runAll(cases, operations, runs);
+	}
+
+	/**
+	 * Build a random affine matrix, made of a rotation, a scaling and a
+	 * translation
+	 * 
+	 * @param random
+	 *            Random generator
+	 * @return The matrix
+	 */
+	private static Matrix4 randomAffine(Random random) {
+		Vector3D vector = new Vector3D();
+
+		vector.set(random.nextFloat() - 0.5F, random.nextFloat() - 0.5F,
+				random.nextFloat() + 0.1F);
+		Matrix4 matrix = Matrix4.rotation(vector, 360.0F * random.nextFloat());
+
+		vector.set(0.5F + random.nextFloat(), 0.5F + random.nextFloat(),
+				0.5F + random.nextFloat());
+		matrix.mul(Matrix4.scaling(vector));
+
+		vector.set(random.nextFloat(), random.nextFloat(), random.nextFloat());
+		matrix.mul(Matrix4.translation(vector), matrix);
+
+		return matrix;
+	}
+
+	/**
+	 * Check that the naive and in-place versions agree
+	 * 
+	 * @throws AssertionError
+	 *             They disagree
+	 */
+	private static void checkAgreement() {
+		Matrix4 result = new Matrix4();
+		Point3D point = new Point3D();
+
+		for (int i = 0; i < MATRICES; i++) {
+			Matrix4 matrix = matrices[i];
+			Matrix4 next = matrices[(i + 1) % MATRICES];
+
+			result.mul(matrix, next);
+			checkClose("mul", naiveMul(matrix, next), result);
+
+			Matrix4 naiveInverse = naiveInvert(matrix);
+			result.invert(matrix);
+			checkClose("invert", naiveInverse, result);
+			result.invertAffine(matrix);
+			checkClose("invertAffine", naiveInverse, result);
+
+			float determinant = matrix.determinant();
+			float expected = 1.0F / naiveInverse.determinant();
+			if (Math.abs(determinant - expected) > 1e-3F * Math.abs(expected))
+				throw new AssertionError("determinant: " + determinant
+						+ " != " + expected);
+
+			matrix.transformPoint(points[i], point);
+			Point3D naivePoint = naiveTransformPoint(matrix, points[i]);
+			if (Math.abs(point.x - naivePoint.x) > 1e-4F
+					|| Math.abs(point.y - naivePoint.y) > 1e-4F
+					|| Math.abs(point.z - naivePoint.z) > 1e-4F)
+				throw new AssertionError("transformPoint: " + point + " != "
+						+ naivePoint);
+		}
+	}
+
+	/**
+	 * Check that two matrices are close to each other
+	 * 
+	 * @param operation
+	 *            Name of the operation, for the error message
+	 * @param expected
+	 *            Expected matrix
+	 * @param actual
+	 *            Actual matrix
+	 * @throws AssertionError
+	 *             The matrices are not close
+	 */
+	private static void checkClose(String operation, Matrix4 expected,
+			Matrix4 actual) {
+		for (int row = 0; row < 4; row++)
+			for (int column = 0; column < 4; column++)
+				if (Math.abs(expected.getElement(row, column)
+						- actual.getElement(row, column)) > 1e-4F)
+					throw new AssertionError(operation + ": expected\n"
+							+ expected + "but got\n" + actual);
+	}
+
+	/**
+	 * Multiply two matrices, naively
+	 * 
+	 * @param left
+	 *            Left operand
+	 * @param right
+	 *            Right operand
+	 * @return The product
+	 */
+	static Matrix4 naiveMul(Matrix4 left, Matrix4 right) {
+		Matrix4 product = new Matrix4();
+
+		for (int row = 0; row < 4; row++) {
+			for (int column = 0; column < 4; column++) {
+				float sum = 0.0F;
+				for (int k = 0; k < 4; k++)
+					sum += left.getElement(row, k) * right.getElement(k, column);
+				product.setElement(row, column, sum);
+			}
+		}
+
+		return product;
+	}
+
+	/**
+	 * Invert a matrix, naively, by Gauss-Jordan elimination with partial
+	 * pivoting
+	 * 
+	 * @param matrix
+	 *            Matrix to invert
+	 * @return The inverse
+	 * @throws ArithmeticException
+	 *             The matrix is singular
+	 */
+	static Matrix4 naiveInvert(Matrix4 matrix) {
+		double[][] a = new double[4][8];
+		for (int row = 0; row < 4; row++) {
+			for (int column = 0; column < 4; column++)
+				a[row][column] = matrix.getElement(row, column);
+			a[row][4 + row] = 1.0;
+		}
+
+		for (int column = 0; column < 4; column++) {
+			int pivot = column;
+			for (int row = column + 1; row < 4; row++)
+				if (Math.abs(a[row][column]) > Math.abs(a[pivot][column]))
+					pivot = row;
+			if (a[pivot][column] == 0.0)
+				throw new ArithmeticException("Singular matrix");
+
+			double[] swap = a[pivot];
+			a[pivot] = a[column];
+			a[column] = swap;
+
+			double f = 1.0 / a[column][column];
+			for (int k = 0; k < 8; k++)
+				a[column][k] *= f;
+
+			for (int row = 0; row < 4; row++) {
+				if (row != column) {
+					double g = a[row][column];
+					for (int k = 0; k < 8; k++)
+						a[row][k] -= g * a[column][k];
+				}
+			}
+		}
+
+		Matrix4 inverse = new Matrix4();
+		for (int row = 0; row < 4; row++)
+			for (int column = 0; column < 4; column++)
+				inverse.setElement(row, column, (float) a[row][4 + column]);
+		return inverse;
+	}
+
+	/**
+	 * Transform a point, naively
+	 * 
+	 * @param matrix
+	 *            Matrix
+	 * @param point
+	 *            Point to transform
+	 * @return The transformed point
+	 */
+	static Point3D naiveTransformPoint(Matrix4 matrix, Point3D point) {
+		float[] in = { point.x, point.y, point.z, 1.0F };
+		float[] out = new float[4];
+
+		for (int row = 0; row < 4; row++)
+			for (int k = 0; k < 4; k++)
+				out[row] += matrix.getElement(row, k) * in[k];
+
+		Point3D result = new Point3D();
+		result.set(out[0] / out[3], out[1] / out[3], out[2] / out[3]);
+		return result;
+	}
+}
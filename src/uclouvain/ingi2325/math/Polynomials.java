@@ -0,0 +1,201 @@
+package uclouvain.ingi2325.math;
+
+/**
+ * Real roots of polynomials of degree 2 to 4, in closed form
+ * <p>The solvers follow J. Schwarze, <i>Cubic and quartic roots</i>,
+ * Graphics Gems I: the polynomial is made monic and depressed, cubics are
+ * solved by Cardano's or the trigonometric method, and quartics by Ferrari's
+ * method through a resolvent cubic. All computations are done in double
+ * precision. Roots are written into an array given by the caller, in no
+ * particular order, and are not polished.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class Polynomials {
+
+	/** Tolerance under which a value is taken for 0 */
+	private static final double EPSILON = 1e-9;
+
+	/**
+	 * Utility class
+	 */
+	private Polynomials() {
+	}
+
+	/**
+	 * Find the real roots of c2 x^2 + c1 x + c0
+	 * 
+	 * @param c2
+	 *            Coefficient of x^2, not 0
+	 * @param c1
+	 *            Coefficient of x
+	 * @param c0
+	 *            Constant coefficient
+	 * @param roots
+	 *            Set to the roots, from <code>offset</code>
+	 * @param offset
+	 *            Index of the first root in <code>roots</code>
+	 * @return the number of roots, from 0 to 2
+	 */
+	public static int solveQuadratic(double c2, double c1, double c0,
+			double[] roots, int offset) {
+		double p = c1 / (2 * c2);
+		double q = c0 / c2;
+		double discriminant = p * p - q;
+
+		if (isZero(discriminant)) {
+			roots[offset] = -p;
+			return 1;
+		}
+		if (discriminant < 0)
+			return 0;
+
+		// Avoid the cancellation of -p + sqrt(discriminant)
+		double sqrt = Math.sqrt(discriminant);
+		double root = p > 0 ? -p - sqrt : -p + sqrt;
+		roots[offset] = root;
+		roots[offset + 1] = root != 0 ? q / root : -root;
+		return 2;
+	}
+
+	/**
+	 * Find the real roots of c3 x^3 + c2 x^2 + c1 x + c0
+	 * 
+	 * @param c3
+	 *            Coefficient of x^3, not 0
+	 * @param c2
+	 *            Coefficient of x^2
+	 * @param c1
+	 *            Coefficient of x
+	 * @param c0
+	 *            Constant coefficient
+	 * @param roots
+	 *            Set to the roots, from <code>offset</code>
+	 * @param offset
+	 *            Index of the first root in <code>roots</code>
+	 * @return the number of roots, from 1 to 3
+	 */
+	public static int solveCubic(double c3, double c2, double c1, double c0,
+			double[] roots, int offset) {
+		double a = c2 / c3;
+		double b = c1 / c3;
+		double c = c0 / c3;
+
+		// Substitute x = y - a / 3 to eliminate the quadratic term:
+		// y^3 + 3 p y + 2 q = 0
+		double squareA = a * a;
+		double p = (-squareA / 3 + b) / 3;
+		double q = (2.0 / 27 * a * squareA - a * b / 3 + c) / 2;
+		double cubeP = p * p * p;
+		double discriminant = q * q + cubeP;
+
+		int count;
+		if (isZero(discriminant)) {
+			if (isZero(q)) {
+				roots[offset] = 0;
+				count = 1;
+			} else {
+				double u = Math.cbrt(-q);
+				roots[offset] = 2 * u;
+				roots[offset + 1] = -u;
+				count = 2;
+			}
+		} else if (discriminant < 0) {
+			// Three real roots
+			double phi = Math.acos(-q / Math.sqrt(-cubeP)) / 3;
+			double t = 2 * Math.sqrt(-p);
+			roots[offset] = t * Math.cos(phi);
+			roots[offset + 1] = -t * Math.cos(phi + Math.PI / 3);
+			roots[offset + 2] = -t * Math.cos(phi - Math.PI / 3);
+			count = 3;
+		} else {
+			double sqrt = Math.sqrt(discriminant);
+			roots[offset] = Math.cbrt(sqrt - q) - Math.cbrt(sqrt + q);
+			count = 1;
+		}
+
+		double shift = a / 3;
+		for (int i = offset; i < offset + count; i++)
+			roots[i] -= shift;
+		return count;
+	}
+
+	/**
+	 * Find the real roots of c4 x^4 + c3 x^3 + c2 x^2 + c1 x + c0
+	 * 
+	 * @param c4
+	 *            Coefficient of x^4, not 0
+	 * @param c3
+	 *            Coefficient of x^3
+	 * @param c2
+	 *            Coefficient of x^2
+	 * @param c1
+	 *            Coefficient of x
+	 * @param c0
+	 *            Constant coefficient
+	 * @param roots
+	 *            Set to the roots, from index 0; must hold 4 doubles
+	 * @return the number of roots, from 0 to 4
+	 */
+	public static int solveQuartic(double c4, double c3, double c2,
+			double c1, double c0, double[] roots) {
+		double a = c3 / c4;
+		double b = c2 / c4;
+		double c = c1 / c4;
+		double d = c0 / c4;
+
+		// Substitute x = y - a / 4 to eliminate the cubic term:
+		// y^4 + p y^2 + q y + r = 0
+		double squareA = a * a;
+		double p = -3.0 / 8 * squareA + b;
+		double q = squareA * a / 8 - a * b / 2 + c;
+		double r = -3.0 / 256 * squareA * squareA + squareA * b / 16 - a * c
+				/ 4 + d;
+
+		int count;
+		if (isZero(r)) {
+			// y (y^3 + p y + q) = 0
+			count = solveCubic(1, 0, p, q, roots, 0);
+			roots[count++] = 0;
+		} else {
+			// Take one root z of the resolvent cubic, and split the quartic
+			// into two quadratics
+			solveCubic(1, -p / 2, -r, r * p / 2 - q * q / 8, roots, 0);
+			double z = roots[0];
+
+			double u = z * z - r;
+			double v = 2 * z - p;
+			if (isZero(u))
+				u = 0;
+			else if (u > 0)
+				u = Math.sqrt(u);
+			else
+				return 0;
+			if (isZero(v))
+				v = 0;
+			else if (v > 0)
+				v = Math.sqrt(v);
+			else
+				return 0;
+
+			count = solveQuadratic(1, q < 0 ? -v : v, z - u, roots, 0);
+			count += solveQuadratic(1, q < 0 ? v : -v, z + u, roots, count);
+		}
+
+		double shift = a / 4;
+		for (int i = 0; i < count; i++)
+			roots[i] -= shift;
+		return count;
+	}
+
+	/**
+	 * Returns whether a value is taken for 0
+	 * 
+	 * @param value
+	 *            The value
+	 * @return True if the value is within the tolerance of 0
+	 */
+	private static boolean isZero(double value) {
+		return value > -EPSILON && value < EPSILON;
+	}
+}
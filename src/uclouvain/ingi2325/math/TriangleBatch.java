@@ -0,0 +1,83 @@
+package uclouvain.ingi2325.math;
+
+/**
+ * Triangles packed for {@link BatchMath#intersect(Tuple3, Tuple3,
+ * TriangleBatch, float[])}
+ * <p>Each triangle is stored as its first vertex and its two edges from the
+ * first vertex, as a structure of arrays.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class TriangleBatch {
+
+	/** Number of triangles */
+	public final int count;
+
+	/** x coordinates of the first vertices */
+	public final float[] v0x;
+
+	/** y coordinates of the first vertices */
+	public final float[] v0y;
+
+	/** z coordinates of the first vertices */
+	public final float[] v0z;
+
+	/** x coordinates of the edges from the first to the second vertices */
+	public final float[] e1x;
+
+	/** y coordinates of the edges from the first to the second vertices */
+	public final float[] e1y;
+
+	/** z coordinates of the edges from the first to the second vertices */
+	public final float[] e1z;
+
+	/** x coordinates of the edges from the first to the third vertices */
+	public final float[] e2x;
+
+	/** y coordinates of the edges from the first to the third vertices */
+	public final float[] e2y;
+
+	/** z coordinates of the edges from the first to the third vertices */
+	public final float[] e2z;
+
+	/**
+	 * Pack indexed triangles
+	 * 
+	 * @param xs
+	 *            x coordinates of the vertices
+	 * @param ys
+	 *            y coordinates of the vertices
+	 * @param zs
+	 *            z coordinates of the vertices
+	 * @param indices
+	 *            Indices of the vertices, three per triangle
+	 */
+	public TriangleBatch(float[] xs, float[] ys, float[] zs, int[] indices) {
+		count = indices.length / 3;
+		v0x = new float[count];
+		v0y = new float[count];
+		v0z = new float[count];
+		e1x = new float[count];
+		e1y = new float[count];
+		e1z = new float[count];
+		e2x = new float[count];
+		e2y = new float[count];
+		e2z = new float[count];
+
+		for (int i = 0; i < count; i++) {
+			int a = indices[3 * i];
+			int b = indices[3 * i + 1];
+			int c = indices[3 * i + 2];
+
+			v0x[i] = xs[a];
+			v0y[i] = ys[a];
+			v0z[i] = zs[a];
+			e1x[i] = xs[b] - xs[a];
+			e1y[i] = ys[b] - ys[a];
+			e1z[i] = zs[b] - zs[a];
+			e2x[i] = xs[c] - xs[a];
+			e2y[i] = ys[c] - ys[a];
+			e2z[i] = zs[c] - zs[a];
+		}
+	}
+}
@@ -6,6 +6,10 @@ import uclouvain.ingi2325.exception.*;
 
 /**
  * Represents a tuple of three float.
+ * <p>Operations work in place on this tuple, taking their operands as
+ * parameters, and never allocate. They are final and small, so that the JIT
+ * inlines them and can scalar-replace temporary tuples that do not escape a
+ * loop.</p>
  * 
  * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
  * @author Julien Dupuis
@@ -154,4 +158,152 @@ public abstract class Tuple3 {
 		t.z = z;
 	}
 
+	/**
+	 * Adds a tuple to this tuple.
+	 * 
+	 * @param tuple
+	 *            the tuple to add
+	 */
+	public final void add(Tuple3 tuple) {
+		x += tuple.x;
+		y += tuple.y;
+		z += tuple.z;
+	}
+
+	/**
+	 * Sets the value of this tuple to the sum of two tuples.
+	 * 
+	 * @param t1
+	 *            the first tuple
+	 * @param t2
+	 *            the second tuple
+	 */
+	public final void add(Tuple3 t1, Tuple3 t2) {
+		x = t1.x + t2.x;
+		y = t1.y + t2.y;
+		z = t1.z + t2.z;
+	}
+
+	/**
+	 * Subtracts a tuple from this tuple.
+	 * 
+	 * @param tuple
+	 *            the tuple to subtract
+	 */
+	public final void sub(Tuple3 tuple) {
+		x -= tuple.x;
+		y -= tuple.y;
+		z -= tuple.z;
+	}
+
+	/**
+	 * Sets the value of this tuple to the difference of two tuples, t1 - t2.
+	 * 
+	 * @param t1
+	 *            the first tuple
+	 * @param t2
+	 *            the tuple to subtract
+	 */
+	public final void sub(Tuple3 t1, Tuple3 t2) {
+		x = t1.x - t2.x;
+		y = t1.y - t2.y;
+		z = t1.z - t2.z;
+	}
+
+	/**
+	 * Multiplies this tuple by a scalar.
+	 * 
+	 * @param s
+	 *            the scalar
+	 */
+	public final void scale(float s) {
+		x *= s;
+		y *= s;
+		z *= s;
+	}
+
+	/**
+	 * Sets the value of this tuple to a tuple multiplied by a scalar.
+	 * 
+	 * @param s
+	 *            the scalar
+	 * @param tuple
+	 *            the tuple to scale
+	 */
+	public final void scale(float s, Tuple3 tuple) {
+		x = s * tuple.x;
+		y = s * tuple.y;
+		z = s * tuple.z;
+	}
+
+	/**
+	 * Adds a tuple multiplied by a scalar to this tuple: this += s * tuple.
+	 * Unlike {@link #scaleAdd(float, Tuple3, Tuple3)}, this tuple is not
+	 * scaled.
+	 * 
+	 * @param s
+	 *            the scalar
+	 * @param tuple
+	 *            the tuple to scale and add
+	 */
+	public final void addScaled(float s, Tuple3 tuple) {
+		x += s * tuple.x;
+		y += s * tuple.y;
+		z += s * tuple.z;
+	}
+
+	/**
+	 * Sets the value of this tuple to s * t1 + t2, e.g. the point at
+	 * distance s along a ray.
+	 * 
+	 * @param s
+	 *            the scalar
+	 * @param t1
+	 *            the tuple to scale
+	 * @param t2
+	 *            the tuple to add
+	 */
+	public final void scaleAdd(float s, Tuple3 t1, Tuple3 t2) {
+		x = s * t1.x + t2.x;
+		y = s * t1.y + t2.y;
+		z = s * t1.z + t2.z;
+	}
+
+	/**
+	 * Negates this tuple.
+	 */
+	public final void negate() {
+		x = -x;
+		y = -y;
+		z = -z;
+	}
+
+	/**
+	 * Sets the value of this tuple to the negation of a tuple.
+	 * 
+	 * @param tuple
+	 *            the tuple to negate
+	 */
+	public final void negate(Tuple3 tuple) {
+		x = -tuple.x;
+		y = -tuple.y;
+		z = -tuple.z;
+	}
+
+	/**
+	 * Sets the value of this tuple to the linear interpolation of two
+	 * tuples, (1 - alpha) * t1 + alpha * t2.
+	 * 
+	 * @param t1
+	 *            the first tuple
+	 * @param t2
+	 *            the second tuple
+	 * @param alpha
+	 *            the interpolation parameter
+	 */
+	public final void interpolate(Tuple3 t1, Tuple3 t2, float alpha) {
+		x = t1.x + alpha * (t2.x - t1.x);
+		y = t1.y + alpha * (t2.y - t1.y);
+		z = t1.z + alpha * (t2.z - t1.z);
+	}
 }
@@ -0,0 +1,161 @@
+package uclouvain.ingi2325.math;
+
+import java.util.*;
+
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Micro-benchmark of the vector operations of {@link Tuple3}
+ * <p>This application intersects rays with spheres and computes the normal at
+ * the hit point, in three ways: with the vector operations and new temporary
+ * tuples for each intersection, with the vector operations and temporaries
+ * reused across intersections, and with plain float arithmetic. When escape
+ * analysis scalar-replaces the temporaries, the first way allocates nothing
+ * and runs as fast as the others.</p>
+ * <p>Usage: <code>VectorBenchmark [intersections [runs]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class VectorBenchmark {
+
+	/** Default number of intersections per run */
+	private static final int DEFAULT_INTERSECTIONS = 20000000;
+
+	/** Default number of measured runs, after as many warm-up runs */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Number of distinct rays and spheres */
+	private static final int COUNT = 1024;
+
+	/** Radius of the spheres */
+	private static final float RADIUS = 0.3F;
+
+	/** Origins of the rays */
+	private static final Point3D[] origins = new Point3D[COUNT];
+
+	/** Normalized directions of the rays */
+	private static final Vector3D[] directions = new Vector3D[COUNT];
+
+	/** Centers of the spheres */
+	private static final Point3D[] centers = new Point3D[COUNT];
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		int intersections = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_INTERSECTIONS;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+		Random random = new Random(42);
+		Point3D target = new Point3D();
+		for (int i = 0; i < COUNT; i++) {
+			origins[i] = new Point3D(random.nextFloat() - 2.0F, random
+					.nextFloat(), random.nextFloat());
+			target.set(random.nextFloat(), random.nextFloat(), random
+					.nextFloat());
+			directions[i] = new Vector3D();
+			directions[i].sub(target, origins[i]);
+			directions[i].normalize();
+			centers[i] = new Point3D(random.nextFloat(), random.nextFloat(),
+					random.nextFloat());
+		}
+
+		BenchmarkCase[] cases = { new BenchmarkCase("new temporaries") {
+			@Override
+			float run(int intersections) {
+				float sum = 0.0F;
+				for (int i = 0; i < intersections; i++) {
+					Point3D origin = origins[i & (COUNT - 1)];
+					Vector3D direction = directions[i & (COUNT - 1)];
+					Point3D center = centers[(i >> 10) & (COUNT - 1)];
+
+					Vector3D oc = new Vector3D();
+					oc.sub(origin, center);
+					float b = oc.dot(direction);
+					float c = oc.lengthSquared() - RADIUS * RADIUS;
+					float discriminant = b * b - c;
+
+					if (discriminant >= 0.0F) {
+						float t = -b - (float) Math.sqrt(discriminant);
+						Point3D hit = new Point3D();
+						hit.scaleAdd(t, direction, origin);
+						Vector3D normal = new Vector3D();
+						normal.sub(hit, center);
+						normal.normalize();
+						sum += normal.z;
+					}
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("reused temporaries") {
+			@Override
+			float run(int intersections) {
+				Vector3D oc = new Vector3D();
+				Point3D hit = new Point3D();
+				Vector3D normal = new Vector3D();
+				float sum = 0.0F;
+
+				for (int i = 0; i < intersections; i++) {
+					Point3D origin = origins[i & (COUNT - 1)];
+					Vector3D direction = directions[i & (COUNT - 1)];
+					Point3D center = centers[(i >> 10) & (COUNT - 1)];
+
+					oc.sub(origin, center);
+					float b = oc.dot(direction);
+					float c = oc.lengthSquared() - RADIUS * RADIUS;
+					float discriminant = b * b - c;
+
+					if (discriminant >= 0.0F) {
+						float t = -b - (float) Math.sqrt(discriminant);
+						hit.scaleAdd(t, direction, origin);
+						normal.sub(hit, center);
+						normal.normalize();
+						sum += normal.z;
+					}
+				}
+				return sum;
+			}
+		}, new BenchmarkCase("plain floats") {
+			@Override
+			float run(int intersections) {
+				float sum = 0.0F;
+				for (int i = 0; i < intersections; i++) {
+					Point3D origin = origins[i & (COUNT - 1)];
+					Vector3D direction = directions[i & (COUNT - 1)];
+					Point3D center = centers[(i >> 10) & (COUNT - 1)];
+
+					float ox = origin.x - center.x;
+					float oy = origin.y - center.y;
+					float oz = origin.z - center.z;
+					float b = ox * direction.x + oy * direction.y + oz
+							* direction.z;
+					float c = ox * ox + oy * oy + oz * oz - RADIUS * RADIUS;
+					float discriminant = b * b - c;
+
+					if (discriminant >= 0.0F) {
+						float t = -b - (float) Math.sqrt(discriminant);
+						float nx = t * direction.x + origin.x - center.x;
+						float ny = t * direction.y + origin.y - center.y;
+						float nz = t * direction.z + origin.z - center.z;
+						sum += nz / (float) Math.sqrt(nx * nx + ny * ny + nz
+								* nz);
+					}
+				}
+				return sum;
+			}
+		} };
+
+		float expected = cases[2].run(COUNT * COUNT);
+		for (BenchmarkCase c : cases)
+			if (Math.abs(c.run(COUNT * COUNT) - expected) > 1e-3F * Math
+					.abs(expected))
+				throw new AssertionError(c.name + " disagrees");
+
+		BenchmarkCase.runAll(cases, intersections, runs);
+	}
+}
@@ -0,0 +1,296 @@
+package uclouvain.ingi2325.parser;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Scanner of array attributes into packed primitive arrays
+ * <p>Array attributes are comma-separated lists of items. Each item is made of
+ * a fixed number of whitespace-separated numbers, for example
+ * <pre>1 2.5 0, 1 3.5 0, -1 3.5 0</pre>
+ * for three points, or
+ * <pre>0, 1, 2</pre>
+ * for three indices.</p>
+ * <p>The scanner reads the characters of the attribute value directly into a
+ * <code>float[]</code> or an <code>int[]</code>, the components of the items
+ * being stored one after the other. It does not create any intermediate
+ * String or tuple object. Floats are parsed by
+ * {@link ParserUtils#parseFloat(String, int, int)}, whose fast path gives
+ * the same results as {@link Float#parseFloat(String)}.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class ArrayScanner {
+
+	/** The string being scanned */
+	private final String string;
+
+	/** Size of the items */
+	private final int itemSize;
+
+	/** Current position in the string */
+	private int position = 0;
+
+	/**
+	 * Scan an array of float tuples
+	 * 
+	 * @param string
+	 *            String representation of the array
+	 * @param itemSize
+	 *            Number of floats in each item
+	 * @return The packed floats, <code>itemSize</code> per item
+	 * @throws ParseException
+	 *             string is not a valid array of float tuples
+	 */
+	public static float[] scanFloats(String string, int itemSize)
+			throws ParseException {
+		return new ArrayScanner(string, itemSize).scanFloats();
+	}
+
+	/**
+	 * Scan an array of integers
+	 * 
+	 * @param string
+	 *            String representation of the array
+	 * @return The integers
+	 * @throws ParseException
+	 *             string is not a valid array of integers
+	 */
+	public static int[] scanInts(String string) throws ParseException {
+		return new ArrayScanner(string, 1).scanInts();
+	}
+
+	/**
+	 * Create a scanner
+	 * 
+	 * @param string
+	 *            String to scan
+	 * @param itemSize
+	 *            Number of values in each item
+	 */
+	private ArrayScanner(String string, int itemSize) {
+		this.string = string;
+		this.itemSize = itemSize;
+	}
+
+	/**
+	 * Scan the whole string as floats
+	 * 
+	 * @return The packed floats
+	 * @throws ParseException
+	 *             The string is not valid
+	 */
+	private float[] scanFloats() throws ParseException {
+		float[] result = new float[countItems() * itemSize];
+		int index = 0;
+		int count = 0;
+
+		while (true) {
+			skipWhitespace();
+
+			if (position == string.length() || string.charAt(position) == ',') {
+				if (count != 0 && count != itemSize)
+					throw invalid();
+				count = 0;
+
+				if (position == string.length())
+					break;
+				position++;
+			} else {
+				if (count == itemSize)
+					throw invalid();
+				result[index++] = nextFloat();
+				count++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Scan the whole string as integers
+	 * 
+	 * @return The integers
+	 * @throws ParseException
+	 *             The string is not valid
+	 */
+	private int[] scanInts() throws ParseException {
+		int[] result = new int[countItems() * itemSize];
+		int index = 0;
+		int count = 0;
+
+		while (true) {
+			skipWhitespace();
+
+			if (position == string.length() || string.charAt(position) == ',') {
+				if (count != 0 && count != itemSize)
+					throw invalid();
+				count = 0;
+
+				if (position == string.length())
+					break;
+				position++;
+			} else {
+				if (count == itemSize)
+					throw invalid();
+				result[index++] = nextInt();
+				count++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Count the items of the string
+	 * <p>Items that contain only whitespace are not counted.</p>
+	 * 
+	 * @return The number of items
+	 */
+	private int countItems() {
+		int count = 0;
+		boolean empty = true;
+
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+
+			if (c == ',') {
+				if (!empty)
+					count++;
+				empty = true;
+			} else if (c > ' ') {
+				empty = false;
+			}
+		}
+
+		if (!empty)
+			count++;
+
+		return count;
+	}
+
+	/**
+	 * Skip whitespace at the current position
+	 */
+	private void skipWhitespace() {
+		while (position < string.length() && string.charAt(position) <= ' ')
+			position++;
+	}
+
+	/**
+	 * Skip the current token and return its start
+	 * 
+	 * @return The start of the token
+	 */
+	private int skipToken() {
+		int start = position;
+
+		while (position < string.length()) {
+			char c = string.charAt(position);
+			if (c <= ' ' || c == ',')
+				break;
+			position++;
+		}
+
+		return start;
+	}
+
+	/**
+	 * Check that a token ends at the current position
+	 * 
+	 * @return true if the current position ends a token
+	 */
+	private boolean atTokenEnd() {
+		if (position == string.length())
+			return true;
+
+		char c = string.charAt(position);
+		return c <= ' ' || c == ',';
+	}
+
+	/**
+	 * Read a float at the current position
+	 * 
+	 * @return The float
+	 * @throws ParseException
+	 *             There is no valid float at the current position
+	 */
+	private float nextFloat() throws ParseException {
+		int start = skipToken();
+
+		try {
+			return ParserUtils.parseFloat(string, start, position);
+		} catch (NumberFormatException error) {
+			throw invalid();
+		}
+	}
+
+	/**
+	 * Read an integer at the current position
+	 * 
+	 * @return The integer
+	 * @throws ParseException
+	 *             There is no valid integer at the current position
+	 */
+	private int nextInt() throws ParseException {
+		int start = position;
+		int length = string.length();
+
+		boolean negative = false;
+		if (string.charAt(position) == '-' || string.charAt(position) == '+') {
+			negative = string.charAt(position) == '-';
+			position++;
+		}
+
+		long value = 0;
+		boolean any = false;
+
+		while (position < length) {
+			int digit = string.charAt(position) - '0';
+			if (digit < 0 || digit > 9)
+				break;
+			value = value * 10 + digit;
+			if (value > Integer.MAX_VALUE + 1L)
+				break;
+			any = true;
+			position++;
+		}
+
+		if (negative)
+			value = -value;
+
+		if (!any || !atTokenEnd() || value > Integer.MAX_VALUE
+				|| value < Integer.MIN_VALUE) {
+			position = start;
+			skipToken();
+			throw invalid();
+		}
+
+		return (int) value;
+	}
+
+	/**
+	 * Make the exception thrown for an invalid string
+	 * 
+	 * @return The exception
+	 */
+	private ParseException invalid() {
+		return new ParseException(String.format(
+				"Cannot convert '%s' into an array of %d-tuples "
+						+ "(at character %d)",
+				abbreviate(string), itemSize, position));
+	}
+
+	/**
+	 * Abbreviate a string for an error message
+	 * 
+	 * @param string
+	 *            The string
+	 * @return The string, abbreviated if it is too long
+	 */
+	private static String abbreviate(String string) {
+		if (string.length() <= 64)
+			return string;
+		else
+			return string.substring(0, 61) + "...";
+	}
+}
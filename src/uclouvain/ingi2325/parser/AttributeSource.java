@@ -0,0 +1,20 @@
+package uclouvain.ingi2325.parser;
+
+/**
+ * Source of the attribute values of the element being parsed
+ * <p>This hides the differences between the SAX and the StAX backends from
+ * {@link ElementBinding} and {@link HandlerDispatcher}.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+interface AttributeSource {
+
+	/**
+	 * Get the value of an attribute of the current element
+	 * 
+	 * @param name
+	 *            Name of the attribute
+	 * @return The value, or null if the attribute is absent
+	 */
+	public String getValue(String name);
+}
@@ -0,0 +1,178 @@
+package uclouvain.ingi2325.parser;
+
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Layout of binary SDL files (SDLB)
+ * <p>An SDLB file is a recording of the calls made to a {@link ParserHandler}
+ * while parsing an SDL document. All numbers are little-endian. The file
+ * starts with a header:</p>
+ * <pre>
+ * "SDLB" version:int elementCount:int
+ * (name:utf typeCount:byte types:byte*)*   -- element table
+ * </pre>
+ * <p>The element table lists the elements in the order of their opcodes, with
+ * the types of the parameters of their start method. It is followed by the
+ * events, until the end of the file:</p>
+ * <pre>
+ * opcode:byte value*    -- start of element opcode - 1, one value per type
+ * 0:byte                -- end of the innermost open element
+ * </pre>
+ * <p>Strings are stored once, in a string table built while reading: a string
+ * value is its index in the table, followed by its UTF-8 bytes if it is new.
+ * Packed float and int arrays are aligned on 4 bytes, so that they can be
+ * read in place from a mapped file.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class BinaryFormat {
+
+	/** Magic number of SDLB files */
+	static final byte[] MAGIC = { 'S', 'D', 'L', 'B' };
+
+	/** Version of the format */
+	static final int VERSION = 1;
+
+	/** Byte order of SDLB files */
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/** Opcode of the end of an element */
+	static final int END = 0;
+
+	/** Element whose geometry is stored packed */
+	static final String INDEXED_TRIANGLE_SET = "IndexedTriangleSet";
+
+	/** float: 4 bytes */
+	static final byte FLOAT = 1;
+
+	/** int: 4 bytes */
+	static final byte INT = 2;
+
+	/** boolean: 1 byte */
+	static final byte BOOLEAN = 3;
+
+	/** String: index (-1 for null), then length and UTF-8 bytes if new */
+	static final byte STRING = 4;
+
+	/** Point3D: presence byte, then 3 floats */
+	static final byte POINT_3D = 5;
+
+	/** Vector3D: presence byte, then 3 floats */
+	static final byte VECTOR_3D = 6;
+
+	/** Color: presence byte, then 3 floats */
+	static final byte COLOR = 7;
+
+	/** TextureCoordinates: presence byte, then 2 floats */
+	static final byte TEXTURE_COORDINATES = 8;
+
+	/** String[]: count (-1 for null), then strings */
+	static final byte STRING_ARRAY = 9;
+
+	/** float[]: count (-1 for null), padding to 4 bytes, then floats */
+	static final byte FLOAT_ARRAY = 10;
+
+	/** int[]: count (-1 for null), padding to 4 bytes, then ints */
+	static final byte INT_ARRAY = 11;
+
+	/** Type codes of the parameters of the elements, by element name */
+	private static final Map<String, byte[]> elementTypes =
+		new TreeMap<String, byte[]>();
+
+	/** Type codes of the parameter classes */
+	private static final Map<Class<?>, Byte> typeCodes =
+		new HashMap<Class<?>, Byte>();
+
+	static {
+		typeCodes.put(float.class, FLOAT);
+		typeCodes.put(int.class, INT);
+		typeCodes.put(boolean.class, BOOLEAN);
+		typeCodes.put(String.class, STRING);
+		typeCodes.put(Point3D.class, POINT_3D);
+		typeCodes.put(Vector3D.class, VECTOR_3D);
+		typeCodes.put(Color.class, COLOR);
+		typeCodes.put(TextureCoordinates.class, TEXTURE_COORDINATES);
+		typeCodes.put(String[].class, STRING_ARRAY);
+		typeCodes.put(float[].class, FLOAT_ARRAY);
+		typeCodes.put(int[].class, INT_ARRAY);
+
+		try {
+			for (Method method : ParserHandler.class.getDeclaredMethods()) {
+				String name = method.getName();
+
+				if (name.startsWith("start")) {
+					String elementName = name.substring(5);
+
+					// Geometry is stored packed
+					if (elementName.equals(INDEXED_TRIANGLE_SET))
+						method = PackedGeometryHandler.class.getMethod(name,
+								float[].class, float[].class, float[].class,
+								int[].class, int[].class, int[].class,
+								String.class);
+
+					elementTypes.put(elementName, typesOf(method));
+				}
+			}
+		} catch (NoSuchMethodException error) {
+			throw new ExceptionInInitializerError(error);
+		}
+	}
+
+	/**
+	 * Compute the type codes of the parameters of a start method
+	 * 
+	 * @param method
+	 *            The start method
+	 * @return The type codes
+	 */
+	private static byte[] typesOf(Method method) {
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		byte[] types = new byte[parameterTypes.length];
+
+		for (int i = 0; i < types.length; i++) {
+			Byte code = typeCodes.get(parameterTypes[i]);
+			if (code == null)
+				throw new IllegalStateException(String.format(
+						"No binary encoding for %s in %s.",
+						parameterTypes[i].getSimpleName(), method.getName()));
+			types[i] = code;
+		}
+
+		return types;
+	}
+
+	/**
+	 * Get the names of all elements, in a stable order
+	 * 
+	 * @return The names of the elements
+	 */
+	static String[] elementNames() {
+		return elementTypes.keySet().toArray(new String[elementTypes.size()]);
+	}
+
+	/**
+	 * Get the type codes of the parameters of an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @return The type codes, or null if the element is unknown
+	 */
+	static byte[] elementTypes(String name) {
+		return elementTypes.get(name);
+	}
+
+	/**
+	 * Compute the padding that aligns a position on 4 bytes
+	 * 
+	 * @param position
+	 *            The position
+	 * @return The number of padding bytes
+	 */
+	static int padding(long position) {
+		return (int) (-position & 3);
+	}
+}
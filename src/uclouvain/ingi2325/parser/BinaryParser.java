@@ -0,0 +1,377 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import uclouvain.ingi2325.exception.*;
+import uclouvain.ingi2325.math.*;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Loader of binary SDL files (SDLB)
+ * <p>This is an alternative to {@link Parser} for files written by
+ * {@link BinaryWriter}. The file is mapped in memory, and the recorded calls
+ * are replayed into the same {@link ParserHandler}s. No text is parsed: the
+ * values are read directly in their binary form.</p>
+ * <p>Meshes are not copied: handlers that implement
+ * {@link BufferGeometryHandler} receive read-only views of the mapped file.
+ * Handlers that implement {@link PackedGeometryHandler} receive arrays copied
+ * once from these views, and the other handlers arrays of objects.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class BinaryParser {
+
+	/** UTF-8 charset */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Dispatcher of the elements to the handlers */
+	private final HandlerDispatcher dispatcher = new HandlerDispatcher();
+
+	/**
+	 * Add a parser handler
+	 * 
+	 * @param handler
+	 *            A parser handler
+	 */
+	public void addHandler(ParserHandler handler) {
+		dispatcher.addHandler(handler);
+	}
+
+	/**
+	 * Remove a parser handler
+	 * 
+	 * @param handler
+	 *            The handler to remove
+	 */
+	public void removeHandler(ParserHandler handler) {
+		dispatcher.removeHandler(handler);
+	}
+
+	/**
+	 * Load an SDLB file and call the user's parser handler
+	 * <p>
+	 * If <code>echo</code> is set to <code>true</code>, the parser will write
+	 * to the standard output the document recorded in the file, as XML.
+	 * </p>
+	 * 
+	 * @param file
+	 *            The SDLB file
+	 * @param echo
+	 *            If true, the document is echoed to the standard output
+	 * @return a boolean indicating if the parse was successful.
+	 */
+	public boolean parse(File file, boolean echo) {
+		if (echo)
+			dispatcher.addFirstHandler(EchoParserHandler.makeHandler());
+
+		Replay replay = null;
+
+		try {
+			replay = new Replay(map(file));
+			replay.run();
+		} catch (BufferUnderflowException e) {
+			System.err.println("ERROR : Unexpected end of file.");
+			return false;
+		} catch (Exception e) {
+			// Report the exception (with the position) and return false
+			System.err.print("ERROR : " + e.getMessage());
+			if (replay != null)
+				System.err.print(" (byte " + replay.buffer.position() + ")");
+			System.err.println();
+			return false;
+		}
+
+		// The parsing has succeeded
+		return true;
+	}
+
+	/**
+	 * Map a file in memory
+	 * 
+	 * @param file
+	 *            The file
+	 * @return The mapped file, in the byte order of SDLB files
+	 * @throws IOException
+	 *             The file cannot be mapped
+	 */
+	private static ByteBuffer map(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+
+		try {
+			FileChannel channel = stream.getChannel();
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("SDLB files are limited to 2 GB.");
+
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()).order(BinaryFormat.ORDER);
+		} finally {
+			// The mapping remains valid after the channel is closed
+			stream.close();
+		}
+	}
+
+	/**
+	 * Replay of the events of one file
+	 */
+	private final class Replay {
+
+		/** The mapped file */
+		private final ByteBuffer buffer;
+
+		/** Names of the elements, by opcode - 1 */
+		private String[] names;
+
+		/** Type codes of the parameters of the elements, by opcode - 1 */
+		private byte[][] types;
+
+		/** String table */
+		private final List<String> strings = new ArrayList<String>();
+
+		/** Names of the open elements */
+		private final Deque<String> open = new ArrayDeque<String>();
+
+		/**
+		 * Create the replay of a mapped file
+		 * 
+		 * @param buffer
+		 *            The mapped file
+		 */
+		Replay(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		/**
+		 * Read the header, then replay all the events
+		 * 
+		 * @throws Exception
+		 *             The file is invalid, or a handler failed
+		 */
+		void run() throws Exception {
+			readHeader();
+
+			while (buffer.hasRemaining()) {
+				int opcode = buffer.get() & 0xff;
+
+				if (opcode == BinaryFormat.END) {
+					if (open.isEmpty())
+						throw new ParseException("Unbalanced end of element.");
+					dispatcher.endElement(open.pop());
+				} else {
+					if (opcode > names.length)
+						throw new ParseException("Unknown opcode " + opcode
+								+ ".");
+					start(names[opcode - 1], types[opcode - 1]);
+				}
+			}
+
+			if (!open.isEmpty())
+				throw new ParseException(String.format(
+						"Element \"%s\" is not closed.", open.peek()));
+		}
+
+		/**
+		 * Read the header and the element table
+		 * 
+		 * @throws ParseException
+		 *             The file is not an SDLB file, or does not match
+		 *             {@link ParserHandler}
+		 */
+		private void readHeader() throws ParseException {
+			byte[] magic = new byte[BinaryFormat.MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, BinaryFormat.MAGIC))
+				throw new ParseException("Not an SDLB file.");
+
+			int version = buffer.getInt();
+			if (version != BinaryFormat.VERSION)
+				throw new ParseException(String.format(
+						"Unsupported SDLB version %d.", version));
+
+			int count = buffer.getInt();
+			names = new String[count];
+			types = new byte[count][];
+
+			for (int i = 0; i < count; i++) {
+				names[i] = readUTF(buffer.getInt());
+				types[i] = new byte[buffer.get()];
+				buffer.get(types[i]);
+
+				// The recorded parameters must match those of the handlers
+				if (!Arrays.equals(types[i], BinaryFormat
+						.elementTypes(names[i])))
+					throw new ParseException(String.format(
+							"Element \"%s\" does not match ParserHandler.",
+							names[i]));
+			}
+		}
+
+		/**
+		 * Replay the start of an element
+		 * 
+		 * @param name
+		 *            Name of the element
+		 * @param elementTypes
+		 *            Type codes of its parameters
+		 * @throws Exception
+		 *             The file is invalid, or a handler failed
+		 */
+		private void start(String name, byte[] elementTypes) throws Exception {
+			Object[] parameters = new Object[elementTypes.length];
+			for (int i = 0; i < parameters.length; i++)
+				parameters[i] = readValue(elementTypes[i]);
+
+			open.push(name);
+
+			if (name.equals(BinaryFormat.INDEXED_TRIANGLE_SET))
+				dispatcher.startIndexedTriangleSet(
+						(FloatBuffer) parameters[0],
+						(FloatBuffer) parameters[1],
+						(FloatBuffer) parameters[2],
+						(IntBuffer) parameters[3], (IntBuffer) parameters[4],
+						(IntBuffer) parameters[5], (String) parameters[6]);
+			else
+				dispatcher.startElement(name, parameters);
+		}
+
+		/**
+		 * Read a value
+		 * <p>Packed arrays are returned as views of the mapped file.</p>
+		 * 
+		 * @param type
+		 *            Type code of the value
+		 * @return The value
+		 * @throws ParseException
+		 *             The type code is unknown
+		 */
+		private Object readValue(byte type) throws ParseException {
+			switch (type) {
+			case BinaryFormat.FLOAT:
+				return buffer.getFloat();
+
+			case BinaryFormat.INT:
+				return buffer.getInt();
+
+			case BinaryFormat.BOOLEAN:
+				return buffer.get() != 0;
+
+			case BinaryFormat.STRING:
+				return readString();
+
+			case BinaryFormat.POINT_3D:
+				return buffer.get() == 0 ? null : readTuple(new Point3D());
+
+			case BinaryFormat.VECTOR_3D:
+				return buffer.get() == 0 ? null : readTuple(new Vector3D());
+
+			case BinaryFormat.COLOR:
+				return buffer.get() == 0 ? null : readTuple(new Color());
+
+			case BinaryFormat.TEXTURE_COORDINATES:
+				if (buffer.get() == 0)
+					return null;
+				TextureCoordinates coordinates = new TextureCoordinates();
+				coordinates.x = buffer.getFloat();
+				coordinates.y = buffer.getFloat();
+				return coordinates;
+
+			case BinaryFormat.STRING_ARRAY: {
+				int count = buffer.getInt();
+				if (count < 0)
+					return null;
+				String[] array = new String[count];
+				for (int i = 0; i < count; i++)
+					array[i] = readString();
+				return array;
+			}
+
+			case BinaryFormat.FLOAT_ARRAY: {
+				ByteBuffer slice = readArray();
+				return slice == null ? null : slice.asFloatBuffer();
+			}
+
+			case BinaryFormat.INT_ARRAY: {
+				ByteBuffer slice = readArray();
+				return slice == null ? null : slice.asIntBuffer();
+			}
+
+			default:
+				throw new ParseException("Unknown type code " + type + ".");
+			}
+		}
+
+		/**
+		 * Read the components of a 3-tuple
+		 * 
+		 * @param tuple
+		 *            The tuple to fill
+		 * @return The tuple
+		 */
+		private <T extends Tuple3> T readTuple(T tuple) {
+			tuple.x = buffer.getFloat();
+			tuple.y = buffer.getFloat();
+			tuple.z = buffer.getFloat();
+			return tuple;
+		}
+
+		/**
+		 * Read a string, through the string table
+		 * 
+		 * @return The string, or null
+		 * @throws ParseException
+		 *             The index is out of the string table
+		 */
+		private String readString() throws ParseException {
+			int index = buffer.getInt();
+
+			if (index < 0)
+				return null;
+			else if (index < strings.size())
+				return strings.get(index);
+			else if (index > strings.size())
+				throw new ParseException("Invalid string index " + index + ".");
+
+			String string = readUTF(buffer.getInt());
+			strings.add(string);
+			return string;
+		}
+
+		/**
+		 * Read UTF-8 bytes as a string
+		 * 
+		 * @param length
+		 *            Number of bytes
+		 * @return The string
+		 */
+		private String readUTF(int length) {
+			byte[] bytes = new byte[length];
+			buffer.get(bytes);
+			return new String(bytes, UTF_8);
+		}
+
+		/**
+		 * Read a packed array of 4-byte items, without copying it
+		 * 
+		 * @return The items, as a slice of the mapped file, or null
+		 */
+		private ByteBuffer readArray() {
+			int count = buffer.getInt();
+			if (count < 0)
+				return null;
+
+			buffer.position(buffer.position()
+					+ BinaryFormat.padding(buffer.position()));
+			if (4L * count > buffer.remaining())
+				throw new BufferUnderflowException();
+
+			ByteBuffer slice = buffer.slice();
+			slice.limit(4 * count);
+			buffer.position(buffer.position() + 4 * count);
+
+			return slice.order(BinaryFormat.ORDER);
+		}
+	}
+}
@@ -0,0 +1,548 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.xml.sax.*;
+
+import uclouvain.ingi2325.math.*;
+
+/**
+ * Writer of binary SDL files (SDLB)
+ * <p>The writer provides a {@link ParserHandler} that records every call it
+ * receives into an SDLB file, in the layout described by
+ * {@link BinaryFormat}. Plugged into a {@link Parser} or a
+ * {@link StreamParser}, it converts an SDL document into a binary file that
+ * {@link BinaryParser} loads without any text parsing. The handler accepts
+ * packed geometry, so meshes are written as raw float and int arrays.</p>
+ * <p>Run as a program, it converts an SDL file:</p>
+ * <pre>BinaryWriter [-validate] input.sdl [output.sdlb]</pre>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class BinaryWriter implements Closeable {
+
+	/** Size of the output buffer */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/** UTF-8 charset */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Output channel */
+	private final FileChannel channel;
+
+	/** Output buffer */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE)
+			.order(BinaryFormat.ORDER);
+
+	/** Number of bytes already written to the channel */
+	private long flushed = 0;
+
+	/** Opcodes of the elements, by element name */
+	private final Map<String, Integer> opcodes =
+		new HashMap<String, Integer>();
+
+	/** Indices of the strings already written */
+	private final Map<String, Integer> strings =
+		new HashMap<String, Integer>();
+
+	/** The recording handler */
+	private final ParserHandler handler;
+
+	/**
+	 * Create a writer, and write the header of the file
+	 * 
+	 * @param file
+	 *            The output file
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	public BinaryWriter(File file) throws IOException {
+		channel = new FileOutputStream(file).getChannel();
+
+		handler = (ParserHandler) Proxy.newProxyInstance(
+				BinaryWriter.class.getClassLoader(), new Class<?>[] {
+						ParserHandler.class, PackedGeometryHandler.class },
+				new WriterInvocationHandler());
+
+		writeHeader();
+	}
+
+	/**
+	 * Get the handler that records the calls into the file
+	 * <p>It also implements {@link PackedGeometryHandler}.</p>
+	 * 
+	 * @return The recording handler
+	 */
+	public ParserHandler getHandler() {
+		return handler;
+	}
+
+	/**
+	 * Flush the recorded events and close the file
+	 * 
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Convert an SDL file into an SDLB file
+	 * <p>If <code>validate</code> is <code>true</code>, the SDL file is parsed
+	 * by {@link Parser} and validated against the DTD; otherwise, it is parsed
+	 * by {@link StreamParser}, which checks its structure. If the parse fails,
+	 * the output file is deleted.</p>
+	 * 
+	 * @param input
+	 *            The SDL file
+	 * @param output
+	 *            The SDLB file
+	 * @param validate
+	 *            True for validating the document against the DTD
+	 * @return a boolean indicating if the conversion was successful.
+	 * @throws IOException
+	 *             A file cannot be read or written
+	 */
+	public static boolean convert(File input, File output, boolean validate)
+			throws IOException {
+		File directory = input.getAbsoluteFile().getParentFile();
+		FileInputStream inputStream = new FileInputStream(input);
+		BinaryWriter writer = null;
+		boolean success = false;
+
+		try {
+			writer = new BinaryWriter(output);
+
+			InputSource inputSource = new InputSource(inputStream);
+			inputSource.setSystemId("file:///" + directory.getAbsolutePath()
+					+ "/");
+
+			if (validate) {
+				Parser parser = new Parser();
+				parser.addHandler(writer.getHandler());
+				success = parser.parse(inputSource, /* validate */ true,
+						/* echo */ false);
+			} else {
+				StreamParser parser = new StreamParser();
+				parser.addHandler(writer.getHandler());
+				success = parser.parse(inputSource, /* checkStructure */ true,
+						/* echo */ false);
+			}
+		} finally {
+			inputStream.close();
+			if (writer != null)
+				writer.close();
+			if (!success)
+				output.delete();
+		}
+
+		return success;
+	}
+
+	/**
+	 * Convert an SDL file into an SDLB file
+	 * 
+	 * @param args
+	 *            [-validate] input.sdl [output.sdlb]
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		boolean validate = args.length > 0 && args[0].equals("-validate");
+		int first = validate ? 1 : 0;
+
+		if (args.length - first < 1 || args.length - first > 2) {
+			System.err.println("Usage: BinaryWriter [-validate] input.sdl "
+					+ "[output.sdlb]");
+			System.exit(2);
+		}
+
+		File input = new File(args[first]);
+		File output;
+		if (args.length - first == 2) {
+			output = new File(args[first + 1]);
+		} else {
+			String name = input.getPath();
+			if (name.endsWith(".sdl"))
+				name = name.substring(0, name.length() - 4);
+			output = new File(name + ".sdlb");
+		}
+
+		if (!convert(input, output, validate))
+			System.exit(1);
+	}
+
+	/**
+	 * Write the header and the element table
+	 * 
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeHeader() throws IOException {
+		String[] names = BinaryFormat.elementNames();
+
+		putBytes(BinaryFormat.MAGIC);
+		putInt(BinaryFormat.VERSION);
+		putInt(names.length);
+
+		for (int i = 0; i < names.length; i++) {
+			byte[] types = BinaryFormat.elementTypes(names[i]);
+			byte[] bytes = names[i].getBytes(UTF_8);
+
+			putInt(bytes.length);
+			putBytes(bytes);
+			putByte(types.length);
+			putBytes(types);
+
+			opcodes.put(names[i], i + 1);
+		}
+	}
+
+	/**
+	 * Write the start of an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @param args
+	 *            Parameters of the start method
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeStart(String name, Object[] args) throws IOException {
+		byte[] types = BinaryFormat.elementTypes(name);
+
+		putByte(opcodes.get(name));
+		for (int i = 0; i < types.length; i++)
+			writeValue(types[i], args[i]);
+	}
+
+	/**
+	 * Write the end of an element
+	 * 
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeEnd() throws IOException {
+		putByte(BinaryFormat.END);
+	}
+
+	/**
+	 * Write a value
+	 * 
+	 * @param type
+	 *            Type code of the value
+	 * @param value
+	 *            The value
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeValue(byte type, Object value) throws IOException {
+		switch (type) {
+		case BinaryFormat.FLOAT:
+			putFloat((Float) value);
+			break;
+
+		case BinaryFormat.INT:
+			putInt((Integer) value);
+			break;
+
+		case BinaryFormat.BOOLEAN:
+			putByte(((Boolean) value) ? 1 : 0);
+			break;
+
+		case BinaryFormat.STRING:
+			writeString((String) value);
+			break;
+
+		case BinaryFormat.POINT_3D:
+		case BinaryFormat.VECTOR_3D:
+		case BinaryFormat.COLOR:
+			if (value == null) {
+				putByte(0);
+			} else {
+				Tuple3 tuple = (Tuple3) value;
+				putByte(1);
+				putFloat(tuple.x);
+				putFloat(tuple.y);
+				putFloat(tuple.z);
+			}
+			break;
+
+		case BinaryFormat.TEXTURE_COORDINATES:
+			if (value == null) {
+				putByte(0);
+			} else {
+				Tuple2 tuple = (Tuple2) value;
+				putByte(1);
+				putFloat(tuple.x);
+				putFloat(tuple.y);
+			}
+			break;
+
+		case BinaryFormat.STRING_ARRAY:
+			if (value == null) {
+				putInt(-1);
+			} else {
+				String[] array = (String[]) value;
+				putInt(array.length);
+				for (String string : array)
+					writeString(string);
+			}
+			break;
+
+		case BinaryFormat.FLOAT_ARRAY:
+			writeFloats(value);
+			break;
+
+		case BinaryFormat.INT_ARRAY:
+			writeInts((int[]) value);
+			break;
+
+		default:
+			throw new IllegalArgumentException("Unknown type code " + type);
+		}
+	}
+
+	/**
+	 * Write a string, through the string table
+	 * 
+	 * @param string
+	 *            The string, or null
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeString(String string) throws IOException {
+		if (string == null) {
+			putInt(-1);
+			return;
+		}
+
+		Integer index = strings.get(string);
+
+		if (index != null) {
+			putInt(index);
+		} else {
+			byte[] bytes = string.getBytes(UTF_8);
+
+			putInt(strings.size());
+			strings.put(string, strings.size());
+			putInt(bytes.length);
+			putBytes(bytes);
+		}
+	}
+
+	/**
+	 * Write a packed float array
+	 * <p>The geometry is normally received packed, but arrays of tuples, from
+	 * the object overload of <code>startIndexedTriangleSet</code>, are packed
+	 * here.</p>
+	 * 
+	 * @param value
+	 *            A float[], an array of tuples, or null
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeFloats(Object value) throws IOException {
+		float[] array;
+
+		if (value == null || value instanceof float[]) {
+			array = (float[]) value;
+		} else if (value instanceof Tuple3[]) {
+			Tuple3[] tuples = (Tuple3[]) value;
+			array = new float[3 * tuples.length];
+			for (int i = 0; i < tuples.length; i++) {
+				array[3 * i] = tuples[i].x;
+				array[3 * i + 1] = tuples[i].y;
+				array[3 * i + 2] = tuples[i].z;
+			}
+		} else {
+			Tuple2[] tuples = (Tuple2[]) value;
+			array = new float[2 * tuples.length];
+			for (int i = 0; i < tuples.length; i++) {
+				array[2 * i] = tuples[i].x;
+				array[2 * i + 1] = tuples[i].y;
+			}
+		}
+
+		if (array == null) {
+			putInt(-1);
+			return;
+		}
+
+		putInt(array.length);
+		putPadding();
+
+		int offset = 0;
+		while (offset < array.length) {
+			ensure(4);
+			int count = Math.min(array.length - offset, buffer.remaining() / 4);
+			buffer.asFloatBuffer().put(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Write an int array
+	 * 
+	 * @param array
+	 *            The array, or null
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void writeInts(int[] array) throws IOException {
+		if (array == null) {
+			putInt(-1);
+			return;
+		}
+
+		putInt(array.length);
+		putPadding();
+
+		int offset = 0;
+		while (offset < array.length) {
+			ensure(4);
+			int count = Math.min(array.length - offset, buffer.remaining() / 4);
+			buffer.asIntBuffer().put(array, offset, count);
+			buffer.position(buffer.position() + 4 * count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Write a byte
+	 * 
+	 * @param value
+	 *            The byte
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void putByte(int value) throws IOException {
+		ensure(1);
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * Write an int
+	 * 
+	 * @param value
+	 *            The int
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void putInt(int value) throws IOException {
+		ensure(4);
+		buffer.putInt(value);
+	}
+
+	/**
+	 * Write a float
+	 * 
+	 * @param value
+	 *            The float
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void putFloat(float value) throws IOException {
+		ensure(4);
+		buffer.putFloat(value);
+	}
+
+	/**
+	 * Write bytes
+	 * 
+	 * @param bytes
+	 *            The bytes
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void putBytes(byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			ensure(1);
+			int count = Math.min(bytes.length - offset, buffer.remaining());
+			buffer.put(bytes, offset, count);
+			offset += count;
+		}
+	}
+
+	/**
+	 * Write zeros up to the next position aligned on 4 bytes
+	 * 
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void putPadding() throws IOException {
+		int padding = BinaryFormat.padding(flushed + buffer.position());
+		for (int i = 0; i < padding; i++)
+			putByte(0);
+	}
+
+	/**
+	 * Make room in the buffer
+	 * 
+	 * @param size
+	 *            Number of bytes needed
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void ensure(int size) throws IOException {
+		if (buffer.remaining() < size)
+			flush();
+	}
+
+	/**
+	 * Write the buffer to the channel
+	 * 
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			flushed += channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Invocation handler for the recording proxy
+	 */
+	private final class WriterInvocationHandler implements InvocationHandler {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args)
+				throws Throwable {
+			String name = method.getName();
+
+			if (method.getDeclaringClass() == Object.class) {
+				if (name.equals("equals"))
+					return proxy == args[0];
+				else if (name.equals("hashCode"))
+					return System.identityHashCode(proxy);
+				else
+					return "BinaryWriter handler";
+			}
+
+			if (name.startsWith("start"))
+				writeStart(name.substring(5), args == null ? new Object[0]
+						: args);
+			else if (name.startsWith("end"))
+				writeEnd();
+
+			return null;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package uclouvain.ingi2325.parser;
+
+import java.nio.*;
+
+/**
+ * Opt-in extension of {@link ParserHandler} for geometry held in buffers
+ * <p>A {@link ParserHandler} that also implements this interface receives the
+ * attributes of <code>IndexedTriangleSet</code> elements as NIO buffers. When
+ * the scene is loaded from a binary SDLB file by {@link BinaryParser}, these
+ * buffers are views of the memory-mapped file, and no copy of the mesh is
+ * made. With the XML parsers, they wrap the packed arrays.</p>
+ * <p>This overload of <code>startIndexedTriangleSet</code> takes precedence
+ * over the one of {@link PackedGeometryHandler} and the one of
+ * {@link ParserHandler}. Each handler receives its own buffers, positioned at
+ * the start of the data. They may be read-only, and may be kept after the
+ * call.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface BufferGeometryHandler {
+
+	/**
+	 * Start an indexed triangle set, with attributes in buffers
+	 * 
+	 * @param coordinates
+	 *            Coordinates, as x, y, z triples
+	 * @param normals
+	 *            Normals, as x, y, z triples, or null
+	 * @param textureCoordinates
+	 *            Texture coordinates, as u, v pairs, or null
+	 * @param coordinateIndices
+	 *            Indices in the coordinates
+	 * @param normalIndices
+	 *            Indices in the normals, or null
+	 * @param textureCoordinateIndices
+	 *            Indices in the texture coordinates, or null
+	 * @param name
+	 *            Name of the geometry
+	 * @throws Exception
+	 */
+	public void startIndexedTriangleSet(FloatBuffer coordinates,
+			FloatBuffer normals, FloatBuffer textureCoordinates,
+			IntBuffer coordinateIndices, IntBuffer normalIndices,
+			IntBuffer textureCoordinateIndices, String name) throws Exception;
+}
@@ -0,0 +1,26 @@
+package uclouvain.ingi2325.parser;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Converter from the string value of an XML attribute to a Java value
+ * <p>Converters are registered in {@link Converters}, by the class of the
+ * values they produce.</p>
+ * 
+ * @param <T>
+ *            Type of the values produced
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface Converter<T> {
+
+	/**
+	 * Convert a string into a value
+	 * 
+	 * @param string
+	 *            String representation
+	 * @return The value represented by string
+	 * @throws ParseException
+	 *             string does not represent a valid value
+	 */
+	public T convert(String string) throws ParseException;
+}
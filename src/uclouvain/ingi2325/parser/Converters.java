@@ -0,0 +1,436 @@
+package uclouvain.ingi2325.parser;
+
+import java.util.*;
+
+import uclouvain.ingi2325.exception.*;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Registry of the converters of attribute values, by class
+ * <p>Built-in converters are registered for <code>float</code>,
+ * <code>int</code>, <code>boolean</code>, {@link String}, {@link Point3D},
+ * {@link Vector3D}, {@link Color}, {@link TextureCoordinates} and arrays of
+ * all of them. Array values are comma-separated lists of items. Arrays of
+ * numbers and of tuples of numbers are read by {@link ArrayScanner}.</p>
+ * <p>Unlike the former reflective lookup of <code>valueOf(String)</code>,
+ * converters are plain virtual calls, and arrays are filled without going
+ * through {@link java.lang.reflect.Array}.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class Converters {
+
+	/** Converters, by class of the values they produce */
+	private static final Map<Class<?>, Converter<?>> converters =
+		new HashMap<Class<?>, Converter<?>>();
+
+	/** Converter for floats */
+	public static final Converter<Float> FLOAT = new Converter<Float>() {
+		@Override
+		public Float convert(String string) throws ParseException {
+			try {
+				return Float.valueOf(string);
+			} catch (NumberFormatException error) {
+				throw couldNotParse(Float.class, string);
+			}
+		}
+	};
+
+	/** Converter for integers */
+	public static final Converter<Integer> INTEGER = new Converter<Integer>() {
+		@Override
+		public Integer convert(String string) throws ParseException {
+			try {
+				return Integer.valueOf(string);
+			} catch (NumberFormatException error) {
+				throw couldNotParse(Integer.class, string);
+			}
+		}
+	};
+
+	/** Converter for booleans */
+	public static final Converter<Boolean> BOOLEAN = new Converter<Boolean>() {
+		@Override
+		public Boolean convert(String string) {
+			return Boolean.valueOf(string);
+		}
+	};
+
+	/** Converter for strings */
+	public static final Converter<String> STRING = new Converter<String>() {
+		@Override
+		public String convert(String string) {
+			return string;
+		}
+	};
+
+	/** Converter for points */
+	public static final Converter<Point3D> POINT_3D = new Converter<Point3D>() {
+		@Override
+		public Point3D convert(String string) throws ParseException {
+			return Point3D.valueOf(string);
+		}
+	};
+
+	/** Converter for vectors */
+	public static final Converter<Vector3D> VECTOR_3D =
+		new Converter<Vector3D>() {
+			@Override
+			public Vector3D convert(String string) throws ParseException {
+				return Vector3D.valueOf(string);
+			}
+		};
+
+	/** Converter for colors */
+	public static final Converter<Color> COLOR = new Converter<Color>() {
+		@Override
+		public Color convert(String string) throws ParseException {
+			return Color.valueOf(string);
+		}
+	};
+
+	/** Converter for texture coordinates */
+	public static final Converter<TextureCoordinates> TEXTURE_COORDINATES =
+		new Converter<TextureCoordinates>() {
+			@Override
+			public TextureCoordinates convert(String string)
+					throws ParseException {
+				return TextureCoordinates.valueOf(string);
+			}
+		};
+
+	/** Converter for arrays of floats */
+	public static final Converter<float[]> FLOAT_ARRAY =
+		new Converter<float[]>() {
+			@Override
+			public float[] convert(String string) throws ParseException {
+				return ArrayScanner.scanFloats(string, 1);
+			}
+		};
+
+	/** Converter for arrays of integers */
+	public static final Converter<int[]> INTEGER_ARRAY =
+		new Converter<int[]>() {
+			@Override
+			public int[] convert(String string) throws ParseException {
+				return ArrayScanner.scanInts(string);
+			}
+		};
+
+	/** Converter for arrays of booleans */
+	public static final Converter<boolean[]> BOOLEAN_ARRAY =
+		new Converter<boolean[]>() {
+			@Override
+			public boolean[] convert(String string) {
+				ItemIterator items = new ItemIterator(string);
+				boolean[] array = new boolean[items.count()];
+
+				for (int i = 0; i < array.length; i++)
+					array[i] = Boolean.parseBoolean(items.next());
+
+				return array;
+			}
+		};
+
+	/** Converter for arrays of strings */
+	public static final Converter<String[]> STRING_ARRAY =
+		new ArrayConverter<String>(STRING) {
+			@Override
+			protected String[] newArray(int length) {
+				return new String[length];
+			}
+		};
+
+	/** Converter for arrays of points */
+	public static final Converter<Point3D[]> POINT_3D_ARRAY =
+		new Converter<Point3D[]>() {
+			@Override
+			public Point3D[] convert(String string) throws ParseException {
+				return toPoints(ArrayScanner.scanFloats(string, 3));
+			}
+		};
+
+	/** Converter for arrays of vectors */
+	public static final Converter<Vector3D[]> VECTOR_3D_ARRAY =
+		new Converter<Vector3D[]>() {
+			@Override
+			public Vector3D[] convert(String string) throws ParseException {
+				return toVectors(ArrayScanner.scanFloats(string, 3));
+			}
+		};
+
+	/** Converter for arrays of colors */
+	public static final Converter<Color[]> COLOR_ARRAY =
+		new ArrayConverter<Color>(COLOR) {
+			@Override
+			protected Color[] newArray(int length) {
+				return new Color[length];
+			}
+		};
+
+	/** Converter for arrays of texture coordinates */
+	public static final Converter<TextureCoordinates[]>
+	TEXTURE_COORDINATES_ARRAY =
+		new Converter<TextureCoordinates[]>() {
+			@Override
+			public TextureCoordinates[] convert(String string)
+					throws ParseException {
+				return toTextureCoordinates(ArrayScanner.scanFloats(string,
+						2));
+			}
+		};
+
+	static {
+		register(float.class, FLOAT);
+		register(Float.class, FLOAT);
+		register(int.class, INTEGER);
+		register(Integer.class, INTEGER);
+		register(boolean.class, BOOLEAN);
+		register(Boolean.class, BOOLEAN);
+		register(String.class, STRING);
+		register(Point3D.class, POINT_3D);
+		register(Vector3D.class, VECTOR_3D);
+		register(Color.class, COLOR);
+		register(TextureCoordinates.class, TEXTURE_COORDINATES);
+
+		register(float[].class, FLOAT_ARRAY);
+		register(int[].class, INTEGER_ARRAY);
+		register(boolean[].class, BOOLEAN_ARRAY);
+		register(String[].class, STRING_ARRAY);
+		register(Point3D[].class, POINT_3D_ARRAY);
+		register(Vector3D[].class, VECTOR_3D_ARRAY);
+		register(Color[].class, COLOR_ARRAY);
+		register(TextureCoordinates[].class, TEXTURE_COORDINATES_ARRAY);
+	}
+
+	/**
+	 * This class cannot be instantiated
+	 */
+	private Converters() {
+	}
+
+	/**
+	 * Register a converter
+	 * <p>A converter registered for a class replaces any previous converter
+	 * registered for the same class.</p>
+	 * 
+	 * @param <T>
+	 *            Type of the values produced
+	 * @param type
+	 *            Class of the values produced
+	 * @param converter
+	 *            The converter
+	 */
+	public static synchronized <T> void register(Class<T> type,
+			Converter<? extends T> converter) {
+		converters.put(type, converter);
+	}
+
+	/**
+	 * Get the converter registered for a class
+	 * 
+	 * @param <T>
+	 *            Type of the values produced
+	 * @param type
+	 *            Class of the values produced
+	 * @return The converter
+	 * @throws ParseException
+	 *             No converter is registered for this class
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <T> Converter<T> get(Class<T> type)
+			throws ParseException {
+		Converter<T> converter = (Converter<T>) converters.get(type);
+
+		if (converter == null)
+			throw new ParseException(String.format(
+					"No converter for %s.", type.getSimpleName()));
+
+		return converter;
+	}
+
+	/**
+	 * Unpack points
+	 * 
+	 * @param packed
+	 *            Packed x, y, z triples, or null
+	 * @return The points, or null
+	 */
+	static Point3D[] toPoints(float[] packed) {
+		if (packed == null)
+			return null;
+
+		Point3D[] points = new Point3D[packed.length / 3];
+		for (int i = 0; i < points.length; i++) {
+			points[i] = new Point3D();
+			points[i].set(packed[3 * i], packed[3 * i + 1], packed[3 * i + 2]);
+		}
+
+		return points;
+	}
+
+	/**
+	 * Unpack vectors
+	 * 
+	 * @param packed
+	 *            Packed x, y, z triples, or null
+	 * @return The vectors, or null
+	 */
+	static Vector3D[] toVectors(float[] packed) {
+		if (packed == null)
+			return null;
+
+		Vector3D[] vectors = new Vector3D[packed.length / 3];
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = new Vector3D();
+			vectors[i].set(packed[3 * i], packed[3 * i + 1],
+					packed[3 * i + 2]);
+		}
+
+		return vectors;
+	}
+
+	/**
+	 * Unpack texture coordinates
+	 * 
+	 * @param packed
+	 *            Packed u, v pairs, or null
+	 * @return The texture coordinates, or null
+	 */
+	static TextureCoordinates[] toTextureCoordinates(float[] packed) {
+		if (packed == null)
+			return null;
+
+		TextureCoordinates[] coordinates =
+			new TextureCoordinates[packed.length / 2];
+		for (int i = 0; i < coordinates.length; i++) {
+			coordinates[i] = new TextureCoordinates();
+			coordinates[i].set(packed[2 * i], packed[2 * i + 1]);
+		}
+
+		return coordinates;
+	}
+
+	/**
+	 * Make the exception thrown when a string cannot be converted
+	 * 
+	 * @param type
+	 *            Class of the expected value
+	 * @param string
+	 *            String that should have been converted
+	 * @return The exception
+	 */
+	private static ParseException couldNotParse(Class<?> type, String string) {
+		return new ParseException(String.format(
+				"Could not parse %s from \"%s\".", type.getSimpleName(),
+				string));
+	}
+
+	/**
+	 * Converter for arrays of objects
+	 * 
+	 * @param <T>
+	 *            Type of the items
+	 */
+	private static abstract class ArrayConverter<T> implements Converter<T[]> {
+
+		/** Converter of the items */
+		private final Converter<T> itemConverter;
+
+		/**
+		 * Create a converter for arrays
+		 * 
+		 * @param itemConverter
+		 *            Converter of the items
+		 */
+		ArrayConverter(Converter<T> itemConverter) {
+			this.itemConverter = itemConverter;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public T[] convert(String string) throws ParseException {
+			ItemIterator items = new ItemIterator(string);
+			T[] array = newArray(items.count());
+
+			for (int i = 0; i < array.length; i++)
+				array[i] = itemConverter.convert(items.next());
+
+			return array;
+		}
+
+		/**
+		 * Create an array of items
+		 * 
+		 * @param length
+		 *            Length of the array
+		 * @return The array
+		 */
+		protected abstract T[] newArray(int length);
+	}
+
+	/**
+	 * Iterator over the comma-separated items of an array value
+	 * <p>Empty items are skipped, and items are trimmed.</p>
+	 */
+	private static final class ItemIterator {
+
+		/** The string being iterated */
+		private final String string;
+
+		/** Position of the next item */
+		private int position = 0;
+
+		/**
+		 * Create an iterator over the items of a string
+		 * 
+		 * @param string
+		 *            String representation of the array
+		 */
+		ItemIterator(String string) {
+			this.string = string;
+		}
+
+		/**
+		 * Count the items of the string
+		 * 
+		 * @return The number of items
+		 */
+		int count() {
+			int count = 0;
+			int start = 0;
+
+			while (start <= string.length()) {
+				int end = string.indexOf(',', start);
+				if (end < 0)
+					end = string.length();
+				if (end > start)
+					count++;
+				start = end + 1;
+			}
+
+			return count;
+		}
+
+		/**
+		 * Returns the next item
+		 * 
+		 * @return The next item, trimmed
+		 */
+		String next() {
+			while (true) {
+				int end = string.indexOf(',', position);
+				if (end < 0)
+					end = string.length();
+
+				int start = position;
+				position = end + 1;
+
+				if (end > start)
+					return string.substring(start, end).trim();
+			}
+		}
+	}
+}
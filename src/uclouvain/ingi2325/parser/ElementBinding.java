@@ -0,0 +1,256 @@
+package uclouvain.ingi2325.parser;
+
+import java.lang.annotation.*;
+import java.lang.invoke.*;
+import java.lang.reflect.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Binding plan of one SDL element
+ * <p>A binding plan gathers everything the {@link Parser} needs to know about
+ * an element: the start and end methods of {@link ParserHandler}, the names
+ * and types of the attributes, which of them are optional, and their default
+ * values. It is built once, when the parser class is initialized, so that the
+ * annotations of {@link ParserHandler} are not read again for every element
+ * of the document.</p>
+ * <p>The start and end methods are compiled into {@link MethodHandle}s with a
+ * fixed type, so that calling a handler is not a reflective call, and
+ * exceptions thrown by handlers are not wrapped.</p>
+ * <p>Default values of immutable types (numbers, booleans and strings) are
+ * parsed once and shared. Default values of mutable types (tuples) are
+ * re-parsed for each element, so that a handler cannot alter the default
+ * value seen by the next element.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class ElementBinding {
+
+	/** Name of the element */
+	private final String name;
+
+	/** Type of the start method handles: (ParserHandler, Object[])void */
+	private static final MethodType START_TYPE = MethodType.methodType(
+			void.class, ParserHandler.class, Object[].class);
+
+	/** Type of the end method handles: (ParserHandler)void */
+	private static final MethodType END_TYPE = MethodType.methodType(
+			void.class, ParserHandler.class);
+
+	/** Handle of the method of ParserHandler that starts the element */
+	private final MethodHandle startHandle;
+
+	/** Handle of the method of ParserHandler that ends the element */
+	private final MethodHandle endHandle;
+
+	/** Names of the attributes */
+	private final String[] attrNames;
+
+	/** Converters of the attributes */
+	private final Converter<?>[] converters;
+
+	/** Whether each attribute is optional */
+	private final boolean[] optional;
+
+	/** Default value of each attribute, as written in the annotation */
+	private final String[] defaultStrings;
+
+	/** Pre-parsed default value of each attribute, or null */
+	private final Object[] defaultValues;
+
+	/**
+	 * Build the binding plan of an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @param startMethod
+	 *            Method of ParserHandler that starts the element
+	 * @param endMethod
+	 *            Method of ParserHandler that ends the element
+	 * @throws ParseException
+	 *             An attribute has no converter, or a default value of the
+	 *             annotations cannot be parsed
+	 * @throws IllegalAccessException
+	 *             A method of ParserHandler is not accessible
+	 */
+	ElementBinding(String name, Method startMethod, Method endMethod)
+			throws ParseException, IllegalAccessException {
+		this.name = name;
+
+		// Get attribute names
+		Attributes annotation = startMethod.getAnnotation(Attributes.class);
+		if (annotation == null)
+			attrNames = new String[0];
+		else
+			attrNames = annotation.value();
+
+		// Get attribute converters
+		Class<?>[] attrTypes = startMethod.getParameterTypes();
+		assert attrNames.length == attrTypes.length;
+
+		converters = new Converter<?>[attrNames.length];
+		for (int i = 0; i < attrNames.length; i++)
+			converters[i] = Converters.get(attrTypes[i]);
+
+		// Compile the start and end methods
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		startHandle = lookup.unreflect(startMethod).asSpreader(
+				Object[].class, attrTypes.length).asType(START_TYPE);
+		endHandle = lookup.unreflect(endMethod).asType(END_TYPE);
+
+		// Fetch which parameters are optional, and their default values
+		optional = new boolean[attrNames.length];
+		defaultStrings = new String[attrNames.length];
+		defaultValues = new Object[attrNames.length];
+
+		Annotation[][] paramAnnotations =
+			startMethod.getParameterAnnotations();
+		for (int i = 0; i < attrNames.length; i++) {
+			for (Annotation paramAnnotation : paramAnnotations[i]) {
+				if (!(paramAnnotation instanceof Optional))
+					continue;
+
+				String value = ((Optional) paramAnnotation).value();
+				optional[i] = true;
+
+				if (!value.equals(Optional.NULL_STRING)) {
+					defaultStrings[i] = value;
+					defaultValues[i] = converters[i].convert(value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the name of the element
+	 * 
+	 * @return the name of the element
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Call the start method of a handler
+	 * 
+	 * @param handler
+	 *            The handler
+	 * @param parameters
+	 *            Parameters of the start method, as returned by
+	 *            {@link #bind(AttributeSource)}
+	 * @throws Exception
+	 *             The handler threw an exception
+	 */
+	void start(ParserHandler handler, Object[] parameters) throws Exception {
+		try {
+			startHandle.invokeExact(handler, parameters);
+		} catch (Exception error) {
+			throw error;
+		} catch (Error error) {
+			throw error;
+		} catch (Throwable error) {
+			throw new UndeclaredThrowableException(error);
+		}
+	}
+
+	/**
+	 * Call the end method of a handler
+	 * 
+	 * @param handler
+	 *            The handler
+	 * @throws Exception
+	 *             The handler threw an exception
+	 */
+	void end(ParserHandler handler) throws Exception {
+		try {
+			endHandle.invokeExact(handler);
+		} catch (Exception error) {
+			throw error;
+		} catch (Error error) {
+			throw error;
+		} catch (Throwable error) {
+			throw new UndeclaredThrowableException(error);
+		}
+	}
+
+	/**
+	 * Bind the XML attributes of an element to the parameters of its start
+	 * method
+	 * 
+	 * @param attributes
+	 *            Attributes of the element
+	 * @return The parameters of the start method
+	 * @throws ParseException
+	 *             An attribute is missing or cannot be parsed
+	 */
+	Object[] bind(AttributeSource attributes) throws ParseException {
+		Object[] parameters = new Object[attrNames.length];
+
+		for (int i = 0; i < attrNames.length; i++) {
+			String value = attributes.getValue(attrNames[i]);
+
+			if (value != null) {
+				// Explicit value
+				parameters[i] = converters[i].convert(value);
+			} else if (!optional[i]) {
+				// Missing non-optional attribute
+				throw new ParseException(String.format(
+						"Element \"%s\" requires attribute \"%s\".",
+						name, attrNames[i]));
+			} else if (defaultValues[i] != null) {
+				// Non-null default value
+				parameters[i] = defaultValue(i);
+			} else {
+				// Implied value - parameters[i] is already null
+			}
+		}
+
+		return parameters;
+	}
+
+	/**
+	 * Get the raw value of an attribute of an element
+	 * 
+	 * @param attributes
+	 *            Attributes of the element
+	 * @param attrName
+	 *            Name of the attribute
+	 * @return The value, or null if the attribute is optional and absent
+	 * @throws ParseException
+	 *             A non-optional attribute is missing
+	 */
+	String getValue(AttributeSource attributes, String attrName)
+			throws ParseException {
+		String value = attributes.getValue(attrName);
+
+		if (value == null) {
+			for (int i = 0; i < attrNames.length; i++) {
+				if (attrNames[i].equals(attrName) && !optional[i])
+					throw new ParseException(String.format(
+							"Element \"%s\" requires attribute \"%s\".",
+							name, attrName));
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the default value of an attribute
+	 * 
+	 * @param index
+	 *            Index of the attribute
+	 * @return The default value
+	 * @throws ParseException
+	 *             The default value cannot be parsed
+	 */
+	private Object defaultValue(int index) throws ParseException {
+		Object value = defaultValues[index];
+
+		if (value instanceof Number || value instanceof Boolean
+				|| value instanceof String)
+			return value;
+		else
+			return converters[index].convert(defaultStrings[index]);
+	}
+}
@@ -0,0 +1,456 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.security.*;
+import java.util.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * On-disk cache of meshes loaded from OBJ files
+ * <p>Each OBJ file loaded through the cache is stored, packed and
+ * triangulated, in a binary file of the cache directory. The next loads of
+ * the same file map this binary file in memory instead of parsing the OBJ
+ * file again, also from other processes.</p>
+ * <p>The key of a file is either its canonical path, size and modification
+ * time, or a hash of its content. Hashing reads the whole file on each load,
+ * but keeps hits when a file is copied or touched.</p>
+ * <p>The cache is bounded in size. Hits update the modification time of the
+ * cached files, and the least recently used ones are deleted when the cache
+ * grows beyond its maximum size.</p>
+ * <p>Cached files are made of a header:</p>
+ * <pre>"SDLM" version:int count:int*6</pre>
+ * <p>followed by the coordinates, normals, texture coordinates, coordinate
+ * indices, normal indices and texture coordinate indices, all
+ * little-endian. A count of -1 stands for an absent attribute.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class GeometryCache {
+
+	/** Magic number of cached files */
+	private static final byte[] MAGIC = { 'S', 'D', 'L', 'M' };
+
+	/** Version of the format of cached files */
+	private static final int VERSION = 1;
+
+	/** Size of the header of cached files */
+	private static final int HEADER_SIZE = 32;
+
+	/** Extension of cached files */
+	private static final String EXTENSION = ".mesh";
+
+	/** Maximum size of the default cache, in bytes */
+	public static final long DEFAULT_MAX_SIZE = 1L << 30;
+
+	/** System property that sets the directory of the default cache */
+	public static final String DIRECTORY_PROPERTY = "ingi2325.meshcache";
+
+	/** Default cache, created on first use */
+	private static GeometryCache defaultCache = null;
+
+	/** Cache directory */
+	private final File directory;
+
+	/** Maximum size of the cache, in bytes */
+	private final long maxSize;
+
+	/** True for keys made of a hash of the content */
+	private final boolean hashContent;
+
+	/** Number of loads served from the cache */
+	private int hits = 0;
+
+	/** Number of loads that parsed the OBJ file */
+	private int misses = 0;
+
+	/** Total time of the loads served from the cache, in nanoseconds */
+	private long hitNanos = 0;
+
+	/** Total time of the loads that parsed the OBJ file, in nanoseconds */
+	private long missNanos = 0;
+
+	/**
+	 * Create a cache keyed by path, size and modification time
+	 * 
+	 * @param directory
+	 *            Cache directory, created if needed
+	 * @param maxSize
+	 *            Maximum size of the cache, in bytes
+	 */
+	public GeometryCache(File directory, long maxSize) {
+		this(directory, maxSize, false);
+	}
+
+	/**
+	 * Create a cache
+	 * 
+	 * @param directory
+	 *            Cache directory, created if needed
+	 * @param maxSize
+	 *            Maximum size of the cache, in bytes
+	 * @param hashContent
+	 *            True for keys made of a hash of the content of the files,
+	 *            false for keys made of their path, size and modification
+	 *            time
+	 */
+	public GeometryCache(File directory, long maxSize, boolean hashContent) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+		this.hashContent = hashContent;
+	}
+
+	/**
+	 * Returns the default cache, of {@link #DEFAULT_MAX_SIZE} bytes, keyed by
+	 * path, size and modification time. Its directory is given by the
+	 * {@link #DIRECTORY_PROPERTY} system property, and is
+	 * <code>ingi2325-meshes</code> in the temporary directory by default.
+	 * 
+	 * @return the default cache
+	 */
+	public static synchronized GeometryCache getDefault() {
+		if (defaultCache == null) {
+			String path = System.getProperty(DIRECTORY_PROPERTY);
+			File directory = path != null ? new File(path) : new File(System
+					.getProperty("java.io.tmpdir"), "ingi2325-meshes");
+			defaultCache = new GeometryCache(directory, DEFAULT_MAX_SIZE);
+		}
+		return defaultCache;
+	}
+
+	/**
+	 * Load an OBJ file, from the cache if possible
+	 * <p>On a miss, the file is parsed by {@link ObjLoader} and stored in the
+	 * cache. A cached file that cannot be read is parsed again.</p>
+	 * 
+	 * @param file
+	 *            The OBJ file
+	 * @return The mesh
+	 * @throws IOException
+	 *             The OBJ file cannot be read
+	 * @throws ParseException
+	 *             The OBJ file is not valid
+	 */
+	public ObjMesh load(File file) throws IOException, ParseException {
+		long start = System.nanoTime();
+		File cached = new File(directory, key(file) + EXTENSION);
+
+		if (cached.isFile()) {
+			try {
+				ObjMesh mesh = read(cached);
+				cached.setLastModified(System.currentTimeMillis());
+				recordHit(System.nanoTime() - start);
+				return mesh;
+			} catch (IOException e) {
+				// Corrupted or concurrently evicted: parse the file again
+			}
+		}
+
+		ObjMesh mesh = ObjLoader.load(file);
+
+		try {
+			write(mesh, cached);
+			evict();
+		} catch (IOException e) {
+			// The cache is best-effort
+		}
+
+		recordMiss(System.nanoTime() - start);
+		return mesh;
+	}
+
+	/**
+	 * Delete all the cached files
+	 */
+	public void clear() {
+		for (File cached : listCachedFiles())
+			cached.delete();
+	}
+
+	/**
+	 * Returns the number of loads served from the cache
+	 * 
+	 * @return the number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of loads that parsed the OBJ file
+	 * 
+	 * @return the number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the total time of the loads served from the cache (warm loads)
+	 * 
+	 * @return the time, in nanoseconds
+	 */
+	public synchronized long getHitNanos() {
+		return hitNanos;
+	}
+
+	/**
+	 * Returns the total time of the loads that parsed the OBJ file (cold
+	 * loads), including the time to store them in the cache
+	 * 
+	 * @return the time, in nanoseconds
+	 */
+	public synchronized long getMissNanos() {
+		return missNanos;
+	}
+
+	/**
+	 * Returns a summary of the hits and misses
+	 * 
+	 * @return the summary
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(Locale.US,
+				"%d cold loads in %.3f s, %d warm loads in %.3f s", misses,
+				missNanos / 1e9, hits, hitNanos / 1e9);
+	}
+
+	/**
+	 * Record a hit
+	 * 
+	 * @param nanos
+	 *            Duration of the load
+	 */
+	private synchronized void recordHit(long nanos) {
+		hits++;
+		hitNanos += nanos;
+	}
+
+	/**
+	 * Record a miss
+	 * 
+	 * @param nanos
+	 *            Duration of the load
+	 */
+	private synchronized void recordMiss(long nanos) {
+		misses++;
+		missNanos += nanos;
+	}
+
+	/**
+	 * Compute the key of a file
+	 * 
+	 * @param file
+	 *            The OBJ file
+	 * @return The key, as hexadecimal digits
+	 * @throws IOException
+	 *             The file cannot be read
+	 */
+	private String key(File file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+
+		if (hashContent) {
+			FileInputStream stream = new FileInputStream(file);
+			try {
+				FileChannel channel = stream.getChannel();
+				long size = channel.size();
+				for (long position = 0; position < size;
+						position += Integer.MAX_VALUE)
+					digest.update(channel.map(FileChannel.MapMode.READ_ONLY,
+							position, Math.min(Integer.MAX_VALUE, size
+									- position)));
+			} finally {
+				stream.close();
+			}
+		} else {
+			digest.update(String.format("%s\0%d\0%d",
+					file.getCanonicalPath(), file.length(),
+					file.lastModified()).getBytes("UTF-8"));
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest())
+			key.append(String.format("%02x", b & 0xff));
+		return key.toString();
+	}
+
+	/**
+	 * Read a cached mesh
+	 * 
+	 * @param cached
+	 *            The cached file
+	 * @return The mesh
+	 * @throws IOException
+	 *             The file cannot be read, or is not valid
+	 */
+	private static ObjMesh read(File cached) throws IOException {
+		FileInputStream stream = new FileInputStream(cached);
+
+		try {
+			FileChannel channel = stream.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, MAGIC) || buffer.getInt() != VERSION)
+				throw new IOException("Invalid cached mesh " + cached);
+
+			// Check the counts before allocating, so that a corrupted header
+			// is parsed again rather than failing the load
+			int[] counts = new int[6];
+			long size = 0;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = buffer.getInt();
+				if (counts[i] < -1)
+					throw new IOException("Invalid cached mesh " + cached);
+				size += 4L * Math.max(counts[i], 0);
+			}
+			if (size > buffer.remaining())
+				throw new IOException("Truncated cached mesh " + cached);
+
+			float[][] values = new float[3][];
+			for (int i = 0; i < 3; i++) {
+				if (counts[i] >= 0) {
+					values[i] = new float[counts[i]];
+					buffer.asFloatBuffer().get(values[i]);
+					buffer.position(buffer.position() + 4 * counts[i]);
+				}
+			}
+
+			int[][] indices = new int[3][];
+			for (int i = 0; i < 3; i++) {
+				if (counts[3 + i] >= 0) {
+					indices[i] = new int[counts[3 + i]];
+					buffer.asIntBuffer().get(indices[i]);
+					buffer.position(buffer.position() + 4 * counts[3 + i]);
+				}
+			}
+
+			return new ObjMesh(values[0], values[1], values[2], indices[0],
+					indices[1], indices[2]);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated cached mesh " + cached);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Write a mesh to the cache
+	 * <p>The mesh is written to a temporary file, then renamed, so that other
+	 * processes never see a partial file.</p>
+	 * 
+	 * @param mesh
+	 *            The mesh
+	 * @param cached
+	 *            The cached file
+	 * @throws IOException
+	 *             The file cannot be written
+	 */
+	private void write(ObjMesh mesh, File cached) throws IOException {
+		directory.mkdirs();
+
+		float[][] values = { mesh.getCoordinates(), mesh.getNormals(),
+				mesh.getTextureCoordinates() };
+		int[][] indices = { mesh.getCoordinateIndices(),
+				mesh.getNormalIndices(), mesh.getTextureCoordinateIndices() };
+
+		long size = HEADER_SIZE;
+		for (int i = 0; i < 3; i++) {
+			size += values[i] == null ? 0 : 4L * values[i].length;
+			size += indices[i] == null ? 0 : 4L * indices[i].length;
+		}
+
+		File temporary = File.createTempFile("mesh", ".tmp", directory);
+		RandomAccessFile output = new RandomAccessFile(temporary, "rw");
+		boolean written = false;
+
+		try {
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE,
+					0, size).order(ByteOrder.LITTLE_ENDIAN);
+
+			buffer.put(MAGIC);
+			buffer.putInt(VERSION);
+			for (int i = 0; i < 3; i++)
+				buffer.putInt(values[i] == null ? -1 : values[i].length);
+			for (int i = 0; i < 3; i++)
+				buffer.putInt(indices[i] == null ? -1 : indices[i].length);
+
+			for (int i = 0; i < 3; i++) {
+				if (values[i] != null) {
+					buffer.asFloatBuffer().put(values[i]);
+					buffer.position(buffer.position() + 4 * values[i].length);
+				}
+			}
+			for (int i = 0; i < 3; i++) {
+				if (indices[i] != null) {
+					buffer.asIntBuffer().put(indices[i]);
+					buffer.position(buffer.position() + 4 * indices[i].length);
+				}
+			}
+
+			written = true;
+		} finally {
+			output.close();
+			if (!written || !temporary.renameTo(cached))
+				temporary.delete();
+		}
+	}
+
+	/**
+	 * Delete the least recently used cached files until the cache fits in its
+	 * maximum size
+	 */
+	private void evict() {
+		File[] files = listCachedFiles();
+		long total = 0;
+		for (File file : files)
+			total += file.length();
+
+		if (total <= maxSize)
+			return;
+
+		final Map<File, Long> used = new HashMap<File, Long>();
+		for (File file : files)
+			used.put(file, file.lastModified());
+
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File file1, File file2) {
+				return used.get(file1).compareTo(used.get(file2));
+			}
+		});
+
+		for (int i = 0; i < files.length && total > maxSize; i++) {
+			long length = files[i].length();
+			if (files[i].delete())
+				total -= length;
+		}
+	}
+
+	/**
+	 * List the cached files
+	 * 
+	 * @return The cached files
+	 */
+	private File[] listCachedFiles() {
+		File[] files = directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(EXTENSION);
+			}
+		});
+
+		return files == null ? new File[0] : files;
+	}
+}
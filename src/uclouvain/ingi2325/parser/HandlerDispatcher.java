@@ -0,0 +1,434 @@
+package uclouvain.ingi2325.parser;
+
+import java.lang.reflect.*;
+import java.nio.*;
+import java.util.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Dispatcher of parsed elements to parser handlers
+ * <p>The dispatcher is shared by the parser backends ({@link Parser} for SAX,
+ * {@link StreamParser} for StAX, {@link BinaryParser} for SDLB). It binds the attributes of each element to
+ * the parameters of its start method, using the binding plans built once for
+ * all elements, and calls every handler in turn.</p>
+ * 
+ * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
+ * @author Julien Dupuis
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class HandlerDispatcher {
+
+	/** Element whose attributes can be delivered packed */
+	private static final String INDEXED_TRIANGLE_SET = "IndexedTriangleSet";
+
+	/** Binding plans of the elements, by element name */
+	private static final Map<String, ElementBinding> bindings =
+		new HashMap<String, ElementBinding>();
+
+	/** Handlers */
+	private final List<ParserHandler> handlers =
+		new ArrayList<ParserHandler>(2);
+
+	/** Number of handlers that accept packed or buffered geometry */
+	private int packedHandlers = 0;
+
+	static {
+		// Build the binding plans of all elements
+		try {
+			for (Method method : ParserHandler.class.getDeclaredMethods()) {
+				String name = method.getName();
+
+				if (name.startsWith("start")) {
+					String elementName = name.substring(5);
+					Method endMethod = ParserHandler.class.getMethod("end"
+							+ elementName);
+
+					bindings.put(elementName, new ElementBinding(elementName,
+							method, endMethod));
+				}
+			}
+		} catch (Exception error) {
+			throw new ExceptionInInitializerError(error);
+		}
+	}
+
+	/**
+	 * Add a parser handler
+	 * 
+	 * @param handler
+	 *            A parser handler
+	 */
+	void addHandler(ParserHandler handler) {
+		if (!handlers.contains(handler)) {
+			handlers.add(handler);
+			if (acceptsPacked(handler))
+				packedHandlers++;
+		}
+	}
+
+	/**
+	 * Add a parser handler, called before all the others
+	 * 
+	 * @param handler
+	 *            A parser handler
+	 */
+	void addFirstHandler(ParserHandler handler) {
+		handlers.add(0, handler);
+		if (acceptsPacked(handler))
+			packedHandlers++;
+	}
+
+	/**
+	 * Remove a parser handler
+	 * 
+	 * @param handler
+	 *            The handler to remove
+	 */
+	void removeHandler(ParserHandler handler) {
+		if (handlers.remove(handler) && acceptsPacked(handler))
+			packedHandlers--;
+	}
+
+	/**
+	 * Test whether a handler accepts packed or buffered geometry
+	 * 
+	 * @param handler
+	 *            A parser handler
+	 * @return true if the handler implements {@link PackedGeometryHandler} or
+	 *         {@link BufferGeometryHandler}
+	 */
+	private static boolean acceptsPacked(ParserHandler handler) {
+		return handler instanceof PackedGeometryHandler
+				|| handler instanceof BufferGeometryHandler;
+	}
+
+	/**
+	 * Start an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @param attributes
+	 *            Attributes of the element
+	 * @throws Exception
+	 *             The element is unknown, an attribute is invalid, or a
+	 *             handler failed
+	 */
+	void startElement(String name, AttributeSource attributes)
+			throws Exception {
+		// Find the binding plan of the element
+		ElementBinding binding = findBinding(name);
+
+		if (packedHandlers > 0 && name.equals(INDEXED_TRIANGLE_SET)) {
+			// Deliver packed arrays to the handlers that accept them
+			startPackedIndexedTriangleSet(binding, attributes);
+			return;
+		}
+
+		// Parse the parameters
+		Object[] parameters = binding.bind(attributes);
+
+		// Call the handlers
+		for (ParserHandler handler : handlers)
+			binding.start(handler, parameters);
+	}
+
+	/**
+	 * End an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @throws Exception
+	 *             The element is unknown, or a handler failed
+	 */
+	void endElement(String name) throws Exception {
+		// Find the binding plan of the element
+		ElementBinding binding = findBinding(name);
+
+		// Call the handlers
+		for (ParserHandler handler : handlers)
+			binding.end(handler);
+	}
+
+	/**
+	 * Start an element whose parameters are already converted
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @param parameters
+	 *            Parameters of the start method
+	 * @throws Exception
+	 *             The element is unknown, or a handler failed
+	 */
+	void startElement(String name, Object[] parameters) throws Exception {
+		// Find the binding plan of the element
+		ElementBinding binding = findBinding(name);
+
+		// Call the handlers
+		for (ParserHandler handler : handlers)
+			binding.start(handler, parameters);
+	}
+
+	/**
+	 * Start an IndexedTriangleSet element whose attributes are in buffers
+	 * 
+	 * @param coordinates
+	 *            Coordinates, as x, y, z triples
+	 * @param normals
+	 *            Normals, or null
+	 * @param textureCoordinates
+	 *            Texture coordinates, or null
+	 * @param coordinateIndices
+	 *            Indices in the coordinates
+	 * @param normalIndices
+	 *            Indices in the normals, or null
+	 * @param textureCoordinateIndices
+	 *            Indices in the texture coordinates, or null
+	 * @param name
+	 *            Name of the geometry
+	 * @throws Exception
+	 *             A handler failed
+	 */
+	void startIndexedTriangleSet(FloatBuffer coordinates, FloatBuffer normals,
+			FloatBuffer textureCoordinates, IntBuffer coordinateIndices,
+			IntBuffer normalIndices, IntBuffer textureCoordinateIndices,
+			String name) throws Exception {
+		Mesh mesh = new Mesh(name);
+		mesh.floatBuffers[0] = coordinates;
+		mesh.floatBuffers[1] = normals;
+		mesh.floatBuffers[2] = textureCoordinates;
+		mesh.intBuffers[0] = coordinateIndices;
+		mesh.intBuffers[1] = normalIndices;
+		mesh.intBuffers[2] = textureCoordinateIndices;
+
+		startIndexedTriangleSet(findBinding(INDEXED_TRIANGLE_SET), mesh);
+	}
+
+	/**
+	 * Start an IndexedTriangleSet element when some handlers accept packed
+	 * geometry
+	 * <p>The attributes are scanned once into packed arrays.</p>
+	 * 
+	 * @param binding
+	 *            Binding plan of the element
+	 * @param attributes
+	 *            Attributes of the element
+	 * @throws Exception
+	 *             An attribute is invalid, or a handler failed
+	 */
+	private void startPackedIndexedTriangleSet(ElementBinding binding,
+			AttributeSource attributes) throws Exception {
+		Mesh mesh = new Mesh(binding.getValue(attributes, "name"));
+		mesh.floatArrays[0] = scanFloats(binding, attributes, "coordinates", 3);
+		mesh.floatArrays[1] = scanFloats(binding, attributes, "normals", 3);
+		mesh.floatArrays[2] = scanFloats(binding, attributes,
+				"textureCoordinates", 2);
+		mesh.intArrays[0] = scanInts(binding, attributes, "coordinateIndices");
+		mesh.intArrays[1] = scanInts(binding, attributes, "normalIndices");
+		mesh.intArrays[2] = scanInts(binding, attributes,
+				"textureCoordinateIndices");
+
+		startIndexedTriangleSet(binding, mesh);
+	}
+
+	/**
+	 * Deliver an IndexedTriangleSet element to every handler in the form it
+	 * accepts
+	 * <p>Handlers that implement {@link BufferGeometryHandler} receive buffers,
+	 * those that implement {@link PackedGeometryHandler} receive packed
+	 * arrays, and the others receive arrays of objects unpacked from them.</p>
+	 * 
+	 * @param binding
+	 *            Binding plan of the element
+	 * @param mesh
+	 *            Attributes of the element
+	 * @throws Exception
+	 *             A handler failed
+	 */
+	private void startIndexedTriangleSet(ElementBinding binding, Mesh mesh)
+			throws Exception {
+		Object[] parameters = null;
+
+		for (ParserHandler handler : handlers) {
+			if (handler instanceof BufferGeometryHandler) {
+				((BufferGeometryHandler) handler).startIndexedTriangleSet(
+						mesh.floatBuffer(0), mesh.floatBuffer(1),
+						mesh.floatBuffer(2), mesh.intBuffer(0),
+						mesh.intBuffer(1), mesh.intBuffer(2), mesh.name);
+			} else if (handler instanceof PackedGeometryHandler) {
+				((PackedGeometryHandler) handler).startIndexedTriangleSet(
+						mesh.floatArray(0), mesh.floatArray(1),
+						mesh.floatArray(2), mesh.intArray(0), mesh.intArray(1),
+						mesh.intArray(2), mesh.name);
+			} else {
+				if (parameters == null)
+					parameters = new Object[] {
+							Converters.toPoints(mesh.floatArray(0)),
+							Converters.toVectors(mesh.floatArray(1)),
+							Converters.toTextureCoordinates(
+									mesh.floatArray(2)),
+							mesh.intArray(0), mesh.intArray(1),
+							mesh.intArray(2), mesh.name };
+
+				binding.start(handler, parameters);
+			}
+		}
+	}
+
+	/**
+	 * Scan a packed float array attribute
+	 * 
+	 * @param binding
+	 *            Binding plan of the element
+	 * @param attributes
+	 *            Attributes of the element
+	 * @param attrName
+	 *            Name of the attribute
+	 * @param itemSize
+	 *            Number of floats in each item
+	 * @return The packed floats, or null if the attribute is absent
+	 * @throws ParseException
+	 *             The attribute is missing or invalid
+	 */
+	private static float[] scanFloats(ElementBinding binding,
+			AttributeSource attributes, String attrName, int itemSize)
+			throws ParseException {
+		String value = binding.getValue(attributes, attrName);
+		return value == null ? null : ArrayScanner.scanFloats(value, itemSize);
+	}
+
+	/**
+	 * Scan an integer array attribute
+	 * 
+	 * @param binding
+	 *            Binding plan of the element
+	 * @param attributes
+	 *            Attributes of the element
+	 * @param attrName
+	 *            Name of the attribute
+	 * @return The integers, or null if the attribute is absent
+	 * @throws ParseException
+	 *             The attribute is missing or invalid
+	 */
+	private static int[] scanInts(ElementBinding binding,
+			AttributeSource attributes, String attrName)
+			throws ParseException {
+		String value = binding.getValue(attributes, attrName);
+		return value == null ? null : ArrayScanner.scanInts(value);
+	}
+
+	/**
+	 * Find the binding plan of an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @return The binding plan
+	 * @throws ParseException
+	 *             The element is unknown
+	 */
+	private static ElementBinding findBinding(String name)
+			throws ParseException {
+		ElementBinding binding = bindings.get(name);
+
+		if (binding == null)
+			throw new ParseException(String.format(
+					"Unknown element \"%s\".", name));
+
+		return binding;
+	}
+
+	/**
+	 * Attributes of an IndexedTriangleSet, as packed arrays or buffers
+	 * <p>Attributes are given in one form and converted lazily to the other:
+	 * arrays are wrapped in buffers without copy, buffers are copied into
+	 * arrays at most once. Slot 0 holds the coordinates, slot 1 the normals and
+	 * slot 2 the texture coordinates (or their indices).</p>
+	 */
+	private static final class Mesh {
+
+		/** Name of the geometry */
+		final String name;
+
+		/** Float attributes as arrays */
+		final float[][] floatArrays = new float[3][];
+
+		/** Float attributes as buffers */
+		final FloatBuffer[] floatBuffers = new FloatBuffer[3];
+
+		/** Index attributes as arrays */
+		final int[][] intArrays = new int[3][];
+
+		/** Index attributes as buffers */
+		final IntBuffer[] intBuffers = new IntBuffer[3];
+
+		/**
+		 * Create empty attributes
+		 * 
+		 * @param name
+		 *            Name of the geometry
+		 */
+		Mesh(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Get a float attribute as an array
+		 * 
+		 * @param slot
+		 *            Slot of the attribute
+		 * @return The array, or null if the attribute is absent
+		 */
+		float[] floatArray(int slot) {
+			if (floatArrays[slot] == null && floatBuffers[slot] != null) {
+				FloatBuffer buffer = floatBuffers[slot].duplicate();
+				floatArrays[slot] = new float[buffer.remaining()];
+				buffer.get(floatArrays[slot]);
+			}
+			return floatArrays[slot];
+		}
+
+		/**
+		 * Get a float attribute as a buffer
+		 * 
+		 * @param slot
+		 *            Slot of the attribute
+		 * @return A new view of the buffer, or null if the attribute is absent
+		 */
+		FloatBuffer floatBuffer(int slot) {
+			if (floatBuffers[slot] == null && floatArrays[slot] != null)
+				floatBuffers[slot] = FloatBuffer.wrap(floatArrays[slot]);
+			return floatBuffers[slot] == null ? null : floatBuffers[slot]
+					.duplicate();
+		}
+
+		/**
+		 * Get an index attribute as an array
+		 * 
+		 * @param slot
+		 *            Slot of the attribute
+		 * @return The array, or null if the attribute is absent
+		 */
+		int[] intArray(int slot) {
+			if (intArrays[slot] == null && intBuffers[slot] != null) {
+				IntBuffer buffer = intBuffers[slot].duplicate();
+				intArrays[slot] = new int[buffer.remaining()];
+				buffer.get(intArrays[slot]);
+			}
+			return intArrays[slot];
+		}
+
+		/**
+		 * Get an index attribute as a buffer
+		 * 
+		 * @param slot
+		 *            Slot of the attribute
+		 * @return A new view of the buffer, or null if the attribute is absent
+		 */
+		IntBuffer intBuffer(int slot) {
+			if (intBuffers[slot] == null && intArrays[slot] != null)
+				intBuffers[slot] = IntBuffer.wrap(intArrays[slot]);
+			return intBuffers[slot] == null ? null : intBuffers[slot]
+					.duplicate();
+		}
+	}
+}
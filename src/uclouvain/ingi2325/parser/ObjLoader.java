@@ -0,0 +1,728 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import uclouvain.ingi2325.exception.*;
+import uclouvain.ingi2325.utils.SharedPool;
+
+/**
+ * Parallel loader of Wavefront OBJ files
+ * <p>The file is split into chunks of about {@link #CHUNK_SIZE} bytes, cut at
+ * line boundaries. Each chunk is memory-mapped and parsed by its own task on a
+ * {@link ForkJoinPool}, into growable packed arrays. The chunks are then
+ * merged in file order into one {@link ObjMesh}.</p>
+ * <p>Only <code>v</code>, <code>vt</code>, <code>vn</code> and
+ * <code>f</code> records are read; the other records (groups, materials,
+ * smoothing groups, ...) are ignored. Faces with more than three vertices are
+ * triangulated as fans around their first vertex. Negative (relative) indices
+ * are supported. If some faces have texture coordinates or normals and others
+ * do not, that attribute is dropped from the whole mesh.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class ObjLoader {
+
+	/** Target size of the chunks parsed in parallel */
+	static final int CHUNK_SIZE = 4 << 20;
+
+	/** Index of coordinates in the per-attribute arrays */
+	private static final int V = 0;
+
+	/** Index of texture coordinates in the per-attribute arrays */
+	private static final int VT = 1;
+
+	/** Index of normals in the per-attribute arrays */
+	private static final int VN = 2;
+
+	/** Number of floats per item of each attribute */
+	private static final int[] ITEM_SIZES = { 3, 2, 3 };
+
+	/**
+	 * Utility class
+	 */
+	private ObjLoader() {
+	}
+
+	/**
+	 * Load an OBJ file on the {@link SharedPool}
+	 * 
+	 * @param file
+	 *            The OBJ file
+	 * @return The mesh
+	 * @throws IOException
+	 *             The file cannot be read
+	 * @throws ParseException
+	 *             The file is not a valid OBJ file
+	 */
+	public static ObjMesh load(File file) throws IOException, ParseException {
+		return load(file, SharedPool.get());
+	}
+
+	/**
+	 * Load an OBJ file on a given pool
+	 * 
+	 * @param file
+	 *            The OBJ file
+	 * @param pool
+	 *            The pool that runs the parsing tasks
+	 * @return The mesh
+	 * @throws IOException
+	 *             The file cannot be read
+	 * @throws ParseException
+	 *             The file is not a valid OBJ file
+	 */
+	public static ObjMesh load(File file, ForkJoinPool pool)
+			throws IOException, ParseException {
+		FileInputStream stream = new FileInputStream(file);
+
+		try {
+			FileChannel channel = stream.getChannel();
+			long[] bounds = split(channel);
+
+			List<Chunk> chunks = new ArrayList<Chunk>(bounds.length - 1);
+			for (int i = 0; i + 1 < bounds.length; i++)
+				chunks.add(new Chunk(channel, bounds[i], bounds[i + 1]));
+
+			pool.invoke(new ParseAll(chunks));
+
+			// Report the first error in file order
+			for (int i = 0; i < chunks.size(); i++) {
+				Chunk chunk = chunks.get(i);
+				if (chunk.ioError != null)
+					throw chunk.ioError;
+				if (chunk.error != null)
+					throw new ParseException(String.format(
+							"%s: %s (line %d)", file.getName(), chunk.error,
+							countLines(chunks.subList(0, i))
+									+ chunk.errorLine));
+			}
+
+			return merge(file, chunks);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Split a file into chunks that end at line boundaries
+	 * 
+	 * @param channel
+	 *            The file
+	 * @return The bounds of the chunks: chunk i spans from bounds[i] to
+	 *         bounds[i + 1]
+	 * @throws IOException
+	 *             The file cannot be read
+	 */
+	private static long[] split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[(int) (size / CHUNK_SIZE) + 2];
+		int count = 1;
+
+		ByteBuffer probe = ByteBuffer.allocate(256);
+		long position = CHUNK_SIZE;
+
+		while (position < size) {
+			// Move the bound just after the next end of line
+			long bound = -1;
+			while (bound < 0 && position < size) {
+				probe.clear();
+				int read = channel.read(probe, position);
+				if (read <= 0)
+					break;
+				for (int i = 0; i < read; i++) {
+					if (probe.get(i) == '\n') {
+						bound = position + i + 1;
+						break;
+					}
+				}
+				if (bound < 0)
+					position += read;
+			}
+
+			if (bound < 0 || bound >= size)
+				break;
+
+			bounds[count++] = bound;
+			position = bound + CHUNK_SIZE;
+		}
+
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Count the lines of chunks, for error messages
+	 * 
+	 * @param chunks
+	 *            The chunks
+	 * @return The number of lines
+	 */
+	private static int countLines(List<Chunk> chunks) {
+		int lines = 0;
+		for (Chunk chunk : chunks)
+			lines += chunk.lines;
+		return lines;
+	}
+
+	/**
+	 * Merge the chunks into one mesh
+	 * 
+	 * @param file
+	 *            The OBJ file, for error messages
+	 * @param chunks
+	 *            The parsed chunks, in file order
+	 * @return The mesh
+	 * @throws ParseException
+	 *             An index is out of range
+	 */
+	private static ObjMesh merge(File file, List<Chunk> chunks)
+			throws ParseException {
+		int[] totals = new int[3];
+		boolean[] missing = new boolean[3];
+		int corners = 0;
+
+		for (Chunk chunk : chunks) {
+			for (int a = 0; a < 3; a++) {
+				totals[a] += chunk.values[a].size() / ITEM_SIZES[a];
+				missing[a] |= chunk.missing[a];
+			}
+			corners += chunk.indices[V].size();
+		}
+
+		// An attribute is kept if all faces use it, or if it has values
+		boolean[] present = new boolean[3];
+		float[][] values = new float[3][];
+		int[][] indices = new int[3][];
+
+		for (int a = 0; a < 3; a++) {
+			present[a] = a == V || !missing[a]
+					&& (corners > 0 || totals[a] > 0);
+			if (present[a]) {
+				values[a] = new float[totals[a] * ITEM_SIZES[a]];
+				indices[a] = new int[corners];
+			}
+		}
+
+		int[] itemOffsets = new int[3];
+		int[] valueOffsets = new int[3];
+		int cornerOffset = 0;
+
+		for (Chunk chunk : chunks) {
+			for (int a = 0; a < 3; a++) {
+				FloatList chunkValues = chunk.values[a];
+
+				if (present[a]) {
+					System.arraycopy(chunkValues.data, 0, values[a],
+							valueOffsets[a], chunkValues.size());
+
+					IntList chunkIndices = chunk.indices[a];
+					System.arraycopy(chunkIndices.data, 0, indices[a],
+							cornerOffset, chunkIndices.size());
+
+					// Relative indices count from the start of the chunk
+					IntList relative = chunk.relative[a];
+					for (int i = 0; i < relative.size(); i++)
+						indices[a][cornerOffset + relative.data[i]] +=
+							itemOffsets[a];
+				}
+
+				valueOffsets[a] += chunkValues.size();
+				itemOffsets[a] += chunkValues.size() / ITEM_SIZES[a];
+			}
+
+			cornerOffset += chunk.indices[V].size();
+		}
+
+		String[] names = { "vertex", "texture coordinate", "normal" };
+		for (int a = 0; a < 3; a++) {
+			if (indices[a] == null)
+				continue;
+			for (int index : indices[a])
+				if (index < 0 || index >= totals[a])
+					throw new ParseException(String.format(
+							"%s: %s index %d is out of range.",
+							file.getName(), names[a], index + 1));
+		}
+
+		return new ObjMesh(values[V], values[VN], values[VT], indices[V],
+				indices[VN], indices[VT]);
+	}
+
+	/**
+	 * Task that parses all the chunks in parallel
+	 */
+	private static final class ParseAll extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** The chunks */
+		private final List<Chunk> chunks;
+
+		/**
+		 * Create the task
+		 * 
+		 * @param chunks
+		 *            The chunks
+		 */
+		ParseAll(List<Chunk> chunks) {
+			this.chunks = chunks;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute() {
+			invokeAll(chunks);
+		}
+	}
+
+	/**
+	 * Task that parses one chunk of the file
+	 * <p>Errors are recorded in the chunk instead of being thrown, so that
+	 * the first error in file order can be reported with its line.</p>
+	 */
+	private static final class Chunk extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** The file */
+		private final FileChannel channel;
+
+		/** Start of the chunk in the file */
+		private final long start;
+
+		/** End of the chunk in the file */
+		private final long end;
+
+		/** Values of each attribute */
+		final FloatList[] values = { new FloatList(), new FloatList(),
+				new FloatList() };
+
+		/** Indices of each attribute, three per triangle */
+		final IntList[] indices = { new IntList(), new IntList(),
+				new IntList() };
+
+		/** Positions in indices of the relative indices, per attribute */
+		final IntList[] relative = { new IntList(), new IntList(),
+				new IntList() };
+
+		/** Whether some face lacks each attribute */
+		final boolean[] missing = new boolean[3];
+
+		/** Number of lines of the chunk */
+		int lines = 0;
+
+		/** Message of the first error, or null */
+		String error = null;
+
+		/** Line of the first error, within the chunk */
+		int errorLine = 0;
+
+		/** Error while reading the chunk, or null */
+		IOException ioError = null;
+
+		/** Content of the chunk */
+		private byte[] data;
+
+		/** Current position in data */
+		private int position;
+
+		/** Indices of the corners of the current face, per attribute */
+		private int[][] face = new int[3][8];
+
+		/** Whether the indices of the current face are relative */
+		private boolean[][] faceRelative = new boolean[3][8];
+
+		/**
+		 * Create the task that parses a chunk
+		 * 
+		 * @param channel
+		 *            The file
+		 * @param start
+		 *            Start of the chunk
+		 * @param end
+		 *            End of the chunk
+		 */
+		Chunk(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute() {
+			try {
+				MappedByteBuffer buffer = channel.map(
+						FileChannel.MapMode.READ_ONLY, start, end - start);
+				data = new byte[buffer.remaining()];
+				buffer.get(data);
+			} catch (IOException e) {
+				ioError = e;
+				return;
+			}
+
+			position = 0;
+			while (position < data.length) {
+				lines++;
+				try {
+					parseLine();
+				} catch (ParseException e) {
+					error = e.getMessage();
+					errorLine = lines;
+					break;
+				}
+			}
+
+			data = null;
+		}
+
+		/**
+		 * Parse the line at the current position, and move to the next one
+		 * 
+		 * @throws ParseException
+		 *             The line is not a valid record
+		 */
+		private void parseLine() throws ParseException {
+			skipBlanks();
+			int keyword = position;
+			skipToken();
+			int length = position - keyword;
+
+			if (length == 1 && data[keyword] == 'v') {
+				parseValues(V, 3);
+			} else if (length == 2 && data[keyword] == 'v'
+					&& data[keyword + 1] == 't') {
+				parseValues(VT, 1);
+			} else if (length == 2 && data[keyword] == 'v'
+					&& data[keyword + 1] == 'n') {
+				parseValues(VN, 3);
+			} else if (length == 1 && data[keyword] == 'f') {
+				parseFace();
+			}
+
+			skipLine();
+		}
+
+		/**
+		 * Parse the values of a v, vt or vn record
+		 * <p>Values beyond the item size are ignored; missing texture
+		 * coordinates are 0.</p>
+		 * 
+		 * @param attribute
+		 *            The attribute
+		 * @param required
+		 *            Number of values required
+		 * @throws ParseException
+		 *             A value is missing or invalid
+		 */
+		private void parseValues(int attribute, int required)
+				throws ParseException {
+			FloatList list = values[attribute];
+
+			for (int i = 0; i < ITEM_SIZES[attribute]; i++) {
+				skipBlanks();
+				if (atLineEnd()) {
+					if (i < required)
+						throw new ParseException("Missing value.");
+					list.add(0);
+				} else {
+					int token = position;
+					skipToken();
+					list.add(parseFloat(token, position));
+				}
+			}
+		}
+
+		/**
+		 * Parse an f record, and triangulate it as a fan
+		 * 
+		 * @throws ParseException
+		 *             A vertex is invalid, or there are less than three
+		 */
+		private void parseFace() throws ParseException {
+			int count = 0;
+
+			while (true) {
+				skipBlanks();
+				if (atLineEnd())
+					break;
+
+				if (count == face[V].length) {
+					for (int a = 0; a < 3; a++) {
+						face[a] = Arrays.copyOf(face[a], 2 * count);
+						faceRelative[a] = Arrays.copyOf(faceRelative[a],
+								2 * count);
+					}
+				}
+
+				int token = position;
+				skipToken();
+				parseVertex(token, position, count);
+				count++;
+			}
+
+			if (count < 3)
+				throw new ParseException("A face needs at least 3 vertices.");
+
+			for (int a = 0; a < 3; a++) {
+				for (int i = 1; i + 1 < count; i++) {
+					addCorner(a, 0);
+					addCorner(a, i);
+					addCorner(a, i + 1);
+				}
+			}
+		}
+
+		/**
+		 * Add the index of a corner of the current face
+		 * <p>Relative indices count from the start of the chunk; their
+		 * positions are recorded so that they can be fixed when merging.</p>
+		 * 
+		 * @param attribute
+		 *            The attribute
+		 * @param corner
+		 *            Position of the vertex in the face
+		 */
+		private void addCorner(int attribute, int corner) {
+			IntList list = indices[attribute];
+
+			if (faceRelative[attribute][corner])
+				relative[attribute].add(list.size());
+			list.add(face[attribute][corner]);
+		}
+
+		/**
+		 * Parse a vertex of a face: v, v/vt, v//vn or v/vt/vn
+		 * 
+		 * @param from
+		 *            Start of the token
+		 * @param to
+		 *            End of the token
+		 * @param corner
+		 *            Position of the vertex in the face
+		 * @throws ParseException
+		 *             The vertex is invalid
+		 */
+		private void parseVertex(int from, int to, int corner)
+				throws ParseException {
+			int attribute = V;
+
+			while (attribute < 3) {
+				int slash = from;
+				while (slash < to && data[slash] != '/')
+					slash++;
+
+				faceRelative[attribute][corner] = false;
+
+				if (slash == from && attribute != V) {
+					face[attribute][corner] = -1;
+				} else {
+					int value = parseInt(from, slash);
+
+					if (value > 0) {
+						face[attribute][corner] = value - 1;
+					} else if (value < 0) {
+						face[attribute][corner] = values[attribute].size()
+								/ ITEM_SIZES[attribute] + value;
+						faceRelative[attribute][corner] = true;
+					} else {
+						throw new ParseException("Index 0 is not valid.");
+					}
+				}
+
+				attribute++;
+				if (slash == to)
+					break;
+				from = slash + 1;
+			}
+
+			for (; attribute < 3; attribute++) {
+				face[attribute][corner] = -1;
+				faceRelative[attribute][corner] = false;
+			}
+
+			if (face[VT][corner] == -1)
+				missing[VT] = true;
+			if (face[VN][corner] == -1)
+				missing[VN] = true;
+		}
+
+		/**
+		 * Parse an integer
+		 * 
+		 * @param from
+		 *            Start of the integer
+		 * @param to
+		 *            End of the integer
+		 * @return The integer
+		 * @throws ParseException
+		 *             The integer is not valid
+		 */
+		private int parseInt(int from, int to) throws ParseException {
+			boolean negative = from < to && data[from] == '-';
+			int i = negative || (from < to && data[from] == '+') ? from + 1
+					: from;
+			long value = 0;
+
+			if (i == to)
+				throw invalid(from, to);
+
+			for (; i < to; i++) {
+				int digit = data[i] - '0';
+				if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE)
+					throw invalid(from, to);
+				value = value * 10 + digit;
+			}
+
+			if (value > Integer.MAX_VALUE)
+				throw invalid(from, to);
+
+			return (int) (negative ? -value : value);
+		}
+
+		/**
+		 * Parse a float, with
+		 * {@link ParserUtils#parseFloat(byte[], int, int)}
+		 * 
+		 * @param from
+		 *            Start of the float
+		 * @param to
+		 *            End of the float
+		 * @return The float
+		 * @throws ParseException
+		 *             The float is not valid
+		 */
+		private float parseFloat(int from, int to) throws ParseException {
+			try {
+				return ParserUtils.parseFloat(data, from, to);
+			} catch (NumberFormatException e) {
+				throw invalid(from, to);
+			}
+		}
+
+		/**
+		 * Make the exception thrown for an invalid number
+		 * 
+		 * @param from
+		 *            Start of the number
+		 * @param to
+		 *            End of the number
+		 * @return The exception
+		 */
+		private ParseException invalid(int from, int to) {
+			StringBuilder token = new StringBuilder();
+			for (int i = from; i < to && i < from + 32; i++)
+				token.append((char) (data[i] & 0xff));
+			return new ParseException(String.format("Invalid number '%s'.",
+					token));
+		}
+
+		/**
+		 * Skip spaces and tabs
+		 */
+		private void skipBlanks() {
+			while (position < data.length
+					&& (data[position] == ' ' || data[position] == '\t'))
+				position++;
+		}
+
+		/**
+		 * Skip a token
+		 */
+		private void skipToken() {
+			while (position < data.length && data[position] > ' ')
+				position++;
+		}
+
+		/**
+		 * Test whether the current position ends the record
+		 * 
+		 * @return true at the end of the line, or at a comment
+		 */
+		private boolean atLineEnd() {
+			return position == data.length || data[position] == '\n'
+					|| data[position] == '\r' || data[position] == '#';
+		}
+
+		/**
+		 * Skip the rest of the line, including its end
+		 */
+		private void skipLine() {
+			while (position < data.length && data[position] != '\n')
+				position++;
+			position++;
+		}
+	}
+
+	/**
+	 * Growable array of floats
+	 */
+	private static final class FloatList {
+
+		/** Content */
+		float[] data = new float[1024];
+
+		/** Number of floats */
+		private int size = 0;
+
+		/**
+		 * Add a float
+		 * 
+		 * @param value
+		 *            The float
+		 */
+		void add(float value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, 2 * size);
+			data[size++] = value;
+		}
+
+		/**
+		 * Returns the number of floats
+		 * 
+		 * @return the number of floats
+		 */
+		int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Growable array of ints
+	 */
+	private static final class IntList {
+
+		/** Content */
+		int[] data = new int[1024];
+
+		/** Number of ints */
+		private int size = 0;
+
+		/**
+		 * Add an int
+		 * 
+		 * @param value
+		 *            The int
+		 */
+		void add(int value) {
+			if (size == data.length)
+				data = Arrays.copyOf(data, 2 * size);
+			data[size++] = value;
+		}
+
+		/**
+		 * Returns the number of ints
+		 * 
+		 * @return the number of ints
+		 */
+		int size() {
+			return size;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Load-time benchmark for the OBJ loader
+ * <p>This application generates a large synthetic OBJ file, a grid of
+ * vertices with texture coordinates and normals and one quad per cell, then
+ * loads it several times with one thread and with one thread per
+ * processor. It then loads it through an empty {@link GeometryCache} (cold)
+ * and again from the cache (warm).</p>
+ * <p>Usage: <code>ObjLoaderBenchmark [vertices [runs]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class ObjLoaderBenchmark {
+
+	/** Default number of vertices of the generated mesh */
+	private static final int DEFAULT_VERTICES = 4000000;
+
+	/** Default number of measured runs */
+	private static final int DEFAULT_RUNS = 3;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 * @throws IOException
+	 *             The synthetic file could not be written or read
+	 * @throws ParseException
+	 *             The synthetic file is not valid
+	 */
+	public static void main(String[] args) throws IOException,
+			ParseException {
+		int vertices = args.length > 0 ? Integer.parseInt(args[0])
+				: DEFAULT_VERTICES;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+
+		File file = File.createTempFile("synthetic", ".obj");
+		file.deleteOnExit();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(
+				file), 1 << 16));
+
+		try {
+			writeSyntheticMesh(out, vertices);
+		} finally {
+			out.close();
+		}
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		ForkJoinPool[] pools = { new ForkJoinPool(1),
+				new ForkJoinPool(processors) };
+		String[] labels = { "1 thread", processors + " threads" };
+
+		ObjMesh mesh = ObjLoader.load(file, pools[1]);
+		System.out.println(String.format(
+				"Synthetic mesh: %d vertices, %d triangles, %d MB",
+				mesh.getCoordinates().length / 3, mesh.getTriangleCount(),
+				file.length() / (1024 * 1024)));
+
+		for (int run = 1; run <= runs; run++) {
+			for (int i = 0; i < pools.length; i++) {
+				long start = System.nanoTime();
+				ObjLoader.load(file, pools[i]);
+				double seconds = (System.nanoTime() - start) / 1e9;
+
+				System.out.println(String.format(
+						"Run %d, %-10s: %.3f s, %.0f MB/s", run, labels[i],
+						seconds, file.length() / seconds / (1024 * 1024)));
+			}
+		}
+
+		for (ForkJoinPool pool : pools)
+			pool.shutdown();
+
+		File directory = File.createTempFile("cache", "");
+		directory.delete();
+		GeometryCache cache = new GeometryCache(directory, Long.MAX_VALUE);
+
+		for (int run = 1; run <= runs; run++) {
+			cache.clear();
+			cache.load(file);
+			for (int i = 0; i < 3; i++)
+				cache.load(file);
+		}
+
+		System.out.println(String.format(
+				"Cache: %.3f s per cold load, %.3f s per warm load",
+				cache.getMissNanos() / 1e9 / cache.getMisses(),
+				cache.getHitNanos() / 1e9 / cache.getHits()));
+
+		cache.clear();
+		directory.delete();
+	}
+
+	/**
+	 * Write a synthetic OBJ file
+	 * <p>The mesh is a wavy grid of vertices, with one texture coordinate and
+	 * one normal per vertex, and one quad per cell.</p>
+	 * 
+	 * @param out
+	 *            Output
+	 * @param vertices
+	 *            Number of vertices of the mesh
+	 */
+	static void writeSyntheticMesh(PrintWriter out, int vertices) {
+		int side = Math.max(2, (int) Math.sqrt(vertices));
+
+		out.println("# Synthetic grid of " + side + " x " + side);
+		out.println("o grid");
+
+		for (int j = 0; j < side; j++)
+			for (int i = 0; i < side; i++)
+				out.println(String.format(Locale.US, "v %.6f %.6f %.6f",
+						(float) i / side, (float) j / side,
+						Math.sin(i * 0.1) * Math.cos(j * 0.1)));
+
+		for (int j = 0; j < side; j++)
+			for (int i = 0; i < side; i++)
+				out.println(String.format(Locale.US, "vt %.4f %.4f",
+						(float) i / side, (float) j / side));
+
+		for (int k = 0; k < side * side; k++)
+			out.println("vn 0 0 1");
+
+		for (int j = 0; j < side - 1; j++) {
+			for (int i = 0; i < side - 1; i++) {
+				int k = j * side + i + 1;
+				out.println("f " + k + "/" + k + "/" + k + " " + (k + 1) + "/"
+						+ (k + 1) + "/" + (k + 1) + " " + (k + side + 1) + "/"
+						+ (k + side + 1) + "/" + (k + side + 1) + " "
+						+ (k + side) + "/" + (k + side) + "/" + (k + side));
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package uclouvain.ingi2325.parser;
+
+/**
+ * Triangle mesh loaded from a Wavefront OBJ file
+ * <p>The mesh is held in the same packed form as the attributes of an
+ * <code>IndexedTriangleSet</code> handed to a {@link PackedGeometryHandler}:
+ * coordinates and normals hold three floats per item, texture coordinates two
+ * floats per item, and each triangle has three indices in each index array.
+ * Absent attributes are <code>null</code>.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class ObjMesh {
+
+	/** Coordinates, as x, y, z triples */
+	private final float[] coordinates;
+
+	/** Normals, as x, y, z triples, or null */
+	private final float[] normals;
+
+	/** Texture coordinates, as u, v pairs, or null */
+	private final float[] textureCoordinates;
+
+	/** Indices in the coordinates, three per triangle */
+	private final int[] coordinateIndices;
+
+	/** Indices in the normals, or null */
+	private final int[] normalIndices;
+
+	/** Indices in the texture coordinates, or null */
+	private final int[] textureCoordinateIndices;
+
+	/**
+	 * Create a mesh
+	 * 
+	 * @param coordinates
+	 *            Coordinates, as x, y, z triples
+	 * @param normals
+	 *            Normals, as x, y, z triples, or null
+	 * @param textureCoordinates
+	 *            Texture coordinates, as u, v pairs, or null
+	 * @param coordinateIndices
+	 *            Indices in the coordinates, three per triangle
+	 * @param normalIndices
+	 *            Indices in the normals, or null
+	 * @param textureCoordinateIndices
+	 *            Indices in the texture coordinates, or null
+	 */
+	ObjMesh(float[] coordinates, float[] normals, float[] textureCoordinates,
+			int[] coordinateIndices, int[] normalIndices,
+			int[] textureCoordinateIndices) {
+		this.coordinates = coordinates;
+		this.normals = normals;
+		this.textureCoordinates = textureCoordinates;
+		this.coordinateIndices = coordinateIndices;
+		this.normalIndices = normalIndices;
+		this.textureCoordinateIndices = textureCoordinateIndices;
+	}
+
+	/**
+	 * Returns the coordinates, as x, y, z triples
+	 * 
+	 * @return the coordinates
+	 */
+	public float[] getCoordinates() {
+		return coordinates;
+	}
+
+	/**
+	 * Returns the normals, as x, y, z triples
+	 * 
+	 * @return the normals, or null
+	 */
+	public float[] getNormals() {
+		return normals;
+	}
+
+	/**
+	 * Returns the texture coordinates, as u, v pairs
+	 * 
+	 * @return the texture coordinates, or null
+	 */
+	public float[] getTextureCoordinates() {
+		return textureCoordinates;
+	}
+
+	/**
+	 * Returns the indices in the coordinates, three per triangle
+	 * 
+	 * @return the coordinate indices
+	 */
+	public int[] getCoordinateIndices() {
+		return coordinateIndices;
+	}
+
+	/**
+	 * Returns the indices in the normals, three per triangle
+	 * 
+	 * @return the normal indices, or null
+	 */
+	public int[] getNormalIndices() {
+		return normalIndices;
+	}
+
+	/**
+	 * Returns the indices in the texture coordinates, three per triangle
+	 * 
+	 * @return the texture coordinate indices, or null
+	 */
+	public int[] getTextureCoordinateIndices() {
+		return textureCoordinateIndices;
+	}
+
+	/**
+	 * Returns the number of triangles
+	 * 
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return coordinateIndices.length / 3;
+	}
+
+	/**
+	 * Hand the mesh to a packed geometry handler, as an indexed triangle set
+	 * 
+	 * @param handler
+	 *            The handler
+	 * @param name
+	 *            Name of the geometry
+	 * @throws Exception
+	 *             The handler failed
+	 */
+	public void startIndexedTriangleSet(PackedGeometryHandler handler,
+			String name) throws Exception {
+		handler.startIndexedTriangleSet(coordinates, normals,
+				textureCoordinates, coordinateIndices, normalIndices,
+				textureCoordinateIndices, name);
+	}
+}
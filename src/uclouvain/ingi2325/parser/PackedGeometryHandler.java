@@ -0,0 +1,42 @@
+package uclouvain.ingi2325.parser;
+
+/**
+ * Opt-in extension of {@link ParserHandler} for packed geometry
+ * <p>A {@link ParserHandler} that also implements this interface receives the
+ * attributes of <code>IndexedTriangleSet</code> elements as packed primitive
+ * arrays, read by {@link ArrayScanner}, instead of arrays of points, vectors
+ * and texture coordinates. The packed overload of
+ * <code>startIndexedTriangleSet</code> is then called <em>instead of</em> the
+ * one of {@link ParserHandler}. The element is still ended by
+ * {@link ParserHandler#endIndexedTriangleSet()}.</p>
+ * <p>Coordinates and normals hold three floats per item, texture coordinates
+ * two floats per item. Implied attributes are <code>null</code>.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface PackedGeometryHandler {
+
+	/**
+	 * Start an indexed triangle set, with packed attributes
+	 * 
+	 * @param coordinates
+	 *            Coordinates, as x, y, z triples
+	 * @param normals
+	 *            Normals, as x, y, z triples, or null
+	 * @param textureCoordinates
+	 *            Texture coordinates, as u, v pairs, or null
+	 * @param coordinateIndices
+	 *            Indices in the coordinates
+	 * @param normalIndices
+	 *            Indices in the normals, or null
+	 * @param textureCoordinateIndices
+	 *            Indices in the texture coordinates, or null
+	 * @param name
+	 *            Name of the geometry
+	 * @throws Exception
+	 */
+	public void startIndexedTriangleSet(float[] coordinates, float[] normals,
+			float[] textureCoordinates, int[] coordinateIndices,
+			int[] normalIndices, int[] textureCoordinateIndices, String name)
+			throws Exception;
+}
@@ -1,16 +1,10 @@
 package uclouvain.ingi2325.parser;
 
-import java.lang.annotation.*;
-import java.lang.reflect.*;
-import java.util.*;
-
 import javax.xml.parsers.*;
 
 import org.xml.sax.*;
 import org.xml.sax.helpers.*;
 
-import uclouvain.ingi2325.exception.*;
-
 /**
  * Parser for SDL files
  * 
@@ -20,34 +14,17 @@ import uclouvain.ingi2325.exception.*;
  */
 public final class Parser extends DefaultHandler {
 
-	/** Methods of ParserHandler that start an element */
-	private static final Map<String, Method> startMethods =
-		new HashMap<String, Method>();
-
-	/** Methods of ParserHandler that end an element */
-	private static final Map<String, Method> endMethods =
-		new HashMap<String, Method>();
-
 	/**
 	 * The locator of the document being parsed.
 	 */
 	private Locator locator = null;
 
-	/** Handlers */
-	private final List<ParserHandler> handlers =
-		new ArrayList<ParserHandler>(2);
+	/** Dispatcher of the elements to the handlers */
+	private final HandlerDispatcher dispatcher = new HandlerDispatcher();
 
-	static {
-		// Fill startMethods and endMethods
-		for (Method method : ParserHandler.class.getDeclaredMethods()) {
-			String name = method.getName();
-
-			if (name.startsWith("start"))
-				startMethods.put(name.substring(5), method);
-			else if (name.startsWith("end"))
-				endMethods.put(name.substring(3), method);
-		}
-	}
+	/** Attributes of the element being started */
+	private final SaxAttributeSource attributeSource =
+		new SaxAttributeSource();
 
 	/**
 	 * Add a parser handler
@@ -56,8 +33,7 @@ public final class Parser extends DefaultHandler {
 	 *            A parser handler
 	 */
 	public void addHandler(ParserHandler handler) {
-		if (!handlers.contains(handler))
-			handlers.add(handler);
+		dispatcher.addHandler(handler);
 	}
 
 	/**
@@ -67,7 +43,7 @@ public final class Parser extends DefaultHandler {
 	 *            The handler to remove
 	 */
 	public void removeHandler(ParserHandler handler) {
-		handlers.remove(handler);
+		dispatcher.removeHandler(handler);
 	}
 
 	/**
@@ -95,7 +71,7 @@ public final class Parser extends DefaultHandler {
 	 */
 	public boolean parse(InputSource input, boolean validate, boolean echo) {
 		if (echo)
-			handlers.add(0, EchoParserHandler.makeHandler());
+			dispatcher.addFirstHandler(EchoParserHandler.makeHandler());
 
 		try {
 			// Use the default parser
@@ -137,58 +113,8 @@ public final class Parser extends DefaultHandler {
 	public void startElement(String uri, String localName, String qName,
 			org.xml.sax.Attributes attributes) throws SAXException {
 		try {
-			// Find the appropriate method
-			Method method = findMethod(startMethods, qName);
-
-			// Get attribute names
-			Attributes annotation = method.getAnnotation(Attributes.class);
-			String[] attrNames;
-			if (annotation == null)
-				attrNames = new String[0];
-			else
-				attrNames = annotation.value();
-
-			// Get attribute types
-			Class<?>[] attrTypes = method.getParameterTypes();
-			assert attrNames.length == attrTypes.length;
-
-			// Fetch which parameters are optional
-			Optional[] optionals = new Optional[attrNames.length];
-			Annotation[][] paramAnnotations = method.getParameterAnnotations();
-			for (int i = 0; i < attrNames.length; i++) {
-				for (Annotation paramAnnotation : paramAnnotations[i])
-					if (paramAnnotation instanceof Optional)
-						optionals[i] = (Optional) paramAnnotation;
-			}
-
-			// Parse the parameters
-			Object[] parameters = new Object[attrNames.length];
-			for (int i = 0; i < attrNames.length; i++) {
-				String name = attrNames[i];
-				Class<?> type = attrTypes[i];
-				Optional optional = optionals[i];
-
-				String value = attributes.getValue(name);
-
-				if (value != null) {
-					// Explicit value
-					parameters[i] = ParserUtils.parseAttribute(value, type);
-				} else if (optional == null) {
-					// Missing non-optional attribute
-					throw new ParseException(String.format(
-							"Element \"%s\" requires attribute \"%s\".",
-							qName, name));
-				} else if (!optional.value().equals(Optional.NULL_STRING)) {
-					// Non-null default value
-					parameters[i] = ParserUtils.parseAttribute(
-							optional.value(), type);
-				} else {
-					// Implied value - parameters[i] is already null
-				}
-			}
-
-			// Invoke the method
-			invokeHandlerMethod(method, parameters);
+			attributeSource.attributes = attributes;
+			dispatcher.startElement(qName, attributeSource);
 		} catch (Exception exception) {
 			// Catch any exception and turn it into a SAXParseException
 			exception.printStackTrace();
@@ -209,64 +135,13 @@ public final class Parser extends DefaultHandler {
 	public void endElement(String uri, String localName, String qName)
 			throws SAXException {
 		try {
-			// Find the appropriate method
-			Method method = findMethod(endMethods, qName);
-
-			// Invoke the method
-			invokeHandlerMethod(method, null);
+			dispatcher.endElement(qName);
 		} catch (Exception exception) {
 			// Catch any exception and turn it into a SAXParseException
 			throw new SAXParseException(null, locator, exception);
 		}
 	}
 
-	/**
-	 * Find a method
-	 * 
-	 * @param methods
-	 *            Map of methods
-	 * @param name
-	 *            Name in the map
-	 * @return The method
-	 * @throws ParseException
-	 *             The method was not found
-	 */
-	private Method findMethod(Map<String, Method> methods, String name)
-			throws ParseException {
-		Method method = methods.get(name);
-
-		if (method == null)
-			throw new ParseException(String.format(
-					"Unknown element \"%s\".", name));
-
-		return method;
-	}
-
-	/**
-	 * Invoke a method on all handlers
-	 * 
-	 * @param method
-	 *            Method to invoke
-	 * @param parameters
-	 *            Parameters of the method
-	 * @throws Throwable
-	 *             The
-	 */
-	private void invokeHandlerMethod(Method method, Object[] parameters)
-			throws Exception {
-		try {
-			for (ParserHandler handler : handlers)
-				method.invoke(handler, parameters);
-		} catch (InvocationTargetException error) {
-			if (error.getCause() instanceof Exception)
-				throw (Exception) error.getCause();
-			else if (error.getCause() instanceof Error)
-				throw (Error) error.getCause();
-			else
-				throw error;
-		}
-	}
-
 	/**
 	 * SAX2 event handler for setting the document locator
 	 * <p>
@@ -325,4 +200,21 @@ public final class Parser extends DefaultHandler {
 		// Abort the parse
 		throw e;
 	}
+
+	/**
+	 * Source of attribute values backed by SAX attributes
+	 */
+	private static final class SaxAttributeSource implements AttributeSource {
+
+		/** The SAX attributes of the current element */
+		org.xml.sax.Attributes attributes = null;
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String getValue(String name) {
+			return attributes.getValue(name);
+		}
+	}
 }
@@ -0,0 +1,627 @@
+package uclouvain.ingi2325.parser;
+
+import java.io.*;
+import java.lang.management.*;
+import java.nio.*;
+import java.util.*;
+
+import org.xml.sax.*;
+
+/**
+ * Parse-throughput benchmark for the SDL parser
+ * <p>This application generates a large synthetic SDL file, then parses it
+ * several times. Two kinds of files can be generated:</p>
+ * <ul>
+ * <li><code>scene</code>: many <code>Shape</code> elements nested in
+ * <code>Translate</code> and <code>Rotate</code> elements. The benchmark
+ * reports the number of elements parsed per second.</li>
+ * <li><code>mesh</code>: one <code>IndexedTriangleSet</code> with a given
+ * number of vertices. The benchmark compares a plain handler, which receives
+ * arrays of objects, with a {@link PackedGeometryHandler}, and reports the
+ * time and the bytes allocated by each.</li>
+ * <li><code>backends</code>: the same file as <code>scene</code>, parsed by
+ * the SAX {@link Parser} with and without DTD validation, and by the StAX
+ * {@link StreamParser} with and without structure checking.</li>
+ * <li><code>binary</code>: <code>XML/example.sdl</code>, the same file as
+ * <code>scene</code> and a mesh of five vertices per shape, each loaded from
+ * XML and from its SDLB conversion by {@link BinaryParser}.</li>
+ * </ul>
+ * <p>Usage:
+ * <code>ParserBenchmark [scene|mesh|backends|binary] [size [runs
+ * [validate]]]</code>
+ * </p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class ParserBenchmark {
+
+	/** Default number of shapes in the generated scene */
+	private static final int DEFAULT_SHAPES = 200000;
+
+	/** Default number of vertices in the generated mesh */
+	private static final int DEFAULT_VERTICES = 1000000;
+
+	/** Default number of measured runs */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Location of the DTD, relative to the working directory */
+	private static final String DTD = "XML/sdl.dtd";
+
+	/** Location of the example scene, relative to the working directory */
+	private static final String EXAMPLE = "XML/example.sdl";
+
+	/** Backend: SAX with DTD validation */
+	private static final int SAX_VALIDATE = 0;
+
+	/** Backend: StAX with structure checking */
+	private static final int STAX_CHECK = 2;
+
+	/** Backend: binary SDLB file */
+	private static final int BINARY = 4;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 * @throws IOException
+	 *             The synthetic scene could not be written
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = args.length > 0 ? args[0] : "scene";
+		boolean mesh = mode.equals("mesh");
+		int size = args.length > 1 ? Integer.parseInt(args[1])
+				: (mesh ? DEFAULT_VERTICES : DEFAULT_SHAPES);
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS;
+		boolean validate = args.length > 3 && Boolean.parseBoolean(args[3]);
+
+		if (mesh)
+			benchmarkMesh(size, runs, validate);
+		else if (mode.equals("backends"))
+			benchmarkBackends(size, runs);
+		else if (mode.equals("binary"))
+			benchmarkBinary(size, runs);
+		else
+			benchmarkScene(size, runs, validate);
+	}
+
+	/**
+	 * Benchmark the parsing of a scene made of many shapes
+	 * 
+	 * @param shapes
+	 *            Number of shapes
+	 * @param runs
+	 *            Number of measured runs
+	 * @param validate
+	 *            True for validating the document on parsing
+	 * @throws IOException
+	 *             The synthetic scene could not be written
+	 */
+	private static void benchmarkScene(int shapes, int runs, boolean validate)
+			throws IOException {
+		File file = createSyntheticScene(shapes);
+		long elements = 3L * shapes + 12;
+
+		System.out.println(String.format(
+				"Synthetic scene: %d shapes, %d elements, %d kB", shapes,
+				elements, file.length() / 1024));
+
+		// Warm up
+		parse(file, validate, new ParserHandlerAdapter());
+
+		for (int run = 1; run <= runs; run++) {
+			long start = System.nanoTime();
+			if (!parse(file, validate, new ParserHandlerAdapter()))
+				return;
+			double seconds = (System.nanoTime() - start) / 1e9;
+
+			System.out.println(String.format(
+					"Run %d: %.3f s, %.0f elements/s", run, seconds,
+					elements / seconds));
+		}
+	}
+
+	/**
+	 * Benchmark the parsing of a large mesh, with and without packed arrays
+	 * 
+	 * @param vertices
+	 *            Number of vertices
+	 * @param runs
+	 *            Number of measured runs
+	 * @param validate
+	 *            True for validating the document on parsing
+	 * @throws IOException
+	 *             The synthetic mesh could not be written
+	 */
+	private static void benchmarkMesh(int vertices, int runs,
+			boolean validate) throws IOException {
+		File file = createSyntheticMesh(vertices);
+
+		System.out.println(String.format(
+				"Synthetic mesh: %d vertices, %d kB", vertices,
+				file.length() / 1024));
+
+		ParserHandler[] handlers = { new ParserHandlerAdapter(),
+				new PackedHandlerAdapter() };
+		String[] labels = { "objects", "packed" };
+
+		// Warm up
+		for (ParserHandler handler : handlers)
+			parse(file, validate, handler);
+
+		for (int run = 1; run <= runs; run++) {
+			for (int i = 0; i < handlers.length; i++) {
+				long bytes = allocatedBytes();
+				long start = System.nanoTime();
+				if (!parse(file, validate, handlers[i]))
+					return;
+				double seconds = (System.nanoTime() - start) / 1e9;
+				bytes = allocatedBytes() - bytes;
+
+				System.out.println(String.format(
+						"Run %d, %-7s: %.3f s, %d MB allocated", run,
+						labels[i], seconds, bytes / (1024 * 1024)));
+			}
+		}
+	}
+
+	/**
+	 * Benchmark the SAX and StAX backends on a scene made of many shapes
+	 * 
+	 * @param shapes
+	 *            Number of shapes
+	 * @param runs
+	 *            Number of measured runs
+	 * @throws IOException
+	 *             The synthetic scene could not be written
+	 */
+	private static void benchmarkBackends(int shapes, int runs)
+			throws IOException {
+		File file = createSyntheticScene(shapes);
+		long elements = 3L * shapes + 12;
+
+		System.out.println(String.format(
+				"Synthetic scene: %d shapes, %d elements, %d kB", shapes,
+				elements, file.length() / 1024));
+
+		String[] labels = { "SAX, DTD validation", "SAX, no validation",
+				"StAX, structure check", "StAX, no check" };
+
+		// Warm up
+		for (int i = 0; i < labels.length; i++)
+			parse(file, i, new ParserHandlerAdapter());
+
+		for (int run = 1; run <= runs; run++) {
+			for (int i = 0; i < labels.length; i++) {
+				long start = System.nanoTime();
+				if (!parse(file, i, new ParserHandlerAdapter()))
+					return;
+				double seconds = (System.nanoTime() - start) / 1e9;
+
+				System.out.println(String.format(
+						"Run %d, %-21s: %.3f s, %.0f elements/s", run,
+						labels[i], seconds, elements / seconds));
+			}
+		}
+	}
+
+	/**
+	 * Benchmark the loading of XML files against their SDLB conversion
+	 * 
+	 * @param shapes
+	 *            Number of shapes of the synthetic scene
+	 * @param runs
+	 *            Number of measured runs
+	 * @throws IOException
+	 *             A file could not be written
+	 */
+	private static void benchmarkBinary(int shapes, int runs)
+			throws IOException {
+		File[] files = { new File(EXAMPLE), createSyntheticScene(shapes),
+				createSyntheticMesh(5 * shapes) };
+		String[] names = { "example", "scene", "mesh" };
+
+		int[] backends = { SAX_VALIDATE, STAX_CHECK, BINARY, BINARY };
+		String[] labels = { "XML, SAX + DTD", "XML, StAX + check",
+				"SDLB, packed", "SDLB, buffers" };
+		ParserHandler[] handlers = { new PackedHandlerAdapter(),
+				new PackedHandlerAdapter(), new PackedHandlerAdapter(),
+				new BufferHandlerAdapter() };
+
+		for (int f = 0; f < files.length; f++) {
+			File binary = File.createTempFile(names[f], ".sdlb");
+			binary.deleteOnExit();
+			if (!BinaryWriter.convert(files[f], binary, false))
+				return;
+
+			System.out.println(String.format("%s: %d kB as XML, %d kB as SDLB",
+					names[f], files[f].length() / 1024,
+					binary.length() / 1024));
+
+			// Warm up
+			for (int i = 0; i < backends.length; i++)
+				parse(backends[i] == BINARY ? binary : files[f], backends[i],
+						handlers[i]);
+
+			for (int run = 1; run <= runs; run++) {
+				for (int i = 0; i < backends.length; i++) {
+					long start = System.nanoTime();
+					if (!parse(backends[i] == BINARY ? binary : files[f],
+							backends[i], handlers[i]))
+						return;
+					double seconds = (System.nanoTime() - start) / 1e9;
+
+					System.out.println(String.format(
+							"Run %d, %-17s: %.3f ms", run, labels[i],
+							seconds * 1000));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread
+	 * 
+	 * @return the number of bytes, or 0 if the JVM does not tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		else
+			return 0;
+	}
+
+	/**
+	 * Parse a file once
+	 * 
+	 * @param file
+	 *            The file to parse
+	 * @param validate
+	 *            True for validating the document on parsing
+	 * @param handler
+	 *            The handler
+	 * @return a boolean indicating if the parse was successful.
+	 * @throws IOException
+	 *             The file could not be read
+	 */
+	private static boolean parse(File file, boolean validate,
+			ParserHandler handler) throws IOException {
+		InputStream input = new BufferedInputStream(new FileInputStream(file));
+
+		try {
+			InputSource inputSource = new InputSource(input);
+			inputSource.setSystemId(file.toURI().toString());
+
+			Parser parser = new Parser();
+			parser.addHandler(handler);
+
+			return parser.parse(inputSource, validate, false);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Parse a file once with one of the backends
+	 * 
+	 * @param file
+	 *            The file to parse
+	 * @param backend
+	 *            0 for SAX with validation, 1 for SAX without validation, 2
+	 *            for StAX with structure checking, 3 for StAX without, 4 for
+	 *            an SDLB file
+	 * @param handler
+	 *            The handler
+	 * @return a boolean indicating if the parse was successful.
+	 * @throws IOException
+	 *             The file could not be read
+	 */
+	private static boolean parse(File file, int backend, ParserHandler handler)
+			throws IOException {
+		if (backend < 2)
+			return parse(file, backend == 0, handler);
+
+		if (backend == BINARY) {
+			BinaryParser parser = new BinaryParser();
+			parser.addHandler(handler);
+			return parser.parse(file, false);
+		}
+
+		InputStream input = new BufferedInputStream(new FileInputStream(file));
+
+		try {
+			InputSource inputSource = new InputSource(input);
+			inputSource.setSystemId(file.toURI().toString());
+
+			StreamParser parser = new StreamParser();
+			parser.addHandler(handler);
+
+			return parser.parse(inputSource, backend == STAX_CHECK, false);
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Create a synthetic SDL file in a temporary directory
+	 * <p>The DTD is copied next to the file, so that it can be validated.</p>
+	 * 
+	 * @param shapes
+	 *            Number of shapes in the scene
+	 * @return The file created
+	 * @throws IOException
+	 *             The file could not be written
+	 */
+	static File createSyntheticScene(int shapes) throws IOException {
+		File file = createSyntheticFile();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(
+				file)));
+
+		try {
+			writeSyntheticScene(out, shapes);
+		} finally {
+			out.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Create a synthetic SDL file holding one large mesh in a temporary
+	 * directory
+	 * <p>The DTD is copied next to the file, so that it can be validated.</p>
+	 * 
+	 * @param vertices
+	 *            Number of vertices of the mesh
+	 * @return The file created
+	 * @throws IOException
+	 *             The file could not be written
+	 */
+	static File createSyntheticMesh(int vertices) throws IOException {
+		File file = createSyntheticFile();
+		PrintWriter out = new PrintWriter(new BufferedWriter(new FileWriter(
+				file)));
+
+		try {
+			writeSyntheticMesh(out, vertices);
+		} finally {
+			out.close();
+		}
+
+		return file;
+	}
+
+	/**
+	 * Create an empty file named synthetic.sdl in a new temporary directory,
+	 * next to a copy of the DTD
+	 * 
+	 * @return The file created
+	 * @throws IOException
+	 *             The file could not be created
+	 */
+	private static File createSyntheticFile() throws IOException {
+		File directory = File.createTempFile("sdl", "");
+		directory.delete();
+		directory.mkdir();
+		directory.deleteOnExit();
+
+		File dtd = new File(directory, "sdl.dtd");
+		copy(new File(DTD), dtd);
+		dtd.deleteOnExit();
+
+		File file = new File(directory, "synthetic.sdl");
+		file.deleteOnExit();
+
+		return file;
+	}
+
+	/**
+	 * Write a synthetic SDL document
+	 * 
+	 * @param out
+	 *            Output
+	 * @param shapes
+	 *            Number of shapes in the scene
+	 */
+	static void writeSyntheticScene(PrintWriter out, int shapes) {
+		Random random = new Random(42);
+
+		writeHeader(out);
+		out.println("  <Sphere radius=\"0.5\" name=\"sphere\" />");
+		writeMiddle(out);
+
+		for (int i = 0; i < shapes; i++) {
+			out.println(String.format(Locale.US,
+					"  <Translate vector=\"%.3f %.3f %.3f\">",
+					random.nextFloat() * 20 - 10,
+					random.nextFloat() * 20 - 10,
+					random.nextFloat() * 20 - 10));
+			out.println(String.format(Locale.US,
+					"   <Rotate axis=\"0 1 0\" angle=\"%.1f\">",
+					random.nextFloat() * 360));
+			out.println("    <Shape geometry=\"sphere\" material=\"red\" />");
+			out.println("   </Rotate>");
+			out.println("  </Translate>");
+		}
+
+		writeFooter(out);
+	}
+
+	/**
+	 * Write a synthetic SDL document holding one large mesh
+	 * <p>The mesh is a grid of vertices with one normal and one texture
+	 * coordinate per vertex, and two triangles per cell.</p>
+	 * 
+	 * @param out
+	 *            Output
+	 * @param vertices
+	 *            Number of vertices of the mesh
+	 */
+	static void writeSyntheticMesh(PrintWriter out, int vertices) {
+		int side = Math.max(2, (int) Math.sqrt(vertices));
+
+		writeHeader(out);
+
+		out.print("  <IndexedTriangleSet coordinates=\"");
+		for (int j = 0; j < side; j++) {
+			for (int i = 0; i < side; i++) {
+				if (i > 0 || j > 0)
+					out.print(", ");
+				out.print(String.format(Locale.US, "%.6f %.6f %.6f",
+						(float) i / side, (float) j / side,
+						Math.sin(i * 0.1) * Math.cos(j * 0.1)));
+			}
+		}
+
+		out.print("\"\n   normals=\"");
+		for (int k = 0; k < side * side; k++)
+			out.print(k > 0 ? ", 0 0 1" : "0 0 1");
+
+		out.print("\"\n   textureCoordinates=\"");
+		for (int j = 0; j < side; j++) {
+			for (int i = 0; i < side; i++) {
+				if (i > 0 || j > 0)
+					out.print(", ");
+				out.print(String.format(Locale.US, "%.4f %.4f",
+						(float) i / side, (float) j / side));
+			}
+		}
+
+		StringBuilder indices = new StringBuilder();
+		for (int j = 0; j < side - 1; j++) {
+			for (int i = 0; i < side - 1; i++) {
+				int k = j * side + i;
+				if (indices.length() > 0)
+					indices.append(", ");
+				indices.append(k).append(", ").append(k + 1).append(", ")
+						.append(k + side).append(", ").append(k + 1)
+						.append(", ").append(k + side + 1).append(", ")
+						.append(k + side);
+			}
+		}
+
+		out.print("\"\n   coordinateIndices=\"" + indices);
+		out.print("\"\n   normalIndices=\"" + indices);
+		out.print("\"\n   textureCoordinateIndices=\"" + indices);
+		out.println("\"\n   name=\"mesh\" />");
+
+		writeMiddle(out);
+		out.println("  <Shape geometry=\"mesh\" material=\"red\" />");
+		writeFooter(out);
+	}
+
+	/**
+	 * Write the beginning of a synthetic SDL document, up to the inside of
+	 * the Geometry element
+	 * 
+	 * @param out
+	 *            Output
+	 */
+	private static void writeHeader(PrintWriter out) {
+		out.println("<?xml version='1.0' encoding='utf-8'?>");
+		out.println("<!DOCTYPE Sdl SYSTEM \"sdl.dtd\">");
+		out.println("<Sdl>");
+		out.println(" <Cameras>");
+		out.println("  <Camera position=\"0 0 50\" direction=\"0 0 -1\" "
+				+ "up=\"0 1 0\" fovy=\"60\" name=\"cam0\" />");
+		out.println(" </Cameras>");
+		out.println(" <Lights>");
+		out.println("  <PointLight position=\"10 10 10\" name=\"light0\" />");
+		out.println(" </Lights>");
+		out.println(" <Geometry>");
+	}
+
+	/**
+	 * Write the middle of a synthetic SDL document, from the end of the
+	 * Geometry element to the inside of the Scene element
+	 * 
+	 * @param out
+	 *            Output
+	 */
+	private static void writeMiddle(PrintWriter out) {
+		out.println(" </Geometry>");
+		out.println(" <Materials>");
+		out.println("  <DiffuseMaterial color=\"1 0 0\" name=\"red\" />");
+		out.println(" </Materials>");
+		out.println(" <Scene camera=\"cam0\" lights=\"light0\">");
+	}
+
+	/**
+	 * Write the end of a synthetic SDL document, from the inside of the Scene
+	 * element
+	 * 
+	 * @param out
+	 *            Output
+	 */
+	private static void writeFooter(PrintWriter out) {
+		out.println(" </Scene>");
+		out.println("</Sdl>");
+	}
+
+	/**
+	 * Handler that accepts packed geometry and does nothing
+	 */
+	private static class PackedHandlerAdapter extends ParserHandlerAdapter
+			implements PackedGeometryHandler {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void startIndexedTriangleSet(float[] coordinates,
+				float[] normals, float[] textureCoordinates,
+				int[] coordinateIndices, int[] normalIndices,
+				int[] textureCoordinateIndices, String name) {
+		}
+	}
+
+	/**
+	 * Handler that accepts geometry in buffers and does nothing
+	 */
+	private static class BufferHandlerAdapter extends ParserHandlerAdapter
+			implements BufferGeometryHandler {
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void startIndexedTriangleSet(FloatBuffer coordinates,
+				FloatBuffer normals, FloatBuffer textureCoordinates,
+				IntBuffer coordinateIndices, IntBuffer normalIndices,
+				IntBuffer textureCoordinateIndices, String name) {
+		}
+	}
+
+	/**
+	 * Copy a file
+	 * 
+	 * @param source
+	 *            Source file
+	 * @param destination
+	 *            Destination file
+	 * @throws IOException
+	 *             The copy failed
+	 */
+	private static void copy(File source, File destination)
+			throws IOException {
+		InputStream in = new FileInputStream(source);
+
+		try {
+			OutputStream out = new FileOutputStream(destination);
+
+			try {
+				byte[] buffer = new byte[8192];
+				int length;
+				while ((length = in.read(buffer)) > 0)
+					out.write(buffer, 0, length);
+			} finally {
+				out.close();
+			}
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,394 @@
+package uclouvain.ingi2325.parser;
+
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Adapter for parser handlers
+ * <p>All the methods of this class do nothing. Extend it and override only
+ * the methods for the elements you are interested in.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class ParserHandlerAdapter implements ParserHandler {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startSdl() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endSdl() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startCameras() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endCameras() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startCamera(Point3D position, Vector3D direction, Vector3D up,
+			float fovy, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endCamera() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startLights() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endLights() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startDirectionalLight(Vector3D direction, float intensity,
+			Color color, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endDirectionalLight() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startPointLight(Point3D position, float intensity, Color color,
+			String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endPointLight() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startSpotLight(Point3D position, Vector3D direction,
+			float angle, float intensity, Color color, String name)
+			throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endSpotLight() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startGeometry() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endGeometry() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startSphere(float radius, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endSphere() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startCylinder(float radius, float height, boolean capped,
+			String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endCylinder() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startCone(float radius, float height, boolean capped,
+			String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endCone() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startTorus(float innerRadius, float outerRadius, String name)
+			throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endTorus() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startTeapot(float size, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endTeapot() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startIndexedTriangleSet(Point3D[] coordinates,
+			Vector3D[] normals, TextureCoordinates[] textureCoordinates,
+			int[] coordinateIndices, int[] normalIndices,
+			int[] textureCoordinateIndices, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endIndexedTriangleSet() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startFileGeometry(String filename, String name)
+			throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endFileGeometry() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startTextures() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endTextures() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startTexture(String src, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endTexture() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startMaterials() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endMaterials() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startDiffuseMaterial(Color color, String name)
+			throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endDiffuseMaterial() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startPhongMaterial(Color color, float shininess, String name)
+			throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endPhongMaterial() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startLinearCombinedMaterial(String material1Name, float weight1,
+			String material2Name, float weight2, String name) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endLinearCombinedMaterial() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startScene(String cameraName, String[] lightNames,
+			Color background) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endScene() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startShape(String geometryName, String materialName,
+			String textureName) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endShape() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startRotate(Vector3D axis, float angle) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endRotate() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startTranslate(Vector3D vector) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endTranslate() throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void startScale(Vector3D scale) throws Exception {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void endScale() throws Exception {
+	}
+}
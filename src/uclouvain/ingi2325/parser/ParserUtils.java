@@ -1,9 +1,7 @@
 package uclouvain.ingi2325.parser;
 
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.*;
-import java.util.*;
-
-import uclouvain.ingi2325.exception.ParseException;
 
 /**
  * Utilities class used to parse Strings, floats, arrays of floats, ...
@@ -14,100 +12,191 @@ import uclouvain.ingi2325.exception.ParseException;
  */
 public class ParserUtils {
 
-	/** Map primitive types to their corresponding wrapper classes */
-	private static final Map<Class<?>, Class<?>> wrapperClassFor =
-		new HashMap<Class<?>, Class<?>>();
-
-	static {
-		wrapperClassFor.put(boolean.class, Boolean.class);
-		wrapperClassFor.put(char.class, Character.class);
-		wrapperClassFor.put(byte.class, Byte.class);
-		wrapperClassFor.put(short.class, Short.class);
-		wrapperClassFor.put(int.class, Integer.class);
-		wrapperClassFor.put(long.class, Long.class);
-		wrapperClassFor.put(float.class, Float.class);
-		wrapperClassFor.put(double.class, Double.class);
-	}
+	/** Powers of ten exactly representable as floats */
+	private static final float[] POWERS_OF_TEN = { 1e0F, 1e1F, 1e2F, 1e3F,
+			1e4F, 1e5F, 1e6F, 1e7F, 1e8F, 1e9F, 1e10F };
+
+	/** Largest mantissa handled by the fast path of floats, 2^24 */
+	private static final long MAX_MANTISSA = 1L << 24;
 
 	/**
-	 * Parse an attribute of the XML into a given type
-	 * @param string           String representation
-	 * @param attributeClass   Class of the attribute
-	 * @return The parsed attribute
-	 * @throws ParseException
+	 * Parse a float from ASCII characters
+	 * <p>Numbers whose decimal mantissa is at most 2^24 and whose exponent is
+	 * at most 10 in absolute value are computed with one float multiplication
+	 * or division of exact operands, which rounds correctly (Clinger's fast
+	 * path). The other numbers are handed to
+	 * {@link Float#parseFloat(String)}, so the result is always the same as
+	 * its.</p>
+	 * @param data   The characters, one byte each
+	 * @param from   Start of the float
+	 * @param to     End of the float
+	 * @return The float
+	 * @throws NumberFormatException The characters are not a valid float
 	 */
-	static <T> T parseAttribute(String string, Class<T> attributeClass)
-			throws ParseException {
-		if (attributeClass.isArray())
-			return parseArrayAttribute(string, attributeClass);
+	static float parseFloat(byte[] data, int from, int to) {
+		int i = from;
+		boolean negative = i < to && data[i] == '-';
+		if (i < to && (negative || data[i] == '+'))
+			i++;
+
+		// Once over its maximum, the mantissa is left alone: the number takes
+		// the slow path
+		long mantissa = 0;
+		int exponent = 0;
+		boolean any = false;
+
+		for (; i < to; i++) {
+			int digit = data[i] - '0';
+			if (digit < 0 || digit > 9)
+				break;
+			if (mantissa <= MAX_MANTISSA)
+				mantissa = mantissa * 10 + digit;
+			any = true;
+		}
+
+		if (i < to && data[i] == '.') {
+			for (i++; i < to; i++) {
+				int digit = data[i] - '0';
+				if (digit < 0 || digit > 9)
+					break;
+				if (mantissa <= MAX_MANTISSA) {
+					mantissa = mantissa * 10 + digit;
+					exponent--;
+				}
+				any = true;
+			}
+		}
 
-		if (attributeClass.isPrimitive())
-			attributeClass = getWrappingClass(attributeClass);
+		if (any && i < to && (data[i] == 'e' || data[i] == 'E')) {
+			i++;
+			boolean negativeExponent = i < to && data[i] == '-';
+			if (i < to && (negativeExponent || data[i] == '+'))
+				i++;
+
+			int value = 0;
+			boolean anyExponent = false;
+			for (; i < to; i++) {
+				int digit = data[i] - '0';
+				if (digit < 0 || digit > 9)
+					break;
+				if (value < 10000)
+					value = value * 10 + digit;
+				anyExponent = true;
+			}
 
-		try {
-			Method method;
+			any = anyExponent;
+			exponent += negativeExponent ? -value : value;
+		}
 
+		if (!any || i != to || !isExact(mantissa, exponent)) {
 			try {
-				method = attributeClass.getMethod("valueOf", String.class);
-			} catch (NoSuchMethodException error) {
-				method = attributeClass.getMethod("valueOf", Object.class);
+				return Float.parseFloat(new String(data, from, to - from,
+						"US-ASCII"));
+			} catch (UnsupportedEncodingException e) {
+				throw new AssertionError(e);
 			}
-
-			Object result = method.invoke(null, string);
-			return attributeClass.cast(result);
-		} catch (Exception error) {
-			System.err.println(error.getMessage());
-			throw new ParseException(String.format(
-					"Could not parse %s from \"%s\".",
-					attributeClass.getSimpleName(), string));
 		}
+
+		return exactFloat(mantissa, exponent, negative);
 	}
 
 	/**
-	 * Parse an array attribute of the XML into a given type
-	 * @param string           String representation
-	 * @param attributeClass   Class of the array
-	 * @return The array attribute
-	 * @throws ParseException
+	 * Parse a float from a part of a string, like
+	 * {@link #parseFloat(byte[], int, int)}
+	 * @param string The string
+	 * @param from   Start of the float
+	 * @param to     End of the float
+	 * @return The float
+	 * @throws NumberFormatException The characters are not a valid float
 	 */
-	private static <T> T parseArrayAttribute(String string,
-			Class<T> attributeClass) throws ParseException {
-		Class<?> componentType = attributeClass.getComponentType();
+	static float parseFloat(String string, int from, int to) {
+		int i = from;
+		boolean negative = i < to && string.charAt(i) == '-';
+		if (i < to && (negative || string.charAt(i) == '+'))
+			i++;
+
+		// Once over its maximum, the mantissa is left alone: the number takes
+		// the slow path
+		long mantissa = 0;
+		int exponent = 0;
+		boolean any = false;
+
+		for (; i < to; i++) {
+			int digit = string.charAt(i) - '0';
+			if (digit < 0 || digit > 9)
+				break;
+			if (mantissa <= MAX_MANTISSA)
+				mantissa = mantissa * 10 + digit;
+			any = true;
+		}
+
+		if (i < to && string.charAt(i) == '.') {
+			for (i++; i < to; i++) {
+				int digit = string.charAt(i) - '0';
+				if (digit < 0 || digit > 9)
+					break;
+				if (mantissa <= MAX_MANTISSA) {
+					mantissa = mantissa * 10 + digit;
+					exponent--;
+				}
+				any = true;
+			}
+		}
 
-		StringTokenizer stringTokenizer = new StringTokenizer(string, ",");
+		if (any && i < to && (string.charAt(i) == 'e' || string.charAt(i) == 'E')) {
+			i++;
+			boolean negativeExponent = i < to && string.charAt(i) == '-';
+			if (i < to && (negativeExponent || string.charAt(i) == '+'))
+				i++;
+
+			int value = 0;
+			boolean anyExponent = false;
+			for (; i < to; i++) {
+				int digit = string.charAt(i) - '0';
+				if (digit < 0 || digit > 9)
+					break;
+				if (value < 10000)
+					value = value * 10 + digit;
+				anyExponent = true;
+			}
 
-		int length = stringTokenizer.countTokens();
-		T array = createArray(attributeClass, length);
+			any = anyExponent;
+			exponent += negativeExponent ? -value : value;
+		}
 
-		for (int i = 0; i < length; i++) {
-			String item = stringTokenizer.nextToken().trim();
-			Array.set(array, i, parseAttribute(item, componentType));
+		if (!any || i != to || !isExact(mantissa, exponent)) {
+			return Float.parseFloat(string.substring(from, to));
 		}
 
-		return array;
+		return exactFloat(mantissa, exponent, negative);
 	}
 
 	/**
-	 * Get the wrapping class for a primitive type
-	 * @param <T>             Wrapping class
-	 * @param primitiveType   Primitive type
-	 * @return The wrapping class T
+	 * Returns whether a decimal number takes the fast path of floats
+	 * @param mantissa The decimal mantissa
+	 * @param exponent The decimal exponent
+	 * @return True if the mantissa and the power of ten are exact floats
 	 */
-	@SuppressWarnings("unchecked")
-	private static <T> Class<T> getWrappingClass(Class<T> primitiveType) {
-		return (Class<T>) wrapperClassFor.get(primitiveType);
+	private static boolean isExact(long mantissa, int exponent) {
+		return mantissa <= MAX_MANTISSA && exponent >= -10 && exponent <= 10;
 	}
 
 	/**
-	 * Create an array of a given generic type
-	 * @param <T>      Type of the array
-	 * @param clazz    Class of the array
-	 * @param length   Length of the array to create
-	 * @return The created array
+	 * Compute a float on the fast path, by one correctly rounded operation
+	 * @param mantissa The decimal mantissa, at most 2^24
+	 * @param exponent The decimal exponent, at most 10 in absolute value
+	 * @param negative Whether the number is negative
+	 * @return The float
 	 */
-	@SuppressWarnings("unchecked")
-	private static <T> T createArray(Class<T> arrayClass, int length) {
-		return (T) Array.newInstance(arrayClass.getComponentType(), length);
+	private static float exactFloat(long mantissa, int exponent,
+			boolean negative) {
+		float value = mantissa;
+		if (exponent >= 0)
+			value *= POWERS_OF_TEN[exponent];
+		else
+			value /= POWERS_OF_TEN[-exponent];
+
+		return negative ? -value : value;
 	}
 
 	/**
@@ -0,0 +1,180 @@
+package uclouvain.ingi2325.parser;
+
+import javax.xml.stream.*;
+import javax.xml.transform.stream.*;
+
+import org.xml.sax.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Pull parser for SDL files
+ * <p>This is an alternative to {@link Parser}, built on the StAX
+ * {@link XMLStreamReader} instead of SAX. It drives the same
+ * {@link ParserHandler}s in the same way.</p>
+ * <p>The stream parser never reads the DTD. Instead, it can check the
+ * structure of the document against the {@link Contains} annotations of
+ * {@link ParserHandler}, which is much cheaper than a full DTD validation.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class StreamParser {
+
+	/** Dispatcher of the elements to the handlers */
+	private final HandlerDispatcher dispatcher = new HandlerDispatcher();
+
+	/**
+	 * Add a parser handler
+	 * 
+	 * @param handler
+	 *            A parser handler
+	 */
+	public void addHandler(ParserHandler handler) {
+		dispatcher.addHandler(handler);
+	}
+
+	/**
+	 * Remove a parser handler
+	 * 
+	 * @param handler
+	 *            The handler to remove
+	 */
+	public void removeHandler(ParserHandler handler) {
+		dispatcher.removeHandler(handler);
+	}
+
+	/**
+	 * Parse a document and call the user's parser handler
+	 * <p>
+	 * If <code>checkStructure</code> is set to <code>true</code>, the parser
+	 * checks that each element only contains the elements allowed by the
+	 * {@link Contains} annotations, and no text. This replaces the validation
+	 * against the DTD, which the stream parser does not read.
+	 * </p>
+	 * <p>
+	 * If <code>echo</code> is set to <code>true</code>, the parser will rewrite
+	 * to the standard output the XML file that it reads, exactly as it
+	 * understands it.
+	 * </p>
+	 * 
+	 * @param input
+	 *            The input
+	 * @param checkStructure
+	 *            True for checking the structure of the document on parsing
+	 * @param echo
+	 *            If true, the document is echoed to the standard output
+	 * @return a boolean indicating if the parse was successful.
+	 */
+	public boolean parse(InputSource input, boolean checkStructure,
+			boolean echo) {
+		if (echo)
+			dispatcher.addFirstHandler(EchoParserHandler.makeHandler());
+
+		XMLStreamReader reader = null;
+
+		try {
+			reader = createReader(input);
+			parse(reader, checkStructure ? new StructureChecker() : null);
+		} catch (XMLStreamException e) {
+			// Report the exception (it holds the location) and return false
+			System.err.println("ERROR : " + e.getMessage());
+			return false;
+		} catch (Exception e) {
+			// Report the exception (with the line number) and return false
+			System.err.print("ERROR : " + e.getMessage());
+			if (reader != null && reader.getLocation().getLineNumber() > 0)
+				System.err.print(" (line "
+						+ reader.getLocation().getLineNumber() + ")");
+			System.err.println();
+			return false;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+				}
+			}
+		}
+
+		// The parsing has succeeded
+		return true;
+	}
+
+	/**
+	 * Create the StAX reader of an input
+	 * 
+	 * @param input
+	 *            The input
+	 * @return The reader
+	 * @throws XMLStreamException
+	 *             The reader could not be created
+	 */
+	private static XMLStreamReader createReader(InputSource input)
+			throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+				Boolean.FALSE);
+
+		if (input.getCharacterStream() != null)
+			return factory.createXMLStreamReader(input.getSystemId(),
+					input.getCharacterStream());
+		else if (input.getByteStream() != null)
+			return factory.createXMLStreamReader(input.getSystemId(),
+					input.getByteStream());
+		else
+			return factory.createXMLStreamReader(new StreamSource(
+					input.getSystemId()));
+	}
+
+	/**
+	 * Pull all the events of a document and dispatch them
+	 * 
+	 * @param reader
+	 *            The reader
+	 * @param checker
+	 *            The structure checker, or null
+	 * @throws Exception
+	 *             The document is invalid, or a handler failed
+	 */
+	private void parse(final XMLStreamReader reader, StructureChecker checker)
+			throws Exception {
+		AttributeSource attributes = new AttributeSource() {
+			@Override
+			public String getValue(String name) {
+				return reader.getAttributeValue(null, name);
+			}
+		};
+
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				if (checker != null)
+					checker.startElement(reader.getLocalName());
+				dispatcher.startElement(reader.getLocalName(), attributes);
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				dispatcher.endElement(reader.getLocalName());
+				if (checker != null)
+					checker.endElement();
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+				if (checker != null && !reader.isWhiteSpace())
+					checker.text();
+				break;
+
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				throw new ParseException(String.format(
+						"Unexpected entity reference \"%s\".",
+						reader.getLocalName()));
+
+			default:
+				break;
+			}
+		}
+	}
+}
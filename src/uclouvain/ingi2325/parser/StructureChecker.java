@@ -0,0 +1,213 @@
+package uclouvain.ingi2325.parser;
+
+import java.lang.reflect.*;
+import java.util.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Checker of the structure of SDL documents
+ * <p>The checker verifies that each element only contains the elements
+ * allowed by the {@link Contains} annotation of its start method in
+ * {@link ParserHandler}, in the right order and the right number of times. It
+ * is a lightweight replacement for the validation against the DTD generated by
+ * {@link MakeParserDTD}: it checks the same content models, and that no
+ * element contains text, but not the ID and IDREF attributes.</p>
+ * <p>Attributes are not checked here, since missing attributes are already
+ * reported when they are bound to the parameters of the start methods.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+final class StructureChecker {
+
+	/** Name of the root element */
+	static final String ROOT = "Sdl";
+
+	/** Content models of the elements, by element name */
+	private static final Map<String, ContentModel> models =
+		new HashMap<String, ContentModel>();
+
+	/** Content models of the open elements */
+	private ContentModel[] stack = new ContentModel[16];
+
+	/** Number of children seen or position in the sequence, per open element */
+	private int[] positions = new int[16];
+
+	/** Number of open elements */
+	private int depth = 0;
+
+	static {
+		for (Method method : ParserHandler.class.getDeclaredMethods()) {
+			String name = method.getName();
+
+			if (name.startsWith("start"))
+				models.put(name.substring(5), new ContentModel(
+						name.substring(5), method.getAnnotation(
+								Contains.class)));
+		}
+	}
+
+	/**
+	 * Check the start of an element
+	 * 
+	 * @param name
+	 *            Name of the element
+	 * @throws ParseException
+	 *             The element is not allowed here
+	 */
+	void startElement(String name) throws ParseException {
+		ContentModel model = models.get(name);
+
+		if (model == null)
+			throw new ParseException(String.format(
+					"Unknown element \"%s\".", name));
+
+		if (depth == 0) {
+			if (!name.equals(ROOT))
+				throw new ParseException(String.format(
+						"The root element must be \"%s\", not \"%s\".",
+						ROOT, name));
+		} else {
+			positions[depth - 1] = stack[depth - 1].accept(
+					positions[depth - 1], name);
+		}
+
+		if (depth == stack.length) {
+			stack = Arrays.copyOf(stack, 2 * depth);
+			positions = Arrays.copyOf(positions, 2 * depth);
+		}
+
+		stack[depth] = model;
+		positions[depth] = 0;
+		depth++;
+	}
+
+	/**
+	 * Check the end of an element
+	 * 
+	 * @throws ParseException
+	 *             The element lacks some required child elements
+	 */
+	void endElement() throws ParseException {
+		depth--;
+		stack[depth].complete(positions[depth]);
+		stack[depth] = null;
+	}
+
+	/**
+	 * Check non-whitespace text inside the current element
+	 * 
+	 * @throws ParseException
+	 *             Always, since no element may contain text
+	 */
+	void text() throws ParseException {
+		if (depth == 0)
+			throw new ParseException("Text is not allowed outside elements.");
+		else
+			throw new ParseException(String.format(
+					"Element \"%s\" cannot contain text.",
+					stack[depth - 1].name));
+	}
+
+	/**
+	 * Content model of an element
+	 */
+	private static final class ContentModel {
+
+		/** Name of the element */
+		private final String name;
+
+		/** Allowed children, in order for a sequence */
+		private final String[] children;
+
+		/** Whether each child of a sequence is optional */
+		private final boolean[] optional;
+
+		/** How children are repeated, or null if the element is empty */
+		private final Contains.ManySpec many;
+
+		/**
+		 * Build the content model of an element
+		 * 
+		 * @param name
+		 *            Name of the element
+		 * @param contains
+		 *            Annotation of the start method, or null
+		 */
+		ContentModel(String name, Contains contains) {
+			this.name = name;
+
+			if (contains == null) {
+				children = new String[0];
+				optional = new boolean[0];
+				many = null;
+			} else {
+				String[] values = contains.value();
+				children = new String[values.length];
+				optional = new boolean[values.length];
+
+				for (int i = 0; i < values.length; i++) {
+					optional[i] = values[i].endsWith("?");
+					children[i] = optional[i] ? values[i].substring(0,
+							values[i].length() - 1) : values[i];
+				}
+
+				many = contains.many();
+			}
+		}
+
+		/**
+		 * Accept a child element
+		 * 
+		 * @param position
+		 *            Position in the sequence, or number of children seen
+		 * @param child
+		 *            Name of the child element
+		 * @return The new position, or the new number of children seen
+		 * @throws ParseException
+		 *             The child is not allowed here
+		 */
+		int accept(int position, String child) throws ParseException {
+			if (many == Contains.ManySpec.Single) {
+				while (position < children.length
+						&& !children[position].equals(child)
+						&& optional[position])
+					position++;
+
+				if (position < children.length
+						&& children[position].equals(child))
+					return position + 1;
+			} else if (many != null) {
+				for (String allowed : children)
+					if (allowed.equals(child))
+						return position + 1;
+			}
+
+			throw new ParseException(String.format(
+					"Element \"%s\" cannot contain \"%s\" here.", name,
+					child));
+		}
+
+		/**
+		 * Check that no required child element is missing
+		 * 
+		 * @param position
+		 *            Position in the sequence, or number of children seen
+		 * @throws ParseException
+		 *             A required child element is missing
+		 */
+		void complete(int position) throws ParseException {
+			if (many == Contains.ManySpec.Single) {
+				for (int i = position; i < children.length; i++)
+					if (!optional[i])
+						throw new ParseException(String.format(
+								"Element \"%s\" requires element \"%s\".",
+								name, children[i]));
+			} else if (many == Contains.ManySpec.OneToMany && position == 0) {
+				throw new ParseException(String.format(
+						"Element \"%s\" requires at least one element.",
+						name));
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package uclouvain.ingi2325.render;
+
+import java.io.*;
+import java.util.Locale;
+
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Benchmark of the quality of {@link SupersamplingRenderer} against its time
+ * <p>This application renders a reference image of a scene with
+ * {@value #REFERENCE_SAMPLES} Sobol samples per pixel, then renders it with
+ * uniform stratified supersampling and with adaptive supersampling for each
+ * {@link Sampler}, and reports for each the time per frame, the samples per
+ * pixel and the root mean square error of the 8-bit image against the
+ * reference, in levels.</p>
+ * <p>Usage: <code>AntialiasingBenchmark [scene.sdl [width height [runs]]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class AntialiasingBenchmark {
+
+	/** Default scene */
+	private static final String DEFAULT_SCENE = "XML/example.sdl";
+
+	/** Default width of the image */
+	private static final int DEFAULT_WIDTH = 640;
+
+	/** Default height of the image */
+	private static final int DEFAULT_HEIGHT = 360;
+
+	/** Default number of measured frames, after as many warm-up frames */
+	private static final int DEFAULT_RUNS = 3;
+
+	/** Samples per pixel of the reference image */
+	private static final int REFERENCE_SAMPLES = 256;
+
+	/** Samples per pixel of the uniform renders */
+	private static final int[] UNIFORM_SAMPLES = { 1, 4, 9, 16, 25 };
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 * @throws FileNotFoundException
+	 *             The scene does not exist
+	 */
+	public static void main(String[] args) throws FileNotFoundException {
+		String filename = args.length > 0 ? args[0] : DEFAULT_SCENE;
+		int width = args.length > 2 ? Integer.parseInt(args[1])
+				: DEFAULT_WIDTH;
+		int height = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_HEIGHT;
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+
+		System.setProperty("java.awt.headless", "true");
+		Scene scene = new SceneBuilder().loadScene(new File(filename)
+				.getAbsolutePath());
+		if (scene == null)
+			throw new IllegalArgumentException("The scene could not be loaded");
+		SceneBVH bvh = SceneBVH.build(scene, height);
+		SceneRenderer renderer = new SceneRenderer(scene, bvh, width, height);
+		RenderEngine engine = new RenderEngine(width, height);
+
+		Framebuffer reference = new Framebuffer(width, height);
+		engine.render(new SupersamplingRenderer(renderer, Sampler.SOBOL,
+				REFERENCE_SAMPLES), reference);
+		System.out.println(String.format(Locale.US,
+				"%s, %dx%d pixels, reference of %d samples per pixel",
+				filename, width, height, REFERENCE_SAMPLES));
+
+		for (int samples : UNIFORM_SAMPLES) {
+			measure("uniform " + samples, new SupersamplingRenderer(renderer,
+					Sampler.STRATIFIED, samples), engine, reference, runs);
+		}
+		for (Sampler sampler : Sampler.values()) {
+			measure("adaptive " + sampler.name().toLowerCase(),
+					new SupersamplingRenderer(renderer, sampler), engine,
+					reference, runs);
+		}
+	}
+
+	/**
+	 * Measure and report the time and the error of a renderer
+	 * 
+	 * @param name
+	 *            Name of the renderer
+	 * @param renderer
+	 *            The renderer
+	 * @param engine
+	 *            Engine of the renders
+	 * @param reference
+	 *            Reference image
+	 * @param runs
+	 *            Number of measured frames, after as many warm-up frames
+	 */
+	private static void measure(String name, SupersamplingRenderer renderer,
+			RenderEngine engine, Framebuffer reference, int runs) {
+		Framebuffer image = new Framebuffer(engine.getWidth(), engine
+				.getHeight());
+		long best = Long.MAX_VALUE;
+		for (int run = 0; run < 2 * runs; run++) {
+			renderer.resetSampleCount();
+			long start = System.nanoTime();
+			engine.render(renderer, image);
+			if (run >= runs)
+				best = Math.min(best, System.nanoTime() - start);
+		}
+
+		int[] expected = reference.getPixels();
+		int[] actual = image.getPixels();
+		double error = 0.0;
+		for (int i = 0; i < actual.length; i++) {
+			for (int shift = 0; shift < 24; shift += 8) {
+				int difference = (actual[i] >> shift & 0xFF)
+						- (expected[i] >> shift & 0xFF);
+				error += difference * difference;
+			}
+		}
+		double samples = (double) renderer.getSampleCount() / actual.length;
+		System.out.println(String.format(Locale.US,
+				"%-20s %8.2f ms/frame, %6.2f samples/pixel, RMSE %6.3f",
+				name, best / 1e6, samples, Math.sqrt(error
+						/ (3 * actual.length))));
+	}
+}
@@ -0,0 +1,190 @@
+package uclouvain.ingi2325.render;
+
+import java.io.*;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.parser.GeometryCache;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Command line renderer, for machines without display
+ * <p>This application loads an SDL file, renders it with a
+ * {@link RenderEngine} and writes the image, in the format given by the
+ * extension of the output file: <code>pfm</code> and <code>hdr</code> files
+ * keep the linear colors, other formats are tone mapped, by clamping unless
+ * another {@link ToneMapper} is named. Each pixel is shaded once, through its
+ * center, unless a number of samples per pixel is given, for uniform
+ * supersampling, or <code>adaptive</code>, for adaptive supersampling by a
+ * {@link SupersamplingRenderer}; the samples are placed by the named
+ * {@link Sampler}, Sobol by default. PNG files are encoded by an
+ * {@link ImageEncoder} while the image is rendered; the other formats are
+ * written from an {@link HdrFramebuffer} once it is rendered. It runs
+ * with <code>java.awt.headless</code> set, and never creates an AWT
+ * component. The meshes of FileGeometry elements are loaded through the
+ * default {@link GeometryCache}, so that later runs do not parse the same
+ * OBJ files again. The time of each step is reported on the standard
+ * error.</p>
+ * <p>Usage:
+ * <code>BatchRenderer scene.sdl image.png [width height [clamp|reinhard|aces
+ * [samples|adaptive [stratified|halton|sobol]]]]</code>
+ * </p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class BatchRenderer {
+
+	/** Default width of the image */
+	private static final int DEFAULT_WIDTH = 640;
+
+	/** Default height of the image */
+	private static final int DEFAULT_HEIGHT = 480;
+
+	/** Number of samples per pixel that selects adaptive supersampling */
+	public static final int ADAPTIVE = 0;
+
+	/**
+	 * Run the renderer
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		System.setProperty("java.awt.headless", "true");
+
+		if (args.length != 2 && (args.length < 4 || args.length > 7)) {
+			System.err.println("Usage: BatchRenderer scene.sdl image.png "
+					+ "[width height [clamp|reinhard|aces "
+					+ "[samples|adaptive [stratified|halton|sobol]]]]");
+			System.exit(2);
+		}
+
+		try {
+			int width = args.length > 2 ? Integer.parseInt(args[2])
+					: DEFAULT_WIDTH;
+			int height = args.length > 2 ? Integer.parseInt(args[3])
+					: DEFAULT_HEIGHT;
+			ToneMapper mapper = args.length > 4 ? ToneMapper.forName(args[4])
+					: ToneMapper.CLAMP;
+			int samples = 1;
+			if (args.length > 5)
+				samples = args[5].equalsIgnoreCase("adaptive") ? ADAPTIVE
+						: Integer.parseInt(args[5]);
+			Sampler sampler = args.length > 6 ? Sampler.forName(args[6])
+					: Sampler.SOBOL;
+			render(new File(args[0]), new File(args[1]), width, height, mapper,
+					samples, sampler);
+		} catch (Exception e) {
+			System.err.println(e.getMessage());
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Render a scene to an image file, shading each pixel once
+	 * 
+	 * @param scene
+	 *            The SDL file
+	 * @param output
+	 *            The image file
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param mapper
+	 *            Tone mapper, for low dynamic range formats
+	 * @throws IOException
+	 *             The scene could not be read or the image could not be
+	 *             written
+	 */
+	public static void render(File scene, File output, int width, int height,
+			ToneMapper mapper) throws IOException {
+		render(scene, output, width, height, mapper, 1, Sampler.SOBOL);
+	}
+
+	/**
+	 * Render a scene to an image file
+	 * 
+	 * @param scene
+	 *            The SDL file
+	 * @param output
+	 *            The image file
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param mapper
+	 *            Tone mapper, for low dynamic range formats
+	 * @param samples
+	 *            Number of samples per pixel, 1 to shade the centers of the
+	 *            pixels only, or {@link #ADAPTIVE}
+	 * @param sampler
+	 *            Pattern of the samples in the pixels, when there are several
+	 * @throws IOException
+	 *             The scene could not be read or the image could not be
+	 *             written
+	 */
+	public static void render(File scene, File output, int width, int height,
+			ToneMapper mapper, int samples, Sampler sampler)
+			throws IOException {
+		if (samples < 0)
+			throw new IllegalArgumentException("Invalid number of samples "
+					+ samples + ".");
+		long start = System.nanoTime();
+		SceneBuilder builder = new SceneBuilder();
+		builder.setGeometryCache(GeometryCache.getDefault());
+		Scene loaded = builder.loadScene(scene.getAbsolutePath());
+		if (loaded == null)
+			throw new IOException(String.format(
+					"The scene %s could not be loaded.", scene));
+		long loadedAt = System.nanoTime();
+
+		SceneBVH bvh = SceneBVH.build(loaded, height);
+		long builtAt = System.nanoTime();
+
+		RenderEngine engine = new RenderEngine(width, height);
+		SceneRenderer shader = new SceneRenderer(loaded, bvh, width, height);
+		TileRenderer renderer = shader;
+		if (samples == ADAPTIVE)
+			renderer = new SupersamplingRenderer(shader, sampler);
+		else if (samples > 1)
+			renderer = new SupersamplingRenderer(shader, sampler, samples);
+		long renderedAt;
+		if (output.getName().toLowerCase().endsWith(".png")) {
+			ImageEncoder encoder = new ImageEncoder(output, width, height,
+					mapper);
+			Future<File> saved = encoder.start();
+			boolean rendered = false;
+			try {
+				engine.render(renderer, encoder);
+				rendered = true;
+			} finally {
+				// A failed render stops the encoder, which deletes the file
+				if (!rendered)
+					saved.cancel(true);
+			}
+			renderedAt = System.nanoTime();
+			try {
+				saved.get();
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			} catch (InterruptedException e) {
+				saved.cancel(true);
+				throw new InterruptedIOException("The image was not saved.");
+			}
+		} else {
+			HdrFramebuffer framebuffer = new HdrFramebuffer(width, height);
+			engine.render(renderer, framebuffer);
+			renderedAt = System.nanoTime();
+			framebuffer.save(output, mapper, 1);
+		}
+		long savedAt = System.nanoTime();
+
+		System.err.println(String.format(Locale.US,
+				"load %.1f ms, build %.1f ms, render %.1f ms, save %.1f ms",
+				(loadedAt - start) / 1e6, (builtAt - loadedAt) / 1e6,
+				(renderedAt - builtAt) / 1e6, (savedAt - renderedAt) / 1e6));
+	}
+}
@@ -0,0 +1,142 @@
+package uclouvain.ingi2325.render;
+
+import java.io.*;
+import java.util.Locale;
+
+import uclouvain.ingi2325.accel.*;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Benchmark of packet tracing against single rays
+ * <p>This application traces the primary rays of a scene, on one thread,
+ * one by one and as {@link RayPacket}s of 4x4 and 8x8 rays. It checks that
+ * the packets find the same hits as the single rays, and reports the primary
+ * rays per second of each.</p>
+ * <p>Usage: <code>PacketBenchmark [scene.sdl [width height [runs]]]</code></p>
+ *
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class PacketBenchmark {
+
+	/** Default scene */
+	private static final String DEFAULT_SCENE = "XML/example.sdl";
+
+	/** Default width of the image */
+	private static final int DEFAULT_WIDTH = 1280;
+
+	/** Default height of the image */
+	private static final int DEFAULT_HEIGHT = 720;
+
+	/** Default number of measured frames, after as many warm-up frames */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Sides of the packets measured, 1 for single rays */
+	private static final int[] PACKET_SIZES = { 1, 4, 8 };
+
+	/**
+	 * Run the benchmark
+	 *
+	 * @param args
+	 *            Command line arguments
+	 * @throws FileNotFoundException
+	 *             The scene does not exist
+	 */
+	public static void main(String[] args) throws FileNotFoundException {
+		String filename = args.length > 0 ? args[0] : DEFAULT_SCENE;
+		int width = args.length > 2 ? Integer.parseInt(args[1])
+				: DEFAULT_WIDTH;
+		int height = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_HEIGHT;
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+
+		Scene scene = new SceneBuilder().loadScene(new File(filename)
+				.getAbsolutePath());
+		if (scene == null)
+			throw new IllegalArgumentException("The scene could not be loaded");
+		if (scene.getCamera() == null)
+			throw new IllegalArgumentException("The scene has no camera.");
+		SceneBVH bvh = SceneBVH.build(scene, height);
+		PinholeCamera camera = new PinholeCamera(scene.getCamera(), width,
+				height);
+
+		System.out.println(String.format(Locale.US,
+				"%s, %dx%d pixels, %d instances", filename, width, height, bvh
+						.getInstanceCount()));
+
+		float[] expected = new float[width * height];
+		float[] t = new float[width * height];
+		double baseline = 0.0;
+		for (int size : PACKET_SIZES) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < 2 * runs; run++) {
+				long start = System.nanoTime();
+				trace(bvh, camera, width, height, size, size == 1 ? expected
+						: t);
+				if (run >= runs)
+					best = Math.min(best, System.nanoTime() - start);
+			}
+
+			int mismatches = 0;
+			if (size > 1)
+				for (int i = 0; i < t.length; i++)
+					if (t[i] != expected[i])
+						mismatches++;
+
+			if (size == 1)
+				baseline = best;
+			System.out.println(String.format(Locale.US,
+					"%-12s %8.2f ms/frame, %7.2f Mrays/s, speedup %5.2fx, "
+							+ "%d mismatches", size == 1 ? "single rays:"
+							: size + "x" + size + " packets:", best / 1e6,
+					(double) width * height * 1e3 / best, baseline / best,
+					mismatches));
+		}
+	}
+
+	/**
+	 * Trace the primary rays of an image
+	 *
+	 * @param bvh
+	 *            Hierarchy of the scene
+	 * @param camera
+	 *            Generator of the primary rays
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param size
+	 *            Side of the packets, 1 for single rays
+	 * @param t
+	 *            Set to the distance of the hit of each pixel, row by row
+	 */
+	private static void trace(SceneBVH bvh, PinholeCamera camera, int width,
+			int height, int size, float[] t) {
+		if (size == 1) {
+			Ray ray = new Ray();
+			Hit hit = new Hit();
+			for (int j = 0; j < height; j++) {
+				for (int i = 0; i < width; i++) {
+					camera.generateRay(i + 0.5F, j + 0.5F, ray);
+					hit.reset();
+					bvh.intersect(ray, hit);
+					t[j * width + i] = hit.t;
+				}
+			}
+			return;
+		}
+
+		RayPacket packet = new RayPacket(size * size);
+		for (int y = 0; y < height; y += size) {
+			for (int x = 0; x < width; x += size) {
+				int packetWidth = Math.min(size, width - x);
+				int packetHeight = Math.min(size, height - y);
+				camera.generatePacket(x, y, packetWidth, packetHeight, packet);
+				bvh.intersect(packet);
+				for (int j = 0, r = 0; j < packetHeight; j++)
+					for (int i = 0; i < packetWidth; i++, r++)
+						t[(y + j) * width + x + i] = packet.primitive[r] >= 0 ? packet.tMax[r]
+								: Float.POSITIVE_INFINITY;
+			}
+		}
+	}
+}
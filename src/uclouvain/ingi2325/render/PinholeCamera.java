@@ -0,0 +1,163 @@
+package uclouvain.ingi2325.render;
+
+import uclouvain.ingi2325.accel.RayPacket;
+import uclouvain.ingi2325.scene.Camera;
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Ray;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Generator of the primary rays of a {@link Camera} for an image
+ * <p>Pixel coordinates grow rightwards and downwards from the top left
+ * corner of the image; the center of pixel (i, j) is at (i + 0.5, j + 0.5).
+ * Directions are not normalized.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class PinholeCamera {
+
+	/** Position of the eye */
+	private final Point3D eye;
+
+	/** Direction towards the top left corner of the image */
+	private final Vector3D corner = new Vector3D();
+
+	/** Step of the direction per pixel rightwards */
+	private final Vector3D right = new Vector3D();
+
+	/** Step of the direction per pixel downwards */
+	private final Vector3D down = new Vector3D();
+
+	/**
+	 * Create the generator of a camera
+	 * 
+	 * @param camera
+	 *            The camera
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 */
+	public PinholeCamera(Camera camera, int width, int height) {
+		eye = new Point3D(camera.getPosition());
+
+		Vector3D forward = new Vector3D();
+		forward.normalize(camera.getDirection());
+		right.cross(forward, camera.getUp());
+		right.normalize();
+		down.cross(right, forward);
+		down.negate();
+
+		float halfHeight = (float) Math.tan(Math.toRadians(camera.getFovy()) / 2);
+		float halfWidth = halfHeight * width / height;
+		corner.set(forward);
+		corner.addScaled(-halfWidth, right);
+		corner.addScaled(-halfHeight, down);
+		right.scale(2.0F * halfWidth / width);
+		down.scale(2.0F * halfHeight / height);
+	}
+
+	/**
+	 * Set a ray to the primary ray through a point of the image
+	 * 
+	 * @param x
+	 *            Abscissa of the point, in pixels
+	 * @param y
+	 *            Ordinate of the point, in pixels
+	 * @param ray
+	 *            The ray, whose interval is reset
+	 */
+	public void generateRay(float x, float y, Ray ray) {
+		ray.origin.set(eye);
+		ray.direction.set(corner);
+		ray.direction.addScaled(x, right);
+		ray.direction.addScaled(y, down);
+		ray.tMin = 0.0F;
+		ray.tMax = Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Set a packet to the primary rays through the centers of a block of
+	 * pixels, row by row
+	 * 
+	 * @param x
+	 *            Abscissa of the block
+	 * @param y
+	 *            Ordinate of the block
+	 * @param width
+	 *            Width of the block
+	 * @param height
+	 *            Height of the block, such that the block fits in the
+	 *            packet
+	 * @param packet
+	 *            The packet, whose rays are reset
+	 */
+	public void generatePacket(int x, int y, int width, int height,
+			RayPacket packet) {
+		generatePacket(x, y, width, height, 0.5F, 0.5F, packet);
+	}
+
+	/**
+	 * Set a packet to the primary rays through the same point of each pixel
+	 * of a block, row by row
+	 * 
+	 * @param x
+	 *            Abscissa of the block
+	 * @param y
+	 *            Ordinate of the block
+	 * @param width
+	 *            Width of the block
+	 * @param height
+	 *            Height of the block, such that the block fits in the
+	 *            packet
+	 * @param offsetX
+	 *            Abscissa of the point in the pixels, from 0 to 1
+	 * @param offsetY
+	 *            Ordinate of the point in the pixels, from 0 to 1
+	 * @param packet
+	 *            The packet, whose rays are reset
+	 */
+	public void generatePacket(int x, int y, int width, int height,
+			float offsetX, float offsetY, RayPacket packet) {
+		packet.origin.set(eye);
+		packet.size = width * height;
+		for (int j = 0, r = 0; j < height; j++) {
+			float v = y + j + offsetY;
+			for (int i = 0; i < width; i++, r++) {
+				float u = x + i + offsetX;
+				packet.dx[r] = corner.x + u * right.x + v * down.x;
+				packet.dy[r] = corner.y + u * right.y + v * down.y;
+				packet.dz[r] = corner.z + u * right.z + v * down.z;
+			}
+		}
+		packet.reset();
+	}
+
+	/**
+	 * Set a packet to the primary rays through arbitrary points of the image,
+	 * e.g. the samples of several pixels
+	 * 
+	 * @param positions
+	 *            Abscissas and ordinates of the points, in pixels, two floats
+	 *            per point
+	 * @param first
+	 *            Index of the first point
+	 * @param count
+	 *            Number of points, which must fit in the packet
+	 * @param packet
+	 *            The packet, whose rays are reset
+	 */
+	public void generatePacket(float[] positions, int first, int count,
+			RayPacket packet) {
+		packet.origin.set(eye);
+		packet.size = count;
+		for (int r = 0, k = 2 * first; r < count; r++, k += 2) {
+			float u = positions[k];
+			float v = positions[k + 1];
+			packet.dx[r] = corner.x + u * right.x + v * down.x;
+			packet.dy[r] = corner.y + u * right.y + v * down.y;
+			packet.dz[r] = corner.z + u * right.z + v * down.z;
+		}
+		packet.reset();
+	}
+}
@@ -0,0 +1,290 @@
+package uclouvain.ingi2325.render;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Progressive, interruptible renderer of a scene into a {@link PixelPanel}
+ * <p>A render first shows a preview at 1/{@link #PREVIEW_SCALE} of the
+ * resolution, as blocks of pixels. It then refines the image by passes of
+ * one sample per pixel, accumulated into an {@link HdrFramebuffer}: the first
+ * pass goes through the centers of the pixels, and the next ones through the
+ * points of the Halton sequence in bases 2 and 3. Each tile is tone mapped
+ * into the framebuffer of the panel as soon as it is drawn, and the panel is
+ * marked as changed, to be shown by its refreshing thread.</p>
+ * <p>A render runs on a background thread, and may be cancelled or restarted
+ * at any time. Restarting waits for the tiles being rendered before it
+ * clears the samples, so that no tile of a render ever lands in the next.
+ * Tiles are accumulated and tone mapped while holding the lock of the
+ * framebuffer of the panel, which is thus never painted half drawn.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class ProgressiveRenderer {
+
+	/** Default number of passes */
+	public static final int DEFAULT_PASSES = 16;
+
+	/** Ratio of the resolution of the image to the one of the preview */
+	public static final int PREVIEW_SCALE = 8;
+
+	/** Shared executor, created on first use */
+	private static ExecutorService executor = null;
+
+	/** Renderer of the passes */
+	private final SceneRenderer renderer;
+
+	/** Renderer of the preview */
+	private final SceneRenderer preview;
+
+	/** Engine of the passes */
+	private final RenderEngine engine;
+
+	/** Engine of the preview */
+	private final RenderEngine previewEngine;
+
+	/** Panel that shows the image */
+	private final PixelPanel panel;
+
+	/** Framebuffer of the panel, whose lock guards the tiles */
+	private final Framebuffer display;
+
+	/** Samples of the passes */
+	private final HdrFramebuffer samples;
+
+	/** Number of passes */
+	private final int passes;
+
+	/** Tone mapper of the displayed image */
+	private final ToneMapper mapper = ToneMapper.CLAMP;
+
+	/** Flag that cancels the current render */
+	private AtomicBoolean cancelled = new AtomicBoolean();
+
+	/** Current render, or null before the first one */
+	private Future<?> current = null;
+
+	/** Number of passes accumulated by the current render */
+	private volatile int completedPasses = 0;
+
+	/**
+	 * Create a renderer of {@link #DEFAULT_PASSES} passes
+	 * 
+	 * @param scene
+	 *            The scene, which must have a camera
+	 * @param bvh
+	 *            Hierarchy of the shapes of the scene
+	 * @param panel
+	 *            Panel that shows the image, at the size of its framebuffer
+	 */
+	public ProgressiveRenderer(Scene scene, SceneBVH bvh, PixelPanel panel) {
+		this(scene, bvh, panel, DEFAULT_PASSES);
+	}
+
+	/**
+	 * Create a renderer
+	 * 
+	 * @param scene
+	 *            The scene, which must have a camera
+	 * @param bvh
+	 *            Hierarchy of the shapes of the scene
+	 * @param panel
+	 *            Panel that shows the image, at the size of its framebuffer
+	 * @param passes
+	 *            Number of passes, i.e. of samples per pixel
+	 */
+	public ProgressiveRenderer(Scene scene, SceneBVH bvh, PixelPanel panel,
+			int passes) {
+		if (passes < 1)
+			throw new IllegalArgumentException("Invalid number of passes "
+					+ passes + ".");
+		this.panel = panel;
+		this.passes = passes;
+		display = panel.getFramebuffer();
+		int width = display.getWidth();
+		int height = display.getHeight();
+		int previewWidth = (width + PREVIEW_SCALE - 1) / PREVIEW_SCALE;
+		int previewHeight = (height + PREVIEW_SCALE - 1) / PREVIEW_SCALE;
+
+		renderer = new SceneRenderer(scene, bvh, width, height);
+		preview = new SceneRenderer(scene, bvh, previewWidth, previewHeight);
+		engine = new RenderEngine(width, height);
+		previewEngine = new RenderEngine(previewWidth, previewHeight);
+		samples = new HdrFramebuffer(width, height);
+	}
+
+	/**
+	 * Start a render, on a background thread. A render in progress is
+	 * cancelled, and its tiles being rendered are waited for.
+	 * 
+	 * @return the result of the render, whose get() method waits for its end
+	 *         and throws its failure, if any
+	 */
+	public synchronized Future<?> start() {
+		cancelAndWait();
+		final AtomicBoolean flag = new AtomicBoolean();
+		cancelled = flag;
+		completedPasses = 0;
+		current = getExecutor().submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				render(flag);
+				return null;
+			}
+		});
+		return current;
+	}
+
+	/**
+	 * Cancel the render in progress, if any, without waiting for it. The
+	 * image keeps the passes and tiles drawn so far.
+	 */
+	public synchronized void cancel() {
+		cancelled.set(true);
+	}
+
+	/**
+	 * Cancel the render in progress, if any, and wait until it stops drawing
+	 */
+	public synchronized void cancelAndWait() {
+		cancelled.set(true);
+		if (current == null)
+			return;
+		try {
+			current.get();
+		} catch (ExecutionException e) {
+			// Reported by the future of the render
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the number of passes completed by the current render
+	 * 
+	 * @return the number of passes, i.e. of samples per pixel
+	 */
+	public int getCompletedPasses() {
+		return completedPasses;
+	}
+
+	/**
+	 * Returns the samples of the passes, e.g. to save the image in high
+	 * dynamic range once rendered
+	 * 
+	 * @return the samples
+	 */
+	public HdrFramebuffer getSamples() {
+		return samples;
+	}
+
+	/**
+	 * Render the preview and the passes
+	 * 
+	 * @param flag
+	 *            Flag that cancels the render
+	 */
+	private void render(AtomicBoolean flag) {
+		synchronized (display) {
+			samples.clear();
+		}
+
+		previewEngine.render(preview, new TileSink() {
+			@Override
+			public void drawTile(int x, int y, int width, int height,
+					float[] rgb) {
+				drawPreview(x, y, width, height, rgb);
+			}
+		}, null, flag);
+
+		TileSink sink = new TileSink() {
+			@Override
+			public void drawTile(int x, int y, int width, int height,
+					float[] rgb) {
+				synchronized (display) {
+					samples.drawTile(x, y, width, height, rgb);
+					samples.toneMap(mapper, 1.0F, display, x, y, width,
+							height);
+				}
+				panel.markChanged();
+			}
+		};
+		for (int pass = 0; pass < passes && !flag.get(); pass++) {
+			final float offsetX = pass == 0 ? 0.5F : Sampler.radicalInverse(
+					pass, 2);
+			final float offsetY = pass == 0 ? 0.5F : Sampler.radicalInverse(
+					pass, 3);
+			TileRenderer tiles = new TileRenderer() {
+				@Override
+				public void renderTile(int x, int y, int width, int height,
+						float[] rgb) {
+					renderer.renderTile(x, y, width, height, offsetX, offsetY,
+							rgb);
+				}
+			};
+			if (engine.render(tiles, sink, null, flag))
+				completedPasses = pass + 1;
+		}
+	}
+
+	/**
+	 * Draw a tile of the preview, as blocks of pixels
+	 * 
+	 * @param x
+	 *            Left of the tile, in the preview
+	 * @param y
+	 *            Top of the tile, in the preview
+	 * @param width
+	 *            Width of the tile
+	 * @param height
+	 *            Height of the tile
+	 * @param rgb
+	 *            Linear colors of the pixels of the tile
+	 */
+	private void drawPreview(int x, int y, int width, int height, float[] rgb) {
+		int[] pixels = display.getPixels();
+		int imageWidth = display.getWidth();
+		int imageHeight = display.getHeight();
+		synchronized (display) {
+			for (int j = 0; j < height; j++) {
+				int top = (y + j) * PREVIEW_SCALE;
+				int bottom = Math.min(top + PREVIEW_SCALE, imageHeight);
+				for (int i = 0; i < width; i++) {
+					int p = 3 * (j * width + i);
+					int pixel = Color.pack(mapper.map(rgb[p]), mapper
+							.map(rgb[p + 1]), mapper.map(rgb[p + 2]));
+					int left = (x + i) * PREVIEW_SCALE;
+					int right = Math.min(left + PREVIEW_SCALE, imageWidth);
+					for (int row = top; row < bottom; row++)
+						for (int k = row * imageWidth + left; k < row
+								* imageWidth + right; k++)
+							pixels[k] = pixel;
+				}
+			}
+		}
+		panel.markChanged();
+	}
+
+	/**
+	 * Returns the shared executor, whose daemon threads are created as
+	 * needed
+	 * 
+	 * @return the shared executor
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ProgressiveRenderer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,90 @@
+package uclouvain.ingi2325.render;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Benchmark of the scaling of {@link RenderEngine}
+ * <p>This application renders a scene with 1, 2, 4, ... threads up to one
+ * per processor, and reports for each the time per frame, the primary rays
+ * per second and the speedup and efficiency relative to one thread.</p>
+ * <p>Usage: <code>RenderBenchmark [scene.sdl [width height [runs]]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class RenderBenchmark {
+
+	/** Default scene */
+	private static final String DEFAULT_SCENE = "XML/example.sdl";
+
+	/** Default width of the image */
+	private static final int DEFAULT_WIDTH = 1280;
+
+	/** Default height of the image */
+	private static final int DEFAULT_HEIGHT = 720;
+
+	/** Default number of measured frames, after as many warm-up frames */
+	private static final int DEFAULT_RUNS = 5;
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 * @throws FileNotFoundException
+	 *             The scene does not exist
+	 */
+	public static void main(String[] args) throws FileNotFoundException {
+		String filename = args.length > 0 ? args[0] : DEFAULT_SCENE;
+		int width = args.length > 2 ? Integer.parseInt(args[1])
+				: DEFAULT_WIDTH;
+		int height = args.length > 2 ? Integer.parseInt(args[2])
+				: DEFAULT_HEIGHT;
+		int runs = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_RUNS;
+
+		System.setProperty("java.awt.headless", "true");
+		Scene scene = new SceneBuilder().loadScene(new File(filename)
+				.getAbsolutePath());
+		if (scene == null)
+			throw new IllegalArgumentException("The scene could not be loaded");
+		SceneBVH bvh = SceneBVH.build(scene, height);
+		SceneRenderer renderer = new SceneRenderer(scene, bvh, width, height);
+		RenderEngine engine = new RenderEngine(width, height);
+		Framebuffer sink = new Framebuffer(width, height);
+
+		System.out.println(String.format(Locale.US,
+				"%s, %dx%d pixels, %d tiles", filename, width, height, engine
+						.getTileCount()));
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		List<Integer> counts = new ArrayList<Integer>();
+		for (int threads = 1; threads < processors; threads *= 2)
+			counts.add(threads);
+		counts.add(processors);
+
+		double baseline = 0.0;
+		for (int threads : counts) {
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < 2 * runs; run++) {
+				long start = System.nanoTime();
+				engine.render(renderer, sink, pool);
+				if (run >= runs)
+					best = Math.min(best, System.nanoTime() - start);
+			}
+			pool.shutdown();
+
+			if (threads == 1)
+				baseline = best;
+			System.out.println(String.format(Locale.US,
+					"%3d threads: %8.2f ms/frame, %7.2f Mrays/s, "
+							+ "speedup %5.2fx, efficiency %3.0f%%", threads,
+					best / 1e6, (double) width * height * 1e3 / best,
+					baseline / best, 100.0 * baseline / best / threads));
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package uclouvain.ingi2325.render;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import uclouvain.ingi2325.utils.SharedPool;
+
+/**
+ * Parallel tile-based render engine
+ * <p>The image is split into square tiles of {@link #getTileSize()} pixels,
+ * taken in a {@link TileOrder}. One worker per thread of a
+ * {@link ForkJoinPool} repeatedly claims the next tile, renders it into its
+ * own tile buffer and blits the buffer into the {@link TileSink} at once.
+ * Claiming tiles one at a time balances the load like work stealing, while
+ * keeping the tiles close to their order.</p>
+ * <p>A render may be cancelled through a flag, which the workers check
+ * before claiming each tile: the tiles being rendered are still drawn, and
+ * no other.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class RenderEngine {
+
+	/** Default size of the tiles */
+	public static final int DEFAULT_TILE_SIZE = 32;
+
+	/** Width of the image */
+	private final int width;
+
+	/** Height of the image */
+	private final int height;
+
+	/** Size of the tiles */
+	private final int tileSize;
+
+	/** Number of columns of tiles */
+	private final int columns;
+
+	/** Tiles, in rendering order */
+	private final int[] order;
+
+	/**
+	 * Create an engine with tiles of the default size, in spiral order
+	 * 
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 */
+	public RenderEngine(int width, int height) {
+		this(width, height, DEFAULT_TILE_SIZE, TileOrder.SPIRAL);
+	}
+
+	/**
+	 * Create an engine
+	 * 
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param tileSize
+	 *            Size of the tiles
+	 * @param order
+	 *            Order of the tiles
+	 */
+	public RenderEngine(int width, int height, int tileSize, TileOrder order) {
+		if (width <= 0 || height <= 0 || tileSize <= 0)
+			throw new IllegalArgumentException(String.format(
+					"Invalid image of %dx%d pixels in tiles of %d.", width,
+					height, tileSize));
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		columns = (width + tileSize - 1) / tileSize;
+		this.order = order.order(columns, (height + tileSize - 1) / tileSize);
+	}
+
+	/**
+	 * Returns the width of the image
+	 * 
+	 * @return the width of the image
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height of the image
+	 * 
+	 * @return the height of the image
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the size of the tiles
+	 * 
+	 * @return the size of the tiles
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Returns the number of tiles
+	 * 
+	 * @return the number of tiles
+	 */
+	public int getTileCount() {
+		return order.length;
+	}
+
+	/**
+	 * Render the image, on the {@link SharedPool}
+	 * 
+	 * @param renderer
+	 *            Renderer of the tiles
+	 * @param sink
+	 *            Image into which the tiles are blitted
+	 */
+	public void render(TileRenderer renderer, TileSink sink) {
+		render(renderer, sink, SharedPool.get());
+	}
+
+	/**
+	 * Render the image
+	 * 
+	 * @param renderer
+	 *            Renderer of the tiles
+	 * @param sink
+	 *            Image into which the tiles are blitted
+	 * @param pool
+	 *            Pool whose threads render the tiles
+	 */
+	public void render(TileRenderer renderer, TileSink sink, ForkJoinPool pool) {
+		render(renderer, sink, pool, new AtomicBoolean());
+	}
+
+	/**
+	 * Render the image, unless it is cancelled
+	 * 
+	 * @param renderer
+	 *            Renderer of the tiles
+	 * @param sink
+	 *            Image into which the tiles are blitted
+	 * @param pool
+	 *            Pool whose threads render the tiles, or null for the
+	 *            {@link SharedPool}
+	 * @param cancelled
+	 *            Flag that cancels the render once set
+	 * @return True if all the tiles were drawn, false if the render was
+	 *         cancelled
+	 */
+	public boolean render(TileRenderer renderer, TileSink sink,
+			ForkJoinPool pool, AtomicBoolean cancelled) {
+		if (pool == null)
+			pool = SharedPool.get();
+		Render frame = new Render(renderer, sink, pool.getParallelism(),
+				cancelled);
+		pool.invoke(frame);
+		return frame.next.get() >= order.length;
+	}
+
+	/**
+	 * Task that renders a frame with a number of workers
+	 */
+	private class Render extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Renderer of the tiles */
+		private final TileRenderer renderer;
+
+		/** Image into which the tiles are blitted */
+		private final TileSink sink;
+
+		/** Number of workers */
+		private final int workers;
+
+		/** Flag that cancels the render */
+		private final AtomicBoolean cancelled;
+
+		/** Next tile to claim, in <code>order</code> */
+		private final AtomicInteger next = new AtomicInteger();
+
+		/**
+		 * Create a task
+		 * 
+		 * @param renderer
+		 *            Renderer of the tiles
+		 * @param sink
+		 *            Image into which the tiles are blitted
+		 * @param workers
+		 *            Number of workers
+		 * @param cancelled
+		 *            Flag that cancels the render
+		 */
+		Render(TileRenderer renderer, TileSink sink, int workers,
+				AtomicBoolean cancelled) {
+			this.renderer = renderer;
+			this.sink = sink;
+			this.workers = workers;
+			this.cancelled = cancelled;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			Worker[] tasks = new Worker[Math.min(workers, order.length)];
+			for (int i = 0; i < tasks.length; i++)
+				tasks[i] = new Worker(this);
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Task that renders tiles until there are none left
+	 */
+	private class Worker extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		/** Frame being rendered */
+		private final Render frame;
+
+		/**
+		 * Create a worker
+		 * 
+		 * @param frame
+		 *            Frame being rendered
+		 */
+		Worker(Render frame) {
+			this.frame = frame;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			float[] buffer = new float[3 * tileSize * tileSize];
+			int index;
+			while (!frame.cancelled.get()
+					&& (index = frame.next.getAndIncrement()) < order.length) {
+				int tile = order[index];
+				int x = (tile % columns) * tileSize;
+				int y = (tile / columns) * tileSize;
+				int tileWidth = Math.min(tileSize, width - x);
+				int tileHeight = Math.min(tileSize, height - y);
+
+				frame.renderer.renderTile(x, y, tileWidth, tileHeight, buffer);
+				frame.sink.drawTile(x, y, tileWidth, tileHeight, buffer);
+			}
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package uclouvain.ingi2325.render;
+
+/**
+ * Pattern of the positions of the samples in a pixel
+ * <p>The samples of a pixel are numbered from 0, and come in batches of a
+ * given count: a renderer may take any number of batches. Each pixel
+ * scrambles the pattern with its own seed, so that neighbouring pixels do
+ * not repeat the same positions, which would turn aliasing into visible
+ * structure. A seed of 0 leaves the low-discrepancy sequences
+ * unscrambled.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public enum Sampler {
+
+	/**
+	 * Jittered grid: each batch is stratified over the cells of the smallest
+	 * square grid that has as many cells as samples, visited in a random
+	 * order
+	 */
+	STRATIFIED {
+		@Override
+		public void getOffset(int index, int count, int seed, float[] offset) {
+			int side = (int) Math.ceil(Math.sqrt(count));
+			int batch = hash(seed ^ hash(index / count + 1));
+			int cell = permute(index % count, side * side, batch);
+			int jitter = hash(batch + index % count);
+			offset[0] = (cell % side + toFloat(jitter)) / side;
+			offset[1] = (cell / side + toFloat(hash(jitter))) / side;
+		}
+	},
+
+	/**
+	 * Halton sequence in bases 2 and 3, shifted modulo 1 by the seed
+	 * (Cranley-Patterson rotation)
+	 */
+	HALTON {
+		@Override
+		public void getOffset(int index, int count, int seed, float[] offset) {
+			offset[0] = shift(radicalInverse(index, 2), seed);
+			offset[1] = shift(radicalInverse(index, 3), hash(seed));
+		}
+	},
+
+	/**
+	 * First two dimensions of the Sobol sequence, a (0, 2)-sequence in base
+	 * 2, whose digits are scrambled by the seed. Each aligned run of 2^m
+	 * samples has one sample in each elementary interval of area 2^-m.
+	 */
+	SOBOL {
+		@Override
+		public void getOffset(int index, int count, int seed, float[] offset) {
+			// The first dimension mirrors the bits of the index, the second
+			// multiplies them by the generator matrix of Sobol's polynomial
+			// x + 1
+			int x = 0, y = 0;
+			int v = 1 << 31, w = 1 << 31;
+			for (int i = index; i != 0; i >>>= 1) {
+				if ((i & 1) != 0) {
+					x ^= v;
+					y ^= w;
+				}
+				v >>>= 1;
+				w ^= w >>> 1;
+			}
+			offset[0] = toFloat(x ^ seed);
+			offset[1] = toFloat(y ^ hash(seed));
+		}
+	};
+
+	/**
+	 * Get the position of a sample in its pixel
+	 * 
+	 * @param index
+	 *            Index of the sample in its pixel, from 0
+	 * @param count
+	 *            Number of samples of each batch
+	 * @param seed
+	 *            Seed of the pixel
+	 * @param offset
+	 *            Set to the abscissa and the ordinate of the sample in the
+	 *            pixel, in [0, 1[
+	 */
+	public abstract void getOffset(int index, int count, int seed,
+			float[] offset);
+
+	/**
+	 * Returns the seed of a pixel
+	 * 
+	 * @param x
+	 *            Abscissa of the pixel
+	 * @param y
+	 *            Ordinate of the pixel
+	 * @return the seed, never 0
+	 */
+	public static int getSeed(int x, int y) {
+		int seed = hash(x * 0x9E3779B1 ^ hash(y + 0x632BE5AB));
+		return seed != 0 ? seed : 1;
+	}
+
+	/**
+	 * Returns the sampler with a given name, case insensitively
+	 * 
+	 * @param name
+	 *            Name of the sampler, e.g. <code>sobol</code>
+	 * @return the sampler
+	 * @throws IllegalArgumentException
+	 *             There is no such sampler
+	 */
+	public static Sampler forName(String name) {
+		return valueOf(name.toUpperCase());
+	}
+
+	/**
+	 * Hash an integer, with the finalizer of MurmurHash3
+	 * 
+	 * @param h
+	 *            The integer
+	 * @return the hash, 0 for 0 only
+	 */
+	private static int hash(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Convert the high bits of an integer to a float
+	 * 
+	 * @param bits
+	 *            The integer
+	 * @return the float, in [0, 1[
+	 */
+	private static float toFloat(int bits) {
+		return (bits >>> 8) * 0x1p-24F;
+	}
+
+	/**
+	 * Shift a number modulo 1
+	 * 
+	 * @param value
+	 *            The number, in [0, 1[
+	 * @param bits
+	 *            The shift, as the bits of a float of [0, 1[
+	 * @return the shifted number, in [0, 1[
+	 */
+	private static float shift(float value, int bits) {
+		float shifted = value + toFloat(bits);
+		return shifted >= 1 ? shifted - 1 : shifted;
+	}
+
+	/**
+	 * Returns the radical inverse of an integer, i.e. its digits mirrored
+	 * around the point
+	 * 
+	 * @param index
+	 *            The integer
+	 * @param base
+	 *            The base of the digits
+	 * @return the radical inverse, in [0, 1[
+	 */
+	static float radicalInverse(int index, int base) {
+		float result = 0;
+		float digit = 1.0F / base;
+		for (int i = index; i > 0; i /= base) {
+			result += digit * (i % base);
+			digit /= base;
+		}
+		return result;
+	}
+
+	/**
+	 * Permute an integer among the integers from 0 to length - 1, with
+	 * Kensler's hash, which needs no table
+	 * 
+	 * @param index
+	 *            The integer
+	 * @param length
+	 *            Number of integers permuted
+	 * @param seed
+	 *            Seed of the permutation
+	 * @return the image of the integer
+	 */
+	private static int permute(int index, int length, int seed) {
+		int mask = length - 1;
+		mask |= mask >>> 1;
+		mask |= mask >>> 2;
+		mask |= mask >>> 4;
+		mask |= mask >>> 8;
+		mask |= mask >>> 16;
+
+		// Each step is a bijection of the masked bits: walk the cycle of the
+		// permutation of [0, mask] until it falls in [0, length[
+		int i = index;
+		do {
+			i ^= seed;
+			i *= 0xE170893D;
+			i ^= seed >>> 16;
+			i ^= (i & mask) >>> 4;
+			i ^= seed >>> 8;
+			i *= 0x0929EB3F;
+			i ^= seed >>> 23;
+			i ^= (i & mask) >>> 1;
+			i *= 1 | seed >>> 27;
+			i *= 0x6935FA69;
+			i ^= (i & mask) >>> 11;
+			i *= 0x74DCB303;
+			i ^= (i & mask) >>> 2;
+			i *= 0x9E501CC3;
+			i ^= (i & mask) >>> 2;
+			i *= 0xC860A3DF;
+			i &= mask;
+			i ^= i >>> 5;
+		} while (i >= length);
+		return (int) ((i + (seed & 0x7FFFFFFFL)) % length);
+	}
+}
@@ -0,0 +1,292 @@
+package uclouvain.ingi2325.render;
+
+import uclouvain.ingi2325.accel.Hit;
+import uclouvain.ingi2325.accel.RayPacket;
+import uclouvain.ingi2325.accel.SceneBVH;
+import uclouvain.ingi2325.scene.*;
+import uclouvain.ingi2325.utils.*;
+
+/**
+ * Renderer of the shapes of a scene, seen from its camera
+ * <p>Each pixel traces one primary ray, through the center of the pixel
+ * unless another point is given, or arbitrary points of the image are traced
+ * for the samples of a supersampling renderer. The rays of square blocks of
+ * pixels, or of as many consecutive samples, are traced together, as a
+ * {@link RayPacket}, unless the packet size is 1.
+ * Shapes are shaded by a light at the eye: the base color of their material
+ * times the cosine between the ray and the normal of the surface.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class SceneRenderer implements TileRenderer {
+
+	/** Color of shapes without material */
+	private static final float DEFAULT_COLOR = 0.8F;
+
+	/** Default side of the blocks of pixels traced as packets */
+	public static final int DEFAULT_PACKET_SIZE = 8;
+
+	/** Hierarchy of the shapes */
+	private final SceneBVH bvh;
+
+	/** Generator of the primary rays */
+	private final PinholeCamera camera;
+
+	/** Base color of each instance, three floats per instance */
+	private final float[] colors;
+
+	/** Background color */
+	private final Color background;
+
+	/** Side of the blocks of pixels traced as packets, 1 for single rays */
+	private final int packetSize;
+
+	/**
+	 * Create a renderer
+	 * 
+	 * @param scene
+	 *            The scene, which must have a camera
+	 * @param bvh
+	 *            Hierarchy of the shapes of the scene
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 */
+	public SceneRenderer(Scene scene, SceneBVH bvh, int width, int height) {
+		this(scene, bvh, width, height, DEFAULT_PACKET_SIZE);
+	}
+
+	/**
+	 * Create a renderer
+	 * 
+	 * @param scene
+	 *            The scene, which must have a camera
+	 * @param bvh
+	 *            Hierarchy of the shapes of the scene
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param packetSize
+	 *            Side of the blocks of pixels traced as packets, 1 to trace
+	 *            single rays
+	 */
+	public SceneRenderer(Scene scene, SceneBVH bvh, int width, int height,
+			int packetSize) {
+		if (packetSize < 1)
+			throw new IllegalArgumentException("Invalid packet size "
+					+ packetSize + ".");
+		if (scene.getCamera() == null)
+			throw new IllegalArgumentException("The scene has no camera.");
+		this.bvh = bvh;
+		camera = new PinholeCamera(scene.getCamera(), width, height);
+
+		colors = new float[3 * bvh.getInstanceCount()];
+		Color color = new Color();
+		for (int i = 0; i < bvh.getInstanceCount(); i++) {
+			getBaseColor(bvh.getShape(i).getMaterial(), color);
+			colors[3 * i] = color.x;
+			colors[3 * i + 1] = color.y;
+			colors[3 * i + 2] = color.z;
+		}
+
+		background = scene.getBackground();
+		this.packetSize = packetSize;
+	}
+
+	/**
+	 * Returns the hierarchy of the shapes
+	 * 
+	 * @return the hierarchy of the shapes
+	 */
+	public SceneBVH getBVH() {
+		return bvh;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.render.TileRenderer#renderTile(int, int, int,
+	 * int, float[])
+	 */
+	@Override
+	public void renderTile(int x, int y, int width, int height, float[] rgb) {
+		renderTile(x, y, width, height, 0.5F, 0.5F, rgb);
+	}
+
+	/**
+	 * Render a tile with the primary rays through the same point of each
+	 * pixel, e.g. for one pass of a progressive render
+	 * 
+	 * @param x
+	 *            Left of the tile
+	 * @param y
+	 *            Top of the tile
+	 * @param width
+	 *            Width of the tile
+	 * @param height
+	 *            Height of the tile
+	 * @param offsetX
+	 *            Abscissa of the point in the pixels, from 0 to 1
+	 * @param offsetY
+	 *            Ordinate of the point in the pixels, from 0 to 1
+	 * @param rgb
+	 *            Buffer set to the linear colors of the pixels of the tile
+	 */
+	public void renderTile(int x, int y, int width, int height,
+			float offsetX, float offsetY, float[] rgb) {
+		Hit hit = new Hit();
+		Point3D point = new Point3D();
+		Vector3D normal = new Vector3D();
+
+		if (packetSize == 1) {
+			Ray ray = new Ray();
+			for (int j = 0; j < height; j++) {
+				for (int i = 0; i < width; i++) {
+					camera.generateRay(x + i + offsetX, y + j + offsetY, ray);
+					hit.reset();
+					boolean found = bvh.intersect(ray, hit);
+					shade(found ? hit : null, ray.origin, ray.direction.x,
+							ray.direction.y, ray.direction.z, point, normal,
+							rgb, 3 * (j * width + i));
+				}
+			}
+			return;
+		}
+
+		RayPacket packet = new RayPacket(packetSize * packetSize);
+		for (int by = 0; by < height; by += packetSize) {
+			for (int bx = 0; bx < width; bx += packetSize) {
+				int blockWidth = Math.min(packetSize, width - bx);
+				int blockHeight = Math.min(packetSize, height - by);
+				camera.generatePacket(x + bx, y + by, blockWidth, blockHeight,
+						offsetX, offsetY, packet);
+				bvh.intersect(packet);
+
+				for (int j = 0, r = 0; j < blockHeight; j++) {
+					for (int i = 0; i < blockWidth; i++, r++) {
+						boolean found = packet.getHit(r, hit);
+						shade(found ? hit : null, packet.origin, packet.dx[r],
+								packet.dy[r], packet.dz[r], point, normal, rgb,
+								3 * ((by + j) * width + bx + i));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Render the primary rays through arbitrary points of the image, e.g. the
+	 * samples of several pixels. Consecutive points are traced together as
+	 * packets of the square of the packet size, and should thus be close.
+	 * 
+	 * @param positions
+	 *            Abscissas and ordinates of the points, in pixels, two floats
+	 *            per point
+	 * @param count
+	 *            Number of points
+	 * @param rgb
+	 *            Buffer set to the linear colors of the points, three floats
+	 *            per point
+	 */
+	public void renderSamples(float[] positions, int count, float[] rgb) {
+		Hit hit = new Hit();
+		Point3D point = new Point3D();
+		Vector3D normal = new Vector3D();
+
+		if (packetSize == 1) {
+			Ray ray = new Ray();
+			for (int s = 0; s < count; s++) {
+				camera.generateRay(positions[2 * s], positions[2 * s + 1], ray);
+				hit.reset();
+				boolean found = bvh.intersect(ray, hit);
+				shade(found ? hit : null, ray.origin, ray.direction.x,
+						ray.direction.y, ray.direction.z, point, normal, rgb,
+						3 * s);
+			}
+			return;
+		}
+
+		int capacity = packetSize * packetSize;
+		RayPacket packet = new RayPacket(capacity);
+		for (int first = 0; first < count; first += capacity) {
+			int size = Math.min(capacity, count - first);
+			camera.generatePacket(positions, first, size, packet);
+			bvh.intersect(packet);
+			for (int r = 0; r < size; r++) {
+				boolean found = packet.getHit(r, hit);
+				shade(found ? hit : null, packet.origin, packet.dx[r],
+						packet.dy[r], packet.dz[r], point, normal, rgb,
+						3 * (first + r));
+			}
+		}
+	}
+
+	/**
+	 * Shade a primary ray
+	 * 
+	 * @param hit
+	 *            Hit of the ray, or null if it hits nothing
+	 * @param origin
+	 *            Origin of the ray
+	 * @param dx
+	 *            X component of the direction of the ray
+	 * @param dy
+	 *            Y component of the direction
+	 * @param dz
+	 *            Z component of the direction
+	 * @param point
+	 *            Scratch point
+	 * @param normal
+	 *            Scratch vector
+	 * @param rgb
+	 *            Colors of the tile
+	 * @param p
+	 *            Index of the color of the pixel in <code>rgb</code>
+	 */
+	private void shade(Hit hit, Point3D origin, float dx, float dy, float dz,
+			Point3D point, Vector3D normal, float[] rgb, int p) {
+		if (hit == null) {
+			rgb[p] = background.x;
+			rgb[p + 1] = background.y;
+			rgb[p + 2] = background.z;
+			return;
+		}
+
+		point.set(origin.x + hit.t * dx, origin.y + hit.t * dy, origin.z
+				+ hit.t * dz);
+		bvh.getNormal(hit, point, normal);
+		float cosine = Math.abs(normal.x * dx + normal.y * dy + normal.z * dz)
+				/ (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+		int c = 3 * hit.instance;
+		rgb[p] = cosine * colors[c];
+		rgb[p + 1] = cosine * colors[c + 1];
+		rgb[p + 2] = cosine * colors[c + 2];
+	}
+
+	/**
+	 * Get the base color of a material
+	 * 
+	 * @param material
+	 *            The material, or null
+	 * @param color
+	 *            Set to the base color
+	 */
+	private static void getBaseColor(Material material, Color color) {
+		if (material instanceof DiffuseMaterial) {
+			color.set(((DiffuseMaterial) material).getColor());
+		} else if (material instanceof PhongMaterial) {
+			color.set(((PhongMaterial) material).getColor());
+		} else if (material instanceof LinearCombinedMaterial) {
+			LinearCombinedMaterial combined = (LinearCombinedMaterial) material;
+			Color other = new Color();
+			getBaseColor(combined.getMaterial1(), color);
+			getBaseColor(combined.getMaterial2(), other);
+			color.scale(combined.getWeight1());
+			color.addScaled(combined.getWeight2(), other);
+		} else {
+			color.set(DEFAULT_COLOR, DEFAULT_COLOR, DEFAULT_COLOR);
+		}
+	}
+}
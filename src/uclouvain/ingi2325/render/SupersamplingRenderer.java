@@ -0,0 +1,243 @@
+package uclouvain.ingi2325.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Antialiasing renderer, which averages several samples per pixel
+ * <p>Each pixel first takes a batch of samples, placed by a {@link Sampler}.
+ * The renderer tracks the mean, the variance, the minimum and the maximum of
+ * the luminance of the samples of each pixel, and then takes more batches
+ * only in the pixels that still need them: those whose contrast, i.e.
+ * (max - min) / (max + min) after Mitchell, exceeds a threshold, and whose
+ * mean is still uncertain, i.e. whose standard error exceeds a tolerance.
+ * Flat pixels thus stop after their first batch, and the rays are spent on
+ * the edges and the textures, up to a maximum number of samples per pixel.
+ * When the first batch is the maximum, every pixel takes as many samples:
+ * this is uniform supersampling.</p>
+ * <p>The samples of each batch are traced by sample index, then pixel by
+ * pixel, so that the packets of the {@link SceneRenderer} gather the same
+ * sample of neighbouring pixels, whose rays are coherent.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class SupersamplingRenderer implements TileRenderer {
+
+	/** Default number of samples of each batch */
+	public static final int DEFAULT_BATCH = 4;
+
+	/** Default maximum number of samples per pixel */
+	public static final int DEFAULT_MAX_SAMPLES = 64;
+
+	/** Default contrast over which a pixel takes more samples */
+	public static final float DEFAULT_CONTRAST = 0.1F;
+
+	/** Default standard error of the luminance under which a pixel stops */
+	public static final float DEFAULT_TOLERANCE = 0.01F;
+
+	/** Renderer of the samples */
+	private final SceneRenderer renderer;
+
+	/** Pattern of the samples in the pixels */
+	private final Sampler sampler;
+
+	/** Number of samples of each batch */
+	private final int batch;
+
+	/** Maximum number of samples per pixel, a multiple of the batch */
+	private final int maxSamples;
+
+	/** Contrast over which a pixel takes more samples */
+	private final float contrast;
+
+	/** Standard error of the luminance under which a pixel stops */
+	private final float tolerance;
+
+	/** Number of samples traced so far */
+	private final AtomicLong sampleCount = new AtomicLong();
+
+	/**
+	 * Create a uniform supersampling renderer
+	 * 
+	 * @param renderer
+	 *            Renderer of the samples
+	 * @param sampler
+	 *            Pattern of the samples in the pixels
+	 * @param samples
+	 *            Number of samples of every pixel
+	 */
+	public SupersamplingRenderer(SceneRenderer renderer, Sampler sampler,
+			int samples) {
+		this(renderer, sampler, samples, samples, DEFAULT_CONTRAST,
+				DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Create an adaptive supersampling renderer, with the default batches,
+	 * maximum, contrast and tolerance
+	 * 
+	 * @param renderer
+	 *            Renderer of the samples
+	 * @param sampler
+	 *            Pattern of the samples in the pixels
+	 */
+	public SupersamplingRenderer(SceneRenderer renderer, Sampler sampler) {
+		this(renderer, sampler, DEFAULT_BATCH, DEFAULT_MAX_SAMPLES,
+				DEFAULT_CONTRAST, DEFAULT_TOLERANCE);
+	}
+
+	/**
+	 * Create an adaptive supersampling renderer
+	 * 
+	 * @param renderer
+	 *            Renderer of the samples
+	 * @param sampler
+	 *            Pattern of the samples in the pixels
+	 * @param batch
+	 *            Number of samples of each batch, the first one included; at
+	 *            least 2 if the maximum is larger, since the contrast and the
+	 *            variance of a single sample are always 0
+	 * @param maxSamples
+	 *            Maximum number of samples per pixel, rounded down to a
+	 *            multiple of the batch
+	 * @param contrast
+	 *            Contrast over which a pixel takes more samples, from 0 to 1
+	 * @param tolerance
+	 *            Standard error of the mean luminance under which a pixel
+	 *            takes no more samples
+	 * @throws IllegalArgumentException
+	 *             The batch is less than 1, or less than 2 while the maximum
+	 *             is larger, or the maximum is less than the batch
+	 */
+	public SupersamplingRenderer(SceneRenderer renderer, Sampler sampler,
+			int batch, int maxSamples, float contrast, float tolerance) {
+		if (batch < 1 || maxSamples < batch
+				|| (batch < 2 && maxSamples > batch))
+			throw new IllegalArgumentException("Invalid numbers of samples "
+					+ batch + " and " + maxSamples + ".");
+		this.renderer = renderer;
+		this.sampler = sampler;
+		this.batch = batch;
+		this.maxSamples = maxSamples - maxSamples % batch;
+		this.contrast = contrast;
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Returns the number of samples traced so far, by all the renders
+	 * 
+	 * @return the number of samples
+	 */
+	public long getSampleCount() {
+		return sampleCount.get();
+	}
+
+	/**
+	 * Reset the number of samples traced to 0
+	 */
+	public void resetSampleCount() {
+		sampleCount.set(0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see uclouvain.ingi2325.render.TileRenderer#renderTile(int, int, int,
+	 * int, float[])
+	 */
+	@Override
+	public void renderTile(int x, int y, int width, int height, float[] rgb) {
+		int pixels = width * height;
+		float[] positions = new float[2 * batch * pixels];
+		float[] colors = new float[3 * batch * pixels];
+		float[] offset = new float[2];
+
+		// Sums of the colors are kept in rgb, the statistics of the luminance
+		// in the other arrays
+		float[] sum = new float[pixels];
+		float[] squares = new float[pixels];
+		float[] min = new float[pixels];
+		float[] max = new float[pixels];
+		int[] samples = new int[pixels];
+		int[] seeds = new int[pixels];
+		int[] active = new int[pixels];
+		for (int p = 0; p < pixels; p++) {
+			rgb[3 * p] = rgb[3 * p + 1] = rgb[3 * p + 2] = 0.0F;
+			min[p] = Float.POSITIVE_INFINITY;
+			max[p] = Float.NEGATIVE_INFINITY;
+			seeds[p] = Sampler.getSeed(x + p % width, y + p / width);
+			active[p] = p;
+		}
+
+		int count = pixels;
+		int taken = 0;
+		long traced = 0;
+		while (count > 0) {
+			for (int s = 0, k = 0; s < batch; s++) {
+				for (int a = 0; a < count; a++, k += 2) {
+					int p = active[a];
+					sampler.getOffset(taken + s, batch, seeds[p], offset);
+					positions[k] = x + p % width + offset[0];
+					positions[k + 1] = y + p / width + offset[1];
+				}
+			}
+			renderer.renderSamples(positions, batch * count, colors);
+			traced += batch * count;
+			taken += batch;
+
+			int remaining = 0;
+			for (int a = 0; a < count; a++) {
+				int p = active[a];
+				for (int s = 0; s < batch; s++) {
+					int c = 3 * (s * count + a);
+					float r = colors[c], g = colors[c + 1], b = colors[c + 2];
+					rgb[3 * p] += r;
+					rgb[3 * p + 1] += g;
+					rgb[3 * p + 2] += b;
+					float luminance = 0.2126F * r + 0.7152F * g + 0.0722F * b;
+					sum[p] += luminance;
+					squares[p] += luminance * luminance;
+					min[p] = Math.min(min[p], luminance);
+					max[p] = Math.max(max[p], luminance);
+				}
+				samples[p] = taken;
+				if (taken < maxSamples && needsSamples(sum[p], squares[p],
+						min[p], max[p], taken))
+					active[remaining++] = p;
+			}
+			count = remaining;
+		}
+		sampleCount.addAndGet(traced);
+
+		for (int p = 0; p < pixels; p++) {
+			float scale = 1.0F / samples[p];
+			rgb[3 * p] *= scale;
+			rgb[3 * p + 1] *= scale;
+			rgb[3 * p + 2] *= scale;
+		}
+	}
+
+	/**
+	 * Returns whether a pixel needs more samples
+	 * 
+	 * @param sum
+	 *            Sum of the luminances of its samples
+	 * @param squares
+	 *            Sum of the squares of the luminances
+	 * @param min
+	 *            Minimum luminance
+	 * @param max
+	 *            Maximum luminance
+	 * @param samples
+	 *            Number of samples
+	 * @return True if the contrast of the samples exceeds the threshold and
+	 *         the standard error of their mean exceeds the tolerance
+	 */
+	private boolean needsSamples(float sum, float squares, float min,
+			float max, int samples) {
+		if (max - min <= contrast * (max + min))
+			return false;
+		float mean = sum / samples;
+		float variance = (squares / samples - mean * mean) / (samples - 1);
+		return variance > tolerance * tolerance;
+	}
+}
@@ -0,0 +1,100 @@
+package uclouvain.ingi2325.render;
+
+/**
+ * Order in which the tiles of an image are rendered
+ * <p>Tiles are numbered row by row, from the top left one.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public enum TileOrder {
+
+	/** Row by row, from the top */
+	SCANLINE {
+		@Override
+		public int[] order(int columns, int rows) {
+			int[] order = new int[columns * rows];
+			for (int i = 0; i < order.length; i++)
+				order[i] = i;
+			return order;
+		}
+	},
+
+	/** Square spiral from the center, so that the center is shown first */
+	SPIRAL {
+		@Override
+		public int[] order(int columns, int rows) {
+			int[] order = new int[columns * rows];
+			int column = (columns - 1) / 2;
+			int row = (rows - 1) / 2;
+			int dx = 1, dy = 0;
+			int count = 0;
+
+			// Walk legs of lengths 1, 1, 2, 2, 3, 3, ..., skipping the tiles
+			// outside the image
+			for (int leg = 1; count < order.length; leg++) {
+				for (int turn = 0; turn < 2; turn++) {
+					for (int step = 0; step < leg; step++) {
+						if (column >= 0 && column < columns && row >= 0
+								&& row < rows && count < order.length)
+							order[count++] = row * columns + column;
+						column += dx;
+						row += dy;
+					}
+					int swap = dx;
+					dx = -dy;
+					dy = swap;
+				}
+			}
+			return order;
+		}
+	},
+
+	/**
+	 * Hilbert curve, so that consecutive tiles are neighbours and the tiles
+	 * in flight share the scene data they touch
+	 */
+	HILBERT {
+		@Override
+		public int[] order(int columns, int rows) {
+			int[] order = new int[columns * rows];
+			int side = 1;
+			while (side < columns || side < rows)
+				side <<= 1;
+
+			int count = 0;
+			for (int d = 0; count < order.length; d++) {
+				// Convert the distance along the curve to coordinates
+				int column = 0, row = 0;
+				for (int s = 1, t = d; s < side; s <<= 1, t >>>= 2) {
+					int rx = 1 & (t >>> 1);
+					int ry = 1 & (t ^ rx);
+					if (ry == 0) {
+						if (rx == 1) {
+							column = s - 1 - column;
+							row = s - 1 - row;
+						}
+						int swap = column;
+						column = row;
+						row = swap;
+					}
+					column += s * rx;
+					row += s * ry;
+				}
+				if (column < columns && row < rows)
+					order[count++] = row * columns + column;
+			}
+			return order;
+		}
+	};
+
+	/**
+	 * Returns the tiles of an image in this order
+	 * 
+	 * @param columns
+	 *            Number of columns of tiles
+	 * @param rows
+	 *            Number of rows of tiles
+	 * @return the indices of the tiles, each once
+	 */
+	public abstract int[] order(int columns, int rows);
+}
@@ -0,0 +1,28 @@
+package uclouvain.ingi2325.render;
+
+/**
+ * Computes the pixels of tiles of an image
+ * <p>The workers of a {@link RenderEngine} call it concurrently, on distinct
+ * tiles.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface TileRenderer {
+
+	/**
+	 * Render a tile
+	 * 
+	 * @param x
+	 *            Left of the tile
+	 * @param y
+	 *            Top of the tile
+	 * @param width
+	 *            Width of the tile
+	 * @param height
+	 *            Height of the tile
+	 * @param rgb
+	 *            Buffer set to the linear colors of the pixels of the tile,
+	 *            row by row, as r, g and b floats per pixel
+	 */
+	public void renderTile(int x, int y, int width, int height, float[] rgb);
+}
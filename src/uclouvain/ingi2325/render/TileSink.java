@@ -0,0 +1,29 @@
+package uclouvain.ingi2325.render;
+
+/**
+ * Image into which a {@link RenderEngine} blits rendered tiles
+ * <p>Tiles are blitted concurrently by the workers of the engine, but never
+ * overlap. Their colors are linear and unbounded: sinks with a limited
+ * range clamp or tone map them.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public interface TileSink {
+
+	/**
+	 * Copy a tile into the image
+	 * 
+	 * @param x
+	 *            Left of the tile
+	 * @param y
+	 *            Top of the tile
+	 * @param width
+	 *            Width of the tile
+	 * @param height
+	 *            Height of the tile
+	 * @param rgb
+	 *            Pixels of the tile, row by row, as r, g and b floats per
+	 *            pixel
+	 */
+	public void drawTile(int x, int y, int width, int height, float[] rgb);
+}
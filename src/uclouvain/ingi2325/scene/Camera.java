@@ -0,0 +1,95 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Camera of a scene
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Camera {
+
+	/** Position of the eye */
+	private final Point3D position;
+
+	/** Direction of sight */
+	private final Vector3D direction;
+
+	/** Up vector */
+	private final Vector3D up;
+
+	/** Vertical field of view, in degrees */
+	private final float fovy;
+
+	/** Name */
+	private final String name;
+
+	/**
+	 * Create a camera
+	 * 
+	 * @param position
+	 *            Position of the eye
+	 * @param direction
+	 *            Direction of sight
+	 * @param up
+	 *            Up vector
+	 * @param fovy
+	 *            Vertical field of view, in degrees
+	 * @param name
+	 *            Name
+	 */
+	public Camera(Point3D position, Vector3D direction, Vector3D up, float fovy,
+			String name) {
+		this.position = position;
+		this.direction = direction;
+		this.up = up;
+		this.fovy = fovy;
+		this.name = name;
+	}
+
+	/**
+	 * Returns the position of the eye
+	 * 
+	 * @return the position of the eye
+	 */
+	public Point3D getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the direction of sight
+	 * 
+	 * @return the direction of sight
+	 */
+	public Vector3D getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns the up vector
+	 * 
+	 * @return the up vector
+	 */
+	public Vector3D getUp() {
+		return up;
+	}
+
+	/**
+	 * Returns the vertical field of view, in degrees
+	 * 
+	 * @return the vertical field of view, in degrees
+	 */
+	public float getFovy() {
+		return fovy;
+	}
+
+	/**
+	 * Returns the name
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,65 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Cone around the Y axis, with its base at y = 0 and its apex at
+ * y = height
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Cone extends Geometry {
+
+	/** Radius of the base */
+	private final float radius;
+
+	/** Height */
+	private final float height;
+
+	/** Whether the base is closed */
+	private final boolean capped;
+
+	/**
+	 * Create a cone
+	 * 
+	 * @param radius
+	 *            Radius of the base
+	 * @param height
+	 *            Height
+	 * @param capped
+	 *            Whether the base is closed
+	 * @param name
+	 *            Name
+	 */
+	public Cone(float radius, float height, boolean capped, String name) {
+		super(name);
+		this.radius = radius;
+		this.height = height;
+		this.capped = capped;
+	}
+
+	/**
+	 * Returns the radius of the base
+	 * 
+	 * @return the radius of the base
+	 */
+	public float getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Returns the height
+	 * 
+	 * @return the height
+	 */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns whether the base is closed
+	 * 
+	 * @return true if the base is closed
+	 */
+	public boolean isCapped() {
+		return capped;
+	}
+}
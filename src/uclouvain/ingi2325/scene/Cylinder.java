@@ -0,0 +1,64 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Cylinder around the Y axis, from y = 0 to y = height
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Cylinder extends Geometry {
+
+	/** Radius */
+	private final float radius;
+
+	/** Height */
+	private final float height;
+
+	/** Whether the ends are closed */
+	private final boolean capped;
+
+	/**
+	 * Create a cylinder
+	 * 
+	 * @param radius
+	 *            Radius
+	 * @param height
+	 *            Height
+	 * @param capped
+	 *            Whether the ends are closed
+	 * @param name
+	 *            Name
+	 */
+	public Cylinder(float radius, float height, boolean capped, String name) {
+		super(name);
+		this.radius = radius;
+		this.height = height;
+		this.capped = capped;
+	}
+
+	/**
+	 * Returns the radius
+	 * 
+	 * @return the radius
+	 */
+	public float getRadius() {
+		return radius;
+	}
+
+	/**
+	 * Returns the height
+	 * 
+	 * @return the height
+	 */
+	public float getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns whether the ends are closed
+	 * 
+	 * @return true if the ends are closed
+	 */
+	public boolean isCapped() {
+		return capped;
+	}
+}
@@ -0,0 +1,36 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+
+/**
+ * Lambertian material
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class DiffuseMaterial extends Material {
+
+	/** Color */
+	private final Color color;
+
+	/**
+	 * Create a diffuse material
+	 * 
+	 * @param color
+	 *            Color
+	 * @param name
+	 *            Name
+	 */
+	public DiffuseMaterial(Color color, String name) {
+		super(name);
+		this.color = color;
+	}
+
+	/**
+	 * Returns the color
+	 * 
+	 * @return the color
+	 */
+	public Color getColor() {
+		return color;
+	}
+}
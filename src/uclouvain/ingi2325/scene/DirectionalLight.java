@@ -0,0 +1,42 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Light coming from one direction, at infinity
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class DirectionalLight extends Light {
+
+	/** Direction of the light */
+	private final Vector3D direction;
+
+	/**
+	 * Create a directional light
+	 * 
+	 * @param direction
+	 *            Direction of the light
+	 * @param intensity
+	 *            Intensity
+	 * @param color
+	 *            Color
+	 * @param name
+	 *            Name
+	 */
+	public DirectionalLight(Vector3D direction, float intensity, Color color,
+			String name) {
+		super(intensity, color, name);
+		this.direction = direction;
+	}
+
+	/**
+	 * Returns the direction of the light
+	 * 
+	 * @return the direction of the light
+	 */
+	public Vector3D getDirection() {
+		return direction;
+	}
+}
@@ -0,0 +1,31 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Named geometry, that shapes place in a scene
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public abstract class Geometry {
+
+	/** Name */
+	private final String name;
+
+	/**
+	 * Create a geometry
+	 * 
+	 * @param name
+	 *            Name
+	 */
+	protected Geometry(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
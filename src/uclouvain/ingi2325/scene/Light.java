@@ -0,0 +1,63 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+
+/**
+ * Light of a scene
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public abstract class Light {
+
+	/** Intensity */
+	private final float intensity;
+
+	/** Color */
+	private final Color color;
+
+	/** Name */
+	private final String name;
+
+	/**
+	 * Create a light
+	 * 
+	 * @param intensity
+	 *            Intensity
+	 * @param color
+	 *            Color
+	 * @param name
+	 *            Name
+	 */
+	protected Light(float intensity, Color color, String name) {
+		this.intensity = intensity;
+		this.color = color;
+		this.name = name;
+	}
+
+	/**
+	 * Returns the intensity
+	 * 
+	 * @return the intensity
+	 */
+	public float getIntensity() {
+		return intensity;
+	}
+
+	/**
+	 * Returns the color
+	 * 
+	 * @return the color
+	 */
+	public Color getColor() {
+		return color;
+	}
+
+	/**
+	 * Returns the name
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,80 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Weighted combination of two materials
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class LinearCombinedMaterial extends Material {
+
+	/** First material */
+	private final Material material1;
+
+	/** Weight of the first material */
+	private final float weight1;
+
+	/** Second material */
+	private final Material material2;
+
+	/** Weight of the second material */
+	private final float weight2;
+
+	/**
+	 * Create a linear combined material
+	 * 
+	 * @param material1
+	 *            First material
+	 * @param weight1
+	 *            Weight of the first material
+	 * @param material2
+	 *            Second material
+	 * @param weight2
+	 *            Weight of the second material
+	 * @param name
+	 *            Name
+	 */
+	public LinearCombinedMaterial(Material material1, float weight1,
+			Material material2, float weight2, String name) {
+		super(name);
+		this.material1 = material1;
+		this.weight1 = weight1;
+		this.material2 = material2;
+		this.weight2 = weight2;
+	}
+
+	/**
+	 * Returns the first material
+	 * 
+	 * @return the first material
+	 */
+	public Material getMaterial1() {
+		return material1;
+	}
+
+	/**
+	 * Returns the weight of the first material
+	 * 
+	 * @return the weight of the first material
+	 */
+	public float getWeight1() {
+		return weight1;
+	}
+
+	/**
+	 * Returns the second material
+	 * 
+	 * @return the second material
+	 */
+	public Material getMaterial2() {
+		return material2;
+	}
+
+	/**
+	 * Returns the weight of the second material
+	 * 
+	 * @return the weight of the second material
+	 */
+	public float getWeight2() {
+		return weight2;
+	}
+}
@@ -0,0 +1,31 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Named material, that shapes apply to their geometry
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public abstract class Material {
+
+	/** Name */
+	private final String name;
+
+	/**
+	 * Create a material
+	 * 
+	 * @param name
+	 *            Name
+	 */
+	protected Material(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
@@ -0,0 +1,51 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+
+/**
+ * Phong material
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class PhongMaterial extends Material {
+
+	/** Color */
+	private final Color color;
+
+	/** Shininess exponent */
+	private final float shininess;
+
+	/**
+	 * Create a Phong material
+	 * 
+	 * @param color
+	 *            Color
+	 * @param shininess
+	 *            Shininess exponent
+	 * @param name
+	 *            Name
+	 */
+	public PhongMaterial(Color color, float shininess, String name) {
+		super(name);
+		this.color = color;
+		this.shininess = shininess;
+	}
+
+	/**
+	 * Returns the color
+	 * 
+	 * @return the color
+	 */
+	public Color getColor() {
+		return color;
+	}
+
+	/**
+	 * Returns the shininess exponent
+	 * 
+	 * @return the shininess exponent
+	 */
+	public float getShininess() {
+		return shininess;
+	}
+}
@@ -0,0 +1,42 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+import uclouvain.ingi2325.utils.Point3D;
+
+/**
+ * Light emitted in all directions from a point
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class PointLight extends Light {
+
+	/** Position of the light */
+	private final Point3D position;
+
+	/**
+	 * Create a point light
+	 * 
+	 * @param position
+	 *            Position of the light
+	 * @param intensity
+	 *            Intensity
+	 * @param color
+	 *            Color
+	 * @param name
+	 *            Name
+	 */
+	public PointLight(Point3D position, float intensity, Color color,
+			String name) {
+		super(intensity, color, name);
+		this.position = position;
+	}
+
+	/**
+	 * Returns the position of the light
+	 * 
+	 * @return the position of the light
+	 */
+	public Point3D getPosition() {
+		return position;
+	}
+}
@@ -0,0 +1,51 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Rotation around an axis through the origin
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Rotate extends Transform {
+
+	/** Axis of the rotation */
+	private final Vector3D axis;
+
+	/** Angle of the rotation, in degrees */
+	private final float angle;
+
+	/**
+	 * Create a rotation
+	 * 
+	 * @param axis
+	 *            Axis of the rotation
+	 * @param angle
+	 *            Angle of the rotation, in degrees
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	public Rotate(Vector3D axis, float angle, Transform parent) {
+		super(parent);
+		this.axis = axis;
+		this.angle = angle;
+	}
+
+	/**
+	 * Returns the axis of the rotation
+	 * 
+	 * @return the axis of the rotation
+	 */
+	public Vector3D getAxis() {
+		return axis;
+	}
+
+	/**
+	 * Returns the angle of the rotation, in degrees
+	 * 
+	 * @return the angle of the rotation, in degrees
+	 */
+	public float getAngle() {
+		return angle;
+	}
+}
@@ -0,0 +1,36 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Scaling along the axes
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Scale extends Transform {
+
+	/** Scale factors along X, Y and Z */
+	private final Vector3D scale;
+
+	/**
+	 * Create a scaling
+	 * 
+	 * @param scale
+	 *            Scale factors along X, Y and Z
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	public Scale(Vector3D scale, Transform parent) {
+		super(parent);
+		this.scale = scale;
+	}
+
+	/**
+	 * Returns the scale factors along X, Y and Z
+	 * 
+	 * @return the scale factors along X, Y and Z
+	 */
+	public Vector3D getScale() {
+		return scale;
+	}
+}
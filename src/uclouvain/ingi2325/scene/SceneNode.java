@@ -0,0 +1,34 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Node of the shape hierarchy of a scene
+ * <p>Nodes are either {@link Shape}s, the leaves, or {@link Transform}s,
+ * which apply a transformation to their children.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public abstract class SceneNode {
+
+	/** Parent transform, or null for a root node */
+	private final Transform parent;
+
+	/**
+	 * Create a node
+	 * <p>The node is not added to the children of its parent.</p>
+	 * 
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	protected SceneNode(Transform parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * Returns the parent transform
+	 * 
+	 * @return the parent transform, or null for a root node
+	 */
+	public Transform getParent() {
+		return parent;
+	}
+}
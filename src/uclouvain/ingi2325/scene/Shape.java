@@ -0,0 +1,87 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Geometry placed in a scene, with a material and a texture
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Shape extends SceneNode {
+
+	/** Geometry */
+	private final Geometry geometry;
+
+	/** Material, or null */
+	private final Material material;
+
+	/** Texture, or null */
+	private final Texture texture;
+
+	/** World transform, or null until the scene is complete */
+	private WorldTransform worldTransform = null;
+
+	/**
+	 * Create a shape
+	 * 
+	 * @param geometry
+	 *            Geometry
+	 * @param material
+	 *            Material, or null
+	 * @param texture
+	 *            Texture, or null
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	public Shape(Geometry geometry, Material material, Texture texture,
+			Transform parent) {
+		super(parent);
+		this.geometry = geometry;
+		this.material = material;
+		this.texture = texture;
+	}
+
+	/**
+	 * Returns the geometry
+	 * 
+	 * @return the geometry
+	 */
+	public Geometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Returns the material, or null
+	 * 
+	 * @return the material, or null
+	 */
+	public Material getMaterial() {
+		return material;
+	}
+
+	/**
+	 * Returns the texture, or null
+	 * 
+	 * @return the texture, or null
+	 */
+	public Texture getTexture() {
+		return texture;
+	}
+
+	/**
+	 * Returns the world transform, which bakes all the parent transforms
+	 * 
+	 * @return the world transform, or null until the scene is complete
+	 */
+	public WorldTransform getWorldTransform() {
+		return worldTransform;
+	}
+
+	/**
+	 * Set the world transform, once the scene is complete
+	 * 
+	 * @param worldTransform
+	 *            World transform
+	 */
+	public void setWorldTransform(WorldTransform worldTransform) {
+		this.worldTransform = worldTransform;
+	}
+}
@@ -0,0 +1,34 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Sphere centered at the origin
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Sphere extends Geometry {
+
+	/** Radius */
+	private final float radius;
+
+	/**
+	 * Create a sphere
+	 * 
+	 * @param radius
+	 *            Radius
+	 * @param name
+	 *            Name
+	 */
+	public Sphere(float radius, String name) {
+		super(name);
+		this.radius = radius;
+	}
+
+	/**
+	 * Returns the radius
+	 * 
+	 * @return the radius
+	 */
+	public float getRadius() {
+		return radius;
+	}
+}
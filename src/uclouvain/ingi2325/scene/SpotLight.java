@@ -0,0 +1,73 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Color;
+import uclouvain.ingi2325.utils.Point3D;
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Light emitted from a point in a cone
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class SpotLight extends Light {
+
+	/** Position of the light */
+	private final Point3D position;
+
+	/** Direction of the axis of the cone */
+	private final Vector3D direction;
+
+	/** Half-angle of the cone, in degrees */
+	private final float angle;
+
+	/**
+	 * Create a spot light
+	 * 
+	 * @param position
+	 *            Position of the light
+	 * @param direction
+	 *            Direction of the axis of the cone
+	 * @param angle
+	 *            Half-angle of the cone, in degrees
+	 * @param intensity
+	 *            Intensity
+	 * @param color
+	 *            Color
+	 * @param name
+	 *            Name
+	 */
+	public SpotLight(Point3D position, Vector3D direction, float angle,
+			float intensity, Color color, String name) {
+		super(intensity, color, name);
+		this.position = position;
+		this.direction = direction;
+		this.angle = angle;
+	}
+
+	/**
+	 * Returns the position of the light
+	 * 
+	 * @return the position of the light
+	 */
+	public Point3D getPosition() {
+		return position;
+	}
+
+	/**
+	 * Returns the direction of the axis of the cone
+	 * 
+	 * @return the direction of the axis of the cone
+	 */
+	public Vector3D getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns the half-angle of the cone, in degrees
+	 * 
+	 * @return the half-angle of the cone, in degrees
+	 */
+	public float getAngle() {
+		return angle;
+	}
+}
@@ -0,0 +1,34 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Utah teapot
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Teapot extends Geometry {
+
+	/** Size */
+	private final float size;
+
+	/**
+	 * Create a teapot
+	 * 
+	 * @param size
+	 *            Size
+	 * @param name
+	 *            Name
+	 */
+	public Teapot(float size, String name) {
+		super(name);
+		this.size = size;
+	}
+
+	/**
+	 * Returns the size
+	 * 
+	 * @return the size
+	 */
+	public float getSize() {
+		return size;
+	}
+}
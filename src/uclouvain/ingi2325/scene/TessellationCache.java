@@ -0,0 +1,298 @@
+package uclouvain.ingi2325.scene;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * In-memory cache of the meshes of tessellated geometries
+ * <p>Meshes are keyed by their geometry, compared by identity, and their
+ * level of detail. The cache may be used from several threads: each mesh is
+ * tessellated once, by the first thread that asks for it, while the others
+ * wait for it, and tessellations of different keys run concurrently.</p>
+ * <p>The cache is bounded by the number of triangles of its meshes. When it
+ * grows beyond this bound, the least recently used meshes are dropped; the
+ * hierarchies built over them keep them alive as long as they need them.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class TessellationCache {
+
+	/** Default maximum number of triangles of the cached meshes */
+	public static final long DEFAULT_MAX_TRIANGLES = 1 << 22;
+
+	/** Shared cache, created on first use */
+	private static TessellationCache shared = null;
+
+	/** Maximum number of triangles of the cached meshes */
+	private final long maxTriangles;
+
+	/** Meshes, tessellated or being tessellated, least recently used first */
+	private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16,
+			0.75F, true);
+
+	/** Number of triangles of the accounted meshes */
+	private long triangles = 0;
+
+	/** Number of requests served from the cache */
+	private int hits = 0;
+
+	/** Number of requests that tessellated a geometry */
+	private int misses = 0;
+
+	/**
+	 * Create a cache
+	 * 
+	 * @param maxTriangles
+	 *            Maximum number of triangles of the cached meshes
+	 */
+	public TessellationCache(long maxTriangles) {
+		this.maxTriangles = maxTriangles;
+	}
+
+	/**
+	 * Returns the shared cache, of {@link #DEFAULT_MAX_TRIANGLES} triangles
+	 * 
+	 * @return the shared cache
+	 */
+	public static synchronized TessellationCache getShared() {
+		if (shared == null)
+			shared = new TessellationCache(DEFAULT_MAX_TRIANGLES);
+		return shared;
+	}
+
+	/**
+	 * Returns the mesh of a geometry at a level of detail, tessellated by
+	 * {@link Tessellator#tessellate(Geometry, int)} if it is not cached
+	 * 
+	 * @param geometry
+	 *            The geometry
+	 * @param level
+	 *            The level of detail
+	 * @return The mesh
+	 */
+	public TriangleMesh get(final Geometry geometry, final int level) {
+		Key key = new Key(geometry, level);
+		Entry entry;
+		Entry task = null;
+		synchronized (this) {
+			entry = entries.get(key);
+			if (entry == null) {
+				task = new Entry(new Callable<TriangleMesh>() {
+					@Override
+					public TriangleMesh call() {
+						return Tessellator.tessellate(geometry, level);
+					}
+				});
+				entries.put(key, task);
+				entry = task;
+				misses++;
+			} else {
+				hits++;
+			}
+		}
+
+		if (task == null)
+			return getResult(entry);
+
+		// Tessellate outside of the lock, so that other keys are not held up
+		task.run();
+		TriangleMesh mesh;
+		try {
+			mesh = getResult(task);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				if (entries.get(key) == task)
+					entries.remove(key);
+			}
+			throw e;
+		}
+
+		synchronized (this) {
+			if (entries.get(key) == task) {
+				triangles += mesh.getIndices().length / 3;
+				task.accounted = true;
+				evict(key);
+			}
+		}
+		return mesh;
+	}
+
+	/**
+	 * Drop all the meshes
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		triangles = 0;
+	}
+
+	/**
+	 * Returns the number of cached meshes, including those being tessellated
+	 * 
+	 * @return the number of meshes
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the number of triangles of the cached meshes, once their
+	 * tessellation has been accounted
+	 * 
+	 * @return the number of triangles
+	 */
+	public synchronized long getTriangleCount() {
+		return triangles;
+	}
+
+	/**
+	 * Returns the number of requests served from the cache
+	 * 
+	 * @return the number of hits
+	 */
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests that tessellated a geometry
+	 * 
+	 * @return the number of misses
+	 */
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns a summary of the hits and misses
+	 * 
+	 * @return the summary
+	 */
+	@Override
+	public synchronized String toString() {
+		return String.format(Locale.US,
+				"%d meshes of %d triangles, %d hits, %d misses", entries
+						.size(), triangles, hits, misses);
+	}
+
+	/**
+	 * Drop the least recently used accounted meshes until the cache fits in
+	 * its maximum number of triangles. Meshes whose triangles are not counted
+	 * yet are skipped, even if their tessellation is done, since the thread
+	 * that tessellated them has not added them. Must hold the lock.
+	 * 
+	 * @param kept
+	 *            Key of a mesh that is kept, the one just added
+	 */
+	private void evict(Key kept) {
+		Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet()
+				.iterator();
+		while (triangles > maxTriangles && iterator.hasNext()) {
+			Map.Entry<Key, Entry> entry = iterator.next();
+			Entry future = entry.getValue();
+			if (entry.getKey().equals(kept) || !future.accounted)
+				continue;
+			iterator.remove();
+			triangles -= getResult(future).getIndices().length / 3;
+		}
+	}
+
+	/**
+	 * Wait for a mesh
+	 * 
+	 * @param future
+	 *            The tessellation of the mesh
+	 * @return The mesh
+	 */
+	private static TriangleMesh getResult(Future<TriangleMesh> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					if (cause instanceof Error)
+						throw (Error) cause;
+					throw new IllegalStateException(cause);
+				}
+			}
+		} finally {
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Tessellation of a cached mesh
+	 */
+	private static final class Entry extends FutureTask<TriangleMesh> {
+
+		/**
+		 * True once the triangles of the mesh are counted in the cache, set
+		 * under its lock
+		 */
+		boolean accounted = false;
+
+		/**
+		 * Create an entry
+		 * 
+		 * @param tessellation
+		 *            Tessellation of the mesh
+		 */
+		Entry(Callable<TriangleMesh> tessellation) {
+			super(tessellation);
+		}
+	}
+
+	/**
+	 * Key of a mesh: a geometry, by identity, and a level of detail
+	 */
+	private static final class Key {
+
+		/** The geometry */
+		private final Geometry geometry;
+
+		/** The level of detail */
+		private final int level;
+
+		/**
+		 * Create a key
+		 * 
+		 * @param geometry
+		 *            The geometry
+		 * @param level
+		 *            The level of detail
+		 */
+		Key(Geometry geometry, int level) {
+			this.geometry = geometry;
+			this.level = level;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object object) {
+			if (!(object instanceof Key))
+				return false;
+			Key key = (Key) object;
+			return key.geometry == geometry && key.level == level;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(geometry) + level;
+		}
+	}
+}
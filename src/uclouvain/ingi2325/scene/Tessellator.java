@@ -0,0 +1,736 @@
+package uclouvain.ingi2325.scene;
+
+import java.util.Arrays;
+
+import uclouvain.ingi2325.math.BoundingBox;
+
+/**
+ * Tessellation of curved geometries into triangle meshes
+ * <p>Teapots, spheres, cylinders, cones and tori are tessellated at a level
+ * of detail from 0 to {@link #MAX_LEVEL}: at level <code>l</code>, a full
+ * turn is cut into <code>8 &lt;&lt; l</code> segments, and each of the 32
+ * Bézier patches of the teapot into <code>(2 &lt;&lt; l)^2</code> quads.</p>
+ * <p>A tessellator also chooses the level of a shape from its projected
+ * size: it takes the bounding sphere of the shape in world space, projects it
+ * through the camera, and picks the lowest level whose segments are at most
+ * a given number of pixels long on the outline of this sphere. Meshes are
+ * obtained through a {@link TessellationCache}, so that the shapes of a
+ * geometry seen at the same level, and the next builds of the scene, share
+ * them.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class Tessellator {
+
+	/** Highest level of detail */
+	public static final int MAX_LEVEL = 5;
+
+	/** Level of detail without a camera */
+	public static final int DEFAULT_LEVEL = 3;
+
+	/** Height of the image assumed when none is given, in pixels */
+	public static final int DEFAULT_IMAGE_HEIGHT = 1080;
+
+	/** Default length of the segments on the screen, in pixels */
+	public static final float DEFAULT_EDGE_LENGTH = 4.0F;
+
+	/**
+	 * Control points of the teapot, as in Newell's data: z is up and the
+	 * bottom lies at z = 0
+	 */
+	private static final float[] TEAPOT_POINTS = { 0.2F, 0, 2.7F, 0.2F,
+			-0.112F, 2.7F, 0.112F, -0.2F, 2.7F, 0, -0.2F, 2.7F, 1.3375F, 0,
+			2.53125F, 1.3375F, -0.749F, 2.53125F, 0.749F, -1.3375F, 2.53125F,
+			0, -1.3375F, 2.53125F, 1.4375F, 0, 2.53125F, 1.4375F, -0.805F,
+			2.53125F, 0.805F, -1.4375F, 2.53125F, 0, -1.4375F, 2.53125F, 1.5F,
+			0, 2.4F, 1.5F, -0.84F, 2.4F, 0.84F, -1.5F, 2.4F, 0, -1.5F, 2.4F,
+			1.75F, 0, 1.875F, 1.75F, -0.98F, 1.875F, 0.98F, -1.75F, 1.875F, 0,
+			-1.75F, 1.875F, 2, 0, 1.35F, 2, -1.12F, 1.35F, 1.12F, -2, 1.35F, 0,
+			-2, 1.35F, 2, 0, 0.9F, 2, -1.12F, 0.9F, 1.12F, -2, 0.9F, 0, -2,
+			0.9F, -2, 0, 0.9F, 2, 0, 0.45F, 2, -1.12F, 0.45F, 1.12F, -2, 0.45F,
+			0, -2, 0.45F, 1.5F, 0, 0.225F, 1.5F, -0.84F, 0.225F, 0.84F, -1.5F,
+			0.225F, 0, -1.5F, 0.225F, 1.5F, 0, 0.15F, 1.5F, -0.84F, 0.15F,
+			0.84F, -1.5F, 0.15F, 0, -1.5F, 0.15F, -1.6F, 0, 2.025F, -1.6F,
+			-0.3F, 2.025F, -1.5F, -0.3F, 2.25F, -1.5F, 0, 2.25F, -2.3F, 0,
+			2.025F, -2.3F, -0.3F, 2.025F, -2.5F, -0.3F, 2.25F, -2.5F, 0, 2.25F,
+			-2.7F, 0, 2.025F, -2.7F, -0.3F, 2.025F, -3, -0.3F, 2.25F, -3, 0,
+			2.25F, -2.7F, 0, 1.8F, -2.7F, -0.3F, 1.8F, -3, -0.3F, 1.8F, -3, 0,
+			1.8F, -2.7F, 0, 1.575F, -2.7F, -0.3F, 1.575F, -3, -0.3F, 1.35F, -3,
+			0, 1.35F, -2.5F, 0, 1.125F, -2.5F, -0.3F, 1.125F, -2.65F, -0.3F,
+			0.9375F, -2.65F, 0, 0.9375F, -2, -0.3F, 0.9F, -1.9F, -0.3F, 0.6F,
+			-1.9F, 0, 0.6F, 1.7F, 0, 1.425F, 1.7F, -0.66F, 1.425F, 1.7F,
+			-0.66F, 0.6F, 1.7F, 0, 0.6F, 2.6F, 0, 1.425F, 2.6F, -0.66F, 1.425F,
+			3.1F, -0.66F, 0.825F, 3.1F, 0, 0.825F, 2.3F, 0, 2.1F, 2.3F, -0.25F,
+			2.1F, 2.4F, -0.25F, 2.025F, 2.4F, 0, 2.025F, 2.7F, 0, 2.4F, 2.7F,
+			-0.25F, 2.4F, 3.3F, -0.25F, 2.4F, 3.3F, 0, 2.4F, 2.8F, 0, 2.475F,
+			2.8F, -0.25F, 2.475F, 3.525F, -0.25F, 2.49375F, 3.525F, 0,
+			2.49375F, 2.9F, 0, 2.475F, 2.9F, -0.15F, 2.475F, 3.45F, -0.15F,
+			2.5125F, 3.45F, 0, 2.5125F, 2.8F, 0, 2.4F, 2.8F, -0.15F, 2.4F,
+			3.2F, -0.15F, 2.4F, 3.2F, 0, 2.4F, 0, 0, 3.15F, 0.8F, 0, 3.15F,
+			0.8F, -0.45F, 3.15F, 0.45F, -0.8F, 3.15F, 0, -0.8F, 3.15F, 0, 0,
+			2.85F, 1.4F, 0, 2.4F, 1.4F, -0.784F, 2.4F, 0.784F, -1.4F, 2.4F, 0,
+			-1.4F, 2.4F, 0.4F, 0, 2.55F, 0.4F, -0.224F, 2.55F, 0.224F, -0.4F,
+			2.55F, 0, -0.4F, 2.55F, 1.3F, 0, 2.55F, 1.3F, -0.728F, 2.55F,
+			0.728F, -1.3F, 2.55F, 0, -1.3F, 2.55F, 1.3F, 0, 2.4F, 1.3F, -0.728F,
+			2.4F, 0.728F, -1.3F, 2.4F, 0, -1.3F, 2.4F, 0, 0, 0, 1.425F,
+			-0.798F, 0, 1.5F, 0, 0.075F, 1.425F, 0, 0, 0.798F, -1.425F, 0, 0,
+			-1.5F, 0.075F, 0, -1.425F, 0, 1.5F, -0.84F, 0.075F, 0.84F, -1.5F,
+			0.075F };
+
+	/**
+	 * Control points of the bicubic patches of the teapot: rim, body, lid,
+	 * bottom, handle and spout. Each patch covers a quarter of the teapot and
+	 * is mirrored across the xz plane, and the first {@link #ROUND_PATCHES}
+	 * across the yz plane too.
+	 */
+	private static final int[][] TEAPOT_PATCHES = {
+			{ 102, 103, 104, 105, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 },
+			{ 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27 },
+			{ 24, 25, 26, 27, 29, 30, 31, 32, 33, 34, 35, 36, 37, 38, 39, 40 },
+			{ 96, 96, 96, 96, 97, 98, 99, 100, 101, 101, 101, 101, 0, 1, 2, 3 },
+			{ 0, 1, 2, 3, 106, 107, 108, 109, 110, 111, 112, 113, 114, 115,
+					116, 117 },
+			{ 118, 118, 118, 118, 124, 122, 119, 121, 123, 126, 125, 120, 40,
+					39, 38, 37 },
+			{ 41, 42, 43, 44, 45, 46, 47, 48, 49, 50, 51, 52, 53, 54, 55, 56 },
+			{ 53, 54, 55, 56, 57, 58, 59, 60, 61, 62, 63, 64, 28, 65, 66, 67 },
+			{ 68, 69, 70, 71, 72, 73, 74, 75, 76, 77, 78, 79, 80, 81, 82, 83 },
+			{ 80, 81, 82, 83, 84, 85, 86, 87, 88, 89, 90, 91, 92, 93, 94, 95 } };
+
+	/** Number of patches of the teapot that are round, i.e. copied 4 times */
+	private static final int ROUND_PATCHES = 6;
+
+	/** Height of the center of the teapot above its bottom */
+	private static final float TEAPOT_CENTER = 1.5F;
+
+	/** Bounds of the teapot of size 2, with the Y axis up */
+	private static final BoundingBox TEAPOT_BOUNDS = new BoundingBox();
+
+	static {
+		for (int i = 0; i < TEAPOT_POINTS.length; i += 3) {
+			float x = TEAPOT_POINTS[i];
+			float y = TEAPOT_POINTS[i + 1];
+			float z = TEAPOT_POINTS[i + 2];
+			TEAPOT_BOUNDS.extend(x, z - TEAPOT_CENTER, y);
+			TEAPOT_BOUNDS.extend(x, z - TEAPOT_CENTER, -y);
+		}
+	}
+
+	/** Camera, or null to use the default level */
+	private final Camera camera;
+
+	/** Distance from the eye to the image plane, in pixels */
+	private final double focalLength;
+
+	/** Maximum length of the segments on the screen, in pixels */
+	private final float edgeLength;
+
+	/** Cache of the meshes */
+	private final TessellationCache cache;
+
+	/**
+	 * Create a tessellator with the default length of segments and the
+	 * shared cache
+	 * 
+	 * @param camera
+	 *            Camera of the scene, or null to tessellate all the shapes at
+	 *            {@link #DEFAULT_LEVEL}
+	 * @param imageHeight
+	 *            Height of the rendered image, in pixels
+	 */
+	public Tessellator(Camera camera, int imageHeight) {
+		this(camera, imageHeight, DEFAULT_EDGE_LENGTH, TessellationCache
+				.getShared());
+	}
+
+	/**
+	 * Create a tessellator
+	 * 
+	 * @param camera
+	 *            Camera of the scene, or null to tessellate all the shapes at
+	 *            {@link #DEFAULT_LEVEL}
+	 * @param imageHeight
+	 *            Height of the rendered image, in pixels
+	 * @param edgeLength
+	 *            Maximum length of the segments on the screen, in pixels
+	 * @param cache
+	 *            Cache of the meshes
+	 */
+	public Tessellator(Camera camera, int imageHeight, float edgeLength,
+			TessellationCache cache) {
+		this.camera = camera;
+		this.focalLength = camera == null ? 0.0 : imageHeight
+				/ (2.0 * Math.tan(Math.toRadians(camera.getFovy()) / 2.0));
+		this.edgeLength = edgeLength;
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns whether a geometry can be tessellated
+	 * 
+	 * @param geometry
+	 *            The geometry
+	 * @return True for teapots, spheres, cylinders, cones and tori
+	 */
+	public static boolean isSupported(Geometry geometry) {
+		return geometry instanceof Teapot || geometry instanceof Sphere
+				|| geometry instanceof Cylinder || geometry instanceof Cone
+				|| geometry instanceof Torus;
+	}
+
+	/**
+	 * Returns the mesh of the geometry of a shape, at the level of detail of
+	 * the shape, from the cache if possible
+	 * 
+	 * @param shape
+	 *            The shape, whose geometry is supported
+	 * @return The mesh, in the local space of the geometry
+	 */
+	public TriangleMesh tessellate(Shape shape) {
+		return cache.get(shape.getGeometry(), getLevel(shape));
+	}
+
+	/**
+	 * Choose the level of detail of a shape, from its projected size
+	 * 
+	 * @param shape
+	 *            The shape, whose geometry is supported
+	 * @return The level, from 0 to {@link #MAX_LEVEL}
+	 */
+	public int getLevel(Shape shape) {
+		if (camera == null)
+			return DEFAULT_LEVEL;
+
+		BoundingBox box = new BoundingBox();
+		getBounds(shape.getGeometry(), box);
+		WorldTransform transform = shape.getWorldTransform();
+		if (transform != null)
+			box.transform(transform.getMatrix(), box);
+
+		double x = (box.minX + box.maxX) / 2.0 - camera.getPosition().x;
+		double y = (box.minY + box.maxY) / 2.0 - camera.getPosition().y;
+		double z = (box.minZ + box.maxZ) / 2.0 - camera.getPosition().z;
+		double distance = Math.sqrt(x * x + y * y + z * z);
+		double dx = box.maxX - box.minX;
+		double dy = box.maxY - box.minY;
+		double dz = box.maxZ - box.minZ;
+		double radius = Math.sqrt(dx * dx + dy * dy + dz * dz) / 2.0;
+		if (distance <= radius)
+			return MAX_LEVEL;
+
+		// Number of segments on the outline of the projected sphere
+		double segments = 2.0 * Math.PI * radius / distance * focalLength
+				/ edgeLength;
+		int level = 0;
+		while (level < MAX_LEVEL && getSegments(level) < segments)
+			level++;
+		return level;
+	}
+
+	/**
+	 * Returns the number of segments of a full turn at a level of detail
+	 * 
+	 * @param level
+	 *            The level
+	 * @return the number of segments
+	 */
+	public static int getSegments(int level) {
+		return 8 << level;
+	}
+
+	/**
+	 * Get the bounds of a geometry in its local space
+	 * 
+	 * @param geometry
+	 *            The geometry, which is supported
+	 * @param bounds
+	 *            Set to the bounds
+	 */
+	public static void getBounds(Geometry geometry, BoundingBox bounds) {
+		if (geometry instanceof Teapot) {
+			float scale = ((Teapot) geometry).getSize() / 2;
+			bounds.set(scale * TEAPOT_BOUNDS.minX, scale * TEAPOT_BOUNDS.minY,
+					scale * TEAPOT_BOUNDS.minZ, scale * TEAPOT_BOUNDS.maxX,
+					scale * TEAPOT_BOUNDS.maxY, scale * TEAPOT_BOUNDS.maxZ);
+		} else if (geometry instanceof Sphere) {
+			float r = ((Sphere) geometry).getRadius();
+			bounds.set(-r, -r, -r, r, r, r);
+		} else if (geometry instanceof Cylinder) {
+			Cylinder cylinder = (Cylinder) geometry;
+			float r = cylinder.getRadius();
+			bounds.set(-r, 0, -r, r, cylinder.getHeight(), r);
+		} else if (geometry instanceof Cone) {
+			Cone cone = (Cone) geometry;
+			float r = cone.getRadius();
+			bounds.set(-r, 0, -r, r, cone.getHeight(), r);
+		} else if (geometry instanceof Torus) {
+			Torus torus = (Torus) geometry;
+			float extent = torus.getOuterRadius() + torus.getInnerRadius();
+			float tube = torus.getInnerRadius();
+			bounds.set(-extent, -tube, -extent, extent, tube, extent);
+		} else {
+			throw new IllegalArgumentException("Cannot tessellate "
+					+ geometry.getName());
+		}
+	}
+
+	/**
+	 * Tessellate a geometry, without cache
+	 * <p>The teapot is the one of GLUT: the Y axis goes up through its lid,
+	 * its spout points to +X, and it is scaled by half its size and centered
+	 * 1.5 units above its bottom. The other geometries are laid out like
+	 * their analytic intersectors.</p>
+	 * 
+	 * @param geometry
+	 *            The geometry, which is supported
+	 * @param level
+	 *            Level of detail, from 0 to {@link #MAX_LEVEL}
+	 * @return The mesh, with normals, named after the geometry
+	 */
+	public static TriangleMesh tessellate(Geometry geometry, int level) {
+		if (level < 0 || level > MAX_LEVEL)
+			throw new IllegalArgumentException("Invalid level of detail "
+					+ level);
+		int segments = getSegments(level);
+		MeshBuilder mesh = new MeshBuilder();
+		if (geometry instanceof Teapot)
+			addTeapot((Teapot) geometry, segments / 4, mesh);
+		else if (geometry instanceof Sphere)
+			addSphere((Sphere) geometry, segments, mesh);
+		else if (geometry instanceof Cylinder)
+			addCylinder((Cylinder) geometry, segments, mesh);
+		else if (geometry instanceof Cone)
+			addCone((Cone) geometry, segments, mesh);
+		else if (geometry instanceof Torus)
+			addTorus((Torus) geometry, segments, mesh);
+		else
+			throw new IllegalArgumentException("Cannot tessellate "
+					+ geometry.getName());
+		return mesh.build(geometry.getName());
+	}
+
+	/**
+	 * Tessellate the patches of a teapot
+	 * 
+	 * @param teapot
+	 *            The teapot
+	 * @param n
+	 *            Number of quads along each side of a patch
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addTeapot(Teapot teapot, int n, MeshBuilder mesh) {
+		float scale = teapot.getSize() / 2;
+		double[] points = new double[48];
+		double[] basis = new double[16];
+		double[] vertex = new double[6];
+
+		for (int p = 0; p < TEAPOT_PATCHES.length; p++) {
+			int copies = p < ROUND_PATCHES ? 4 : 2;
+			for (int copy = 0; copy < copies; copy++) {
+				float sx = (copy & 2) != 0 ? -1 : 1;
+				float sy = (copy & 1) != 0 ? -1 : 1;
+
+				// Mirrored copies run backwards, to keep their orientation
+				boolean reversed = sx * sy < 0;
+				for (int j = 0; j < 4; j++) {
+					for (int k = 0; k < 4; k++) {
+						int point = 3 * TEAPOT_PATCHES[p][4 * j
+								+ (reversed ? 3 - k : k)];
+						int i = 3 * (4 * j + k);
+						points[i] = scale * sx * TEAPOT_POINTS[point];
+						points[i + 1] = scale
+								* (TEAPOT_POINTS[point + 2] - TEAPOT_CENTER);
+						points[i + 2] = -scale * sy * TEAPOT_POINTS[point + 1];
+					}
+				}
+
+				int first = mesh.getVertexCount();
+				for (int i = 0; i <= n; i++) {
+					for (int j = 0; j <= n; j++) {
+						evaluatePatch(points, (double) i / n, (double) j / n,
+								basis, vertex);
+						mesh.addVertex(vertex[0], vertex[1], vertex[2],
+								vertex[3], vertex[4], vertex[5]);
+					}
+				}
+				mesh.addGrid(first, n, n);
+			}
+		}
+	}
+
+	/**
+	 * Evaluate a bicubic Bézier patch
+	 * 
+	 * @param points
+	 *            The 16 control points, row by row
+	 * @param u
+	 *            Parameter along the columns
+	 * @param v
+	 *            Parameter along the rows
+	 * @param basis
+	 *            Scratch array of 16 doubles
+	 * @param vertex
+	 *            Set to the point and the unit normal
+	 */
+	private static void evaluatePatch(double[] points, double u, double v,
+			double[] basis, double[] vertex) {
+		bernstein(u, basis, 0);
+		bernstein(v, basis, 8);
+		double x = 0, y = 0, z = 0;
+		for (int j = 0; j < 4; j++) {
+			for (int k = 0; k < 4; k++) {
+				double weight = basis[j] * basis[8 + k];
+				x += weight * points[3 * (4 * j + k)];
+				y += weight * points[3 * (4 * j + k) + 1];
+				z += weight * points[3 * (4 * j + k) + 2];
+			}
+		}
+		vertex[0] = x;
+		vertex[1] = y;
+		vertex[2] = z;
+
+		// At the poles of the lid and the bottom, a whole row of control
+		// points is one point: take the normal just inside the patch
+		if (!setPatchNormal(points, basis, vertex)) {
+			bernstein(u + (u < 0.5 ? 1e-4 : -1e-4), basis, 0);
+			bernstein(v + (v < 0.5 ? 1e-4 : -1e-4), basis, 8);
+			setPatchNormal(points, basis, vertex);
+		}
+	}
+
+	/**
+	 * Compute the normal of a Bézier patch from its partial derivatives
+	 * 
+	 * @param points
+	 *            The 16 control points, row by row
+	 * @param basis
+	 *            Bernstein polynomials and their derivatives in u, from index
+	 *            0, and in v, from index 8
+	 * @param vertex
+	 *            Normal set from index 3
+	 * @return False if the derivatives are parallel, and the normal unset
+	 */
+	private static boolean setPatchNormal(double[] points, double[] basis,
+			double[] vertex) {
+		double ux = 0, uy = 0, uz = 0, vx = 0, vy = 0, vz = 0;
+		for (int j = 0; j < 4; j++) {
+			for (int k = 0; k < 4; k++) {
+				int i = 3 * (4 * j + k);
+				double du = basis[4 + j] * basis[8 + k];
+				double dv = basis[j] * basis[12 + k];
+				ux += du * points[i];
+				uy += du * points[i + 1];
+				uz += du * points[i + 2];
+				vx += dv * points[i];
+				vy += dv * points[i + 1];
+				vz += dv * points[i + 2];
+			}
+		}
+		double nx = uy * vz - uz * vy;
+		double ny = uz * vx - ux * vz;
+		double nz = ux * vy - uy * vx;
+		double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (length < 1e-12)
+			return false;
+		vertex[3] = nx / length;
+		vertex[4] = ny / length;
+		vertex[5] = nz / length;
+		return true;
+	}
+
+	/**
+	 * Compute the cubic Bernstein polynomials and their derivatives
+	 * 
+	 * @param t
+	 *            The parameter
+	 * @param basis
+	 *            Set to the 4 polynomials, then their 4 derivatives
+	 * @param offset
+	 *            Index of the first polynomial in <code>basis</code>
+	 */
+	private static void bernstein(double t, double[] basis, int offset) {
+		double s = 1 - t;
+		basis[offset] = s * s * s;
+		basis[offset + 1] = 3 * t * s * s;
+		basis[offset + 2] = 3 * t * t * s;
+		basis[offset + 3] = t * t * t;
+		basis[offset + 4] = -3 * s * s;
+		basis[offset + 5] = 3 * s * (s - 2 * t);
+		basis[offset + 6] = 3 * t * (2 * s - t);
+		basis[offset + 7] = 3 * t * t;
+	}
+
+	/**
+	 * Tessellate a sphere, by parallels and meridians
+	 * 
+	 * @param sphere
+	 *            The sphere
+	 * @param segments
+	 *            Number of meridians
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addSphere(Sphere sphere, int segments, MeshBuilder mesh) {
+		double r = sphere.getRadius();
+		int rows = segments / 2;
+		int first = mesh.getVertexCount();
+		for (int i = 0; i <= rows; i++) {
+			double theta = Math.PI * i / rows;
+			double y = i == 0 ? 1 : i == rows ? -1 : Math.cos(theta);
+			double ring = i == 0 || i == rows ? 0 : Math.sin(theta);
+			for (int j = 0; j <= segments; j++) {
+				double phi = 2 * Math.PI * j / segments;
+				double x = ring * Math.cos(phi);
+				double z = ring * Math.sin(phi);
+				mesh.addVertex(r * x, r * y, r * z, x, y, z);
+			}
+		}
+		mesh.addGrid(first, rows, segments);
+	}
+
+	/**
+	 * Tessellate a cylinder, and its caps if it is capped
+	 * 
+	 * @param cylinder
+	 *            The cylinder
+	 * @param segments
+	 *            Number of segments around the axis
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addCylinder(Cylinder cylinder, int segments,
+			MeshBuilder mesh) {
+		double r = cylinder.getRadius();
+		double h = cylinder.getHeight();
+		int first = mesh.getVertexCount();
+		for (int i = 0; i <= 1; i++) {
+			for (int j = 0; j <= segments; j++) {
+				double phi = 2 * Math.PI * j / segments;
+				double x = Math.cos(phi);
+				double z = Math.sin(phi);
+				mesh.addVertex(r * x, i * h, r * z, x, 0, z);
+			}
+		}
+		mesh.addGrid(first, 1, segments);
+		if (cylinder.isCapped()) {
+			addDisk(r, 0, -1, segments, mesh);
+			addDisk(r, h, 1, segments, mesh);
+		}
+	}
+
+	/**
+	 * Tessellate a cone, and its base if it is capped
+	 * 
+	 * @param cone
+	 *            The cone
+	 * @param segments
+	 *            Number of segments around the axis
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addCone(Cone cone, int segments, MeshBuilder mesh) {
+		double r = cone.getRadius();
+		double h = cone.getHeight();
+		double length = Math.sqrt(r * r + h * h);
+		int first = mesh.getVertexCount();
+		for (int i = 0; i <= 1; i++) {
+			for (int j = 0; j <= segments; j++) {
+				double phi = 2 * Math.PI * j / segments;
+				double x = Math.cos(phi);
+				double z = Math.sin(phi);
+				mesh.addVertex((1 - i) * r * x, i * h, (1 - i) * r * z, h * x
+						/ length, r / length, h * z / length);
+			}
+		}
+		mesh.addGrid(first, 1, segments);
+		if (cone.isCapped())
+			addDisk(r, 0, -1, segments, mesh);
+	}
+
+	/**
+	 * Tessellate a torus
+	 * 
+	 * @param torus
+	 *            The torus
+	 * @param segments
+	 *            Number of segments around the Y axis; the tube has as many
+	 *            in proportion to its radius, and at least 8
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addTorus(Torus torus, int segments, MeshBuilder mesh) {
+		double tube = torus.getInnerRadius();
+		double ring = torus.getOuterRadius();
+		int sides = ring > tube ? (int) Math.ceil(segments * tube / ring)
+				: segments;
+		sides = Math.max(sides, 8);
+
+		int first = mesh.getVertexCount();
+		for (int i = 0; i <= segments; i++) {
+			double phi = 2 * Math.PI * i / segments;
+			double cosPhi = Math.cos(phi);
+			double sinPhi = Math.sin(phi);
+			for (int j = 0; j <= sides; j++) {
+				double psi = 2 * Math.PI * j / sides;
+				double x = Math.cos(psi) * cosPhi;
+				double y = Math.sin(psi);
+				double z = Math.cos(psi) * sinPhi;
+				mesh.addVertex(ring * cosPhi + tube * x, tube * y, ring
+						* sinPhi + tube * z, x, y, z);
+			}
+		}
+		mesh.addGrid(first, segments, sides);
+	}
+
+	/**
+	 * Tessellate a disk perpendicular to the Y axis, as a fan
+	 * 
+	 * @param r
+	 *            Radius
+	 * @param y
+	 *            Height of the disk
+	 * @param ny
+	 *            Y component of its normal, 1 or -1
+	 * @param segments
+	 *            Number of segments around the axis
+	 * @param mesh
+	 *            Receives the triangles
+	 */
+	private static void addDisk(double r, double y, double ny, int segments,
+			MeshBuilder mesh) {
+		int center = mesh.addVertex(0, y, 0, 0, ny, 0);
+		for (int j = 0; j <= segments; j++) {
+			double phi = 2 * Math.PI * j / segments;
+			mesh.addVertex(r * Math.cos(phi), y, r * Math.sin(phi), 0, ny, 0);
+		}
+		for (int j = 0; j < segments; j++)
+			mesh.addTriangle(center, center + 1 + j, center + 2 + j);
+	}
+
+	/**
+	 * Growable arrays of vertices and triangles
+	 */
+	private static final class MeshBuilder {
+
+		/** Coordinates, then normals, of the vertices */
+		private float[][] vertices = new float[6][256];
+
+		/** Number of vertices */
+		private int vertexCount = 0;
+
+		/** Vertex indices of the triangles */
+		private int[] indices = new int[768];
+
+		/** Number of indices */
+		private int indexCount = 0;
+
+		/**
+		 * Returns the number of vertices
+		 * 
+		 * @return the number of vertices
+		 */
+		int getVertexCount() {
+			return vertexCount;
+		}
+
+		/**
+		 * Add a vertex
+		 * 
+		 * @param x
+		 *            X coordinate
+		 * @param y
+		 *            Y coordinate
+		 * @param z
+		 *            Z coordinate
+		 * @param nx
+		 *            X component of the unit normal
+		 * @param ny
+		 *            Y component of the unit normal
+		 * @param nz
+		 *            Z component of the unit normal
+		 * @return the index of the vertex
+		 */
+		int addVertex(double x, double y, double z, double nx, double ny,
+				double nz) {
+			if (vertexCount == vertices[0].length)
+				for (int c = 0; c < 6; c++)
+					vertices[c] = Arrays.copyOf(vertices[c], 2 * vertexCount);
+			vertices[0][vertexCount] = (float) x;
+			vertices[1][vertexCount] = (float) y;
+			vertices[2][vertexCount] = (float) z;
+			vertices[3][vertexCount] = (float) nx;
+			vertices[4][vertexCount] = (float) ny;
+			vertices[5][vertexCount] = (float) nz;
+			return vertexCount++;
+		}
+
+		/**
+		 * Add the triangles of a grid of vertices
+		 * 
+		 * @param first
+		 *            Index of the first vertex of the grid, whose
+		 *            <code>(rows + 1) * (columns + 1)</code> vertices are
+		 *            stored row by row
+		 * @param rows
+		 *            Number of rows of quads
+		 * @param columns
+		 *            Number of columns of quads
+		 */
+		void addGrid(int first, int rows, int columns) {
+			for (int i = 0; i < rows; i++) {
+				for (int j = 0; j < columns; j++) {
+					int a = first + i * (columns + 1) + j;
+					int b = a + columns + 1;
+					addTriangle(a, b, a + 1);
+					addTriangle(a + 1, b, b + 1);
+				}
+			}
+		}
+
+		/**
+		 * Add a triangle, unless it is degenerate, as at poles
+		 * 
+		 * @param a
+		 *            Index of the first vertex
+		 * @param b
+		 *            Index of the second vertex
+		 * @param c
+		 *            Index of the third vertex
+		 */
+		void addTriangle(int a, int b, int c) {
+			float[] xs = vertices[0], ys = vertices[1], zs = vertices[2];
+			float e1x = xs[b] - xs[a], e1y = ys[b] - ys[a], e1z = zs[b] - zs[a];
+			float e2x = xs[c] - xs[a], e2y = ys[c] - ys[a], e2z = zs[c] - zs[a];
+			float nx = e1y * e2z - e1z * e2y;
+			float ny = e1z * e2x - e1x * e2z;
+			float nz = e1x * e2y - e1y * e2x;
+			float scale = e1x * e1x + e1y * e1y + e1z * e1z + e2x * e2x + e2y
+					* e2y + e2z * e2z;
+			if (nx * nx + ny * ny + nz * nz <= 1e-12F * scale * scale)
+				return;
+
+			if (indexCount + 3 > indices.length)
+				indices = Arrays.copyOf(indices, 2 * indices.length);
+			indices[indexCount++] = a;
+			indices[indexCount++] = b;
+			indices[indexCount++] = c;
+		}
+
+		/**
+		 * Build the mesh
+		 * 
+		 * @param name
+		 *            Name of the mesh
+		 * @return The mesh, whose normals share the indices of the vertices
+		 */
+		TriangleMesh build(String name) {
+			float[][] v = new float[6][];
+			for (int c = 0; c < 6; c++)
+				v[c] = Arrays.copyOf(vertices[c], vertexCount);
+			int[] triangles = Arrays.copyOf(indices, indexCount);
+			return new TriangleMesh(v[0], v[1], v[2], triangles, v[3], v[4],
+					v[5], triangles, null, null, null, name);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Image texture
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Texture {
+
+	/** Path of the image file */
+	private final String path;
+
+	/** Name */
+	private final String name;
+
+	/**
+	 * Create a texture
+	 * 
+	 * @param path
+	 *            Path of the image file
+	 * @param name
+	 *            Name
+	 */
+	public Texture(String path, String name) {
+		this.path = path;
+		this.name = name;
+	}
+
+	/**
+	 * Returns the path of the image file
+	 * 
+	 * @return the path of the image file
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * Returns the name
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+}
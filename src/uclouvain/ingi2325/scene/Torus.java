@@ -0,0 +1,49 @@
+package uclouvain.ingi2325.scene;
+
+/**
+ * Torus around the Y axis, centered at the origin
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Torus extends Geometry {
+
+	/** Radius of the tube */
+	private final float innerRadius;
+
+	/** Distance from the center to the center of the tube */
+	private final float outerRadius;
+
+	/**
+	 * Create a torus
+	 * 
+	 * @param innerRadius
+	 *            Radius of the tube
+	 * @param outerRadius
+	 *            Distance from the center to the center of the tube
+	 * @param name
+	 *            Name
+	 */
+	public Torus(float innerRadius, float outerRadius, String name) {
+		super(name);
+		this.innerRadius = innerRadius;
+		this.outerRadius = outerRadius;
+	}
+
+	/**
+	 * Returns the radius of the tube
+	 * 
+	 * @return the radius of the tube
+	 */
+	public float getInnerRadius() {
+		return innerRadius;
+	}
+
+	/**
+	 * Returns the distance from the center to the center of the tube
+	 * 
+	 * @return the distance from the center to the center of the tube
+	 */
+	public float getOuterRadius() {
+		return outerRadius;
+	}
+}
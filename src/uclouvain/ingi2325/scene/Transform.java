@@ -0,0 +1,44 @@
+package uclouvain.ingi2325.scene;
+
+import java.util.*;
+
+/**
+ * Transformation applied to a group of nodes
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public abstract class Transform extends SceneNode {
+
+	/** Children */
+	private final List<SceneNode> children = new ArrayList<SceneNode>();
+
+	/**
+	 * Create a transform
+	 * 
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	protected Transform(Transform parent) {
+		super(parent);
+	}
+
+	/**
+	 * Add a child
+	 * 
+	 * @param child
+	 *            The child, whose parent must be this transform
+	 */
+	public void addChild(SceneNode child) {
+		assert child.getParent() == this;
+		children.add(child);
+	}
+
+	/**
+	 * Returns the children
+	 * 
+	 * @return the children, unmodifiable
+	 */
+	public List<SceneNode> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+}
@@ -0,0 +1,36 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.utils.Vector3D;
+
+/**
+ * Translation
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Translate extends Transform {
+
+	/** Translation vector */
+	private final Vector3D vector;
+
+	/**
+	 * Create a translation
+	 * 
+	 * @param vector
+	 *            Translation vector
+	 * @param parent
+	 *            Parent transform, or null for a root node
+	 */
+	public Translate(Vector3D vector, Transform parent) {
+		super(parent);
+		this.vector = vector;
+	}
+
+	/**
+	 * Returns the translation vector
+	 * 
+	 * @return the translation vector
+	 */
+	public Vector3D getVector() {
+		return vector;
+	}
+}
@@ -0,0 +1,349 @@
+package uclouvain.ingi2325.scene;
+
+import java.nio.*;
+
+import uclouvain.ingi2325.exception.*;
+
+/**
+ * Indexed triangle mesh, stored as a structure of arrays
+ * <p>Each attribute of the vertices is split into one array per component:
+ * the coordinates of vertex <code>i</code> are <code>xs[i]</code>,
+ * <code>ys[i]</code> and <code>zs[i]</code>. Triangle <code>t</code> is made
+ * of the vertices <code>indices[3 * t]</code>, <code>indices[3 * t +
+ * 1]</code> and <code>indices[3 * t + 2]</code>. Normals and texture
+ * coordinates have their own index arrays, or are absent.</p>
+ * <p>Intersection kernels read the components they need as contiguous
+ * primitive arrays, with no object per vertex. The arrays are returned
+ * without copy, and must not be modified.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class TriangleMesh extends Geometry {
+
+	/** X coordinates of the vertices */
+	private final float[] xs;
+
+	/** Y coordinates of the vertices */
+	private final float[] ys;
+
+	/** Z coordinates of the vertices */
+	private final float[] zs;
+
+	/** Vertex indices, three per triangle */
+	private final int[] indices;
+
+	/** X components of the normals, or null */
+	private final float[] nxs;
+
+	/** Y components of the normals, or null */
+	private final float[] nys;
+
+	/** Z components of the normals, or null */
+	private final float[] nzs;
+
+	/** Normal indices, three per triangle, or null */
+	private final int[] normalIndices;
+
+	/** U texture coordinates, or null */
+	private final float[] us;
+
+	/** V texture coordinates, or null */
+	private final float[] vs;
+
+	/** Texture coordinate indices, three per triangle, or null */
+	private final int[] textureCoordinateIndices;
+
+	/**
+	 * Create a triangle mesh from arrays of components
+	 * <p>The arrays are not copied.</p>
+	 * 
+	 * @param xs
+	 *            X coordinates of the vertices
+	 * @param ys
+	 *            Y coordinates of the vertices
+	 * @param zs
+	 *            Z coordinates of the vertices
+	 * @param indices
+	 *            Vertex indices, three per triangle
+	 * @param nxs
+	 *            X components of the normals, or null
+	 * @param nys
+	 *            Y components of the normals, or null
+	 * @param nzs
+	 *            Z components of the normals, or null
+	 * @param normalIndices
+	 *            Normal indices, or null
+	 * @param us
+	 *            U texture coordinates, or null
+	 * @param vs
+	 *            V texture coordinates, or null
+	 * @param textureCoordinateIndices
+	 *            Texture coordinate indices, or null
+	 * @param name
+	 *            Name
+	 */
+	public TriangleMesh(float[] xs, float[] ys, float[] zs, int[] indices,
+			float[] nxs, float[] nys, float[] nzs, int[] normalIndices,
+			float[] us, float[] vs, int[] textureCoordinateIndices,
+			String name) {
+		super(name);
+		this.xs = xs;
+		this.ys = ys;
+		this.zs = zs;
+		this.indices = indices;
+		this.nxs = nxs;
+		this.nys = nys;
+		this.nzs = nzs;
+		this.normalIndices = normalIndices;
+		this.us = us;
+		this.vs = vs;
+		this.textureCoordinateIndices = textureCoordinateIndices;
+	}
+
+	/**
+	 * Create a triangle mesh from packed attributes
+	 * <p>The packed attributes are those of an <code>IndexedTriangleSet</code>
+	 * element: interleaved x, y, z triples and u, v pairs. They are split into
+	 * one array per component, and the indices are checked.</p>
+	 * 
+	 * @param coordinates
+	 *            Coordinates, as x, y, z triples
+	 * @param normals
+	 *            Normals, as x, y, z triples, or null
+	 * @param textureCoordinates
+	 *            Texture coordinates, as u, v pairs, or null
+	 * @param coordinateIndices
+	 *            Indices in the coordinates
+	 * @param normalIndices
+	 *            Indices in the normals, or null
+	 * @param textureCoordinateIndices
+	 *            Indices in the texture coordinates, or null
+	 * @param name
+	 *            Name
+	 * @return The mesh
+	 * @throws ParseException
+	 *             The indices are not valid
+	 */
+	public static TriangleMesh unpack(FloatBuffer coordinates,
+			FloatBuffer normals, FloatBuffer textureCoordinates,
+			IntBuffer coordinateIndices, IntBuffer normalIndices,
+			IntBuffer textureCoordinateIndices, String name)
+			throws ParseException {
+		float[][] vertices = split(coordinates, 3);
+		float[][] normalComponents = normals == null
+				|| normalIndices == null ? new float[3][] : split(normals, 3);
+		float[][] uv = textureCoordinates == null
+				|| textureCoordinateIndices == null ? new float[2][] : split(
+				textureCoordinates, 2);
+
+		int[] indices = toArray(coordinateIndices);
+		int[] nIndices = normalComponents[0] == null ? null
+				: toArray(normalIndices);
+		int[] tIndices = uv[0] == null ? null
+				: toArray(textureCoordinateIndices);
+
+		if (indices.length % 3 != 0)
+			throw new ParseException(String.format(
+					"The number of indices of \"%s\" is not a multiple of 3.",
+					name));
+
+		check(indices, indices.length, vertices[0].length, "coordinate", name);
+		check(nIndices, indices.length, nIndices == null ? 0
+				: normalComponents[0].length, "normal", name);
+		check(tIndices, indices.length, tIndices == null ? 0 : uv[0].length,
+				"texture coordinate", name);
+
+		return new TriangleMesh(vertices[0], vertices[1], vertices[2],
+				indices, normalComponents[0], normalComponents[1],
+				normalComponents[2], nIndices, uv[0], uv[1], tIndices, name);
+	}
+
+	/**
+	 * Split interleaved items into one array per component
+	 * 
+	 * @param packed
+	 *            The interleaved items
+	 * @param itemSize
+	 *            Number of components of each item
+	 * @return The arrays of components
+	 */
+	private static float[][] split(FloatBuffer packed, int itemSize) {
+		FloatBuffer buffer = packed.duplicate();
+		int count = buffer.remaining() / itemSize;
+		float[][] components = new float[itemSize][count];
+
+		for (int i = 0; i < count; i++)
+			for (int c = 0; c < itemSize; c++)
+				components[c][i] = buffer.get();
+
+		return components;
+	}
+
+	/**
+	 * Copy a buffer of ints into an array
+	 * 
+	 * @param buffer
+	 *            The buffer
+	 * @return The array
+	 */
+	private static int[] toArray(IntBuffer buffer) {
+		if (buffer.hasArray() && buffer.arrayOffset() == 0
+				&& buffer.position() == 0
+				&& buffer.remaining() == buffer.array().length)
+			return buffer.array();
+
+		int[] array = new int[buffer.remaining()];
+		buffer.duplicate().get(array);
+		return array;
+	}
+
+	/**
+	 * Check an index array
+	 * 
+	 * @param indices
+	 *            The indices, or null
+	 * @param length
+	 *            Expected number of indices
+	 * @param count
+	 *            Number of items indexed
+	 * @param attribute
+	 *            Name of the attribute, for error messages
+	 * @param name
+	 *            Name of the mesh, for error messages
+	 * @throws ParseException
+	 *             The indices are not valid
+	 */
+	private static void check(int[] indices, int length, int count,
+			String attribute, String name) throws ParseException {
+		if (indices == null)
+			return;
+
+		if (indices.length != length)
+			throw new ParseException(String.format(
+					"\"%s\" has %d %s indices instead of %d.", name,
+					indices.length, attribute, length));
+
+		for (int index : indices)
+			if (index < 0 || index >= count)
+				throw new ParseException(String.format(
+						"\"%s\" has a %s index out of range: %d.", name,
+						attribute, index));
+	}
+
+	/**
+	 * Returns the number of triangles
+	 * 
+	 * @return the number of triangles
+	 */
+	public int getTriangleCount() {
+		return indices.length / 3;
+	}
+
+	/**
+	 * Returns the number of vertices
+	 * 
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return xs.length;
+	}
+
+	/**
+	 * Returns the X coordinates of the vertices
+	 * 
+	 * @return the X coordinates of the vertices
+	 */
+	public float[] getXs() {
+		return xs;
+	}
+
+	/**
+	 * Returns the Y coordinates of the vertices
+	 * 
+	 * @return the Y coordinates of the vertices
+	 */
+	public float[] getYs() {
+		return ys;
+	}
+
+	/**
+	 * Returns the Z coordinates of the vertices
+	 * 
+	 * @return the Z coordinates of the vertices
+	 */
+	public float[] getZs() {
+		return zs;
+	}
+
+	/**
+	 * Returns the vertex indices, three per triangle
+	 * 
+	 * @return the vertex indices
+	 */
+	public int[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * Returns the X components of the normals
+	 * 
+	 * @return the X components of the normals, or null
+	 */
+	public float[] getNxs() {
+		return nxs;
+	}
+
+	/**
+	 * Returns the Y components of the normals
+	 * 
+	 * @return the Y components of the normals, or null
+	 */
+	public float[] getNys() {
+		return nys;
+	}
+
+	/**
+	 * Returns the Z components of the normals
+	 * 
+	 * @return the Z components of the normals, or null
+	 */
+	public float[] getNzs() {
+		return nzs;
+	}
+
+	/**
+	 * Returns the normal indices, three per triangle
+	 * 
+	 * @return the normal indices, or null
+	 */
+	public int[] getNormalIndices() {
+		return normalIndices;
+	}
+
+	/**
+	 * Returns the U texture coordinates
+	 * 
+	 * @return the U texture coordinates, or null
+	 */
+	public float[] getUs() {
+		return us;
+	}
+
+	/**
+	 * Returns the V texture coordinates
+	 * 
+	 * @return the V texture coordinates, or null
+	 */
+	public float[] getVs() {
+		return vs;
+	}
+
+	/**
+	 * Returns the texture coordinate indices, three per triangle
+	 * 
+	 * @return the texture coordinate indices, or null
+	 */
+	public int[] getTextureCoordinateIndices() {
+		return textureCoordinateIndices;
+	}
+}
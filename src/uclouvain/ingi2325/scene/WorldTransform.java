@@ -0,0 +1,107 @@
+package uclouvain.ingi2325.scene;
+
+import uclouvain.ingi2325.exception.*;
+import uclouvain.ingi2325.math.Matrix4;
+
+/**
+ * Transform from the local space of shapes to the world space
+ * <p>It is the product of all the transforms around the shapes, baked with its
+ * inverse, to bring rays into the local space, and the transpose of its
+ * inverse, to bring normals back to the world space. Shapes with the same
+ * world matrix share the same instance.</p>
+ * <p>The matrices are returned without copying, and must not be modified.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class WorldTransform {
+
+	/** World matrix */
+	private final Matrix4 matrix;
+
+	/** Inverse of the world matrix */
+	private final Matrix4 inverse;
+
+	/** Transpose of the inverse of the world matrix */
+	private final Matrix4 normalMatrix;
+
+	/** True if the world matrix is the identity */
+	private final boolean identity;
+
+	/**
+	 * Create a world transform
+	 * 
+	 * @param matrix
+	 *            World matrix
+	 * @param inverse
+	 *            Inverse of the world matrix
+	 * @param normalMatrix
+	 *            Transpose of the inverse of the world matrix
+	 */
+	private WorldTransform(Matrix4 matrix, Matrix4 inverse,
+			Matrix4 normalMatrix) {
+		this.matrix = matrix;
+		this.inverse = inverse;
+		this.normalMatrix = normalMatrix;
+
+		this.identity = matrix.equals(Matrix4.identity());
+	}
+
+	/**
+	 * Bake a world matrix with its inverse and inverse-transpose
+	 * 
+	 * @param matrix
+	 *            Affine world matrix, which is copied
+	 * @return The world transform
+	 * @throws ParseException
+	 *             The matrix is singular, e.g. because of a null scale
+	 */
+	public static WorldTransform bake(Matrix4 matrix) throws ParseException {
+		Matrix4 inverse = new Matrix4();
+		if (!inverse.invertAffine(matrix))
+			throw new ParseException("A transform of the scene is singular.");
+
+		Matrix4 normalMatrix = new Matrix4();
+		normalMatrix.transpose(inverse);
+
+		return new WorldTransform(new Matrix4(matrix), inverse, normalMatrix);
+	}
+
+	/**
+	 * Returns the world matrix
+	 * 
+	 * @return the world matrix, not to be modified
+	 */
+	public Matrix4 getMatrix() {
+		return matrix;
+	}
+
+	/**
+	 * Returns the inverse of the world matrix, which transforms world
+	 * points and directions into the local space
+	 * 
+	 * @return the inverse matrix, not to be modified
+	 */
+	public Matrix4 getInverse() {
+		return inverse;
+	}
+
+	/**
+	 * Returns the transpose of the inverse of the world matrix, which
+	 * transforms local normals into the world space
+	 * 
+	 * @return the normal matrix, not to be modified
+	 */
+	public Matrix4 getNormalMatrix() {
+		return normalMatrix;
+	}
+
+	/**
+	 * Returns true if the world matrix is the identity, so that the
+	 * transforms can be skipped
+	 * 
+	 * @return true for the identity
+	 */
+	public boolean isIdentity() {
+		return identity;
+	}
+}
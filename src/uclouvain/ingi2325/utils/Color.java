@@ -79,4 +79,44 @@ public class Color extends Tuple3 {
 	public static Color valueOf(String string) throws ParseException {
 		return valueOf(string, new Color());
 	}
+
+	/**
+	 * Pack a color as <code>0xRRGGBB</code>, clamping its components to
+	 * [0, 1]. NaN components are packed as 0.
+	 * 
+	 * @param r
+	 *            the red component
+	 * @param g
+	 *            the green component
+	 * @param b
+	 *            the blue component
+	 * @return the packed color
+	 */
+	public static int pack(float r, float g, float b) {
+		return toByte(r) << 16 | toByte(g) << 8 | toByte(b);
+	}
+
+	/**
+	 * Returns this color packed as <code>0xRRGGBB</code>
+	 * 
+	 * @return the packed color
+	 * @see #pack(float, float, float)
+	 */
+	public final int pack() {
+		return pack(x, y, z);
+	}
+
+	/**
+	 * Convert a component to a byte, clamping it to [0, 1]
+	 * 
+	 * @param c
+	 *            the component
+	 * @return the byte, from 0 to 255
+	 */
+	private static int toByte(float c) {
+		// Clamping after the conversion is cheaper; (int) NaN is 0, and
+		// infinities saturate
+		int i = (int) (255.0F * c + 0.5F);
+		return i < 0 ? 0 : i > 255 ? 255 : i;
+	}
 }
@@ -0,0 +1,216 @@
+package uclouvain.ingi2325.utils;
+
+import java.awt.image.*;
+import java.io.*;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import uclouvain.ingi2325.render.TileSink;
+
+/**
+ * Headless image to render into
+ * <p>Pixels are stored row by row in an <code>int[]</code>, packed as
+ * <code>0xRRGGBB</code>, and can be drawn one by one or in bulk, from packed
+ * or float colors. No AWT component is involved: the buffer is wrapped into
+ * a {@link BufferedImage}, without copy, only when it is displayed by a
+ * {@link PixelPanel} or written to a file.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Framebuffer implements TileSink {
+
+	/** Width */
+	private final int width;
+
+	/** Height */
+	private final int height;
+
+	/** Pixels, row by row, packed as <code>0xRRGGBB</code> */
+	private final int[] pixels;
+
+	/** Image over the pixels, or null until it is needed */
+	private BufferedImage image = null;
+
+	/**
+	 * Create a black framebuffer
+	 * 
+	 * @param width
+	 *            Width
+	 * @param height
+	 *            Height
+	 */
+	public Framebuffer(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException(String.format(
+					"Invalid framebuffer of %dx%d pixels.", width, height));
+		this.width = width;
+		this.height = height;
+		pixels = new int[width * height];
+	}
+
+	/**
+	 * Returns the width
+	 * 
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height
+	 * 
+	 * @return the height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Returns the pixels, row by row, packed as <code>0xRRGGBB</code>
+	 * 
+	 * @return the pixels, which may be written directly
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Returns a TYPE_INT_RGB image backed by the pixels, created on first
+	 * call
+	 * 
+	 * @return the image
+	 */
+	public synchronized BufferedImage getImage() {
+		if (image == null) {
+			int[] masks = { 0xFF0000, 0xFF00, 0xFF };
+			WritableRaster raster = Raster.createPackedRaster(
+					new DataBufferInt(pixels, pixels.length), width, height,
+					width, masks, null);
+			image = new BufferedImage(new DirectColorModel(24, masks[0],
+					masks[1], masks[2]), raster, false, null);
+		}
+		return image;
+	}
+
+	/**
+	 * Draw a pixel, if it is inside the framebuffer
+	 * 
+	 * @param x
+	 *            Abscissa
+	 * @param y
+	 *            Ordinate
+	 * @param r
+	 *            Red component, in [0, 1]
+	 * @param g
+	 *            Green component, in [0, 1]
+	 * @param b
+	 *            Blue component, in [0, 1]
+	 */
+	public void drawPixel(int x, int y, float r, float g, float b) {
+		if (x >= 0 && x < width && y >= 0 && y < height)
+			pixels[y * width + x] = Color.pack(r, g, b);
+	}
+
+	/**
+	 * Draw a row of float colors. The parts of the row outside the
+	 * framebuffer are not drawn.
+	 * 
+	 * @param x
+	 *            Abscissa of the first pixel
+	 * @param y
+	 *            Ordinate of the row
+	 * @param rgb
+	 *            Colors, as r, g and b floats per pixel, in [0, 1]
+	 * @param offset
+	 *            Index in <code>rgb</code> of the red component of the first
+	 *            pixel
+	 * @param count
+	 *            Number of pixels
+	 */
+	public void drawRow(int x, int y, float[] rgb, int offset, int count) {
+		if (y < 0 || y >= height)
+			return;
+		int left = Math.max(x, 0);
+		int right = Math.min(x + count, width);
+		int source = offset + 3 * (left - x);
+		for (int i = y * width + left; i < y * width + right; i++) {
+			pixels[i] = Color.pack(rgb[source], rgb[source + 1],
+					rgb[source + 2]);
+			source += 3;
+		}
+	}
+
+	/**
+	 * Draw a tile of float colors, clamped to [0, 1]. The parts of the tile
+	 * outside the framebuffer are not drawn.
+	 * 
+	 * @see uclouvain.ingi2325.render.TileSink#drawTile(int, int, int, int,
+	 * float[])
+	 */
+	@Override
+	public void drawTile(int x, int y, int width, int height, float[] rgb) {
+		for (int j = 0; j < height; j++)
+			drawRow(x, y + j, rgb, 3 * j * width, width);
+	}
+
+	/**
+	 * Draw a tile of packed colors in one blit. The parts of the tile outside
+	 * the framebuffer are not drawn.
+	 * 
+	 * @param x
+	 *            Abscissa of the tile
+	 * @param y
+	 *            Ordinate of the tile
+	 * @param width
+	 *            Width of the tile
+	 * @param height
+	 *            Height of the tile
+	 * @param rgb
+	 *            Pixels, row by row, packed as <code>0xRRGGBB</code>
+	 */
+	public void drawTile(int x, int y, int width, int height, int[] rgb) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, this.width);
+		int bottom = Math.min(y + height, this.height);
+		for (int j = top; j < bottom; j++)
+			System.arraycopy(rgb, (j - y) * width + left - x, pixels, j
+					* this.width + left, right - left);
+	}
+
+	/**
+	 * Fill the framebuffer with a color
+	 * 
+	 * @param r
+	 *            Red component, in [0, 1]
+	 * @param g
+	 *            Green component, in [0, 1]
+	 * @param b
+	 *            Blue component, in [0, 1]
+	 */
+	public void clear(float r, float g, float b) {
+		Arrays.fill(pixels, Color.pack(r, g, b));
+	}
+
+	/**
+	 * Write the framebuffer to an image file
+	 * 
+	 * @param file
+	 *            The file, whose extension gives the format, e.g.
+	 *            <code>png</code>
+	 * @throws IOException
+	 *             The format is not supported or the file could not be
+	 *             written
+	 */
+	public void save(File file) throws IOException {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		String format = dot >= 0 ? name.substring(dot + 1).toLowerCase()
+				: "png";
+		if (!ImageIO.write(getImage(), format, file))
+			throw new IOException(String.format(
+					"No writer for the format \"%s\" of %s.", format, file));
+	}
+}
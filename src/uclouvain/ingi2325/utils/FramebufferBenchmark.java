@@ -0,0 +1,138 @@
+package uclouvain.ingi2325.utils;
+
+import java.awt.image.BufferedImage;
+import java.util.*;
+
+/**
+ * Benchmark of the drawing of frames into a {@link Framebuffer}
+ * <p>This application draws a whole frame pixel by pixel through
+ * {@link BufferedImage#setRGB(int, int, int)}, as {@link PixelPanel} used
+ * to, then into a framebuffer: pixel by pixel, by tiles of floats, by tiles
+ * of packed colors, and clears the frame both ways.</p>
+ * <p>Usage: <code>FramebufferBenchmark [width height [runs]]</code></p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class FramebufferBenchmark {
+
+	/** Default width of the frame, 4K UHD */
+	private static final int DEFAULT_WIDTH = 3840;
+
+	/** Default height of the frame, 4K UHD */
+	private static final int DEFAULT_HEIGHT = 2160;
+
+	/** Default number of measured frames, after as many warm-up frames */
+	private static final int DEFAULT_RUNS = 5;
+
+	/** Size of the tiles */
+	private static final int TILE_SIZE = 32;
+
+	/**
+	 * Frame drawing to measure
+	 */
+	private static abstract class Case {
+
+		/** Name */
+		final String name;
+
+		/**
+		 * Create a case
+		 * 
+		 * @param name
+		 *            Name
+		 */
+		Case(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Draw a frame
+		 */
+		abstract void run();
+	}
+
+	/**
+	 * Run the benchmark
+	 * 
+	 * @param args
+	 *            Command line arguments
+	 */
+	public static void main(String[] args) {
+		final int width = args.length > 1 ? Integer.parseInt(args[0])
+				: DEFAULT_WIDTH;
+		final int height = args.length > 1 ? Integer.parseInt(args[1])
+				: DEFAULT_HEIGHT;
+		int runs = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_RUNS;
+
+		final Framebuffer framebuffer = new Framebuffer(width, height);
+		final BufferedImage image = new BufferedImage(width, height,
+				BufferedImage.TYPE_INT_RGB);
+		final float[] floats = new float[3 * TILE_SIZE * TILE_SIZE];
+		final int[] packed = new int[TILE_SIZE * TILE_SIZE];
+		Random random = new Random(42);
+		for (int i = 0; i < floats.length; i++)
+			floats[i] = random.nextFloat();
+		for (int i = 0; i < packed.length; i++)
+			packed[i] = Color.pack(floats[3 * i], floats[3 * i + 1],
+					floats[3 * i + 2]);
+
+		Case[] cases = { new Case("drawPixel, setRGB") {
+			@Override
+			void run() {
+				for (int y = 0; y < height; y++)
+					for (int x = 0; x < width; x++)
+						image.setRGB(x, y, (int) (255 * 0.5F) << 16
+								| (int) (255 * (float) x / width) << 8
+								| (int) (255 * (float) y / height));
+			}
+		}, new Case("drawPixel, direct") {
+			@Override
+			void run() {
+				for (int y = 0; y < height; y++)
+					for (int x = 0; x < width; x++)
+						framebuffer.drawPixel(x, y, 0.5F, (float) x / width,
+								(float) y / height);
+			}
+		}, new Case("drawTile, floats") {
+			@Override
+			void run() {
+				for (int y = 0; y < height; y += TILE_SIZE)
+					for (int x = 0; x < width; x += TILE_SIZE)
+						framebuffer.drawTile(x, y, TILE_SIZE, TILE_SIZE, floats);
+			}
+		}, new Case("drawTile, packed") {
+			@Override
+			void run() {
+				for (int y = 0; y < height; y += TILE_SIZE)
+					for (int x = 0; x < width; x += TILE_SIZE)
+						framebuffer.drawTile(x, y, TILE_SIZE, TILE_SIZE, packed);
+			}
+		}, new Case("clear, setRGB") {
+			@Override
+			void run() {
+				for (int x = 0; x < width; x++)
+					for (int y = 0; y < height; y++)
+						image.setRGB(x, y, 0x336699);
+			}
+		}, new Case("clear, Arrays.fill") {
+			@Override
+			void run() {
+				framebuffer.clear(0.2F, 0.4F, 0.6F);
+			}
+		} };
+
+		System.out.println(String.format(Locale.US, "%dx%d frame", width,
+				height));
+		for (Case c : cases) {
+			long best = Long.MAX_VALUE;
+			for (int run = 0; run < 2 * runs; run++) {
+				long start = System.nanoTime();
+				c.run();
+				if (run >= runs)
+					best = Math.min(best, System.nanoTime() - start);
+			}
+			System.out.println(String.format(Locale.US,
+					"%-20s %9.2f ms/frame", c.name, best / 1e6));
+		}
+	}
+}
@@ -0,0 +1,430 @@
+package uclouvain.ingi2325.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import uclouvain.ingi2325.render.TileSink;
+
+/**
+ * High dynamic range image to accumulate samples into
+ * <p>Each pixel holds the weighted sum of the linear colors of its samples,
+ * in a <code>float[]</code>, and the sum of their weights, so that any
+ * number of samples or passes may be added before the image is resolved.
+ * Colors are kept unbounded: they are brought into a displayable range by a
+ * {@link ToneMapper} only when converted to a {@link Framebuffer}, and are
+ * written as they are to PFM and Radiance HDR files.</p>
+ * <p>A drawn tile is one sample of weight 1 per pixel. Tiles drawn
+ * concurrently must not overlap.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class HdrFramebuffer implements TileSink {
+
+	/** Widths of scanlines that a Radiance HDR file may run-length encode */
+	private static final int MIN_RLE_WIDTH = 8, MAX_RLE_WIDTH = 0x7FFF;
+
+	/** Width */
+	private final int width;
+
+	/** Height */
+	private final int height;
+
+	/** Weighted sums of the samples, row by row, as r, g and b per pixel */
+	private final float[] rgb;
+
+	/** Sums of the weights of the samples of each pixel */
+	private final float[] weights;
+
+	/**
+	 * Create a framebuffer without samples
+	 * 
+	 * @param width
+	 *            Width
+	 * @param height
+	 *            Height
+	 */
+	public HdrFramebuffer(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException(String.format(
+					"Invalid framebuffer of %dx%d pixels.", width, height));
+		this.width = width;
+		this.height = height;
+		rgb = new float[3 * width * height];
+		weights = new float[width * height];
+	}
+
+	/**
+	 * Returns the width
+	 * 
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Returns the height
+	 * 
+	 * @return the height
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Add a sample to a pixel, if it is inside the framebuffer
+	 * 
+	 * @param x
+	 *            Abscissa
+	 * @param y
+	 *            Ordinate
+	 * @param r
+	 *            Red component
+	 * @param g
+	 *            Green component
+	 * @param b
+	 *            Blue component
+	 * @param weight
+	 *            Weight of the sample, e.g. of its reconstruction filter
+	 */
+	public void addSample(int x, int y, float r, float g, float b, float weight) {
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			return;
+		int i = y * width + x;
+		rgb[3 * i] += weight * r;
+		rgb[3 * i + 1] += weight * g;
+		rgb[3 * i + 2] += weight * b;
+		weights[i] += weight;
+	}
+
+	/**
+	 * Add a tile as one sample of weight 1 per pixel. The parts of the tile
+	 * outside the framebuffer are ignored.
+	 * 
+	 * @see uclouvain.ingi2325.render.TileSink#drawTile(int, int, int, int,
+	 * float[])
+	 */
+	@Override
+	public void drawTile(int x, int y, int width, int height, float[] rgb) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, this.width);
+		int bottom = Math.min(y + height, this.height);
+		for (int j = top; j < bottom; j++) {
+			int source = 3 * ((j - y) * width + left - x);
+			for (int i = j * this.width + left; i < j * this.width + right; i++) {
+				this.rgb[3 * i] += rgb[source++];
+				this.rgb[3 * i + 1] += rgb[source++];
+				this.rgb[3 * i + 2] += rgb[source++];
+				weights[i]++;
+			}
+		}
+	}
+
+	/**
+	 * Remove all the samples
+	 */
+	public void clear() {
+		Arrays.fill(rgb, 0);
+		Arrays.fill(weights, 0);
+	}
+
+	/**
+	 * Returns the sum of the weights of the samples of a pixel
+	 * 
+	 * @param x
+	 *            Abscissa
+	 * @param y
+	 *            Ordinate
+	 * @return the weight of the pixel, 0 if it has no sample
+	 */
+	public float getWeight(int x, int y) {
+		return weights[y * width + x];
+	}
+
+	/**
+	 * Returns the color of a pixel, i.e. the weighted mean of its samples
+	 * 
+	 * @param x
+	 *            Abscissa
+	 * @param y
+	 *            Ordinate
+	 * @param color
+	 *            Set to the color, black if the pixel has no sample
+	 * @return the color
+	 */
+	public Color getColor(int x, int y, Color color) {
+		int i = y * width + x;
+		float scale = weights[i] > 0 ? 1 / weights[i] : 0;
+		color.x = scale * rgb[3 * i];
+		color.y = scale * rgb[3 * i + 1];
+		color.z = scale * rgb[3 * i + 2];
+		return color;
+	}
+
+	/**
+	 * Convert the image for display
+	 * 
+	 * @param mapper
+	 *            Tone mapper
+	 * @param exposure
+	 *            Factor applied to the colors before tone mapping
+	 * @param target
+	 *            Framebuffer of the same size, set to the image
+	 */
+	public void toneMap(ToneMapper mapper, float exposure, Framebuffer target) {
+		toneMap(mapper, exposure, target, 0, 0, width, height);
+	}
+
+	/**
+	 * Convert a rectangle of the image for display, e.g. a tile that was just
+	 * drawn. The parts of the rectangle outside the image are ignored.
+	 * 
+	 * @param mapper
+	 *            Tone mapper
+	 * @param exposure
+	 *            Factor applied to the colors before tone mapping
+	 * @param target
+	 *            Framebuffer of the same size, whose rectangle is set to the
+	 *            image
+	 * @param x
+	 *            Left of the rectangle
+	 * @param y
+	 *            Top of the rectangle
+	 * @param width
+	 *            Width of the rectangle
+	 * @param height
+	 *            Height of the rectangle
+	 */
+	public void toneMap(ToneMapper mapper, float exposure, Framebuffer target,
+			int x, int y, int width, int height) {
+		if (target.getWidth() != this.width
+				|| target.getHeight() != this.height)
+			throw new IllegalArgumentException(String.format(
+					"Cannot tone map %dx%d pixels to %dx%d.", this.width,
+					this.height, target.getWidth(), target.getHeight()));
+		int[] pixels = target.getPixels();
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, this.width);
+		int bottom = Math.min(y + height, this.height);
+		for (int j = top; j < bottom; j++) {
+			for (int i = j * this.width + left; i < j * this.width + right; i++) {
+				float scale = weights[i] > 0 ? exposure / weights[i] : 0;
+				pixels[i] = Color.pack(mapper.map(scale * rgb[3 * i]), mapper
+						.map(scale * rgb[3 * i + 1]), mapper.map(scale
+						* rgb[3 * i + 2]));
+			}
+		}
+	}
+
+	/**
+	 * Write the image to a file. PFM and Radiance HDR files, with the
+	 * extensions <code>pfm</code> and <code>hdr</code>, receive the linear
+	 * colors; other formats are tone mapped and written by
+	 * {@link Framebuffer#save(File)}.
+	 * 
+	 * @param file
+	 *            The file, whose extension gives the format
+	 * @param mapper
+	 *            Tone mapper for low dynamic range formats
+	 * @param exposure
+	 *            Factor applied to the colors before tone mapping
+	 * @throws IOException
+	 *             The format is not supported or the file could not be
+	 *             written
+	 */
+	public void save(File file, ToneMapper mapper, float exposure)
+			throws IOException {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".pfm"))
+			writePFM(file);
+		else if (name.endsWith(".hdr"))
+			writeHDR(file);
+		else {
+			Framebuffer framebuffer = new Framebuffer(width, height);
+			toneMap(mapper, exposure, framebuffer);
+			framebuffer.save(file);
+		}
+	}
+
+	/**
+	 * Write the image as a little-endian Portable Float Map
+	 * 
+	 * @param file
+	 *            The file
+	 * @throws IOException
+	 *             The file could not be written
+	 */
+	public void writePFM(File file) throws IOException {
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		try {
+			write(channel, ByteBuffer.wrap(String.format("PF\n%d %d\n-1.0\n",
+					width, height).getBytes("US-ASCII")));
+
+			// Rows go from the bottom to the top
+			ByteBuffer row = ByteBuffer.allocateDirect(12 * width).order(
+					ByteOrder.LITTLE_ENDIAN);
+			for (int j = height - 1; j >= 0; j--) {
+				for (int i = j * width; i < (j + 1) * width; i++) {
+					float scale = weights[i] > 0 ? 1 / weights[i] : 0;
+					row.putFloat(scale * rgb[3 * i]);
+					row.putFloat(scale * rgb[3 * i + 1]);
+					row.putFloat(scale * rgb[3 * i + 2]);
+				}
+				row.flip();
+				write(channel, row);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write the image as a run-length encoded Radiance RGBE file
+	 * 
+	 * @param file
+	 *            The file
+	 * @throws IOException
+	 *             The file could not be written
+	 */
+	public void writeHDR(File file) throws IOException {
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		try {
+			write(channel, ByteBuffer.wrap(String.format(
+					"#?RADIANCE\nFORMAT=32-bit_rle_rgbe\n\n-Y %d +X %d\n",
+					height, width).getBytes("US-ASCII")));
+
+			boolean encoded = width >= MIN_RLE_WIDTH && width <= MAX_RLE_WIDTH;
+			byte[] rgbe = new byte[4 * width];
+			// A run-length encoded component takes at most 129/128 bytes per
+			// pixel
+			ByteBuffer scanline = ByteBuffer.allocateDirect(4 + 4
+					* (width + width / 128 + 1));
+			for (int j = 0; j < height; j++) {
+				for (int i = 0; i < width; i++)
+					toRGBE(j * width + i, rgbe, 4 * i);
+				if (encoded) {
+					scanline.put((byte) 2).put((byte) 2);
+					scanline.put((byte) (width >> 8)).put((byte) width);
+					for (int component = 0; component < 4; component++)
+						encode(rgbe, component, scanline);
+				} else
+					scanline.put(rgbe);
+				scanline.flip();
+				write(channel, scanline);
+			}
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Convert the color of a pixel to a shared exponent RGBE quadruple
+	 * 
+	 * @param pixel
+	 *            Index of the pixel
+	 * @param rgbe
+	 *            Set to the quadruple
+	 * @param offset
+	 *            Index of the quadruple in <code>rgbe</code>
+	 */
+	private void toRGBE(int pixel, byte[] rgbe, int offset) {
+		float scale = weights[pixel] > 0 ? 1 / weights[pixel] : 0;
+		float r = clamp(scale * rgb[3 * pixel]);
+		float g = clamp(scale * rgb[3 * pixel + 1]);
+		float b = clamp(scale * rgb[3 * pixel + 2]);
+		float max = Math.max(r, Math.max(g, b));
+		if (max < 1e-32F) {
+			rgbe[offset] = rgbe[offset + 1] = rgbe[offset + 2] = rgbe[offset + 3] = 0;
+			return;
+		}
+
+		// max = m * 2^exponent with m in [0.5, 1[
+		int exponent = Math.getExponent(max) + 1;
+		float factor = Math.scalb(256F, -exponent);
+		rgbe[offset] = (byte) (r * factor);
+		rgbe[offset + 1] = (byte) (g * factor);
+		rgbe[offset + 2] = (byte) (b * factor);
+		rgbe[offset + 3] = (byte) (exponent + 128);
+	}
+
+	/**
+	 * Returns a component in the range of RGBE, whose exponents stop at 127,
+	 * negative and NaN values becoming 0
+	 * 
+	 * @param c
+	 *            The component
+	 * @return the component, in [0, 1e38]
+	 */
+	private static float clamp(float c) {
+		return c > 0 ? Math.min(c, 1e38F) : 0;
+	}
+
+	/**
+	 * Run-length encode a component of a scanline, as new-style Radiance
+	 * files do: a byte above 128 announces a run of that many minus 128
+	 * copies of the next byte, another one that many literal bytes.
+	 * 
+	 * @param rgbe
+	 *            RGBE quadruples of the scanline
+	 * @param component
+	 *            The component, from 0 to 3
+	 * @param out
+	 *            Receives the encoded component
+	 */
+	private static void encode(byte[] rgbe, int component, ByteBuffer out) {
+		int count = rgbe.length / 4;
+		int current = 0;
+		while (current < count) {
+			// Look for the next run of at least 4 bytes
+			int start = current;
+			int run = 0;
+			while (start < count) {
+				run = 1;
+				byte value = rgbe[4 * start + component];
+				while (start + run < count && run < 127
+						&& rgbe[4 * (start + run) + component] == value)
+					run++;
+				if (run >= 4)
+					break;
+				start += run;
+			}
+
+			// Literal bytes before the run
+			while (current < start) {
+				int literal = Math.min(128, start - current);
+				out.put((byte) literal);
+				for (int i = 0; i < literal; i++)
+					out.put(rgbe[4 * (current + i) + component]);
+				current += literal;
+			}
+
+			if (start < count) {
+				out.put((byte) (128 + run));
+				out.put(rgbe[4 * start + component]);
+				current += run;
+			}
+		}
+	}
+
+	/**
+	 * Write the remaining bytes of a buffer to a channel, and clear it
+	 * 
+	 * @param channel
+	 *            The channel
+	 * @param buffer
+	 *            The buffer
+	 * @throws IOException
+	 *             The bytes could not be written
+	 */
+	private static void write(FileChannel channel, ByteBuffer buffer)
+			throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+}
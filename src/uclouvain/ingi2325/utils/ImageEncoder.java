@@ -0,0 +1,337 @@
+package uclouvain.ingi2325.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import uclouvain.ingi2325.render.TileSink;
+
+/**
+ * Streaming PNG encoder, running on a background thread
+ * <p>The encoder is a sink for the tiles of a render: drawing a tile only
+ * tone maps it into the pixels of the encoder and counts the pixels drawn on
+ * each row. Once started, a background thread compresses the rows, top to
+ * bottom, as soon as they are complete, and writes them to the file through a
+ * {@link FileChannel}. Rendering thus never waits on compression, and the
+ * file is finished shortly after the last tile.</p>
+ * <p>The outcome is reported by the {@link Future} returned by
+ * {@link #start()}: its <code>get()</code> method returns the file, or throws
+ * the failure of the encoder wrapped in an {@link ExecutionException}. Each
+ * pixel must be drawn exactly once; if the render is abandoned, the future
+ * should be cancelled, which deletes the partial file.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class ImageEncoder implements TileSink {
+
+	/** Signature that starts PNG files */
+	private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G',
+			'\r', '\n', 0x1A, '\n' };
+
+	/** Maximum size of the data of an IDAT chunk */
+	private static final int CHUNK_SIZE = 1 << 16;
+
+	/** PNG filter type that stores each byte minus the one of the left pixel */
+	private static final byte FILTER_SUB = 1;
+
+	/** Shared executor, created on first use */
+	private static ExecutorService executor = null;
+
+	/** The file */
+	private final File file;
+
+	/** Width */
+	private final int width;
+
+	/** Height */
+	private final int height;
+
+	/** Tone mapper applied to the drawn tiles */
+	private final ToneMapper mapper;
+
+	/** Pixels, row by row, packed as <code>0xRRGGBB</code> */
+	private final int[] pixels;
+
+	/** Number of pixels not drawn yet on each row */
+	private final AtomicIntegerArray remaining;
+
+	/** Result of the encoder, or null until it is started */
+	private Future<File> result = null;
+
+	/**
+	 * Create an encoder, which waits for the tiles of an image
+	 * 
+	 * @param file
+	 *            The PNG file
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param mapper
+	 *            Tone mapper applied to the drawn tiles
+	 */
+	public ImageEncoder(File file, int width, int height, ToneMapper mapper) {
+		this(file, width, height, mapper, new int[width * height], width);
+	}
+
+	/**
+	 * Create an encoder
+	 * 
+	 * @param file
+	 *            The PNG file
+	 * @param width
+	 *            Width of the image
+	 * @param height
+	 *            Height of the image
+	 * @param mapper
+	 *            Tone mapper applied to the drawn tiles
+	 * @param pixels
+	 *            Pixels of the image
+	 * @param remaining
+	 *            Number of pixels not drawn yet on each row
+	 */
+	private ImageEncoder(File file, int width, int height, ToneMapper mapper,
+			int[] pixels, int remaining) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException(String.format(
+					"Invalid image of %dx%d pixels.", width, height));
+		this.file = file;
+		this.width = width;
+		this.height = height;
+		this.mapper = mapper;
+		this.pixels = pixels;
+		this.remaining = new AtomicIntegerArray(height);
+		for (int j = 0; j < height; j++)
+			this.remaining.set(j, remaining);
+	}
+
+	/**
+	 * Write a framebuffer to an image file in the background. PNG files are
+	 * written by an encoder, other formats by {@link Framebuffer#save(File)}.
+	 * The framebuffer should not be drawn on until the file is written.
+	 * 
+	 * @param framebuffer
+	 *            The framebuffer
+	 * @param file
+	 *            The file, whose extension gives the format
+	 * @return the result of the writing
+	 */
+	public static Future<File> save(final Framebuffer framebuffer,
+			final File file) {
+		if (file.getName().toLowerCase().endsWith(".png"))
+			return new ImageEncoder(file, framebuffer.getWidth(), framebuffer
+					.getHeight(), ToneMapper.CLAMP, framebuffer.getPixels(), 0)
+					.start();
+
+		return getExecutor().submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				framebuffer.save(file);
+				return file;
+			}
+		});
+	}
+
+	/**
+	 * Start the encoder, on a background thread
+	 * 
+	 * @return the result of the encoder
+	 * @throws IllegalStateException
+	 *             The encoder is already started
+	 */
+	public synchronized Future<File> start() {
+		if (result != null)
+			throw new IllegalStateException("The encoder is already started.");
+		result = getExecutor().submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException, InterruptedException {
+				try {
+					encode();
+					return file;
+				} catch (IOException e) {
+					file.delete();
+					throw e;
+				} catch (InterruptedException e) {
+					file.delete();
+					throw e;
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Tone map a tile into the image. The parts of the tile outside the
+	 * image are ignored.
+	 * 
+	 * @see uclouvain.ingi2325.render.TileSink#drawTile(int, int, int, int,
+	 * float[])
+	 */
+	@Override
+	public void drawTile(int x, int y, int width, int height, float[] rgb) {
+		int left = Math.max(x, 0);
+		int top = Math.max(y, 0);
+		int right = Math.min(x + width, this.width);
+		int bottom = Math.min(y + height, this.height);
+		for (int j = top; j < bottom; j++) {
+			int source = 3 * ((j - y) * width + left - x);
+			for (int i = j * this.width + left; i < j * this.width + right; i++) {
+				pixels[i] = Color.pack(mapper.map(rgb[source]), mapper
+						.map(rgb[source + 1]), mapper.map(rgb[source + 2]));
+				source += 3;
+			}
+
+			// The atomic update publishes the pixels to the encoder
+			if (right > left && remaining.addAndGet(j, left - right) <= 0) {
+				synchronized (remaining) {
+					remaining.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the image, waiting for its rows
+	 * 
+	 * @throws IOException
+	 *             The file could not be written
+	 * @throws InterruptedException
+	 *             The encoder was cancelled
+	 */
+	private void encode() throws IOException, InterruptedException {
+		FileChannel channel = new FileOutputStream(file).getChannel();
+		Deflater deflater = new Deflater();
+		try {
+			ByteBuffer signature = ByteBuffer.wrap(SIGNATURE);
+			while (signature.hasRemaining())
+				channel.write(signature);
+			ByteBuffer header = ByteBuffer.allocate(13);
+			header.putInt(width).putInt(height);
+			// 8 bits per sample, RGB, deflate, adaptive filtering, no
+			// interlace
+			header.put((byte) 8).put((byte) 2).put((byte) 0).put((byte) 0).put(
+					(byte) 0);
+			writeChunk(channel, "IHDR", header.array(), header.capacity());
+
+			byte[] row = new byte[1 + 3 * width];
+			byte[] chunk = new byte[CHUNK_SIZE];
+			int size = 0;
+			for (int j = 0; j < height; j++) {
+				waitForRow(j);
+				filterRow(j, row);
+				deflater.setInput(row);
+				while (!deflater.needsInput()) {
+					size += deflater.deflate(chunk, size, chunk.length - size);
+					if (size == chunk.length) {
+						writeChunk(channel, "IDAT", chunk, size);
+						size = 0;
+					}
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				size += deflater.deflate(chunk, size, chunk.length - size);
+				if (size == chunk.length || deflater.finished()) {
+					writeChunk(channel, "IDAT", chunk, size);
+					size = 0;
+				}
+			}
+			writeChunk(channel, "IEND", chunk, 0);
+		} finally {
+			deflater.end();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Wait until all the pixels of a row are drawn
+	 * 
+	 * @param j
+	 *            Ordinate of the row
+	 * @throws InterruptedException
+	 *             The encoder was cancelled
+	 */
+	private void waitForRow(int j) throws InterruptedException {
+		if (remaining.get(j) <= 0)
+			return;
+		synchronized (remaining) {
+			while (remaining.get(j) > 0)
+				remaining.wait();
+		}
+	}
+
+	/**
+	 * Convert a row to PNG bytes, with the Sub filter
+	 * 
+	 * @param j
+	 *            Ordinate of the row
+	 * @param row
+	 *            Set to the filter type followed by the filtered bytes
+	 */
+	private void filterRow(int j, byte[] row) {
+		row[0] = FILTER_SUB;
+		int previous = 0;
+		for (int i = 0, k = 1; i < width; i++, k += 3) {
+			int pixel = pixels[j * width + i];
+			row[k] = (byte) ((pixel >> 16) - (previous >> 16));
+			row[k + 1] = (byte) ((pixel >> 8) - (previous >> 8));
+			row[k + 2] = (byte) (pixel - previous);
+			previous = pixel;
+		}
+	}
+
+	/**
+	 * Write a PNG chunk
+	 * 
+	 * @param channel
+	 *            The file
+	 * @param type
+	 *            Type of the chunk
+	 * @param data
+	 *            Data of the chunk
+	 * @param size
+	 *            Size of the data
+	 * @throws IOException
+	 *             The chunk could not be written
+	 */
+	private static void writeChunk(FileChannel channel, String type,
+			byte[] data, int size) throws IOException {
+		byte[] name = type.getBytes("US-ASCII");
+		CRC32 crc = new CRC32();
+		crc.update(name);
+		crc.update(data, 0, size);
+
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(size).put(name).flip();
+		ByteBuffer footer = ByteBuffer.allocate(4);
+		footer.putInt((int) crc.getValue()).flip();
+		ByteBuffer[] buffers = { header, ByteBuffer.wrap(data, 0, size),
+				footer };
+		while (footer.hasRemaining())
+			channel.write(buffers);
+	}
+
+	/**
+	 * Returns the shared executor, whose daemon threads are created as
+	 * needed
+	 * 
+	 * @return the shared executor
+	 */
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "ImageEncoder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+}
@@ -1,11 +1,11 @@
 package uclouvain.ingi2325.utils;
 
 import java.awt.*;
-import java.awt.event.*;
-import java.awt.image.*;
-
-import javax.imageio.*;
 import java.io.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import uclouvain.ingi2325.render.TileSink;
 
 /**
  * Represents a canvas you can draw on.
@@ -14,29 +14,71 @@ import java.io.*;
  * render loop (assume object is called panel): panel.clear(); for each pixel to
  * be drawn: panel.drawPixel(...); panel.repaint(); panel.flush();
  * 
+ * The pixels are held by a headless {@link Framebuffer}, which this canvas
+ * displays; rendering code that needs no window should use a Framebuffer
+ * directly. The framebuffer keeps the size the canvas was created with.
+ * 
+ * While an image is being rendered, the canvas can repaint itself from a
+ * separate thread, at a capped frame rate and only when the framebuffer is
+ * marked as changed. The framebuffer is painted while holding its lock, so
+ * that a writer holding the same lock is never seen half done.
+ * 
  * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
  * @author Julien Dupuis
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
  */
-public class PixelPanel extends Canvas implements ComponentListener {
+public class PixelPanel extends Canvas implements TileSink {
 
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * The image displayed in this canvas
+	 * The framebuffer displayed in this canvas
+	 */
+	private final Framebuffer framebuffer;
+
+	/**
+	 * Whether the framebuffer changed since it was last painted
+	 */
+	private final AtomicBoolean changed = new AtomicBoolean();
+
+	/**
+	 * Lock of the refreshing thread
+	 */
+	private final Object refreshLock = new Object();
+
+	/**
+	 * Thread that repaints the canvas, or null
 	 */
-	BufferedImage image;
+	private ScheduledExecutorService refresher = null;
 
 	/**
 	 * Construct a new CgPanel.
 	 */
 	public PixelPanel(int width, int height) {
-		setSize(new Dimension(width, height));
-		setPreferredSize(new Dimension(width, height));
-		image = new BufferedImage(getWidth(), getHeight(),
-				BufferedImage.TYPE_INT_RGB);
-		addComponentListener(this);
-		componentResized(new ComponentEvent(this,
-				ComponentEvent.COMPONENT_RESIZED));
+		this(new Framebuffer(width, height));
+	}
+
+	/**
+	 * Construct a canvas that displays a framebuffer, at its size.
+	 * 
+	 * @param framebuffer
+	 *            the framebuffer
+	 */
+	public PixelPanel(Framebuffer framebuffer) {
+		this.framebuffer = framebuffer;
+		Dimension size = new Dimension(framebuffer.getWidth(), framebuffer
+				.getHeight());
+		setSize(size);
+		setPreferredSize(size);
+	}
+
+	/**
+	 * Returns the framebuffer displayed in this canvas.
+	 * 
+	 * @return the framebuffer
+	 */
+	public Framebuffer getFramebuffer() {
+		return framebuffer;
 	}
 
 	/**
@@ -57,9 +99,64 @@ public class PixelPanel extends Canvas implements ComponentListener {
 	 *            the blue coordinate
 	 */
 	public void drawPixel(int x, int y, float r, float g, float b) {
-		if (x >= 0 && x < image.getWidth() && y >= 0 && y < image.getHeight())
-			image.setRGB(x, y, (int) (255 * r) << 16 | (int) (255 * g) << 8
-					| (int) (255 * b));
+		framebuffer.drawPixel(x, y, r, g, b);
+	}
+
+	/**
+	 * Returns the pixels of the image, row by row, packed as 0xRRGGBB. Writes
+	 * into the array are shown at the next repaint.
+	 * 
+	 * @return the int[] backing the image
+	 */
+	public int[] getPixels() {
+		return framebuffer.getPixels();
+	}
+
+	/**
+	 * Returns the width of the image, i.e. the length of its rows
+	 * 
+	 * @return the width of the image
+	 */
+	public int getImageWidth() {
+		return framebuffer.getWidth();
+	}
+
+	/**
+	 * Returns the height of the image
+	 * 
+	 * @return the height of the image
+	 */
+	public int getImageHeight() {
+		return framebuffer.getHeight();
+	}
+
+	/**
+	 * Draw a row of float colors.
+	 * 
+	 * @see Framebuffer#drawRow(int, int, float[], int, int)
+	 */
+	public void drawRow(int x, int y, float[] rgb, int offset, int count) {
+		framebuffer.drawRow(x, y, rgb, offset, count);
+	}
+
+	/**
+	 * Draw a tile of float colors, clamped to [0...1].
+	 * 
+	 * @see uclouvain.ingi2325.render.TileSink#drawTile(int, int, int, int,
+	 * float[])
+	 */
+	@Override
+	public void drawTile(int x, int y, int width, int height, float[] rgb) {
+		framebuffer.drawTile(x, y, width, height, rgb);
+	}
+
+	/**
+	 * Draw a tile of packed 0xRRGGBB pixels in one blit.
+	 * 
+	 * @see Framebuffer#drawTile(int, int, int, int, int[])
+	 */
+	public void drawTile(int x, int y, int width, int height, int[] rgb) {
+		framebuffer.drawTile(x, y, width, height, rgb);
 	}
 
 	/**
@@ -80,99 +177,118 @@ public class PixelPanel extends Canvas implements ComponentListener {
 	 *            the blue coordinate
 	 */
 	public void clear(float r, float g, float b) {
-		int color = (int) (255 * r) << 16 | (int) (255 * g) << 8
-				| (int) (255 * b);
-		for (int x = 0; x < image.getWidth(); x++) {
-			for (int y = 0; y < image.getHeight(); y++) {
-				image.setRGB(x, y, color);
-			}
-		}
+		framebuffer.clear(r, g, b);
 	}
 
 	/**
-	 * Save the buffer to a file.
+	 * Save the buffer to a file, in the background. The buffer should not be
+	 * drawn on until the file is written.
 	 * 
 	 * @param file
 	 *            the filename used to save the file.
-	 * @return true if image was successfully writen, false otherwise
+	 * @return the result of the saving, whose get() method throws the
+	 *         failure, if any
+	 * @see ImageEncoder#save(Framebuffer, File)
 	 */
-	public boolean saveImage(String file) {
-		try {
-			Graphics2D g2;
-			g2 = image.createGraphics();
-			g2.drawImage(image, null, null);
-			ImageIO.write(image, "png", new File(file));
-			return true;
-
-		} catch (Exception e) {
-			return false;
-
-		}
+	public Future<File> saveImage(String file) {
+		return ImageEncoder.save(framebuffer, new File(file));
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.awt.Canvas#paint(java.awt.Graphics)
+	/**
+	 * Mark the framebuffer as changed, so that it is painted at the next
+	 * refresh.
 	 */
-	@Override
-	public void paint(Graphics g) {
-		update(g);
+	public void markChanged() {
+		changed.set(true);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Start repainting the canvas from a separate thread, at most at a given
+	 * frame rate and only when the framebuffer is marked as changed. Painting
+	 * does not go through the event dispatch thread, which stays free for
+	 * input.
 	 * 
-	 * @see java.awt.Canvas#update(java.awt.Graphics)
+	 * @param frameRate
+	 *            Maximum number of repaints per second
 	 */
-	@Override
-	public void update(Graphics g) {
-		g.drawImage(image, 0, 0, this);
+	public void startRefreshing(int frameRate) {
+		if (frameRate <= 0)
+			throw new IllegalArgumentException("Invalid frame rate "
+					+ frameRate + ".");
+		synchronized (refreshLock) {
+			stopRefreshing();
+			refresher = Executors
+					.newSingleThreadScheduledExecutor(new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "PixelPanel");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			refresher.scheduleAtFixedRate(new Runnable() {
+				@Override
+				public void run() {
+					if (changed.getAndSet(false))
+						paintNow();
+				}
+			}, 0, 1000000 / frameRate, TimeUnit.MICROSECONDS);
+		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.awt.event.ComponentListener#componentResized(java.awt.event.
-	 * ComponentEvent)
+	/**
+	 * Stop repainting the canvas from a separate thread, after painting it a
+	 * last time if it changed.
 	 */
-	@Override
-	public void componentResized(ComponentEvent e) {
-		System.out.println("Resized");
-		image = new BufferedImage(getWidth(), getHeight(),
-				BufferedImage.TYPE_INT_RGB);
+	public void stopRefreshing() {
+		synchronized (refreshLock) {
+			if (refresher == null)
+				return;
+			refresher.shutdownNow();
+			refresher = null;
+		}
+		if (changed.getAndSet(false))
+			repaint();
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see java.awt.event.ComponentListener#componentHidden(java.awt.event.
-	 * ComponentEvent)
+	/**
+	 * Paint the canvas from the calling thread, or schedule a repaint if it
+	 * is not displayable.
 	 */
-	@Override
-	public void componentHidden(ComponentEvent e) {
+	private void paintNow() {
+		Graphics g = getGraphics();
+		if (g == null) {
+			repaint();
+			return;
+		}
+		try {
+			update(g);
+		} finally {
+			g.dispose();
+		}
+		Toolkit.getDefaultToolkit().sync();
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see
-	 * java.awt.event.ComponentListener#componentMoved(java.awt.event.ComponentEvent
-	 * )
+	 * @see java.awt.Canvas#paint(java.awt.Graphics)
 	 */
 	@Override
-	public void componentMoved(ComponentEvent e) {
+	public void paint(Graphics g) {
+		update(g);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see
-	 * java.awt.event.ComponentListener#componentShown(java.awt.event.ComponentEvent
-	 * )
+	 * @see java.awt.Canvas#update(java.awt.Graphics)
 	 */
 	@Override
-	public void componentShown(ComponentEvent e) {
+	public void update(Graphics g) {
+		synchronized (framebuffer) {
+			g.drawImage(framebuffer.getImage(), 0, 0, this);
+		}
 	}
 
 }
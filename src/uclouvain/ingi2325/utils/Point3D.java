@@ -12,6 +12,37 @@ import uclouvain.ingi2325.math.*;
  */
 public class Point3D extends Tuple3 {
 
+	/**
+	 * Constructs and initializes a point to (0,0,0).
+	 */
+	public Point3D() {
+		super();
+	}
+
+	/**
+	 * Constructs and initializes a point from the specified xyz coordinates.
+	 * 
+	 * @param x
+	 *            the x-coordinate
+	 * @param y
+	 *            the y-coordinate
+	 * @param z
+	 *            the z-coordinate
+	 */
+	public Point3D(float x, float y, float z) {
+		super(x, y, z);
+	}
+
+	/**
+	 * Constructs and initializes a point from the specified tuple.
+	 * 
+	 * @param tuple
+	 *            the tuple to copy
+	 */
+	public Point3D(Tuple3 tuple) {
+		super(tuple);
+	}
+
 	/**
 	 * Parse a Point3D from a string
 	 * @param string   String representation
@@ -22,4 +53,30 @@ public class Point3D extends Tuple3 {
 	public static Point3D valueOf(String string) throws ParseException {
 		return valueOf(string, new Point3D());
 	}
+
+	/**
+	 * Returns the squared distance between this point and another point,
+	 * which is cheaper than the distance.
+	 * 
+	 * @param point
+	 *            the other point
+	 * @return the squared distance
+	 */
+	public final float distanceSquared(Tuple3 point) {
+		float dx = x - point.x;
+		float dy = y - point.y;
+		float dz = z - point.z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Returns the distance between this point and another point.
+	 * 
+	 * @param point
+	 *            the other point
+	 * @return the distance
+	 */
+	public final float distance(Tuple3 point) {
+		return (float) Math.sqrt(distanceSquared(point));
+	}
 }
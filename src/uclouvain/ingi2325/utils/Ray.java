@@ -0,0 +1,91 @@
+package uclouvain.ingi2325.utils;
+
+import uclouvain.ingi2325.math.Tuple3;
+
+/**
+ * Ray, with the interval of distances in which hits are looked for
+ * <p>Intersection routines shorten the interval by lowering
+ * <code>tMax</code> to the distance of each hit they find, so that only
+ * closer hits are found next.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public class Ray {
+
+	/**
+	 * The origin.
+	 */
+	public final Point3D origin = new Point3D();
+
+	/**
+	 * The direction, not necessarily normalized. Distances are measured in
+	 * units of its length.
+	 */
+	public final Vector3D direction = new Vector3D();
+
+	/**
+	 * The minimum distance of hits.
+	 */
+	public float tMin = 0.0F;
+
+	/**
+	 * The maximum distance of hits.
+	 */
+	public float tMax = Float.POSITIVE_INFINITY;
+
+	/**
+	 * Constructs a ray from the origin along (0,0,0).
+	 */
+	public Ray() {
+	}
+
+	/**
+	 * Constructs a ray with an unbounded interval.
+	 * 
+	 * @param origin
+	 *            the origin
+	 * @param direction
+	 *            the direction
+	 */
+	public Ray(Tuple3 origin, Tuple3 direction) {
+		set(origin, direction);
+	}
+
+	/**
+	 * Returns a string that contains the origin, direction and interval of
+	 * this ray.
+	 */
+	@Override
+	public String toString() {
+		return origin + " + t * " + direction + ", t in [" + tMin + ", "
+				+ tMax + "]";
+	}
+
+	/**
+	 * Sets the origin and direction of this ray, and resets its interval to
+	 * [0, infinity].
+	 * 
+	 * @param origin
+	 *            the origin
+	 * @param direction
+	 *            the direction
+	 */
+	public final void set(Tuple3 origin, Tuple3 direction) {
+		this.origin.set(origin);
+		this.direction.set(direction);
+		tMin = 0.0F;
+		tMax = Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Sets a tuple to the point at a distance along this ray.
+	 * 
+	 * @param t
+	 *            the distance
+	 * @param point
+	 *            the point
+	 */
+	public final void getPoint(float t, Tuple3 point) {
+		point.scaleAdd(t, direction, origin);
+	}
+}
@@ -1,11 +1,303 @@
 package uclouvain.ingi2325.utils;
 
+import java.util.*;
+
+import uclouvain.ingi2325.scene.*;
+
 /**
  * Represents a scene
+ * <p>A scene holds the named cameras, lights, geometries, textures and
+ * materials declared by an SDL document, and the hierarchy of shapes and
+ * transforms of its <code>Scene</code> element, with the camera, lights and
+ * background it selects. The shapes are also listed flat, in document
+ * order.</p>
  * 
  * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
  * @author Julien Dupuis
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
  */
 public class Scene {
 
+	/** Cameras, by name */
+	private final Map<String, Camera> cameras =
+		new LinkedHashMap<String, Camera>();
+
+	/** Lights, by name */
+	private final Map<String, Light> lights =
+		new LinkedHashMap<String, Light>();
+
+	/** Geometries, by name */
+	private final Map<String, Geometry> geometries =
+		new LinkedHashMap<String, Geometry>();
+
+	/** Textures, by name */
+	private final Map<String, Texture> textures =
+		new LinkedHashMap<String, Texture>();
+
+	/** Materials, by name */
+	private final Map<String, Material> materials =
+		new LinkedHashMap<String, Material>();
+
+	/** Camera used to render the scene */
+	private Camera camera = null;
+
+	/** Lights that light the scene */
+	private final List<Light> activeLights = new ArrayList<Light>();
+
+	/** Background color */
+	private Color background = new Color(0, 0, 0);
+
+	/** Root nodes of the shape hierarchy */
+	private final List<SceneNode> roots = new ArrayList<SceneNode>();
+
+	/** All the shapes, in document order */
+	private final List<Shape> shapes = new ArrayList<Shape>();
+
+	/**
+	 * Add a camera
+	 * 
+	 * @param camera
+	 *            The camera
+	 */
+	public void addCamera(Camera camera) {
+		cameras.put(camera.getName(), camera);
+	}
+
+	/**
+	 * Returns a camera
+	 * 
+	 * @param name
+	 *            Name of the camera
+	 * @return the camera, or null if there is none with this name
+	 */
+	public Camera getCamera(String name) {
+		return cameras.get(name);
+	}
+
+	/**
+	 * Returns all the cameras
+	 * 
+	 * @return the cameras, in document order
+	 */
+	public Collection<Camera> getCameras() {
+		return Collections.unmodifiableCollection(cameras.values());
+	}
+
+	/**
+	 * Add a light
+	 * 
+	 * @param light
+	 *            The light
+	 */
+	public void addLight(Light light) {
+		lights.put(light.getName(), light);
+	}
+
+	/**
+	 * Returns a light
+	 * 
+	 * @param name
+	 *            Name of the light
+	 * @return the light, or null if there is none with this name
+	 */
+	public Light getLight(String name) {
+		return lights.get(name);
+	}
+
+	/**
+	 * Returns all the lights, including those not used by the scene
+	 * 
+	 * @return the lights, in document order
+	 */
+	public Collection<Light> getLights() {
+		return Collections.unmodifiableCollection(lights.values());
+	}
+
+	/**
+	 * Add a geometry
+	 * 
+	 * @param geometry
+	 *            The geometry
+	 */
+	public void addGeometry(Geometry geometry) {
+		geometries.put(geometry.getName(), geometry);
+	}
+
+	/**
+	 * Returns a geometry
+	 * 
+	 * @param name
+	 *            Name of the geometry
+	 * @return the geometry, or null if there is none with this name
+	 */
+	public Geometry getGeometry(String name) {
+		return geometries.get(name);
+	}
+
+	/**
+	 * Returns all the geometries
+	 * 
+	 * @return the geometries, in document order
+	 */
+	public Collection<Geometry> getGeometries() {
+		return Collections.unmodifiableCollection(geometries.values());
+	}
+
+	/**
+	 * Add a texture
+	 * 
+	 * @param texture
+	 *            The texture
+	 */
+	public void addTexture(Texture texture) {
+		textures.put(texture.getName(), texture);
+	}
+
+	/**
+	 * Returns a texture
+	 * 
+	 * @param name
+	 *            Name of the texture
+	 * @return the texture, or null if there is none with this name
+	 */
+	public Texture getTexture(String name) {
+		return textures.get(name);
+	}
+
+	/**
+	 * Returns all the textures
+	 * 
+	 * @return the textures, in document order
+	 */
+	public Collection<Texture> getTextures() {
+		return Collections.unmodifiableCollection(textures.values());
+	}
+
+	/**
+	 * Add a material
+	 * 
+	 * @param material
+	 *            The material
+	 */
+	public void addMaterial(Material material) {
+		materials.put(material.getName(), material);
+	}
+
+	/**
+	 * Returns a material
+	 * 
+	 * @param name
+	 *            Name of the material
+	 * @return the material, or null if there is none with this name
+	 */
+	public Material getMaterial(String name) {
+		return materials.get(name);
+	}
+
+	/**
+	 * Returns all the materials
+	 * 
+	 * @return the materials
+	 */
+	public Collection<Material> getMaterials() {
+		return Collections.unmodifiableCollection(materials.values());
+	}
+
+	/**
+	 * Returns the camera used to render the scene
+	 * 
+	 * @return the camera
+	 */
+	public Camera getCamera() {
+		return camera;
+	}
+
+	/**
+	 * Sets the camera used to render the scene
+	 * 
+	 * @param camera
+	 *            the camera
+	 */
+	public void setCamera(Camera camera) {
+		this.camera = camera;
+	}
+
+	/**
+	 * Add a light to the lights that light the scene
+	 * 
+	 * @param light
+	 *            The light
+	 */
+	public void addActiveLight(Light light) {
+		activeLights.add(light);
+	}
+
+	/**
+	 * Returns the lights that light the scene
+	 * 
+	 * @return the lights
+	 */
+	public List<Light> getActiveLights() {
+		return Collections.unmodifiableList(activeLights);
+	}
+
+	/**
+	 * Returns the background color
+	 * 
+	 * @return the background color
+	 */
+	public Color getBackground() {
+		return background;
+	}
+
+	/**
+	 * Sets the background color
+	 * 
+	 * @param background
+	 *            the background color
+	 */
+	public void setBackground(Color background) {
+		this.background = background;
+	}
+
+	/**
+	 * Add a root node to the shape hierarchy
+	 * 
+	 * @param node
+	 *            The node, without parent
+	 */
+	public void addRoot(SceneNode node) {
+		assert node.getParent() == null;
+		roots.add(node);
+	}
+
+	/**
+	 * Returns the root nodes of the shape hierarchy
+	 * 
+	 * @return the root nodes
+	 */
+	public List<SceneNode> getRoots() {
+		return Collections.unmodifiableList(roots);
+	}
+
+	/**
+	 * Add a shape to the flat list of shapes
+	 * <p>The shape must also be added to the hierarchy, as a root node or as
+	 * the child of a transform.</p>
+	 * 
+	 * @param shape
+	 *            The shape
+	 */
+	public void addShape(Shape shape) {
+		shapes.add(shape);
+	}
+
+	/**
+	 * Returns all the shapes
+	 * 
+	 * @return the shapes, in document order
+	 */
+	public List<Shape> getShapes() {
+		return Collections.unmodifiableList(shapes);
+	}
 }
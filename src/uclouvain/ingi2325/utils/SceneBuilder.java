@@ -3,19 +3,72 @@ package uclouvain.ingi2325.utils;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.xml.sax.InputSource;
 
+import uclouvain.ingi2325.exception.ParseException;
+import uclouvain.ingi2325.math.Matrix4;
+import uclouvain.ingi2325.math.Tuple2;
+import uclouvain.ingi2325.math.Tuple3;
+import uclouvain.ingi2325.parser.BinaryParser;
+import uclouvain.ingi2325.parser.BinaryWriter;
+import uclouvain.ingi2325.parser.BufferGeometryHandler;
+import uclouvain.ingi2325.parser.GeometryCache;
+import uclouvain.ingi2325.parser.ObjLoader;
+import uclouvain.ingi2325.parser.ObjMesh;
+import uclouvain.ingi2325.parser.PackedGeometryHandler;
 import uclouvain.ingi2325.parser.Parser;
 import uclouvain.ingi2325.parser.ParserHandler;
+import uclouvain.ingi2325.parser.StreamParser;
+import uclouvain.ingi2325.scene.Camera;
+import uclouvain.ingi2325.scene.Cone;
+import uclouvain.ingi2325.scene.Cylinder;
+import uclouvain.ingi2325.scene.DiffuseMaterial;
+import uclouvain.ingi2325.scene.DirectionalLight;
+import uclouvain.ingi2325.scene.Geometry;
+import uclouvain.ingi2325.scene.Light;
+import uclouvain.ingi2325.scene.LinearCombinedMaterial;
+import uclouvain.ingi2325.scene.Material;
+import uclouvain.ingi2325.scene.PhongMaterial;
+import uclouvain.ingi2325.scene.PointLight;
+import uclouvain.ingi2325.scene.Rotate;
+import uclouvain.ingi2325.scene.Scale;
+import uclouvain.ingi2325.scene.SceneNode;
+import uclouvain.ingi2325.scene.Shape;
+import uclouvain.ingi2325.scene.Sphere;
+import uclouvain.ingi2325.scene.SpotLight;
+import uclouvain.ingi2325.scene.Teapot;
+import uclouvain.ingi2325.scene.Texture;
+import uclouvain.ingi2325.scene.Torus;
+import uclouvain.ingi2325.scene.Transform;
+import uclouvain.ingi2325.scene.Translate;
+import uclouvain.ingi2325.scene.TriangleMesh;
+import uclouvain.ingi2325.scene.WorldTransform;
 
 /**
  * Represents a builder for scene
+ * <p>
+ * The builder fills a {@link Scene} with the elements of an SDL document.
+ * References to named cameras, lights, geometries, materials and textures are
+ * resolved while building, and meshes are stored as structures of arrays in
+ * {@link TriangleMesh}es.
+ * </p>
  * 
  * @author Antoine Cailliau <antoine.cailliau@uclouvain.be>
  * @author Julien Dupuis
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
  */
-public class SceneBuilder implements ParserHandler {
+public class SceneBuilder implements ParserHandler, PackedGeometryHandler,
+		BufferGeometryHandler {
 
 	/**
 	 * The scene being build
@@ -47,7 +100,55 @@ public class SceneBuilder implements ParserHandler {
 	}
 
 	/**
-	 * Load a scene.
+	 * The innermost open transform, or null outside transforms.
+	 */
+	private Transform currentTransform = null;
+
+	/**
+	 * The world matrices of the open transforms, the innermost last, above
+	 * the identity.
+	 */
+	private final List<Matrix4> matrixStack = new ArrayList<Matrix4>();
+
+	/**
+	 * The world matrices of the shapes, until they are baked at the end of
+	 * the scene.
+	 */
+	private final Map<Shape, Matrix4> shapeMatrices =
+		new LinkedHashMap<Shape, Matrix4>();
+
+	/**
+	 * The linear combined materials, until the materials they combine are
+	 * known.
+	 */
+	private final List<Combination> combinations = new ArrayList<Combination>();
+
+	/**
+	 * The cache of the meshes of FileGeometry elements, or null.
+	 */
+	private GeometryCache geometryCache = null;
+
+	/**
+	 * Returns the cache of the meshes of FileGeometry elements
+	 * 
+	 * @return the cache, or null if the meshes are not cached
+	 */
+	public GeometryCache getGeometryCache() {
+		return geometryCache;
+	}
+
+	/**
+	 * Sets the cache of the meshes of FileGeometry elements
+	 * 
+	 * @param geometryCache
+	 *            the cache, or null for parsing the OBJ files on each load
+	 */
+	public void setGeometryCache(GeometryCache geometryCache) {
+		this.geometryCache = geometryCache;
+	}
+
+	/**
+	 * Load a scene, validating it against the DTD.
 	 * 
 	 * @param filename
 	 *            The name of the file that contains the scene.
@@ -57,8 +158,53 @@ public class SceneBuilder implements ParserHandler {
 	 *             found.
 	 */
 	public Scene loadScene(String filename) throws FileNotFoundException {
+		return loadScene(filename, true);
+	}
+
+	/**
+	 * Load a scene.
+	 * <p>
+	 * If <code>validate</code> is <code>true</code>, the scene is parsed with
+	 * the SAX {@link Parser} and validated against the DTD. Otherwise, it is
+	 * parsed with the faster {@link StreamParser}, which does not read the DTD
+	 * but still checks the structure of the document.
+	 * </p>
+	 * <p>
+	 * Files whose name ends with <code>.sdlb</code> are binary scenes written
+	 * by {@link BinaryWriter}. They are memory-mapped and loaded by
+	 * {@link BinaryParser}, and <code>validate</code> is ignored.
+	 * </p>
+	 * 
+	 * @param filename
+	 *            The name of the file that contains the scene.
+	 * @param validate
+	 *            True for validating the document against the DTD
+	 * @return The scene, or null if something went wrong.
+	 * @throws FileNotFoundException
+	 *             The file corresponding to the given filename could not be
+	 *             found.
+	 */
+	public Scene loadScene(String filename, boolean validate)
+			throws FileNotFoundException {
 
 		File file = new File(filename);
+
+		if (filename.endsWith(".sdlb")) {
+			if (!file.isFile())
+				throw new FileNotFoundException(filename);
+
+			path = file.getAbsoluteFile().getParentFile().getAbsolutePath()
+					+ "/";
+			scene = new Scene();
+
+			BinaryParser parser = new BinaryParser();
+			parser.addHandler(this);
+			if (!parser.parse(file, /* echo */ false))
+				scene = null;
+
+			return scene;
+		}
+
 		FileInputStream fileInputStream = new FileInputStream(file);
 
 		InputSource inputSource = new InputSource(fileInputStream);
@@ -68,10 +214,25 @@ public class SceneBuilder implements ParserHandler {
 
 		scene = new Scene();
 
-		Parser parser = new Parser();
-		parser.addHandler(this);
+		boolean success;
+		if (validate) {
+			Parser parser = new Parser();
+			parser.addHandler(this);
+			success = parser.parse(inputSource, /* validate */ true,
+					/* echo */ false);
+		} else {
+			StreamParser parser = new StreamParser();
+			parser.addHandler(this);
+			success = parser.parse(inputSource, /* checkStructure */ true,
+					/* echo */ false);
+		}
+
+		try {
+			fileInputStream.close();
+		} catch (IOException e) {
+		}
 
-		if (!parser.parse(inputSource, /* validate */ true, /* echo */ false)) {
+		if (!success) {
 			scene = null;
 		}
 
@@ -85,6 +246,12 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startSdl() throws Exception {
+		currentTransform = null;
+		combinations.clear();
+		shapeMatrices.clear();
+
+		matrixStack.clear();
+		matrixStack.add(Matrix4.identity());
 	}
 
 	/*
@@ -125,6 +292,8 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startCamera(Point3D position, Vector3D direction, Vector3D up,
 			float fovy, String name) throws Exception {
+		checkUnique(scene.getCamera(name), "camera", name);
+		scene.addCamera(new Camera(position, direction, up, fovy, name));
 	}
 
 	/*
@@ -165,6 +334,8 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startDirectionalLight(Vector3D direction, float intensity,
 			Color color, String name) throws Exception {
+		checkUnique(scene.getLight(name), "light", name);
+		scene.addLight(new DirectionalLight(direction, intensity, color, name));
 	}
 
 	/*
@@ -186,6 +357,8 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startPointLight(Point3D position, float intensity, Color color,
 			String name) throws Exception {
+		checkUnique(scene.getLight(name), "light", name);
+		scene.addLight(new PointLight(position, intensity, color, name));
 	}
 
 	/*
@@ -209,6 +382,9 @@ public class SceneBuilder implements ParserHandler {
 	public void startSpotLight(Point3D position, Vector3D direction,
 			float angle, float intensity, Color color, String name)
 			throws Exception {
+		checkUnique(scene.getLight(name), "light", name);
+		scene.addLight(new SpotLight(position, direction, angle, intensity,
+				color, name));
 	}
 
 	/*
@@ -246,6 +422,7 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startSphere(float radius, String name) throws Exception {
+		addGeometry(new Sphere(radius, name));
 	}
 
 	/*
@@ -266,6 +443,7 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startCylinder(float radius, float height, boolean capped,
 			String name) throws Exception {
+		addGeometry(new Cylinder(radius, height, capped, name));
 	}
 
 	/*
@@ -286,6 +464,7 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startCone(float radius, float height, boolean capped,
 			String name) throws Exception {
+		addGeometry(new Cone(radius, height, capped, name));
 	}
 
 	/*
@@ -306,6 +485,7 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startTorus(float innerRadius, float outerRadius, String name)
 			throws Exception {
+		addGeometry(new Torus(innerRadius, outerRadius, name));
 	}
 
 	/*
@@ -325,6 +505,7 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startTeapot(float size, String name) throws Exception {
+		addGeometry(new Teapot(size, name));
 	}
 
 	/*
@@ -350,20 +531,61 @@ public class SceneBuilder implements ParserHandler {
 			Vector3D[] normals, TextureCoordinates[] textureCoordinates,
 			int[] coordinateIndices, int[] normalIndices,
 			int[] textureCoordinateIndices, String name) throws Exception {
+		startIndexedTriangleSet(pack(coordinates), pack(normals),
+				pack(textureCoordinates), coordinateIndices, normalIndices,
+				textureCoordinateIndices, name);
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
-	 * @see uclouvain.ingi2325.parser.ParserHandler#endIndexedTriangleSet()
+	 * @see
+	 * uclouvain.ingi2325.parser.PackedGeometryHandler#startIndexedTriangleSet
+	 * (float[], float[], float[], int[], int[], int[], java.lang.String)
 	 */
 	@Override
-	public void endIndexedTriangleSet() throws Exception {
+	public void startIndexedTriangleSet(float[] coordinates, float[] normals,
+			float[] textureCoordinates, int[] coordinateIndices,
+			int[] normalIndices, int[] textureCoordinateIndices, String name)
+			throws Exception {
+		startIndexedTriangleSet(wrap(coordinates), wrap(normals),
+				wrap(textureCoordinates), wrap(coordinateIndices),
+				wrap(normalIndices), wrap(textureCoordinateIndices), name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * uclouvain.ingi2325.parser.BufferGeometryHandler#startIndexedTriangleSet
+	 * (java.nio.FloatBuffer, java.nio.FloatBuffer, java.nio.FloatBuffer,
+	 * java.nio.IntBuffer, java.nio.IntBuffer, java.nio.IntBuffer,
+	 * java.lang.String)
+	 */
+	@Override
+	public void startIndexedTriangleSet(FloatBuffer coordinates,
+			FloatBuffer normals, FloatBuffer textureCoordinates,
+			IntBuffer coordinateIndices, IntBuffer normalIndices,
+			IntBuffer textureCoordinateIndices, String name) throws Exception {
+		addGeometry(TriangleMesh.unpack(coordinates, normals,
+				textureCoordinates, coordinateIndices, normalIndices,
+				textureCoordinateIndices, name));
 	}
 
 	/*
 	 * (non-Javadoc)
 	 * 
+	 * @see uclouvain.ingi2325.parser.ParserHandler#endIndexedTriangleSet()
+	 */
+	@Override
+	public void endIndexedTriangleSet() throws Exception {
+	}
+
+	/**
+	 * Load the OBJ file with {@link ObjLoader}, or from the geometry cache,
+	 * relative to the directory of the scene, and hand it over as a packed
+	 * indexed triangle set.
+	 * 
 	 * @see
 	 * uclouvain.ingi2325.parser.ParserHandler#startFileGeometry(java.lang.String
 	 * , java.lang.String)
@@ -371,6 +593,13 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startFileGeometry(String filename, String name)
 			throws Exception {
+		File file = new File(filename);
+		if (!file.isAbsolute() && path != null)
+			file = new File(path, filename);
+
+		ObjMesh mesh = geometryCache != null ? geometryCache.load(file)
+				: ObjLoader.load(file);
+		mesh.startIndexedTriangleSet(this, name);
 	}
 
 	/*
@@ -409,6 +638,13 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startTexture(String src, String name) throws Exception {
+		checkUnique(scene.getTexture(name), "texture", name);
+
+		File file = new File(src);
+		if (!file.isAbsolute() && path != null)
+			file = new File(path, src);
+
+		scene.addTexture(new Texture(file.getPath(), name));
 	}
 
 	/*
@@ -436,6 +672,34 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void endMaterials() throws Exception {
+		// Resolve the combinations, which may refer to each other
+		while (!combinations.isEmpty()) {
+			boolean progress = false;
+
+			for (Iterator<Combination> it = combinations.iterator(); it
+					.hasNext();) {
+				Combination combination = it.next();
+				Material material1 = scene.getMaterial(combination.material1);
+				Material material2 = scene.getMaterial(combination.material2);
+
+				if (material1 != null && material2 != null) {
+					scene.addMaterial(new LinearCombinedMaterial(material1,
+							combination.weight1, material2,
+							combination.weight2, combination.name));
+					it.remove();
+					progress = true;
+				}
+			}
+
+			if (!progress) {
+				Combination combination = combinations.get(0);
+				throw new ParseException(String.format(
+						"Material \"%s\" combines unknown or cyclic "
+								+ "materials \"%s\" and \"%s\".",
+						combination.name, combination.material1,
+						combination.material2));
+			}
+		}
 	}
 
 	/*
@@ -447,7 +711,7 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startDiffuseMaterial(Color color, String name) throws Exception {
-
+		addMaterial(new DiffuseMaterial(color, name));
 	}
 
 	/*
@@ -469,7 +733,7 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startPhongMaterial(Color color, float shininess, String name)
 			throws Exception {
-
+		addMaterial(new PhongMaterial(color, shininess, name));
 	}
 
 	/*
@@ -492,6 +756,13 @@ public class SceneBuilder implements ParserHandler {
 	public void startLinearCombinedMaterial(String material1Name,
 			float weight1, String material2Name, float weight2, String name)
 			throws Exception {
+		checkUnique(scene.getMaterial(name), "material", name);
+		for (Combination combination : combinations)
+			checkUnique(combination.name.equals(name) ? combination : null,
+					"material", name);
+
+		combinations.add(new Combination(material1Name, weight1,
+				material2Name, weight2, name));
 	}
 
 	/*
@@ -512,6 +783,21 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startScene(String cameraName, String[] lightNames,
 			Color background) throws Exception {
+		Camera camera = scene.getCamera(cameraName);
+		if (camera == null)
+			throw new ParseException(String.format("Unknown camera \"%s\".",
+					cameraName));
+		scene.setCamera(camera);
+
+		for (String lightName : lightNames) {
+			Light light = scene.getLight(lightName);
+			if (light == null)
+				throw new ParseException(String.format(
+						"Unknown light \"%s\".", lightName));
+			scene.addActiveLight(light);
+		}
+
+		scene.setBackground(background);
 	}
 
 	/*
@@ -521,6 +807,20 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void endScene() throws Exception {
+		// Shapes in identical transform chains share their world transform
+		Map<Matrix4, WorldTransform> baked =
+			new HashMap<Matrix4, WorldTransform>();
+
+		for (Map.Entry<Shape, Matrix4> entry : shapeMatrices.entrySet()) {
+			WorldTransform worldTransform = baked.get(entry.getValue());
+			if (worldTransform == null) {
+				worldTransform = WorldTransform.bake(entry.getValue());
+				baked.put(entry.getValue(), worldTransform);
+			}
+			entry.getKey().setWorldTransform(worldTransform);
+		}
+
+		shapeMatrices.clear();
 	}
 
 	/*
@@ -532,6 +832,31 @@ public class SceneBuilder implements ParserHandler {
 	@Override
 	public void startShape(String geometryName, String materialName,
 			String textureName) throws Exception {
+		Geometry geometry = scene.getGeometry(geometryName);
+		if (geometry == null)
+			throw new ParseException(String.format(
+					"Unknown geometry \"%s\".", geometryName));
+
+		Material material = null;
+		if (materialName != null) {
+			material = scene.getMaterial(materialName);
+			if (material == null)
+				throw new ParseException(String.format(
+						"Unknown material \"%s\".", materialName));
+		}
+
+		Texture texture = null;
+		if (textureName != null) {
+			texture = scene.getTexture(textureName);
+			if (texture == null)
+				throw new ParseException(String.format(
+						"Unknown texture \"%s\".", textureName));
+		}
+
+		Shape shape = new Shape(geometry, material, texture, currentTransform);
+		addNode(shape);
+		scene.addShape(shape);
+		shapeMatrices.put(shape, matrixStack.get(matrixStack.size() - 1));
 	}
 
 	/*
@@ -552,6 +877,8 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startRotate(Vector3D axis, float angle) throws Exception {
+		startTransform(new Rotate(axis, angle, currentTransform));
+		pushMatrix(Matrix4.rotation(axis, angle));
 	}
 
 	/*
@@ -561,6 +888,7 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void endRotate() throws Exception {
+		endTransform();
 	}
 
 	/*
@@ -572,6 +900,8 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startTranslate(Vector3D vector) throws Exception {
+		startTransform(new Translate(vector, currentTransform));
+		pushMatrix(Matrix4.translation(vector));
 	}
 
 	/*
@@ -581,6 +911,7 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void endTranslate() throws Exception {
+		endTransform();
 	}
 
 	/*
@@ -592,6 +923,8 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void startScale(Vector3D scale) throws Exception {
+		startTransform(new Scale(scale, currentTransform));
+		pushMatrix(Matrix4.scaling(scale));
 	}
 
 	/*
@@ -601,6 +934,202 @@ public class SceneBuilder implements ParserHandler {
 	 */
 	@Override
 	public void endScale() throws Exception {
+		endTransform();
+	}
+
+	/**
+	 * Check that a name is not already used
+	 * 
+	 * @param existing
+	 *            The object that already has this name, or null
+	 * @param kind
+	 *            Kind of object, for the error message
+	 * @param name
+	 *            The name
+	 * @throws ParseException
+	 *             The name is already used
+	 */
+	private static void checkUnique(Object existing, String kind, String name)
+			throws ParseException {
+		if (existing != null)
+			throw new ParseException(String.format(
+					"There is already a %s named \"%s\".", kind, name));
+	}
+
+	/**
+	 * Add a geometry to the scene
+	 * 
+	 * @param geometry
+	 *            The geometry
+	 * @throws ParseException
+	 *             The name of the geometry is already used
+	 */
+	private void addGeometry(Geometry geometry) throws ParseException {
+		checkUnique(scene.getGeometry(geometry.getName()), "geometry",
+				geometry.getName());
+		scene.addGeometry(geometry);
+	}
+
+	/**
+	 * Add a material to the scene
+	 * 
+	 * @param material
+	 *            The material
+	 * @throws ParseException
+	 *             The name of the material is already used
+	 */
+	private void addMaterial(Material material) throws ParseException {
+		checkUnique(scene.getMaterial(material.getName()), "material",
+				material.getName());
+		scene.addMaterial(material);
+	}
+
+	/**
+	 * Add a node to the innermost open transform, or to the roots
+	 * 
+	 * @param node
+	 *            The node
+	 */
+	private void addNode(SceneNode node) {
+		if (currentTransform == null)
+			scene.addRoot(node);
+		else
+			currentTransform.addChild(node);
+	}
+
+	/**
+	 * Open a transform
+	 * 
+	 * @param transform
+	 *            The transform
+	 */
+	private void startTransform(Transform transform) {
+		addNode(transform);
+		currentTransform = transform;
+	}
+
+	/**
+	 * Close the innermost transform
+	 */
+	private void endTransform() {
+		currentTransform = currentTransform.getParent();
+		matrixStack.remove(matrixStack.size() - 1);
+	}
+
+	/**
+	 * Push the world matrix of a new transform on the matrix stack
+	 * 
+	 * @param local
+	 *            The matrix of the transform, relative to its parent
+	 */
+	private void pushMatrix(Matrix4 local) {
+		Matrix4 world = new Matrix4();
+		world.mul(matrixStack.get(matrixStack.size() - 1), local);
+		matrixStack.add(world);
+	}
+
+	/**
+	 * Pack 3-tuples into an array of floats
+	 * 
+	 * @param tuples
+	 *            The tuples, or null
+	 * @return The packed components, or null
+	 */
+	private static float[] pack(Tuple3[] tuples) {
+		if (tuples == null)
+			return null;
+
+		float[] packed = new float[3 * tuples.length];
+		for (int i = 0; i < tuples.length; i++) {
+			packed[3 * i] = tuples[i].x;
+			packed[3 * i + 1] = tuples[i].y;
+			packed[3 * i + 2] = tuples[i].z;
+		}
+		return packed;
+	}
+
+	/**
+	 * Pack 2-tuples into an array of floats
+	 * 
+	 * @param tuples
+	 *            The tuples, or null
+	 * @return The packed components, or null
+	 */
+	private static float[] pack(Tuple2[] tuples) {
+		if (tuples == null)
+			return null;
+
+		float[] packed = new float[2 * tuples.length];
+		for (int i = 0; i < tuples.length; i++) {
+			packed[2 * i] = tuples[i].x;
+			packed[2 * i + 1] = tuples[i].y;
+		}
+		return packed;
+	}
+
+	/**
+	 * Wrap an array of floats into a buffer
+	 * 
+	 * @param array
+	 *            The array, or null
+	 * @return The buffer, or null
+	 */
+	private static FloatBuffer wrap(float[] array) {
+		return array == null ? null : FloatBuffer.wrap(array);
 	}
 
+	/**
+	 * Wrap an array of ints into a buffer
+	 * 
+	 * @param array
+	 *            The array, or null
+	 * @return The buffer, or null
+	 */
+	private static IntBuffer wrap(int[] array) {
+		return array == null ? null : IntBuffer.wrap(array);
+	}
+
+	/**
+	 * Linear combined material whose materials are not resolved yet
+	 */
+	private static class Combination {
+
+		/** Name of the first material */
+		final String material1;
+
+		/** Weight of the first material */
+		final float weight1;
+
+		/** Name of the second material */
+		final String material2;
+
+		/** Weight of the second material */
+		final float weight2;
+
+		/** Name of the combined material */
+		final String name;
+
+		/**
+		 * Create a combination
+		 * 
+		 * @param material1
+		 *            Name of the first material
+		 * @param weight1
+		 *            Weight of the first material
+		 * @param material2
+		 *            Name of the second material
+		 * @param weight2
+		 *            Weight of the second material
+		 * @param name
+		 *            Name of the combined material
+		 */
+		Combination(String material1, float weight1, String material2,
+				float weight2, String name) {
+			this.material1 = material1;
+			this.weight1 = weight1;
+			this.material2 = material2;
+			this.weight2 = weight2;
+			this.name = name;
+		}
+	}
 }
@@ -0,0 +1,34 @@
+package uclouvain.ingi2325.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork/join pool shared by the parallel stages of the program
+ * <p>Loading meshes, building hierarchies and rendering frames all run on
+ * this pool when they are not given one, so that a whole run starts only
+ * one thread per processor.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public final class SharedPool {
+
+	/** The pool, created on first use */
+	private static ForkJoinPool pool = null;
+
+	/**
+	 * Utility class
+	 */
+	private SharedPool() {
+	}
+
+	/**
+	 * Returns the shared pool, with one thread per processor
+	 * 
+	 * @return the shared pool
+	 */
+	public static synchronized ForkJoinPool get() {
+		if (pool == null)
+			pool = new ForkJoinPool();
+		return pool;
+	}
+}
@@ -0,0 +1,62 @@
+package uclouvain.ingi2325.utils;
+
+/**
+ * Operator that brings linear, unbounded colors into the [0, 1] range of a
+ * display
+ * <p>Operators work per channel; an exposure factor is applied by the caller
+ * beforehand.</p>
+ * 
+ * @author Sébastien Doeraene <sjrdoeraene@gmail.com>
+ */
+public enum ToneMapper {
+
+	/** Clamp to [0, 1], which burns out the highlights */
+	CLAMP {
+		@Override
+		public float map(float c) {
+			return c < 0 ? 0 : c > 1 ? 1 : c;
+		}
+	},
+
+	/** Reinhard operator <code>c / (1 + c)</code> */
+	REINHARD {
+		@Override
+		public float map(float c) {
+			return c <= 0 ? 0 : c / (1 + c);
+		}
+	},
+
+	/** Narkowicz' fit of the ACES filmic curve */
+	ACES {
+		@Override
+		public float map(float c) {
+			if (c <= 0)
+				return 0;
+			float mapped = c * (2.51F * c + 0.03F)
+					/ (c * (2.43F * c + 0.59F) + 0.14F);
+			return mapped > 1 ? 1 : mapped;
+		}
+	};
+
+	/**
+	 * Map a color component
+	 * 
+	 * @param c
+	 *            Linear component, possibly above 1
+	 * @return the component, in [0, 1]
+	 */
+	public abstract float map(float c);
+
+	/**
+	 * Returns the operator with a given name, case insensitively
+	 * 
+	 * @param name
+	 *            Name of the operator, e.g. <code>reinhard</code>
+	 * @return the operator
+	 * @throws IllegalArgumentException
+	 *             There is no such operator
+	 */
+	public static ToneMapper forName(String name) {
+		return valueOf(name.toUpperCase());
+	}
+}
@@ -12,6 +12,37 @@ import uclouvain.ingi2325.math.Tuple3;
  */
 public class Vector3D extends Tuple3 {
 
+	/**
+	 * Constructs and initializes a vector to (0,0,0).
+	 */
+	public Vector3D() {
+		super();
+	}
+
+	/**
+	 * Constructs and initializes a vector from the specified xyz coordinates.
+	 * 
+	 * @param x
+	 *            the x-coordinate
+	 * @param y
+	 *            the y-coordinate
+	 * @param z
+	 *            the z-coordinate
+	 */
+	public Vector3D(float x, float y, float z) {
+		super(x, y, z);
+	}
+
+	/**
+	 * Constructs and initializes a vector from the specified tuple.
+	 * 
+	 * @param tuple
+	 *            the tuple to copy
+	 */
+	public Vector3D(Tuple3 tuple) {
+		super(tuple);
+	}
+
 	/**
 	 * Parse a Vector3D from a string
 	 * @param string   String representation
@@ -22,4 +53,86 @@ public class Vector3D extends Tuple3 {
 	public static Vector3D valueOf(String string) throws ParseException {
 		return valueOf(string, new Vector3D());
 	}
+
+	/**
+	 * Returns the dot product of this vector and a tuple.
+	 * 
+	 * @param tuple
+	 *            the other operand
+	 * @return the dot product
+	 */
+	public final float dot(Tuple3 tuple) {
+		return x * tuple.x + y * tuple.y + z * tuple.z;
+	}
+
+	/**
+	 * Sets this vector to the cross product of two tuples, which may be this
+	 * vector.
+	 * 
+	 * @param t1
+	 *            the left operand
+	 * @param t2
+	 *            the right operand
+	 */
+	public final void cross(Tuple3 t1, Tuple3 t2) {
+		float cx = t1.y * t2.z - t1.z * t2.y;
+		float cy = t1.z * t2.x - t1.x * t2.z;
+		float cz = t1.x * t2.y - t1.y * t2.x;
+
+		x = cx;
+		y = cy;
+		z = cz;
+	}
+
+	/**
+	 * Returns the squared length of this vector, which is cheaper than its
+	 * length.
+	 * 
+	 * @return the squared length
+	 */
+	public final float lengthSquared() {
+		return x * x + y * y + z * z;
+	}
+
+	/**
+	 * Returns the length of this vector.
+	 * 
+	 * @return the length
+	 */
+	public final float length() {
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+
+	/**
+	 * Normalizes this vector. A null vector becomes (NaN, NaN, NaN).
+	 */
+	public final void normalize() {
+		float f = 1.0F / (float) Math.sqrt(x * x + y * y + z * z);
+		x *= f;
+		y *= f;
+		z *= f;
+	}
+
+	/**
+	 * Sets this vector to a tuple, normalized.
+	 * 
+	 * @param tuple
+	 *            the tuple to normalize
+	 */
+	public final void normalize(Tuple3 tuple) {
+		set(tuple);
+		normalize();
+	}
+
+	/**
+	 * Returns the angle between this vector and another vector.
+	 * 
+	 * @param vector
+	 *            the other vector
+	 * @return the angle, in radians, between 0 and pi
+	 */
+	public final float angle(Vector3D vector) {
+		double cosine = dot(vector) / (length() * vector.length());
+		return (float) Math.acos(Math.max(-1.0, Math.min(1.0, cosine)));
+	}
 }